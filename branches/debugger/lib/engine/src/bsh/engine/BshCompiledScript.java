@@ -0,0 +1,34 @@
+package bsh.engine;
+
+import javax.script.*;
+import bsh.ParsedScript;
+
+/*
+	A script parsed once by BshScriptEngine.compile().
+	The parse tree is shared by every eval() so repeated evaluations skip
+	the lexer and parser entirely.  Each eval() runs against the global
+	namespace embedded in the supplied context, just as the engine's own
+	eval() methods do.
+*/
+class BshCompiledScript extends CompiledScript
+{
+	private final BshScriptEngine engine;
+	private final ParsedScript script;
+
+	BshCompiledScript( BshScriptEngine engine, ParsedScript script )
+	{
+		this.engine = engine;
+		this.script = script;
+	}
+
+	public Object eval( ScriptContext scriptContext )
+		throws ScriptException
+	{
+		return engine.evalSource( script, scriptContext );
+	}
+
+	public ScriptEngine getEngine()
+	{
+		return engine;
+	}
+}
@@ -57,8 +57,10 @@ public class BshScriptEngine extends AbstractScriptEngine
 		We respect the String/Reader difference here in BeanShell because
 		BeanShell will do a few extra things in the string case... e.g.
 		tack on a trailing ";" semicolon if necessary.
+		A ParsedScript comes from compile() and is evaluated without
+		running the parser again.
 	*/
-	private Object evalSource( Object source, ScriptContext scriptContext )
+	Object evalSource( Object source, ScriptContext scriptContext )
 		throws ScriptException
 	{
 		bsh.NameSpace contextNameSpace = getEngineNameSpace( scriptContext );
@@ -72,7 +74,9 @@ public class BshScriptEngine extends AbstractScriptEngine
 			new WriterOutputStream( scriptContext.getErrorWriter() ) ) );
 
 		try {
-			if ( source instanceof Reader )
+			if ( source instanceof ParsedScript )
+				return bsh.eval( (ParsedScript) source );
+			else if ( source instanceof Reader )
 				return bsh.eval( (Reader) source );
 			else
 				return bsh.eval( (String) source );
@@ -151,6 +155,9 @@ public class BshScriptEngine extends AbstractScriptEngine
 	public CompiledScript compile( String script ) throws
 		ScriptException
 	{
+		// Same as eval( String ), tack on the trailing semicolon
+		if ( !script.endsWith(";") )
+			script = script + ";";
 		return compile( new StringReader( script ) );
 	}
 
@@ -171,8 +178,17 @@ public class BshScriptEngine extends AbstractScriptEngine
 	public CompiledScript compile( Reader script ) throws
 		ScriptException
 	{
-		// todo
-		throw new Error("unimplemented");
+		try {
+			return new BshCompiledScript(
+				this, Interpreter.parse( script, "compiled script" ) );
+		} catch ( ParseException e ) {
+			// explicit parsing error
+			throw new ScriptException(
+				e.toString(), e.getErrorSourceFile(), e.getErrorLineNumber() );
+		} catch ( EvalError e ) {
+			// The script could not be tokenized
+			throw new ScriptException( e.toString() );
+		}
 	}
 
 	/**
@@ -248,6 +264,24 @@ public class BshScriptEngine extends AbstractScriptEngine
 		return invoke( getGlobal(), name, args );
 	}
 
+	/**
+	 * The name the final javax.script API gives invoke(Object, String, Object...).
+	 */
+	public Object invokeMethod( Object thiz, String name, Object... args )
+		throws ScriptException, NoSuchMethodException
+	{
+		return invoke( thiz, name, args );
+	}
+
+	/**
+	 * The name the final javax.script API gives invoke(String, Object...).
+	 */
+	public Object invokeFunction( String name, Object... args )
+		throws ScriptException, NoSuchMethodException
+	{
+		return invoke( name, args );
+	}
+
 		/**
 	 * Returns an implementation of an interface using procedures compiled in the
 	 * interpreter. The methods of the interface may be implemented using the
@@ -84,13 +84,14 @@ class BSHAllocationExpression extends SimpleNode {
                 return constructWithInterfaceBody(type, args, body, callstack, interpreter);
             return constructWithClassBody(type, args, body, callstack, interpreter);
         }
-        return constructObject(type, args, callstack);
+        return constructObject(type, args, callstack, interpreter);
     }
 
-    private Object constructObject(Class type, Object[] args, CallStack callstack) throws EvalError {
+    private Object constructObject(Class type, Object[] args, CallStack callstack, Interpreter interpreter)
+            throws EvalError {
         Object obj;
         try {
-            obj = Reflect.constructObject(type, args);
+            obj = Reflect.constructObject(interpreter.getClassManager(), type, args);
         } catch(ReflectError e) {
             throw new EvalError("Constructor error: " + e.getMessage(), this, callstack);
         } catch(InvocationTargetException e) {
@@ -148,7 +149,7 @@ class BSHAllocationExpression extends SimpleNode {
             throw e.toEvalError(this, callstack);
         }
         try {
-            return Reflect.constructObject(clas, args);
+            return Reflect.constructObject(interpreter.getClassManager(), clas, args);
         } catch(Exception e) {
             if(e instanceof InvocationTargetException) {
                 e = (Exception) ((InvocationTargetException) e).getTargetException();
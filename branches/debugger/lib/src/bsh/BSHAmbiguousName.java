@@ -24,6 +24,10 @@ package bsh;
 class BSHAmbiguousName extends SimpleNode {
 
     public String text;
+    /**
+     * The frame slot of a simple name referring to a local of the enclosing method, if any. See LocalSlots.
+     */
+    LocalSlots.Slot slot;
 
     BSHAmbiguousName(int id) {
         super(id);
@@ -39,6 +43,12 @@ class BSHAmbiguousName extends SimpleNode {
 
     Object toObject(CallStack callstack, Interpreter interpreter, boolean forceClass) throws EvalError {
         try {
+            if(slot != null && !forceClass) {
+                Variable var = callstack.top().getSlotVariable(slot);
+                if(var != null) {
+                    return var.getValue();
+                }
+            }
             return getName(callstack.top()).toObject(callstack, interpreter, forceClass);
         } catch(UtilEvalError e) {
             //e.printStackTrace();
@@ -59,6 +69,13 @@ class BSHAmbiguousName extends SimpleNode {
 
     public LHS toLHS(CallStack callstack, Interpreter interpreter) throws EvalError {
         try {
+            if(slot != null) {
+                NameSpace namespace = callstack.top();
+                Variable var = namespace.getSlotVariable(slot);
+                if(var != null) {
+                    return new LHS(namespace, var);
+                }
+            }
             return getName(callstack.top()).toLHS(callstack, interpreter);
         } catch(UtilEvalError e) {
             throw e.toEvalError(this, callstack);
@@ -45,7 +45,7 @@ class BSHBinaryExpression extends SimpleNode
         if(kind == INSTANCEOF) {
             // null object ref is not instance of any type
             if(lhs == Primitive.NULL) {
-                return new Primitive(false);
+                return Primitive.FALSE;
             }
 
             Class rhs = ((BSHType) jjtGetChild(1)).getType(
@@ -60,15 +60,15 @@ class BSHBinaryExpression extends SimpleNode
              */
             if(lhs instanceof Primitive) {
                 if(rhs == bsh.Primitive.class) {
-                    return new Primitive(true);
+                    return Primitive.TRUE;
                 } else {
-                    return new Primitive(false);
+                    return Primitive.FALSE;
                 }
             }
 
             // General case - performe the instanceof based on assignability
             boolean ret = Types.isJavaBaseAssignable(rhs, lhs.getClass());
-            return new Primitive(ret);
+            return Primitive.valueOf(ret);
         }
 
 
@@ -85,7 +85,7 @@ class BSHBinaryExpression extends SimpleNode
             }
             if(obj instanceof Boolean
                     && (((Boolean) obj).booleanValue() == false)) {
-                return new Primitive(false);
+                return Primitive.FALSE;
             }
         }
         /*
@@ -98,7 +98,7 @@ class BSHBinaryExpression extends SimpleNode
             }
             if(obj instanceof Boolean
                     && (((Boolean) obj).booleanValue() == true)) {
-                return new Primitive(true);
+                return Primitive.TRUE;
             }
         }
 
@@ -151,10 +151,10 @@ class BSHBinaryExpression extends SimpleNode
         //System.out.println("binary op arbitrary obj: {"+lhs+"}, {"+rhs+"}");
         switch(kind) {
             case EQ:
-                return new Primitive((lhs == rhs));
+                return Primitive.valueOf(lhs == rhs);
 
             case NE:
-                return new Primitive((lhs != rhs));
+                return Primitive.valueOf(lhs != rhs);
 
             case PLUS:
                 if(lhs instanceof String || rhs instanceof String) {
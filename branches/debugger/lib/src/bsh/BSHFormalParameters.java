@@ -21,14 +21,41 @@
  **********************************************************************************************************************/
 package bsh;
 
+import java.lang.ref.WeakReference;
+
 class BSHFormalParameters extends SimpleNode {
 
-    private String[] paramNames;
     /**
-     * For loose type parameters the paramTypes are null.
+     * The parameter types as resolved by one class manager, valid for that manager until its caches change. The node
+     * may be shared by interpreters (see ParsedScript), so the types are published together with the manager and
+     * generation they belong to, like the type of a BSHType.
+     *
+     * @see BshClassManager#getCacheGeneration()
      */
-    // unsafe caching of types
-    Class[] paramTypes;
+    private static final class ResolvedTypes {
+
+        /**
+         * For loose type parameters the types are null.
+         */
+        final Class[] types;
+        final WeakReference classManager;
+        final int generation;
+
+        ResolvedTypes(Class[] types, BshClassManager bcm, int generation) {
+            this.types = types;
+            this.classManager = bcm == null ? null : new WeakReference(bcm);
+            this.generation = generation;
+        }
+
+        boolean isValidFor(BshClassManager bcm) {
+            return bcm == null || classManager != null
+                    && classManager.get() == bcm
+                    && generation == bcm.getCacheGeneration();
+        }
+    }
+
+    private String[] paramNames;
+    private transient volatile ResolvedTypes resolvedTypes;
     int numArgs;
     String[] typeDescriptors;
 
@@ -81,8 +108,13 @@ class BSHFormalParameters extends SimpleNode {
      */
     @Override
     public Object eval(CallStack callstack, Interpreter interpreter, DebuggerContext dContext) throws EvalError {
-        if(paramTypes != null) 
-            return paramTypes;
+        final BshClassManager bcm = interpreter == null ? null : interpreter.getClassManager();
+        ResolvedTypes cached = resolvedTypes;
+        if(cached != null && cached.isValidFor(bcm)) {
+            return cached.types;
+        }
+        // read before resolving, a change meanwhile must not be stamped valid
+        final int generation = bcm == null ? 0 : bcm.getCacheGeneration();
 
         insureParsed();
         Class[] paramTypes = new Class[numArgs];
@@ -92,8 +124,7 @@ class BSHFormalParameters extends SimpleNode {
             paramTypes[i] = (Class) param.eval(callstack, interpreter, null);
         }
 
-        this.paramTypes = paramTypes;
-
+        resolvedTypes = new ResolvedTypes(paramTypes, bcm, generation);
         return paramTypes;
     }
 }
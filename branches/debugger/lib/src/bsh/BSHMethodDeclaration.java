@@ -26,41 +26,54 @@ class BSHMethodDeclaration extends SimpleNode {
     public String name;
     // Begin Child node structure evaluated by insureNodesParsed
     BSHReturnType returnTypeNode;
-    BSHFormalParameters paramsNode;
+    // written last, a non null value publishes the other fields
+    volatile BSHFormalParameters paramsNode;
     BSHBlock blockNode;
     // index of the first throws clause child node
     int firstThrowsClause;
     // End Child node structure evaluated by insureNodesParsed
     public Modifiers modifiers;
-    // Unsafe caching of type here.
-    Class returnType;  // null (none), Void.TYPE, or a Class
     int numThrows = 0;
+    // Frame layout of the body, resolved on first eval
+    private LocalSlots localSlots;
+    private volatile boolean localSlotsResolved;
+    // Bytecode tier, shared by every BshMethod made from this declaration.  See MethodCompiler
+    private volatile CompiledMethod compiledMethod;
+    private volatile boolean notCompilable;
+    // Racy on purpose, an approximate count is good enough to find hot methods
+    private int invocations;
 
     BSHMethodDeclaration(int id) {
         super(id);
     }
 
     /**
-     * Set the returnTypeNode, paramsNode, and blockNode based on child node structure. No evaluation is done here.
+     * Set the returnTypeNode, paramsNode, and blockNode based on child node structure. No evaluation is done here. The
+     * declaration may be shared by threads running the same parsed script, only the first call takes a lock.
      */
-    synchronized void insureNodesParsed() {
+    void insureNodesParsed() {
         if(paramsNode != null) // there is always a paramsNode
         {
             return;
         }
+        synchronized(this) {
+            if(paramsNode != null) {
+                return;
+            }
 
-        Object firstNode = jjtGetChild(0);
-        firstThrowsClause = 1;
-        if(firstNode instanceof BSHReturnType) {
-            returnTypeNode = (BSHReturnType) firstNode;
-            paramsNode = (BSHFormalParameters) jjtGetChild(1);
-            if(jjtGetNumChildren() > 2 + numThrows) {
-                blockNode = (BSHBlock) jjtGetChild(2 + numThrows); // skip throws
+            Object firstNode = jjtGetChild(0);
+            firstThrowsClause = 1;
+            if(firstNode instanceof BSHReturnType) {
+                returnTypeNode = (BSHReturnType) firstNode;
+                if(jjtGetNumChildren() > 2 + numThrows) {
+                    blockNode = (BSHBlock) jjtGetChild(2 + numThrows); // skip throws
+                }
+                ++firstThrowsClause;
+                paramsNode = (BSHFormalParameters) jjtGetChild(1);
+            } else {
+                blockNode = (BSHBlock) jjtGetChild(1 + numThrows); // skip throws
+                paramsNode = (BSHFormalParameters) jjtGetChild(0);
             }
-            ++firstThrowsClause;
-        } else {
-            paramsNode = (BSHFormalParameters) jjtGetChild(0);
-            blockNode = (BSHBlock) jjtGetChild(1 + numThrows); // skip throws
         }
     }
 
@@ -90,6 +103,48 @@ class BSHMethodDeclaration extends SimpleNode {
         }
     }
 
+    /**
+     * Run the lexical addressing pass over the method body once and return its frame layout.
+     *
+     * @return the layout or null if no local of the method has a slot
+     * @see LocalSlots
+     */
+    LocalSlots getLocalSlots() {
+        if(localSlotsResolved) {
+            return localSlots;
+        }
+        synchronized(this) {
+            if(!localSlotsResolved) {
+                localSlots = LocalSlots.resolve(this);
+                localSlotsResolved = true;
+            }
+            return localSlots;
+        }
+    }
+
+    /**
+     * Count an invocation of the method and compile it once it is hot.
+     *
+     * @return the compiled method or null if the method is to be interpreted
+     * @see MethodCompiler
+     */
+    CompiledMethod getCompiledMethod(Class returnType, Class[] paramTypes) {
+        CompiledMethod compiled = compiledMethod;
+        if(compiled != null || notCompilable) {
+            return compiled;
+        }
+        if(++invocations < MethodCompiler.COMPILE_THRESHOLD) {
+            return null;
+        }
+        synchronized(this) {
+            if(compiledMethod == null && !notCompilable) {
+                compiledMethod = MethodCompiler.compile(this, returnType, paramTypes);
+                notCompilable = compiledMethod == null;
+            }
+            return compiledMethod;
+        }
+    }
+
     BSHReturnType getReturnTypeNode() {
         insureNodesParsed();
         return returnTypeNode;
@@ -97,12 +152,13 @@ class BSHMethodDeclaration extends SimpleNode {
 
     /**
      * Evaluate the declaration of the method. That is, determine the structure of the method and install it into the
-     * caller's namespace.
+     * caller's namespace. The types are kept in locals and handed to the method, the declaration may be evaluated by
+     * several threads at once.
      */
     @Override
     public Object eval(CallStack callstack, Interpreter interpreter, DebuggerContext dContext) throws EvalError {
-        returnType = evalReturnType(callstack, interpreter);
-        evalNodes(callstack, interpreter);
+        Class returnType = evalReturnType(callstack, interpreter); // null (none), Void.TYPE, or a Class
+        Class[] paramTypes = evalNodes(returnType, callstack, interpreter);
 
         // Install an *instance* of this method in the namespace.
         // See notes in BshMethod 
@@ -113,7 +169,7 @@ class BSHMethodDeclaration extends SimpleNode {
         // look into this
 
         NameSpace namespace = callstack.top();
-        BshMethod bshMethod = new BshMethod(this, namespace, modifiers);
+        BshMethod bshMethod = new BshMethod(this, returnType, paramTypes, namespace, modifiers);
         try {
             namespace.setMethod(name, bshMethod);
         } catch(UtilEvalError e) {
@@ -123,7 +179,12 @@ class BSHMethodDeclaration extends SimpleNode {
         return Primitive.VOID;
     }
 
-    private void evalNodes(CallStack callstack, Interpreter interpreter) throws EvalError {
+    /**
+     * Validate the throws clause and evaluate the parameter types.
+     *
+     * @return the parameter types, resolved by the interpreter's class manager
+     */
+    private Class[] evalNodes(Class returnType, CallStack callstack, Interpreter interpreter) throws EvalError {
         insureNodesParsed();
 
         // validate that the throws names are class names
@@ -132,12 +193,12 @@ class BSHMethodDeclaration extends SimpleNode {
                     callstack, interpreter);
         }
 
-        paramsNode.eval(callstack, interpreter, null);
+        Class[] paramTypes = (Class[]) paramsNode.eval(callstack, interpreter, null);
 
         // if strictJava mode, check for loose parameters and return type
         if(interpreter.getStrictJava()) {
-            for(int i = 0; i < paramsNode.paramTypes.length; i++) {
-                if(paramsNode.paramTypes[i] == null) // Warning: Null callstack here.  Don't think we need
+            for(int i = 0; i < paramTypes.length; i++) {
+                if(paramTypes[i] == null) // Warning: Null callstack here.  Don't think we need
                 // a stack trace to indicate how we sourced the method.
                 {
                     throw new EvalError(
@@ -155,6 +216,7 @@ class BSHMethodDeclaration extends SimpleNode {
                         + name, this, null);
             }
         }
+        return paramTypes;
     }
 
     @Override
@@ -25,6 +25,9 @@ import java.lang.reflect.InvocationTargetException;
 
 class BSHMethodInvocation extends SimpleNode {
 
+    // Resolved Java methods of this call site
+    final InlineMethodCache methodCache = new InlineMethodCache();
+
     BSHMethodInvocation(int id) {
         super(id);
     }
@@ -59,7 +62,7 @@ class BSHMethodInvocation extends SimpleNode {
         // factor out common functionality...
         // Move to Reflect?
         try {
-            return name.invokeMethod(interpreter, args, callstack, this);
+            return name.invokeMethod(interpreter, args, callstack, this, methodCache);
         } catch(ReflectError e) {
             throw new EvalError(
                     "Error in method invocation: " + e.getMessage(),
@@ -33,6 +33,11 @@ class BSHPrimarySuffix extends SimpleNode {
     public int operation;
     Object index;
     public String field;
+    /*
+     * Resolved Java methods of a method invocation suffix, created on first call. Racing threads may each create one,
+     * which only costs a lookup.
+     */
+    private InlineMethodCache methodCache;
 
     BSHPrimarySuffix(int id) {
         super(id);
@@ -125,7 +130,7 @@ class BSHPrimarySuffix extends SimpleNode {
                     throw new EvalError(
                             "Can't assign array length", this, callstack);
                 } else {
-                    return new Primitive(Array.getLength(obj));
+                    return Primitive.valueOf(Array.getLength(obj));
                 }
             }
 
@@ -134,7 +139,7 @@ class BSHPrimarySuffix extends SimpleNode {
                 if(toLHS) {
                     return Reflect.getLHSObjectField(obj, field);
                 } else {
-                    return Reflect.getObjectFieldValue(obj, field);
+                    return Reflect.getObjectFieldValue(interpreter.getClassManager(), obj, field);
                 }
             }
 
@@ -149,8 +154,11 @@ class BSHPrimarySuffix extends SimpleNode {
             // we handle all cases ... (e.g. property style access, etc.)
             // maybe move this to Reflect ?
             try {
+                if(methodCache == null) {
+                    methodCache = new InlineMethodCache();
+                }
                 return Reflect.invokeObjectMethod(
-                        obj, field, oa, interpreter, callstack, this);
+                        obj, field, oa, interpreter, callstack, this, methodCache);
             } catch(ReflectError e) {
                 throw new EvalError(
                         "Error in method invocation: " + e.getMessage(),
@@ -240,7 +248,7 @@ class BSHPrimarySuffix extends SimpleNode {
         }
 
         try {
-            return Reflect.getObjectProperty(obj, (String) value);
+            return Reflect.getObjectProperty(interpreter.getClassManager(), obj, (String) value);
         } catch(UtilEvalError e) {
             throw e.toEvalError("Property: " + value, this, callstack);
         } catch(ReflectError e) {
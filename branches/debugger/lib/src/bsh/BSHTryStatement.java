@@ -91,20 +91,22 @@ class BSHTryStatement extends SimpleNode {
                 // Evaluation of the formal parameter simply resolves its
                 // type via the specified namespace.. it doesn't modify the
                 // namespace.
-                fp.eval(callstack, interpreter, null);
+                // The resolved type is taken from the return value, fp.type may be written by another thread
+                // running the same parse tree.
+                final Class fpType = (Class) fp.eval(callstack, interpreter, null);
 
-                if(fp.type == null && interpreter.getStrictJava()) {
+                if(fpType == null && interpreter.getStrictJava()) {
                     throw new EvalError(
                             "(Strict Java) Untyped catch block", this, callstack);
                 }
 
                 // If the param is typed check assignability
-                if(fp.type != null) {
+                if(fpType != null) {
                     try {
                         thrown = (Throwable) Types.castObject(
                                 thrown/*
                                  * rsh
-                                 */, fp.type/*
+                                 */, fpType/*
                                  * lhsType
                                  */, Types.ASSIGNMENT);
                     } catch(UtilEvalError e) {
@@ -129,14 +131,14 @@ class BSHTryStatement extends SimpleNode {
                         new BlockNameSpace(enclosingNameSpace);
 
                 try {
-                    if(fp.type == BSHFormalParameter.UNTYPED) // set an untyped variable directly in the block
+                    if(fpType == BSHFormalParameter.UNTYPED) // set an untyped variable directly in the block
                     {
                         cbNameSpace.setBlockVariable(fp.name, thrown);
                     } else {
                         // set a typed variable (directly in the block)
                         Modifiers modifiers = new Modifiers();
                         cbNameSpace.setTypedVariable(
-                                fp.name, fp.type, thrown, new Modifiers()/*
+                                fp.name, fpType, thrown, new Modifiers()/*
                                  * none
                                  */);
                     }
@@ -21,17 +21,50 @@
  **********************************************************************************************************************/
 package bsh;
 
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Array;
 
 class BSHType extends SimpleNode 
 	implements BshClassManager.Listener
 {
 	/**
-		baseType is used during evaluation of full type and retained for the
-		case where we are an array type.
-		In the case where we are not an array this will be the same as type.
+		The type as resolved by one class manager, valid for that manager
+		until its caches change.  Parse trees are shared between interpreters
+		and threads (see ParsedScript), so the classes are published together
+		with the manager and generation they belong to, in one immutable
+		object.  The manager is held weakly, a cached tree must not keep the
+		interpreter that last used it alive.
+		@see BshClassManager#getCacheGeneration()
 	*/
-	private Class baseType;
+	private static final class ResolvedType
+	{
+		/**
+			baseType is used during evaluation of full type and retained for
+			the case where we are an array type.
+			In the case where we are not an array this will be the same as
+			type.
+		*/
+		final Class baseType;
+		final Class type;
+		final WeakReference classManager;
+		final int generation;
+
+		ResolvedType( Class baseType, Class type, BshClassManager bcm, 
+			int generation ) 
+		{
+			this.baseType = baseType;
+			this.type = type;
+			this.classManager = bcm == null ? null : new WeakReference( bcm );
+			this.generation = generation;
+		}
+
+		boolean isValidFor( BshClassManager bcm ) {
+			return bcm == null || classManager != null 
+				&& classManager.get() == bcm 
+				&& generation == bcm.getCacheGeneration();
+		}
+	}
+
 	/** 
 		If we are an array type this will be non zero and indicate the 
 		dimensionality of the array.  e.g. 2 for String[][];
@@ -39,9 +72,9 @@ class BSHType extends SimpleNode
     private int arrayDims;
 
 	/** 
-		Internal cache of the type.  Cleared on classloader change.
+		Internal cache of the type
 	*/
-    private Class type;
+	private transient volatile ResolvedType resolvedType;
 
 	String descriptor;
 
@@ -129,11 +162,34 @@ class BSHType extends SimpleNode
     public Class getType( CallStack callstack, Interpreter interpreter ) 
 		throws EvalError
     {
+		return resolve( callstack, interpreter ).type;
+	}
+
+	/**
+		The base type as resolved for the given interpreter.
+		@see #getBaseType()
+	*/
+	public Class getBaseType( CallStack callstack, Interpreter interpreter ) 
+		throws EvalError
+	{
+		return resolve( callstack, interpreter ).baseType;
+	}
+
+	private ResolvedType resolve( CallStack callstack, Interpreter interpreter ) 
+		throws EvalError
+	{
         // return cached type if available
-		if ( type != null )
-			return type;
+		BshClassManager bcm = 
+			interpreter == null ? null : interpreter.getClassManager();
+		ResolvedType cached = resolvedType;
+		if ( cached != null && cached.isValidFor( bcm ) )
+			return cached;
+		// read before resolving, a change meanwhile must not be stamped valid
+		int generation = bcm == null ? 0 : bcm.getCacheGeneration();
 
         //  first node will either be PrimitiveType or AmbiguousName
+		Class baseType;
+		Class type;
         SimpleNode node = getTypeNode();
         if ( node instanceof BSHPrimitiveType )
             baseType = ((BSHPrimitiveType)node).getType();
@@ -155,11 +211,9 @@ class BSHType extends SimpleNode
         } else
             type = baseType;
 
-		// hack... sticking to first interpreter that resolves this
-		// see comments on type instance variable
-		interpreter.getClassManager().addListener(this);
-
-        return type;
+		cached = new ResolvedType( baseType, type, bcm, generation );
+		resolvedType = cached;
+        return cached;
     }
 
 	/**
@@ -168,7 +222,8 @@ class BSHType extends SimpleNode
 		In the case where we are not an array this will be the same as type.
 	*/
 	public Class getBaseType() {
-		return baseType;
+		ResolvedType cached = resolvedType;
+		return cached == null ? null : cached.baseType;
 	}
 	/** 
 		If we are an array type this will be non zero and indicate the 
@@ -179,8 +234,7 @@ class BSHType extends SimpleNode
 	}
 
 	public void classLoaderChanged() {
-		type = null;
-		baseType = null;
+		resolvedType = null;
 	}
 
 	public static String getTypeDescriptor( Class clas ) 
@@ -52,7 +52,7 @@ class BSHTypedVariableDeclaration extends SimpleNode {
     /**
      * evaluate the type and one or more variable declarators, e.g.: int a, b=5, c;
      */
-    public Object eval(CallStack callstack, Interpreter interpreter, Object resumeStatus) throws EvalError {
+    public Object eval(CallStack callstack, Interpreter interpreter, DebuggerContext dContext) throws EvalError {
         try {
             NameSpace namespace = callstack.top();
             BSHType typeNode = getTypeNode();
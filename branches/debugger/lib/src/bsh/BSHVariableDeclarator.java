@@ -58,7 +58,7 @@ class BSHVariableDeclarator extends SimpleNode {
             if((typeNode != null)
                     && initializer instanceof BSHArrayInitializer) {
                 value = ((BSHArrayInitializer) initializer).eval(
-                        typeNode.getBaseType(), typeNode.getArrayDims(),
+                        typeNode.getBaseType(callstack, interpreter), typeNode.getArrayDims(),
                         callstack, interpreter);
             } else {
                 value = initializer.eval(callstack, interpreter, null);
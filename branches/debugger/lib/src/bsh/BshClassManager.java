@@ -67,7 +67,7 @@ import java.lang.reflect.Modifier;
 */
 public class BshClassManager
 {
-	/** Identifier for no value item.  Use a hashtable as a Set. */
+	/** Identifier for no value item.  Use a cache as a Set. */
 	private static Object NOVALUE = new Object(); 
 	/** 
 		The interpreter which created the class manager 
@@ -82,27 +82,43 @@ public class BshClassManager
 
 	/**
 		Global cache for things we know are classes.
-		Note: these should probably be re-implemented with Soft references.
-		(as opposed to strong or Weak)
 	*/
-    protected transient Hashtable absoluteClassCache = new Hashtable();
+	protected final transient ResolutionCache absoluteClassCache = 
+		new ResolutionCache( "classes", ResolutionCache.defaultSize() );
 	/**
 		Global cache for things we know are *not* classes.
-		Note: these should probably be re-implemented with Soft references.
-		(as opposed to strong or Weak)
 	*/
-    protected transient Hashtable absoluteNonClasses = new Hashtable();
+	protected final transient ResolutionCache absoluteNonClasses = 
+		new ResolutionCache( "non classes", ResolutionCache.defaultSize() );
 
 	/**
-		Caches for resolved object and static methods.
-		We keep these maps separate to support fast lookup in the general case
-		where the method may be either.
+		Cache for resolved object and static methods by SignatureKey.
+		The Java compiler does not allow a static and an object method with
+		the same signature, so one map serves both kinds.
 	*/
-	protected transient Hashtable resolvedObjectMethods = new Hashtable();
-	protected transient Hashtable resolvedStaticMethods = new Hashtable();
+	protected final transient ResolutionCache resolvedMethods = 
+		new ResolutionCache( "methods", ResolutionCache.defaultSize() );
+
+	/**
+		Advanced each time the caches are cleared or invalidated.  Resolution results held
+		outside of the class manager, such as the per call site method caches
+		in the parse tree, record the generation they were made in and are
+		stale once it changes.
+		@see InlineMethodCache
+	*/
+	private transient volatile int cacheGeneration;
+
+	/**
+		The backend used to call the Java members resolved through this
+		class manager.
+		@see MemberInvoker
+	*/
+	private volatile MemberInvoker memberInvoker = MemberInvoker.REFLECTION;
 
 	protected transient Hashtable definingClasses = new Hashtable();
 	protected transient Hashtable definingClassesBaseNames = new Hashtable();
+	// scripted classes started by definingClass(), a defined class can't be removed again
+	private transient volatile int definedClassCount;
 
 	/**
 		Create a new instance of the class manager.  
@@ -270,6 +286,16 @@ public class BshClassManager
 		return in;
 	}
 
+	/**
+		True if resources and classes may come from somewhere other than the
+		class loader of the interpreter, in which case the shipped command
+		manifests (see CommandManifest) are not consulted.
+	*/
+	protected boolean hasOwnResources()
+	{
+		return externalClassLoader != null;
+	}
+
 	/**
 		Cache info about whether name is a class or not.
 		@param value 
@@ -287,8 +313,6 @@ public class BshClassManager
 	/**
 		Cache a resolved (possibly overloaded) method based on the 
 		argument types used to invoke it, subject to classloader change.
-		Static and Object methods are cached separately to support fast lookup
-		in the general case where either will do.
 	*/
 	public void cacheResolvedMethod( 
 		Class clas, Class [] types, Method method ) 
@@ -297,11 +321,8 @@ public class BshClassManager
 			Interpreter.debug(
 				"cacheResolvedMethod putting: " + clas +" "+ method );
 		
-		SignatureKey sk = new SignatureKey( clas, method.getName(), types );
-		if ( Modifier.isStatic( method.getModifiers() ) )
-			resolvedStaticMethods.put( sk, method );
-		else
-			resolvedObjectMethods.put( sk, method );
+		resolvedMethods.put( 
+			new SignatureKey( clas, method.getName(), types ), method );
 	}
 
 	/**
@@ -314,11 +335,11 @@ public class BshClassManager
 	{
 		SignatureKey sk = new SignatureKey( clas, methodName, types );
 
-		// Try static and then object, if allowed
-		// Note that the Java compiler should not allow both.
-		Method method = (Method)resolvedStaticMethods.get( sk );
-		if ( method == null && !onlyStatic)
-			method = (Method)resolvedObjectMethods.get( sk );
+		Method method = (Method)resolvedMethods.get( sk );
+		if ( method != null && onlyStatic 
+			&& !Modifier.isStatic( method.getModifiers() ) 
+		)
+			method = null;
 
 		if ( Interpreter.DEBUG )
 		{
@@ -338,10 +359,133 @@ public class BshClassManager
 	*/
 	protected void clearCaches() 
 	{
-    	absoluteNonClasses = new Hashtable();
-    	absoluteClassCache = new Hashtable();
-    	resolvedObjectMethods = new Hashtable();
-    	resolvedStaticMethods = new Hashtable();
+		absoluteNonClasses.clear();
+		absoluteClassCache.clear();
+		resolvedMethods.clear();
+		cacheGeneration++;
+	}
+
+	/**
+		Drop the cached results that a change of the class path or class 
+		loader may have made stale.  Every negative entry goes, as a name 
+		that was not a class may be one now.  Classes and methods are kept
+		only if all the classes they involve are unaffected by class loading 
+		changes according to isClassLoadingInvariant().
+	*/
+	protected void invalidateCaches() 
+	{
+		absoluteNonClasses.clear();
+		absoluteClassCache.retain( new ResolutionCache.Filter() {
+			public boolean keep( Object name, Object clas ) {
+				return isClassLoadingInvariant( (Class)clas );
+			}
+		} );
+		resolvedMethods.retain( new ResolutionCache.Filter() {
+			public boolean keep( Object key, Object method ) {
+				SignatureKey sk = (SignatureKey)key;
+				if ( !isClassLoadingInvariant( sk.clas ) )
+					return false;
+				for( int i = 0; sk.types != null && i < sk.types.length; i++ )
+					if ( sk.types[i] != null 
+						&& !isClassLoadingInvariant( sk.types[i] ) 
+					)
+						return false;
+				return true;
+			}
+		} );
+		cacheGeneration++;
+	}
+
+	/**
+		Drop the cached results involving the named classes, which have been
+		redefined by a new class loader, along with every negative entry.
+		Results for other classes are still valid and are kept.
+	*/
+	protected void invalidateClasses( final Collection classNames ) 
+	{
+		absoluteNonClasses.clear();
+		absoluteClassCache.retain( new ResolutionCache.Filter() {
+			public boolean keep( Object name, Object clas ) {
+				return !classNames.contains( name );
+			}
+		} );
+		resolvedMethods.retain( new ResolutionCache.Filter() {
+			public boolean keep( Object key, Object method ) {
+				SignatureKey sk = (SignatureKey)key;
+				if ( involves( sk.clas, classNames ) )
+					return false;
+				for( int i = 0; sk.types != null && i < sk.types.length; i++ )
+					if ( sk.types[i] != null 
+						&& involves( sk.types[i], classNames ) 
+					)
+						return false;
+				return true;
+			}
+		} );
+		cacheGeneration++;
+	}
+
+	private static boolean involves( Class clas, Collection classNames ) 
+	{
+		while ( clas.isArray() )
+			clas = clas.getComponentType();
+		return classNames.contains( clas.getName() );
+	}
+
+	/**
+		True if no change of the class path or of the external class loader
+		can make the class name resolve to a different class.  Here that is 
+		the primitive types and the classes of the bootstrap loader (arrays 
+		by their component type).  Subclasses that control class loading 
+		may know of more.
+	*/
+	protected boolean isClassLoadingInvariant( Class clas ) 
+	{
+		while ( clas.isArray() )
+			clas = clas.getComponentType();
+		return clas.isPrimitive() || clas.getClassLoader() == null;
+	}
+
+	/**
+		The cache of names known to be classes.
+		The cache statistics may be used to monitor class resolution.
+	*/
+	public ResolutionCache getClassCache() {
+		return absoluteClassCache;
+	}
+
+	/**
+		The cache of names known not to be classes.
+	*/
+	public ResolutionCache getNonClassCache() {
+		return absoluteNonClasses;
+	}
+
+	/**
+		The cache of Java methods resolved for an argument signature.
+	*/
+	public ResolutionCache getMethodCache() {
+		return resolvedMethods;
+	}
+
+	int getCacheGeneration() {
+		return cacheGeneration;
+	}
+
+	/**
+		Set the backend used to call Java methods and constructors and to
+		read Java fields on behalf of the interpreters sharing this class
+		manager.
+	*/
+	public void setMemberInvoker( MemberInvoker invoker ) 
+	{
+		if ( invoker == null )
+			throw new IllegalArgumentException("null member invoker");
+		this.memberInvoker = invoker;
+	}
+
+	public MemberInvoker getMemberInvoker() {
+		return memberInvoker;
 	}
 
 	/**
@@ -451,6 +595,17 @@ public class BshClassManager
 		throw cmUnavailable();
 	}
 
+	/**
+		Get the simple names of the classes in a package whose content is 
+		known completely, so that imported package lookups can skip it 
+		without loading anything when it can not hold a name.
+		@return the names or null if classes in the package must be found
+		by loading them
+	*/
+	protected Set getPackageClassNames( String pack ) {
+		return null;
+	}
+
 	public void addListener( Listener l ) { }
 
 	public void removeListener( Listener l ) { }
@@ -486,6 +641,16 @@ public class BshClassManager
 			);
 		definingClasses.put( className, NOVALUE );
 		definingClassesBaseNames.put( baseName, className );
+		definedClassCount++;
+	}
+
+	/**
+		The number of scripted classes this class manager has defined, 
+		counting those still being defined.
+		@see InterpreterPool
+	*/
+	int getDefinedClassCount() {
+		return definedClassCount;
 	}
 
 	protected boolean isClassBeingDefined( String className ) {
@@ -546,7 +711,9 @@ public class BshClassManager
 	*/
 	}
 
-	protected void classLoaderChanged() { }
+	protected void classLoaderChanged() { 
+		invalidateCaches();
+	}
 
 	/**
 		Annotate the NoClassDefFoundError with some info about the class
@@ -613,12 +780,12 @@ public class BshClassManager
 
 		public boolean equals( Object o ) { 
 			SignatureKey target = (SignatureKey)o;
-			if ( types == null )
-				return target.types == null;
 			if ( clas != target.clas )
 				return false;
 			if ( !methodName.equals( target.methodName ) )
 				return false;
+			if ( types == null || target.types == null )
+				return types == target.types;
 			if ( types.length != target.types.length )
 				return false;
 			for( int i =0; i< types.length; i++ )
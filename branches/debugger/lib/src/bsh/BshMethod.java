@@ -63,6 +63,10 @@ public class BshMethod
 
 	// Scripted method body
 	BSHBlock methodBody;
+	// Frame layout of the body, may be null.  See LocalSlots
+	private LocalSlots localSlots;
+	// The declaration of a scripted method, holds the bytecode tier state.
+	BSHMethodDeclaration declaration;
 
 	// Java Method, for a BshObject that delegates to a real Java method
 	private Method javaMethod;
@@ -71,12 +75,14 @@ public class BshMethod
 	// End method components
 
 	BshMethod( 
-		BSHMethodDeclaration method, 
+		BSHMethodDeclaration method, Class returnType, Class [] paramTypes,
 		NameSpace declaringNameSpace, Modifiers modifiers ) 
 	{
-		this( method.name, method.returnType, method.paramsNode.getParamNames(),
-			method.paramsNode.paramTypes, method.blockNode, declaringNameSpace,
+		this( method.name, returnType, method.paramsNode.getParamNames(),
+			paramTypes, method.blockNode, declaringNameSpace,
 			modifiers );
+		this.localSlots = method.getLocalSlots();
+		this.declaration = method;
 	}
 
 	BshMethod( 
@@ -284,14 +290,35 @@ public class BshMethod
 				+ name, callerInfo, callstack );
 		}
 
+		CompiledMethod compiled = 
+			getCompiledMethod( interpreter, overrideNameSpace );
+		if ( compiled != null )
+		{
+			Object ret = invokeCompiled( 
+				compiled, argValues, callerInfo, callstack );
+			if ( ret != null )
+				return ret;
+		}
+
 		// Make the local namespace for the method invocation
 		NameSpace localNameSpace;
 		if ( overrideNameSpace )
 			localNameSpace = callstack.top();
 		else
 		{
-			localNameSpace = new NameSpace( declaringNameSpace, name );
+			// A method of a frozen template runs in the caller's child of the
+			// template, where its assignments to template variables are kept
+			NameSpace parent = declaringNameSpace;
+			if ( declaringNameSpace.isFrozen() )
+			{
+				NameSpace child = 
+					declaringNameSpace.getTemplateChild( callstack.top() );
+				if ( child != null )
+					parent = child;
+			}
+			localNameSpace = new NameSpace( parent, name );
 			localNameSpace.isMethod = true;
+			localNameSpace.setLocalSlots( localSlots );
 		}
 		// should we do this for both cases above?
 		localNameSpace.setNode( callerInfo );
@@ -404,6 +431,73 @@ public class BshMethod
 		return ret;
 	}
 
+	/**
+		Get the bytecode tier of the method, counting the invocation.
+		Methods are always interpreted under the debugger, when the body
+		runs in the caller's namespace and for methods of scripted classes.
+		@return the compiled method or null to interpret
+		@see MethodCompiler
+	*/
+	private CompiledMethod getCompiledMethod( 
+		Interpreter interpreter, boolean overrideNameSpace ) 
+	{
+		if ( declaration == null || overrideNameSpace 
+			|| MethodCompiler.COMPILE_THRESHOLD <= 0
+			|| interpreter instanceof Debugger
+			|| declaringNameSpace == null || declaringNameSpace.isClass )
+			return null;
+
+		CompiledMethod compiled = 
+			declaration.getCompiledMethod( creturnType, cparamTypes );
+		if ( compiled == null || !compiled.selfCalls )
+			return compiled;
+
+		// The compiled body calls itself directly, which is only right while
+		// the name still resolves to this declaration.
+		try {
+			BshMethod method = declaringNameSpace.getMethod( name, cparamTypes );
+			if ( method != null && method.declaration == declaration )
+				return compiled;
+		} catch ( UtilEvalError e ) { }
+		return null;
+	}
+
+	/**
+		Run the compiled body.
+		@return the result or null if an argument can't be passed to the
+			compiled body and the method must be interpreted
+	*/
+	private Object invokeCompiled( 
+		CompiledMethod compiled, Object[] argValues, SimpleNode callerInfo,
+		CallStack callstack ) 
+		throws EvalError
+	{
+		Object [] args = new Object [numArgs];
+		for(int i=0; i<numArgs; i++)
+		{
+			try {
+				args[i] = Types.castObject( 
+					argValues[i], cparamTypes[i], Types.ASSIGNMENT );
+			} catch( UtilEvalError e ) {
+				// let the interpreter report it
+				return null;
+			}
+			if ( !(args[i] instanceof Primitive) )
+				return null;
+		}
+
+		try {
+			return compiled.invoke( args );
+		} catch ( ArithmeticException e ) {
+			// reported as the interpreter reports it, see Primitive
+			throw new UtilTargetError( 
+				"Arithemetic Exception in binary op", e ).toEvalError( 
+				callerInfo, callstack );
+		} catch ( RuntimeException e ) {
+			throw new TargetError( e, callerInfo, callstack );
+		}
+	}
+
 	public boolean hasModifier( String name ) {
 		return modifiers != null && modifiers.hasModifier(name);
 	}
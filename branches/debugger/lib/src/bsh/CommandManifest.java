@@ -0,0 +1,286 @@
+/***********************************************************************************************************************
+ *                                                                                                                     *
+ *  This file is part of the BeanShell Java Scripting distribution.                                                    *
+ *  Documentation and updates may be found at http://www.beanshell.org/                                                *
+ *                                                                                                                     *
+ *  This program is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General  *
+ *  Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option)  *
+ *  any later version.                                                                                                 *
+ *                                                                                                                     *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for    *
+ *  more details.                                                                                                      *
+ *                                                                                                                     *
+ *  You should have received a copy of the GNU Lesser General Public License along with this program.                  *
+ *  If not, see <http://www.gnu.org/licenses/>.                                                                        *
+ *                                                                                                                     *
+ *  Patrick Niemeyer (pat@pat.net)                                                                                     *
+ *  Author of Learning Java, O'Reilly & Associates                                                                     *
+ *  http://www.pat.net/~pat/                                                                                           *
+ *                                                                                                                     *
+ **********************************************************************************************************************/
+package bsh;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The list of commands shipped in a command package, written by the build to a file named commands.manifest next to
+ * them (see main()). Each line names the script (name.bsh) or compiled command (name.class) of one command. <p>
+ *
+ * With a manifest a command lookup is a map hit rather than a resource probe and a class load per imported command
+ * path, and a name that is not a command is rejected without touching the class path. Scripted commands found through
+ * a manifest are loaded once and the parse tree is shared by all interpreters in the VM. The build stores the parsed
+ * form of each script next to it (name.bsh.bshc, see ParsedScriptFile), which is read instead of parsing the script.
+ * <p>
+ *
+ * Manifests are read through the class loader of the interpreter and only consulted when the class manager has no
+ * class path of its own (see BshClassManager.hasOwnResources()). A manifest is taken as the complete list of its
+ * package only if that class loader sees a single directory for the package; otherwise names it doesn't list are
+ * still looked for on the class path. Setting the bsh.commandManifest system property to false turns manifests off.
+ */
+public final class CommandManifest {
+
+    static final String FILE_NAME = "commands.manifest";
+    private static final CommandManifest NONE = new CommandManifest(null, Collections.EMPTY_MAP, false);
+    // command path -> CommandManifest or NONE
+    private static final Map manifests = new ConcurrentHashMap();
+    private final String path;
+    // command name -> Boolean.TRUE for a script, Boolean.FALSE for a class
+    private final Map commands;
+    private final boolean complete;
+    // command name -> ParsedScript
+    private final Map scripts = new ConcurrentHashMap();
+    private static volatile boolean enabled = !"false".equals(System.getProperty("bsh.commandManifest"));
+
+    private CommandManifest(String path, Map commands, boolean complete) {
+        this.path = path;
+        this.commands = commands;
+        this.complete = complete;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turn manifests on or off. While they are off commands are looked for on the class path only.
+     */
+    public static void setEnabled(boolean enabled) {
+        CommandManifest.enabled = enabled;
+    }
+
+    /**
+     * Get the manifest of the command path, e.g. "/bsh/commands".
+     *
+     * @return the manifest or null if there is none or the class manager may find commands elsewhere
+     */
+    static CommandManifest forPath(String path, BshClassManager bcm) {
+        if (!enabled || bcm.hasOwnResources()) {
+            return null;
+        }
+        CommandManifest manifest = (CommandManifest) manifests.get(path);
+        if (manifest == null) {
+            manifest = read(path);
+            manifests.put(path, manifest == null ? NONE : manifest);
+        }
+        return manifest == NONE ? null : manifest;
+    }
+
+    private static CommandManifest read(String path) {
+        String dir = path.equals("/") ? "" : path.substring(1);
+        InputStream in = Interpreter.class.getResourceAsStream(path + (dir.length() == 0 ? "" : "/") + FILE_NAME);
+        if (in == null) {
+            return null;
+        }
+        try {
+            Map commands = new HashMap();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (line.endsWith(".bsh")) {
+                        commands.put(line.substring(0, line.length() - ".bsh".length()), Boolean.TRUE);
+                    } else if (line.endsWith(".class")) {
+                        commands.put(line.substring(0, line.length() - ".class".length()), Boolean.FALSE);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+            return new CommandManifest(path, commands, isSingleDirectory(dir));
+        } catch (IOException e) {
+            Interpreter.debug("Can't read command manifest of " + path + ": " + e);
+            return null;
+        }
+    }
+
+    private static boolean isSingleDirectory(String dir) throws IOException {
+        ClassLoader loader = Interpreter.class.getClassLoader();
+        Enumeration dirs = loader == null ? ClassLoader.getSystemResources(dir) : loader.getResources(dir);
+        Set urls = new HashSet();
+        while (dirs.hasMoreElements()) {
+            urls.add(((URL) dirs.nextElement()).toExternalForm());
+        }
+        return urls.size() == 1;
+    }
+
+    /**
+     * True if the manifest lists every command of its package.
+     */
+    boolean isComplete() {
+        return complete;
+    }
+
+    boolean contains(String name) {
+        return commands.containsKey(name);
+    }
+
+    boolean isScript(String name) {
+        return Boolean.TRUE.equals(commands.get(name));
+    }
+
+    /**
+     * Get the parsed script of a command, loading it the first time it is asked for: from its parsed form if there
+     * is a current one, else by parsing it.
+     *
+     * @return the script or null if the manifest lists no script of that name or it can't be found
+     * @throws EvalError if the script doesn't parse
+     * @throws IOException if the script can't be read
+     */
+    ParsedScript getScript(String name) throws EvalError, IOException {
+        ParsedScript script = (ParsedScript) scripts.get(name);
+        if (script == null && isScript(name)) {
+            String resourcePath = (path.equals("/") ? "/" : path + "/") + name + ".bsh";
+            URL url = Interpreter.class.getResource(resourcePath);
+            if (url == null) {
+                return null;
+            }
+            script = readParsed(url, resourcePath);
+            if (script == null) {
+                InputStream in = url.openStream();
+                try {
+                    script = Interpreter.parse(new InputStreamReader(in), resourcePath);
+                } finally {
+                    try {
+                        in.close();
+                    } catch (IOException e) {
+                        // the script is read
+                    }
+                }
+            }
+            // two threads loading the same command at once is harmless
+            scripts.put(name, script);
+        }
+        return script;
+    }
+
+    /**
+     * Read the parsed form the build stored next to a command script. It is only taken from the jar or directory the
+     * script itself comes from, where the build wrote them together, and from a directory only if it is not older than
+     * the script.
+     *
+     * @return the script or null if there is no such parsed form or sidecars are turned off
+     */
+    private static ParsedScript readParsed(URL script, String resourcePath) {
+        if (!ParsedScriptFile.isEnabled()) {
+            return null;
+        }
+        URL url = Interpreter.class.getResource(resourcePath + ParsedScriptFile.EXTENSION);
+        if (url == null || !url.toExternalForm().equals(script.toExternalForm() + ParsedScriptFile.EXTENSION)) {
+            return null;
+        }
+        try {
+            if (url.getProtocol().equals("file")
+                    && new File(url.toURI()).lastModified() < new File(script.toURI()).lastModified()) {
+                return null;
+            }
+            InputStream in = url.openStream();
+            try {
+                return ParsedScriptFile.readBundled(new BufferedInputStream(in), resourcePath);
+            } finally {
+                in.close();
+            }
+        } catch (Exception e) {
+            // unreadable, or a file: URL that isn't a path
+            Interpreter.debug("Ignoring parsed form of " + resourcePath + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Write the manifest of a directory of command sources, as the build does for bsh/commands. Every script is parsed,
+     * so that a command that doesn't parse fails the build rather than its first use, and its parsed form is written
+     * next to the manifest.
+     *
+     * @param args the directory holding the .bsh and .java commands and the manifest file to write
+     */
+    public static void main(String[] args) throws IOException, EvalError {
+        if (args.length != 2) {
+            System.err.println("usage: CommandManifest <command source dir> <manifest file>");
+            System.exit(1);
+        }
+        File dir = new File(args[0]);
+        String[] files = dir.list();
+        if (files == null) {
+            throw new IOException("Not a directory: " + dir);
+        }
+        Arrays.sort(files);
+        File file = new File(args[1]);
+        file.getParentFile().mkdirs();
+
+        List lines = new ArrayList();
+        for (int i = 0; i < files.length; i++) {
+            String name = files[i];
+            if (name.endsWith(".bsh")) {
+                Reader in = new InputStreamReader(new FileInputStream(new File(dir, name)), "UTF-8");
+                String text;
+                try {
+                    text = Interpreter.readFully(in);
+                } finally {
+                    in.close();
+                }
+                ParsedScript script = Interpreter.parse(new StringReader(text), name);
+                OutputStream out = new BufferedOutputStream(
+                        new FileOutputStream(new File(file.getParentFile(), name + ParsedScriptFile.EXTENSION)));
+                try {
+                    ParsedScriptFile.write(script, text, out);
+                } finally {
+                    out.close();
+                }
+                lines.add(name);
+            } else if (name.endsWith(".java")) {
+                lines.add(name.substring(0, name.length() - ".java".length()) + ".class");
+            }
+        }
+
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            for (int i = 0; i < lines.size(); i++) {
+                out.write(lines.get(i) + "\n");
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    public String toString() {
+        return "CommandManifest: " + path + ", " + commands.size() + " commands" + (complete ? "" : ", incomplete");
+    }
+}
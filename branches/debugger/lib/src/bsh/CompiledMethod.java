@@ -0,0 +1,49 @@
+/***********************************************************************************************************************
+ *                                                                                                                     *
+ *  This file is part of the BeanShell Java Scripting distribution.                                                    *
+ *  Documentation and updates may be found at http://www.beanshell.org/                                                *
+ *                                                                                                                     *
+ *  This program is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General  *
+ *  Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option)  *
+ *  any later version.                                                                                                 *
+ *                                                                                                                     *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for    *
+ *  more details.                                                                                                      *
+ *                                                                                                                     *
+ *  You should have received a copy of the GNU Lesser General Public License along with this program.                  *
+ *  If not, see <http://www.gnu.org/licenses/>.                                                                        *
+ *                                                                                                                     *
+ *  Patrick Niemeyer (pat@pat.net)                                                                                     *
+ *  Author of Learning Java, O'Reilly & Associates                                                                     *
+ *  http://www.pat.net/~pat/                                                                                           *
+ *                                                                                                                     *
+ **********************************************************************************************************************/
+package bsh;
+
+/**
+ * The JVM class form of a scripted method body, produced by the MethodCompiler once the method is hot. <p>
+ *
+ * Generated subclasses hold the body as a static method taking and returning primitives and implement invoke() as a
+ * bridge from bsh values: it unwraps the Primitive arguments, which the caller has already cast to the declared
+ * parameter types, calls the body and wraps the result as a Primitive (or Primitive.VOID).
+ *
+ * @see MethodCompiler
+ */
+public abstract class CompiledMethod {
+
+    /**
+     * True if the body calls the method itself directly instead of resolving the call through the namespace
+     */
+    boolean selfCalls;
+
+    protected CompiledMethod() {
+    }
+
+    /**
+     * Run the compiled body.
+     *
+     * @param args the Primitive arguments, cast to the parameter types of the method
+     */
+    public abstract Object invoke(Object[] args);
+}
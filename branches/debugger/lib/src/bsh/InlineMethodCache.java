@@ -0,0 +1,154 @@
+/***********************************************************************************************************************
+ *                                                                                                                     *
+ *  This file is part of the BeanShell Java Scripting distribution.                                                    *
+ *  Documentation and updates may be found at http://www.beanshell.org/                                                *
+ *                                                                                                                     *
+ *  This program is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General  *
+ *  Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option)  *
+ *  any later version.                                                                                                 *
+ *                                                                                                                     *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for    *
+ *  more details.                                                                                                      *
+ *                                                                                                                     *
+ *  You should have received a copy of the GNU Lesser General Public License along with this program.                  *
+ *  If not, see <http://www.gnu.org/licenses/>.                                                                        *
+ *                                                                                                                     *
+ *  Patrick Niemeyer (pat@pat.net)                                                                                     *
+ *  Author of Learning Java, O'Reilly & Associates                                                                     *
+ *  http://www.pat.net/~pat/                                                                                           *
+ *                                                                                                                     *
+ **********************************************************************************************************************/
+package bsh;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+
+/**
+ * A per call site cache of resolved Java methods, held by the parse tree node of a method invocation. <p>
+ *
+ * Each entry guards on the class of the receiver (or the target class of a static call), whether the call was static
+ * and the argument types, as given by Types.getTypes(), and maps them straight to the resolved Method. This skips building a signature key and
+ * the lookup in the class manager's method caches on every call. The cache is polymorphic up to MAX_ENTRIES
+ * receiver / argument type combinations; beyond that further misses are resolved normally but not cached. <p>
+ *
+ * Entries are tied to the class manager that resolved them and to its cache generation. When the class loader
+ * changes BshClassManager.clearCaches() advances the generation and the entries stop matching. A parse tree may be
+ * evaluated by several interpreters, so a miss under one class manager drops the entries of any other manager or of
+ * an older generation before inserting; only the entries of the current manager count towards MAX_ENTRIES. The class
+ * manager is held weakly, so a call site never keeps an interpreter that has gone away from being collected. <p>
+ *
+ * A parse tree may be shared by interpreters and threads, so entries are immutable and the entry array is replaced,
+ * never modified.
+ */
+final class InlineMethodCache implements java.io.Serializable {
+
+    static final int MAX_ENTRIES = 4;
+    private static final Entry[] EMPTY = new Entry[0];
+    private transient volatile Entry[] entries = EMPTY;
+
+    /**
+     * @return the cached method or null on a miss
+     */
+    Method get(BshClassManager bcm, Class clas, boolean staticOnly, Object[] args) {
+        Entry[] entries = this.entries;
+        if (entries == null) { // deserialized
+            return null;
+        }
+        for (int i = 0; i < entries.length; i++) {
+            Entry entry = entries[i];
+            if (entry.clas == clas && entry.staticOnly == staticOnly && entry.classManager.get() == bcm
+                    && entry.generation == bcm.getCacheGeneration()
+                    && entry.matches(args)) {
+                return entry.method;
+            }
+        }
+        return null;
+    }
+
+    void put(BshClassManager bcm, Class clas, boolean staticOnly, Object[] args, Method method) {
+        int generation = bcm.getCacheGeneration();
+        Entry[] entries = this.entries;
+        if (entries == null) {
+            entries = EMPTY;
+        }
+
+        // keep only the entries of this class manager and generation, dropping those of
+        // other interpreters and those made stale by a class loader change
+        Entry[] current = new Entry[entries.length + 1];
+        int n = 0;
+        WeakReference classManager = null;
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i].classManager.get() == bcm && entries[i].generation == generation) {
+                classManager = entries[i].classManager;
+                current[n++] = entries[i];
+            }
+        }
+        if (n >= MAX_ENTRIES) {
+            if (n != entries.length) {
+                Entry[] updated = new Entry[n];
+                System.arraycopy(current, 0, updated, 0, n);
+                this.entries = updated;
+            }
+            return; // megamorphic
+        }
+        if (classManager == null) {
+            classManager = new WeakReference(bcm);
+        }
+        current[n++] = new Entry(classManager, generation, clas, staticOnly, Types.getTypes(args), method);
+
+        Entry[] updated = new Entry[n];
+        System.arraycopy(current, 0, updated, 0, n);
+        this.entries = updated;
+    }
+
+    int size() {
+        Entry[] entries = this.entries;
+        return entries == null ? 0 : entries.length;
+    }
+
+    private static final class Entry {
+
+        final WeakReference classManager;
+        final int generation;
+        final Class clas;
+        final boolean staticOnly;
+        final Class[] types;
+        final Method method;
+
+        Entry(WeakReference classManager, int generation, Class clas, boolean staticOnly, Class[] types,
+                Method method) {
+            this.classManager = classManager;
+            this.generation = generation;
+            this.clas = clas;
+            this.staticOnly = staticOnly;
+            this.types = types;
+            this.method = method;
+        }
+
+        /**
+         * Compare the types of the arguments as Types.getTypes() would, without building the array.
+         */
+        boolean matches(Object[] args) {
+            int length = args == null ? 0 : args.length;
+            if (length != types.length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                Object arg = args[i];
+                Class type;
+                if (arg == null) {
+                    type = null;
+                } else if (arg instanceof Primitive) {
+                    type = ((Primitive) arg).getType();
+                } else {
+                    type = arg.getClass();
+                }
+                if (type != types[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -24,6 +24,7 @@ package bsh;
 import java.io.*;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Vector;
 
 /**
  * The BeanShell script interpreter.
@@ -139,6 +140,8 @@ public class Interpreter implements Runnable, ConsoleInterface, Serializable {
     /**
      * The main constructor. All constructors should now pass through here.
      *
+     * @param in The input to read statements from. May be null for an interpreter that only evaluates already parsed
+     * scripts, in which case no parser is created.
      * @param namespace If namespace is non-null then this interpreter's root namespace will be set to the one provided.
      * If it is null a new one will be created for it.
      * @param parent The parent interpreter if this interpreter is a child of another. May be null. Children share a
@@ -148,7 +151,9 @@ public class Interpreter implements Runnable, ConsoleInterface, Serializable {
      */
     public Interpreter(Reader in, PrintStream out, PrintStream err, boolean interactive, NameSpace namespace,
             Interpreter parent, String sourceFileInfo) {
-        parser = new Parser(in);
+        if (in != null) {
+            parser = new Parser(in);
+        }
         long t1 = System.currentTimeMillis();
         this.in = in;
         this.out = out;
@@ -162,8 +167,11 @@ public class Interpreter implements Runnable, ConsoleInterface, Serializable {
         }
         this.sourceFileInfo = sourceFileInfo;
 
-        BshClassManager bcm = BshClassManager.createClassManager(this);
         if (namespace == null) {
+            BshClassManager bcm = BshClassManager.createClassManager(this);
+            if (parent != null) {
+                bcm.setMemberInvoker(parent.getClassManager().getMemberInvoker());
+            }
             this.globalNameSpace = new NameSpace(bcm, "global");
         } else {
             this.globalNameSpace = namespace;
@@ -216,6 +224,17 @@ public class Interpreter implements Runnable, ConsoleInterface, Serializable {
         setu("bsh.evalOnly", new Primitive(true));
     }
 
+    /**
+     * Create an interpreter for evaluation only that calls Java methods, constructors and fields through the given
+     * backend, e.g. MemberInvoker.methodHandles(). Child interpreters inherit the backend.
+     *
+     * @see MemberInvoker
+     */
+    public Interpreter(MemberInvoker invoker) {
+        this();
+        getClassManager().setMemberInvoker(invoker);
+    }
+
     // End constructors
     /**
      * Attach a console. Note: this method is incomplete.
@@ -480,7 +499,8 @@ public class Interpreter implements Runnable, ConsoleInterface, Serializable {
 
     // begin source and eval
     /**
-     * Read text from fileName and eval it.
+     * Read text from fileName and eval it. The parse is skipped if the script was parsed before in this VM or has a
+     * fresh .bshc sidecar (see ParsedScriptFile).
      */
     public Object source(String filename, NameSpace nameSpace) throws FileNotFoundException, IOException, EvalError {
         File file = pathToFile(filename);
@@ -488,11 +508,55 @@ public class Interpreter implements Runnable, ConsoleInterface, Serializable {
             debug("Sourcing file: " + file);
         }
         Reader sourceIn = new BufferedReader(new FileReader(file));
+        String text;
         try {
-            return eval(sourceIn, nameSpace, filename);
+            text = readFully(sourceIn);
         } finally {
             sourceIn.close();
         }
+        // in memory, from a fresh .bshc sidecar or parsed now
+        ParseCache cache = ParseCache.getSharedCache();
+        ParsedScript script = cache.get(text, filename);
+        if (script == null) {
+            script = ParsedScriptFile.readSidecar(file, text, filename);
+            if (script == null) {
+                try {
+                    script = parse(new StringReader(text), filename);
+                } catch (EvalError e) {
+                    return eval(new StringReader(text), nameSpace, filename);
+                }
+                ParsedScriptFile.writeSidecar(file, text, script);
+            }
+            cache.put(text, filename, script);
+        }
+        return eval(script, nameSpace);
+    }
+
+    static String readFully(Reader in) throws IOException {
+        StringBuffer sb = new StringBuffer();
+        char[] buf = new char[8192];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            sb.append(buf, 0, n);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Evaluate text through the shared parse cache. Text that does not parse is evaluated statement by statement as
+     * it is read, like eval(Reader), so the statements before the error still run and the error is reported as
+     * before. Only text that parses is cached.
+     *
+     * @see ParseCache
+     */
+    private Object evalCached(String text, NameSpace nameSpace, String sourceFileInfo) throws EvalError {
+        ParsedScript script;
+        try {
+            script = ParseCache.getSharedCache().parse(text, sourceFileInfo);
+        } catch (ParseException e) {
+            return eval(new StringReader(text), nameSpace, sourceFileInfo);
+        }
+        return eval(script, nameSpace);
     }
 
     /**
@@ -531,76 +595,24 @@ public class Interpreter implements Runnable, ConsoleInterface, Serializable {
 
         boolean eof = false;
         while (!eof) {
-            SimpleNode node = null;
             try {
                 eof = localInterpreter.Line();
                 if (localInterpreter.get_jjtree().nodeArity() > 0) {
-                    node = (SimpleNode) localInterpreter.get_jjtree().rootNode();
+                    SimpleNode node = (SimpleNode) localInterpreter.get_jjtree().rootNode();
                     node.setSourceFile(sourceFileInfo);
 
-                    if (TRACE) {
-                        println("// " + node.getText());
-                    }
-
-                    retVal = node.eval(callstack, localInterpreter, null);
-
-                    // sanity check during development
-                    if (callstack.depth() > 1) {
-                        throw new InterpreterError("Callstack growing: " + callstack);
-                    }
-
+                    retVal = evalStatement(node, localInterpreter, callstack, nameSpace, sourceFileInfo);
                     if (retVal instanceof ReturnControl) {
                         retVal = ((ReturnControl) retVal).value;
                         break; // non-interactive, return control now
                     }
-
-                    if (localInterpreter.showResults && retVal != Primitive.VOID) {
-                        println("<" + retVal + ">");
-                    }
                 }
             } catch (ParseException e) {
-                if (DEBUG) // show extra "expecting..." info
-                {
-                    error(e.getMessage(DEBUG));
-                }
-
-                // add the source file info and throw again
-                e.setErrorSourceFile(sourceFileInfo);
-                throw e;
-
-            } catch (InterpreterError e) {
-                e.printStackTrace();
-                throw new EvalError("Sourced file: " + sourceFileInfo + " internal Error: " + e.getMessage(), node, callstack);
-            } catch (TargetError e) {
-                // failsafe, set the Line as the origin of the error.
-                if (e.getNode() == null) {
-                    e.setNode(node);
-                }
-                e.reThrow("Sourced file: " + sourceFileInfo);
-            } catch (EvalError e) {
-                if (DEBUG) {
-                    e.printStackTrace();
-                }
-                // failsafe, set the Line as the origin of the error.
-                if (e.getNode() == null) {
-                    e.setNode(node);
-                }
-                e.reThrow("Sourced file: " + sourceFileInfo);
-            } catch (Exception e) {
-                if (DEBUG) {
-                    e.printStackTrace();
-                }
-                throw new EvalError("Sourced file: " + sourceFileInfo + " unknown error: " + e.getMessage(), node, callstack);
+                throw sourceParseException(e, sourceFileInfo);
             } catch (TokenMgrError e) {
-                throw new EvalError("Sourced file: " + sourceFileInfo + " Token Parsing Error: " + e.getMessage(), node, callstack);
+                throw new EvalError("Sourced file: " + sourceFileInfo + " Token Parsing Error: " + e.getMessage(), null, callstack);
             } finally {
                 localInterpreter.get_jjtree().reset();
-
-                // reinit the callstack
-                if (callstack.depth() > 1) {
-                    callstack.clear();
-                    callstack.push(nameSpace);
-                }
             }
         }
 
@@ -629,7 +641,7 @@ public class Interpreter implements Runnable, ConsoleInterface, Serializable {
      */
     public Object eval(String statements, NameSpace nameSpace) throws EvalError {
         String s = statements.endsWith(";") ? statements : statements + ";";
-        return eval(new StringReader(s), nameSpace, "inline evaluation of: ``" + showEvalString(s) + "''");
+        return evalCached(s, nameSpace, "inline evaluation of: ``" + showEvalString(s) + "''");
     }
 
     private String showEvalString(String s) {
@@ -641,6 +653,152 @@ public class Interpreter implements Runnable, ConsoleInterface, Serializable {
         return s;
     }
 
+    /**
+     * Parse the complete text from the reader without evaluating it. The returned script may be evaluated repeatedly
+     * using eval(ParsedScript, NameSpace), skipping the lexer and parser on every evaluation.
+     *
+     * @param sourceFileInfo is for information purposes only. It is used to display error messages.
+     * @throws ParseException if the text is not a valid script
+     * @throws EvalError if the text could not be tokenized
+     */
+    public static ParsedScript parse(Reader in, String sourceFileInfo) throws EvalError {
+        Parser parser = new Parser(in);
+        Vector statements = new Vector();
+        try {
+            while (!parser.Line()) {
+                SimpleNode node = parser.popNode();
+                if (node != null) {
+                    node.setSourceFile(sourceFileInfo);
+                    statements.addElement(node);
+                }
+            }
+        } catch (ParseException e) {
+            e.setErrorSourceFile(sourceFileInfo);
+            throw e;
+        } catch (TokenMgrError e) {
+            throw new EvalError("Sourced file: " + sourceFileInfo + " Token Parsing Error: " + e.getMessage(),
+                    SimpleNode.JAVACODE, new CallStack());
+        }
+
+        SimpleNode[] nodes = new SimpleNode[statements.size()];
+        statements.copyInto(nodes);
+        return new ParsedScript(nodes, sourceFileInfo);
+    }
+
+    /**
+     * Evaluate a previously parsed script in the specified namespace. Return value is the evaluated object (or
+     * corresponding primitive wrapper) of the last statement or of an explicit return.
+     *
+     * @throws EvalError on script problems
+     * @throws TargetError on unhandled exceptions from the script
+     * @see #parse(Reader, String)
+     */
+    public Object eval(ParsedScript script, NameSpace nameSpace) throws EvalError {
+        Object retVal = null;
+        String sourceFileInfo = script.getSourceFileInfo();
+        if (Interpreter.DEBUG) {
+            debug("eval: " + script + " nameSpace = " + nameSpace);
+        }
+
+        // the statements are already parsed: no parser, and the namespace brings its class manager
+        Interpreter localInterpreter = new Interpreter(
+                null, out, err, false, nameSpace, this, sourceFileInfo);
+        CallStack callstack = new CallStack(nameSpace);
+
+        SimpleNode[] statements = script.getStatements();
+        for (int i = 0; i < statements.length; i++) {
+            retVal = evalStatement(statements[i], localInterpreter, callstack, nameSpace, sourceFileInfo);
+            if (retVal instanceof ReturnControl) {
+                retVal = ((ReturnControl) retVal).value;
+                break; // non-interactive, return control now
+            }
+        }
+
+        return Primitive.unwrap(retVal);
+    }
+
+    /**
+     * Evaluate a previously parsed script in this interpreter's global namespace.
+     */
+    public Object eval(ParsedScript script) throws EvalError {
+        return eval(script, globalNameSpace);
+    }
+
+    /**
+     * Evaluate one top level statement of a script read by eval(Reader, NameSpace, String) or parsed ahead by
+     * parse(Reader, String). Errors are reported with the source file info and the statement as their origin, and the
+     * callstack is reset to the namespace afterwards.
+     *
+     * @return the value of the statement, or the ReturnControl of an explicit return
+     */
+    private Object evalStatement(SimpleNode node, Interpreter localInterpreter, CallStack callstack,
+            NameSpace nameSpace, String sourceFileInfo) throws EvalError {
+        Object retVal = null;
+        try {
+            if (TRACE) {
+                println("// " + node.getText());
+            }
+
+            retVal = node.eval(callstack, localInterpreter, null);
+
+            // sanity check during development
+            if (callstack.depth() > 1) {
+                throw new InterpreterError("Callstack growing: " + callstack);
+            }
+
+            if (!(retVal instanceof ReturnControl) && localInterpreter.showResults && retVal != Primitive.VOID) {
+                println("<" + retVal + ">");
+            }
+        } catch (ParseException e) {
+            throw sourceParseException(e, sourceFileInfo);
+        } catch (InterpreterError e) {
+            e.printStackTrace();
+            throw new EvalError("Sourced file: " + sourceFileInfo + " internal Error: " + e.getMessage(), node, callstack);
+        } catch (TargetError e) {
+            // failsafe, set the Line as the origin of the error.
+            if (e.getNode() == null) {
+                e.setNode(node);
+            }
+            e.reThrow("Sourced file: " + sourceFileInfo);
+        } catch (EvalError e) {
+            if (DEBUG) {
+                e.printStackTrace();
+            }
+            // failsafe, set the Line as the origin of the error.
+            if (e.getNode() == null) {
+                e.setNode(node);
+            }
+            e.reThrow("Sourced file: " + sourceFileInfo);
+        } catch (Exception e) {
+            if (DEBUG) {
+                e.printStackTrace();
+            }
+            throw new EvalError("Sourced file: " + sourceFileInfo + " unknown error: " + e.getMessage(), node, callstack);
+        } catch (TokenMgrError e) {
+            throw new EvalError("Sourced file: " + sourceFileInfo + " Token Parsing Error: " + e.getMessage(), node, callstack);
+        } finally {
+            // reinit the callstack
+            if (callstack.depth() > 1) {
+                callstack.clear();
+                callstack.push(nameSpace);
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * Add the source file info to a parse error of a sourced script, showing the extra "expecting..." info when
+     * debugging.
+     */
+    private ParseException sourceParseException(ParseException e, String sourceFileInfo) {
+        if (DEBUG) // show extra "expecting..." info
+        {
+            error(e.getMessage(DEBUG));
+        }
+        e.setErrorSourceFile(sourceFileInfo);
+        return e;
+    }
+
     // end source and eval
     /**
      * Print an error message in a standard format on the output stream associated with this interpreter. On the GUI
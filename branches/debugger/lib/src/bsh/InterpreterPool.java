@@ -0,0 +1,257 @@
+/***********************************************************************************************************************
+ *                                                                                                                     *
+ *  This file is part of the BeanShell Java Scripting distribution.                                                    *
+ *  Documentation and updates may be found at http://www.beanshell.org/                                                *
+ *                                                                                                                     *
+ *  This program is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General  *
+ *  Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option)  *
+ *  any later version.                                                                                                 *
+ *                                                                                                                     *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for    *
+ *  more details.                                                                                                      *
+ *                                                                                                                     *
+ *  You should have received a copy of the GNU Lesser General Public License along with this program.                  *
+ *  If not, see <http://www.gnu.org/licenses/>.                                                                        *
+ *                                                                                                                     *
+ *  Patrick Niemeyer (pat@pat.net)                                                                                     *
+ *  Author of Learning Java, O'Reilly & Associates                                                                     *
+ *  http://www.pat.net/~pat/                                                                                           *
+ *                                                                                                                     *
+ **********************************************************************************************************************/
+package bsh;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of ready to use interpreters, for servers that would otherwise construct an Interpreter per request. <p>
+ *
+ * A new interpreter of the pool is created, optionally set up by evaluating a parsed script in it, and then the
+ * declarations of its global namespace and of its "bsh" system object are recorded as its baseline. When it is
+ * released the interpreter is put back to that baseline: variables, methods and imports added by the borrower are
+ * dropped and the baseline variables get their recorded values again. Strict Java mode, the output streams and the show
+ * results setting are restored as well. The class manager, its resolved class and method caches and the scripted
+ * commands already loaded are kept, which is what makes a pooled interpreter cheaper than a new one. Class path changes
+ * made by a borrower (addClassPath() and the like) are kept too. <p>
+ *
+ * A scripted class can not be taken back out of the class manager that defined it. An interpreter in which the borrower
+ * declared a class is therefore not reset but dropped on release, so that the class is never seen by the next
+ * borrower. <p>
+ *
+ * At most maxIdle interpreters are kept; interpreters released to a full pool are dropped. The pool counts borrows,
+ * creations, resets and drops and times borrow() for monitoring. It is safe for use by multiple threads, an
+ * interpreter itself must only be used by one thread at a time.
+ */
+public final class InterpreterPool {
+
+    private final ParsedScript setup;
+    private final BlockingQueue idle;
+    // Interpreter -> Baseline of every interpreter created by the pool and not dropped
+    private final Map baselines = new ConcurrentHashMap();
+
+    private final AtomicLong borrows = new AtomicLong();
+    private final AtomicLong creations = new AtomicLong();
+    private final AtomicLong resets = new AtomicLong();
+    private final AtomicLong drops = new AtomicLong();
+    private final AtomicLong borrowNanos = new AtomicLong();
+    private final AtomicLong maxBorrowNanos = new AtomicLong();
+
+    /**
+     * The state a pooled interpreter is put back to on release.
+     */
+    private static final class Baseline {
+
+        final NameSpace.Snapshot global;
+        final NameSpace systemNameSpace;
+        final NameSpace.Snapshot system;
+        final boolean strictJava;
+        final boolean showResults;
+        final java.io.PrintStream out;
+        final java.io.PrintStream err;
+        final int definedClasses;
+        // guarded by this
+        boolean borrowed;
+
+        Baseline(Interpreter interpreter) throws EvalError {
+            global = interpreter.getNameSpace().snapshot();
+            systemNameSpace = ((This) interpreter.get("bsh")).getNameSpace();
+            system = systemNameSpace.snapshot();
+            strictJava = interpreter.getStrictJava();
+            showResults = interpreter.showResults;
+            out = interpreter.out;
+            err = interpreter.err;
+            definedClasses = interpreter.getClassManager().getDefinedClassCount();
+        }
+
+        /**
+         * True if scripted classes were declared in the interpreter since the baseline was recorded.
+         */
+        boolean hasNewClasses(Interpreter interpreter) {
+            return interpreter.getClassManager().getDefinedClassCount() != definedClasses;
+        }
+
+        void restore(Interpreter interpreter) {
+            interpreter.getNameSpace().restore(global);
+            systemNameSpace.restore(system);
+            interpreter.setStrictJava(strictJava);
+            interpreter.showResults = showResults;
+            interpreter.setOut(out);
+            interpreter.setErr(err);
+        }
+    }
+
+    /**
+     * @param maxIdle the number of released interpreters kept for reuse
+     */
+    public InterpreterPool(int maxIdle) {
+        this(maxIdle, null);
+    }
+
+    /**
+     * @param maxIdle the number of released interpreters kept for reuse
+     * @param setup a script evaluated in every new interpreter before its baseline is recorded, may be null
+     */
+    public InterpreterPool(int maxIdle, ParsedScript setup) {
+        if (maxIdle < 1) {
+            throw new IllegalArgumentException("maxIdle: " + maxIdle);
+        }
+        this.setup = setup;
+        this.idle = new ArrayBlockingQueue(maxIdle);
+    }
+
+    /**
+     * Create interpreters until count of them are idle, so that the first borrowers don't pay for the construction.
+     */
+    public void prewarm(int count) throws EvalError {
+        while (idle.size() < count) {
+            Interpreter interpreter = create();
+            if (!idle.offer(interpreter)) {
+                drop(interpreter);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Take an idle interpreter or create a new one if there is none.
+     *
+     * @throws EvalError if the setup script fails in a new interpreter
+     */
+    public Interpreter borrow() throws EvalError {
+        long start = System.nanoTime();
+        Interpreter interpreter = (Interpreter) idle.poll();
+        if (interpreter == null) {
+            interpreter = create();
+        }
+        Baseline baseline = (Baseline) baselines.get(interpreter);
+        synchronized (baseline) {
+            baseline.borrowed = true;
+        }
+        borrows.incrementAndGet();
+        long nanos = System.nanoTime() - start;
+        borrowNanos.addAndGet(nanos);
+        long max = maxBorrowNanos.get();
+        while (nanos > max && !maxBorrowNanos.compareAndSet(max, nanos)) {
+            max = maxBorrowNanos.get();
+        }
+        return interpreter;
+    }
+
+    /**
+     * Reset a borrowed interpreter to its baseline and return it to the pool, or drop it if the borrower declared a
+     * scripted class in it. The interpreter must not be used by the borrower afterwards.
+     *
+     * @throws IllegalArgumentException if the interpreter was not borrowed from this pool
+     * @throws IllegalStateException if the interpreter was already released
+     */
+    public void release(Interpreter interpreter) {
+        Baseline baseline = (Baseline) baselines.get(interpreter);
+        if (baseline == null) {
+            throw new IllegalArgumentException("Interpreter not from this pool: " + interpreter);
+        }
+        synchronized (baseline) {
+            if (!baseline.borrowed) {
+                throw new IllegalStateException("Interpreter already released: " + interpreter);
+            }
+            baseline.borrowed = false;
+            if (baseline.hasNewClasses(interpreter)) {
+                drop(interpreter);
+                return;
+            }
+            baseline.restore(interpreter);
+        }
+        resets.incrementAndGet();
+        if (!idle.offer(interpreter)) {
+            drop(interpreter);
+        }
+    }
+
+    private Interpreter create() throws EvalError {
+        Interpreter interpreter = new Interpreter();
+        if (setup != null) {
+            interpreter.eval(setup);
+        }
+        baselines.put(interpreter, new Baseline(interpreter));
+        creations.incrementAndGet();
+        return interpreter;
+    }
+
+    private void drop(Interpreter interpreter) {
+        baselines.remove(interpreter);
+        drops.incrementAndGet();
+    }
+
+    /**
+     * The number of interpreters waiting to be borrowed.
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public long getBorrowCount() {
+        return borrows.get();
+    }
+
+    /**
+     * The number of interpreters constructed by the pool, on borrow() or prewarm().
+     */
+    public long getCreationCount() {
+        return creations.get();
+    }
+
+    /**
+     * The number of interpreters reset to their baseline on release.
+     */
+    public long getResetCount() {
+        return resets.get();
+    }
+
+    /**
+     * The number of released interpreters dropped because the pool was full or a scripted class was declared in them.
+     */
+    public long getDropCount() {
+        return drops.get();
+    }
+
+    /**
+     * The mean time spent in borrow(), including the construction of new interpreters.
+     */
+    public long getAverageBorrowNanos() {
+        long count = borrows.get();
+        return count == 0 ? 0 : borrowNanos.get() / count;
+    }
+
+    public long getMaxBorrowNanos() {
+        return maxBorrowNanos.get();
+    }
+
+    public String toString() {
+        return "InterpreterPool: idle=" + getIdleCount() + " borrows=" + getBorrowCount()
+                + " creations=" + getCreationCount() + " resets=" + getResetCount() + " drops=" + getDropCount()
+                + " avgBorrowNanos=" + getAverageBorrowNanos() + " maxBorrowNanos=" + getMaxBorrowNanos();
+    }
+}
@@ -1,11 +1,23 @@
 /* Generated By:JavaCC: Do not edit this line. JavaCharStream.java Version 3.0 */
 package bsh;
+/*
+	This file has been rewritten for BeanShell to read in bulk and to work out
+	line and column numbers only for the positions the token manager asks for.
+	JavaCC does not overwrite an existing JavaCharStream.java; if it is ever
+	regenerated please restore this version.
+*/
 
 /**
  * An implementation of interface CharStream, where the stream is assumed to
  * contain only ASCII characters (with java-like unicode escape processing).
+ * <p>
+ * Characters are read straight into one buffer that holds the current token
+ * and what has been read ahead of it. Unicode escapes are translated in place
+ * as each chunk arrives; a chunk without a backslash is only scanned once.
+ * Line and column numbers are not stored per character: a cursor walks the
+ * buffer forward to a position when its line or column is asked for, which the
+ * token manager does once for the begin and once for the end of each token.
  */
-
 public class JavaCharStream
 {
   public static final boolean staticFlag = false;
@@ -56,152 +68,217 @@ public class JavaCharStream
     throw new java.io.IOException(); // Should never come here
   }
 
+  /** Index of the last character handed out. */
   public int bufpos = -1;
-  int bufsize;
-  int available;
   int tokenBegin;
-  protected int bufline[];
-  protected int bufcolumn[];
 
+  protected java.io.Reader inputStream;
+  protected char[] buffer;
+  /** End of the translated characters, which are the ones that can be handed out. */
+  protected int translated;
+  /** End of the characters read, the ones past translated may start an escape. */
+  protected int limit;
+  private boolean eof;
+  private boolean invalidEscape;
+
+  /** Buffer indexes of translated unicode escapes, and how many more source characters each took than one. */
+  private int[] escapeIndex = new int[8];
+  private int[] escapeWidth = new int[8];
+  private int escapeCount;
+
+  /** The line and column of the character at the cursor. */
   protected int column = 0;
   protected int line = 1;
 
   protected boolean prevCharIsCR = false;
   protected boolean prevCharIsLF = false;
 
-  protected java.io.Reader inputStream;
+  private int cursor = -1;
+  private int nextEscape;
+  private int escapeColumns;
+  private int tokenBeginLine;
+  private int tokenBeginColumn;
 
-  protected char[] nextCharBuf;
-  protected char[] buffer;
-  protected int maxNextCharInd = 0;
-  protected int nextCharInd = -1;
-  protected int inBuf = 0;
-
-  protected void ExpandBuff(boolean wrapAround)
+  /**
+   * Make room for a bulk read, dropping what is before the current token or
+   * growing the buffer if the token takes up most of it.
+   */
+  protected void ExpandBuff()
   {
-     char[] newbuffer = new char[bufsize + 2048];
-     int newbufline[] = new int[bufsize + 2048];
-     int newbufcolumn[] = new int[bufsize + 2048];
+     if (buffer.length - limit >= buffer.length / 4)
+        return;
 
-     try
+     int discard = Math.max(0, Math.min(tokenBegin, bufpos + 1));
+     // the dropped characters may still be needed for line numbers
+     advanceTo(discard - 1);
+     char[] newbuffer = limit - discard > buffer.length / 2
+           ? new char[buffer.length * 2] : buffer;
+     System.arraycopy(buffer, discard, newbuffer, 0, limit - discard);
+     buffer = newbuffer;
+
+     bufpos -= discard;
+     tokenBegin -= discard;
+     translated -= discard;
+     limit -= discard;
+     cursor -= discard;
+
+     int kept = 0;
+     for (int i = nextEscape; i < escapeCount; i++)
      {
-        if (wrapAround)
-        {
-           System.arraycopy(buffer, tokenBegin, newbuffer, 0, bufsize - tokenBegin);
-           System.arraycopy(buffer, 0, newbuffer,
-                                             bufsize - tokenBegin, bufpos);
-           buffer = newbuffer;
-
-           System.arraycopy(bufline, tokenBegin, newbufline, 0, bufsize - tokenBegin);
-           System.arraycopy(bufline, 0, newbufline, bufsize - tokenBegin, bufpos);
-           bufline = newbufline;
+        escapeIndex[kept] = escapeIndex[i] - discard;
+        escapeWidth[kept++] = escapeWidth[i];
+     }
+     escapeCount = kept;
+     nextEscape = 0;
+  }
 
-           System.arraycopy(bufcolumn, tokenBegin, newbufcolumn, 0, bufsize - tokenBegin);
-           System.arraycopy(bufcolumn, 0, newbufcolumn, bufsize - tokenBegin, bufpos);
-           bufcolumn = newbufcolumn;
+  /**
+   * Read as much as fits and translate it, until there is at least one more
+   * character to hand out.
+   */
+  protected void FillBuff() throws java.io.IOException
+  {
+     do
+     {
+        if (invalidEscape)
+        {
+           // the position of the last 'u' of the escape, counted in source
+           // characters like the escapes before it
+           advanceTo(translated - 1);
+           column += escapeColumns;
+           escapeColumns = 0;
+           int i = translated;
+           for (; i < limit && buffer[i] == '\\'; i++)
+              UpdateLineColumn('\\');
+           for (; i < limit && buffer[i] == 'u'; i++)
+              column++;
+           throw new Error("Invalid escape character at line " + line +
+                                         " column " + column + ".");
+        }
+        if (eof)
+           throw new java.io.IOException();
 
-           bufpos += (bufsize - tokenBegin);
+        ExpandBuff();
+        int i = inputStream.read(buffer, limit, buffer.length - limit);
+        if (i == -1)
+        {
+           eof = true;
+           inputStream.close();
         }
         else
+           limit += i;
+
+        translate();
+     }
+     while (bufpos + 1 == translated);
+  }
+
+  /**
+   * Translate the unicode escapes between translated and limit in place.
+   * Anything that may be the start of an escape continuing in the next read
+   * is left untranslated, as is an invalid escape, which is reported when the
+   * token manager gets to it.
+   */
+  private void translate()
+  {
+     int r = translated;
+     while (r < limit && buffer[r] != '\\')
+        r++;
+
+     int w = r;
+     while (r < limit)
+     {
+        char c = buffer[r];
+        if (c != '\\')
         {
-           System.arraycopy(buffer, tokenBegin, newbuffer, 0, bufsize - tokenBegin);
-           buffer = newbuffer;
+           buffer[w++] = c;
+           r++;
+           continue;
+        }
 
-           System.arraycopy(bufline, tokenBegin, newbufline, 0, bufsize - tokenBegin);
-           bufline = newbufline;
+        int run = r + 1; // Read all the backslashes
+        while (run < limit && buffer[run] == '\\')
+           run++;
 
-           System.arraycopy(bufcolumn, tokenBegin, newbufcolumn, 0, bufsize - tokenBegin);
-           bufcolumn = newbufcolumn;
+        if (run == limit && !eof)
+           break;
 
-           bufpos -= tokenBegin;
+        if (run == limit || buffer[run] != 'u' || ((run - r) & 1) == 0)
+        {
+           while (r < run)
+              buffer[w++] = buffer[r++];
+           continue;
         }
-     }
-     catch (Throwable t)
-     {
-        throw new Error(t.getMessage());
-     }
 
-     available = (bufsize += 2048);
-     tokenBegin = 0;
-  }
+        // an odd number of backslashes followed by a 'u': the last one starts
+        // an escape. The run is left alone until the escape is complete and
+        // valid, an invalid one is reported at the first backslash of the run.
+        int hex = run + 1;
+        while (hex < limit && buffer[hex] == 'u')
+           hex++;
 
-  protected void FillBuff() throws java.io.IOException
-  {
-     int i;
-     if (maxNextCharInd == 4096)
-        maxNextCharInd = nextCharInd = 0;
+        if (hex + 4 > limit)
+        {
+           invalidEscape = eof;
+           break;
+        }
 
-     try {
-        if ((i = inputStream.read(nextCharBuf, maxNextCharInd,
-                                            4096 - maxNextCharInd)) == -1)
+        try
         {
-           inputStream.close();
-           throw new java.io.IOException();
+           c = (char)(hexval(buffer[hex]) << 12 |
+                      hexval(buffer[hex + 1]) << 8 |
+                      hexval(buffer[hex + 2]) << 4 |
+                      hexval(buffer[hex + 3]));
         }
-        else
-           maxNextCharInd += i;
-        return;
-     }
-     catch(java.io.IOException e) {
-        if (bufpos != 0)
+        catch(java.io.IOException e)
         {
-           --bufpos;
-           backup(0);
+           invalidEscape = true;
+           break;
         }
-        else
+
+        while (r < run - 1)
+           buffer[w++] = buffer[r++];
+
+        if (escapeCount == escapeIndex.length)
         {
-           bufline[bufpos] = line;
-           bufcolumn[bufpos] = column;
+           int[] newindex = new int[escapeCount * 2];
+           int[] newwidth = new int[escapeCount * 2];
+           System.arraycopy(escapeIndex, 0, newindex, 0, escapeCount);
+           System.arraycopy(escapeWidth, 0, newwidth, 0, escapeCount);
+           escapeIndex = newindex;
+           escapeWidth = newwidth;
         }
-        throw e;
+        escapeIndex[escapeCount] = w;
+        escapeWidth[escapeCount++] = hex + 4 - r - 1;
+        buffer[w++] = c;
+        r = hex + 4;
      }
-  }
-
-  protected char ReadByte() throws java.io.IOException
-  {
-     if (++nextCharInd >= maxNextCharInd)
-        FillBuff();
 
-     return nextCharBuf[nextCharInd];
+     if (w < r)
+     {
+        System.arraycopy(buffer, r, buffer, w, limit - r);
+        limit -= r - w;
+     }
+     translated = w;
   }
 
   public char BeginToken() throws java.io.IOException
-  {     
-     if (inBuf > 0)
+  {
+     tokenBegin = bufpos + 1;
+     try
      {
-        --inBuf;
-
-        if (++bufpos == bufsize)
-           bufpos = 0;
-
-        tokenBegin = bufpos;
-        return buffer[bufpos];
+        return readChar();
      }
-
-     tokenBegin = 0;
-     bufpos = -1;
-
-     return readChar();
-  }     
-
-  protected void AdjustBuffSize()
-  {
-     if (available == bufsize)
+     catch(java.io.IOException e)
      {
-        if (tokenBegin > 2048)
-        {
-           bufpos = 0;
-           available = tokenBegin;
-        }
-        else
-           ExpandBuff(false);
+        // the end of file token is placed on the last source character,
+        // which is the end of the escape if the text ends in one
+        tokenBegin = bufpos;
+        advanceTo(bufpos);
+        column += escapeColumns;
+        escapeColumns = 0;
+        throw e;
      }
-     else if (available > tokenBegin)
-        available = bufsize;
-     else if ((tokenBegin - available) < 2048)
-        ExpandBuff(true);
-     else
-        available = tokenBegin;
   }
 
   protected void UpdateLineColumn(char c)
@@ -239,167 +316,134 @@ public class JavaCharStream
         default :
            break;
      }
-
-     bufline[bufpos] = line;
-     bufcolumn[bufpos] = column;
   }
 
-  public char readChar() throws java.io.IOException
+  /**
+   * Move the cursor forward to the given buffer index. Runs of plain
+   * characters are walked in a tight loop that does what UpdateLineColumn
+   * does; the loop stops at an escape, which is placed at its backslash and
+   * moves the characters after it over by its width, and at the begin of the
+   * token, whose position is kept in case the end is asked for first.
+   */
+  private void advanceTo(int index)
   {
-     if (inBuf > 0)
+     while (cursor < index)
      {
-        --inBuf;
-
-        if (++bufpos == bufsize)
-           bufpos = 0;
-
-        return buffer[bufpos];
-     }
-
-     char c;
-
-     if (++bufpos == available)
-        AdjustBuffSize();
-
-     if ((buffer[bufpos] = c = ReadByte()) == '\\')
-     {
-        UpdateLineColumn(c);
-
-        int backSlashCnt = 1;
-
-        for (;;) // Read all the backslashes
+        column += escapeColumns;
+        escapeColumns = 0;
+
+        int stop = index;
+        if (cursor < tokenBegin && tokenBegin < stop)
+           stop = tokenBegin;
+        boolean escape = nextEscape < escapeCount && escapeIndex[nextEscape] <= stop;
+        if (escape)
+           stop = escapeIndex[nextEscape] - 1;
+
+        int l = line, col = column;
+        boolean cr = prevCharIsCR, lf = prevCharIsLF;
+        for (int i = cursor + 1; i <= stop; i++)
         {
-           if (++bufpos == available)
-              AdjustBuffSize();
-
-           try
+           char c = buffer[i];
+           if (lf || (cr && c != '\n'))
            {
-              if ((buffer[bufpos] = c = ReadByte()) != '\\')
-              {
-                 UpdateLineColumn(c);
-                 // found a non-backslash char.
-                 if ((c == 'u') && ((backSlashCnt & 1) == 1))
-                 {
-                    if (--bufpos < 0)
-                       bufpos = bufsize - 1;
-
-                    break;
-                 }
-
-                 backup(backSlashCnt);
-                 return '\\';
-              }
+              l++;
+              col = 1;
            }
-           catch(java.io.IOException e)
-           {
-              if (backSlashCnt > 1)
-                 backup(backSlashCnt);
-
-              return '\\';
-           }
-
-           UpdateLineColumn(c);
-           backSlashCnt++;
+           else
+              col++;
+           lf = c == '\n';
+           cr = c == '\r';
+           if (c == '\t')
+              col += 7 - ((col - 1) & 07);
         }
+        line = l;
+        column = col;
+        prevCharIsCR = cr;
+        prevCharIsLF = lf;
+        cursor = stop;
 
-        // Here, we have seen an odd number of backslash's followed by a 'u'
-        try
-        {
-           while ((c = ReadByte()) == 'u')
-              ++column;
-
-           buffer[bufpos] = c = (char)(hexval(c) << 12 |
-                                       hexval(ReadByte()) << 8 |
-                                       hexval(ReadByte()) << 4 |
-                                       hexval(ReadByte()));
-
-           column += 4;
-        }
-        catch(java.io.IOException e)
+        if (escape)
         {
-           throw new Error("Invalid escape character at line " + line +
-                                         " column " + column + ".");
+           // the character it stands for never starts a line or a tab stop
+           UpdateLineColumn('\\');
+           cursor++;
+           escapeColumns = escapeWidth[nextEscape++];
         }
 
-        if (backSlashCnt == 1)
-           return c;
-        else
+        if (cursor == tokenBegin)
         {
-           backup(backSlashCnt - 1);
-           return '\\';
+           tokenBeginLine = line;
+           tokenBeginColumn = column;
         }
      }
-     else
-     {
-        UpdateLineColumn(c);
-        return (c);
-     }
+  }
+
+  public char readChar() throws java.io.IOException
+  {
+     if (bufpos + 1 == translated)
+        FillBuff();
+
+     return buffer[++bufpos];
   }
 
   /**
-   * @deprecated 
+   * @deprecated
    * @see #getEndColumn
    */
 
   public int getColumn() {
-     return bufcolumn[bufpos];
+     return getEndColumn();
   }
 
   /**
-   * @deprecated 
+   * @deprecated
    * @see #getEndLine
    */
 
   public int getLine() {
-     return bufline[bufpos];
+     return getEndLine();
   }
 
   public int getEndColumn() {
-     return bufcolumn[bufpos];
+     advanceTo(bufpos);
+     return column;
   }
 
   public int getEndLine() {
-     return bufline[bufpos];
+     advanceTo(bufpos);
+     return line;
   }
 
   public int getBeginColumn() {
-     return bufcolumn[tokenBegin];
+     advanceTo(tokenBegin);
+     return cursor == tokenBegin ? column : tokenBeginColumn;
   }
 
   public int getBeginLine() {
-     return bufline[tokenBegin];
+     advanceTo(tokenBegin);
+     return cursor == tokenBegin ? line : tokenBeginLine;
   }
 
   public void backup(int amount) {
-
-    inBuf += amount;
-    if ((bufpos -= amount) < 0)
-       bufpos += bufsize;
+     bufpos -= amount;
   }
 
   public JavaCharStream(java.io.Reader dstream,
                  int startline, int startcolumn, int buffersize)
   {
-    inputStream = dstream;
-    line = startline;
-    column = startcolumn - 1;
-
-    available = bufsize = buffersize;
     buffer = new char[buffersize];
-    bufline = new int[buffersize];
-    bufcolumn = new int[buffersize];
-    nextCharBuf = new char[4096];
+    ReInit(dstream, startline, startcolumn, buffersize);
   }
 
   public JavaCharStream(java.io.Reader dstream,
                                         int startline, int startcolumn)
   {
-     this(dstream, startline, startcolumn, 4096);
+     this(dstream, startline, startcolumn, 8192);
   }
 
   public JavaCharStream(java.io.Reader dstream)
   {
-     this(dstream, 1, 1, 4096);
+     this(dstream, 1, 1, 8192);
   }
   public void ReInit(java.io.Reader dstream,
                  int startline, int startcolumn, int buffersize)
@@ -409,139 +453,84 @@ public class JavaCharStream
     column = startcolumn - 1;
 
     if (buffer == null || buffersize != buffer.length)
-    {
-      available = bufsize = buffersize;
       buffer = new char[buffersize];
-      bufline = new int[buffersize];
-      bufcolumn = new int[buffersize];
-      nextCharBuf = new char[4096];
-    }
     prevCharIsLF = prevCharIsCR = false;
-    tokenBegin = inBuf = maxNextCharInd = 0;
-    nextCharInd = bufpos = -1;
+    eof = invalidEscape = false;
+    tokenBegin = translated = limit = 0;
+    escapeCount = nextEscape = escapeColumns = 0;
+    bufpos = cursor = -1;
   }
 
   public void ReInit(java.io.Reader dstream,
                                         int startline, int startcolumn)
   {
-     ReInit(dstream, startline, startcolumn, 4096);
+     ReInit(dstream, startline, startcolumn, 8192);
   }
 
   public void ReInit(java.io.Reader dstream)
   {
-     ReInit(dstream, 1, 1, 4096);
+     ReInit(dstream, 1, 1, 8192);
   }
   public JavaCharStream(java.io.InputStream dstream, int startline,
   int startcolumn, int buffersize)
   {
-     this(new java.io.InputStreamReader(dstream), startline, startcolumn, 4096);
+     this(new java.io.InputStreamReader(dstream), startline, startcolumn, buffersize);
   }
 
   public JavaCharStream(java.io.InputStream dstream, int startline,
                                                            int startcolumn)
   {
-     this(dstream, startline, startcolumn, 4096);
+     this(dstream, startline, startcolumn, 8192);
   }
 
   public JavaCharStream(java.io.InputStream dstream)
   {
-     this(dstream, 1, 1, 4096);
+     this(dstream, 1, 1, 8192);
   }
 
   public void ReInit(java.io.InputStream dstream, int startline,
   int startcolumn, int buffersize)
   {
-     ReInit(new java.io.InputStreamReader(dstream), startline, startcolumn, 4096);
+     ReInit(new java.io.InputStreamReader(dstream), startline, startcolumn, buffersize);
   }
   public void ReInit(java.io.InputStream dstream, int startline,
                                                            int startcolumn)
   {
-     ReInit(dstream, startline, startcolumn, 4096);
+     ReInit(dstream, startline, startcolumn, 8192);
   }
   public void ReInit(java.io.InputStream dstream)
   {
-     ReInit(dstream, 1, 1, 4096);
+     ReInit(dstream, 1, 1, 8192);
   }
 
   public String GetImage()
   {
-     if (bufpos >= tokenBegin)
-        return new String(buffer, tokenBegin, bufpos - tokenBegin + 1);
-     else
-        return new String(buffer, tokenBegin, bufsize - tokenBegin) +
-                              new String(buffer, 0, bufpos + 1);
+     return new String(buffer, tokenBegin, bufpos - tokenBegin + 1);
   }
 
   public char[] GetSuffix(int len)
   {
      char[] ret = new char[len];
-
-     if ((bufpos + 1) >= len)
-        System.arraycopy(buffer, bufpos - len + 1, ret, 0, len);
-     else
-     {
-        System.arraycopy(buffer, bufsize - (len - bufpos - 1), ret, 0,
-                                                          len - bufpos - 1);
-        System.arraycopy(buffer, 0, ret, len - bufpos - 1, bufpos + 1);
-     }
-
+     System.arraycopy(buffer, bufpos - len + 1, ret, 0, len);
      return ret;
   }
 
   public void Done()
   {
-     nextCharBuf = null;
      buffer = null;
-     bufline = null;
-     bufcolumn = null;
+     escapeIndex = null;
+     escapeWidth = null;
   }
 
   /**
    * Method to adjust line and column numbers for the start of a token.<BR>
+   * The characters after it follow on from the new position.
    */
   public void adjustBeginLineColumn(int newLine, int newCol)
   {
-     int start = tokenBegin;
-     int len;
-
-     if (bufpos >= tokenBegin)
-     {
-        len = bufpos - tokenBegin + inBuf + 1;
-     }
-     else
-     {
-        len = bufsize - tokenBegin + bufpos + 1 + inBuf;
-     }
-
-     int i = 0, j = 0, k = 0;
-     int nextColDiff = 0, columnDiff = 0;
-
-     while (i < len &&
-            bufline[j = start % bufsize] == bufline[k = ++start % bufsize])
-     {
-        bufline[j] = newLine;
-        nextColDiff = columnDiff + bufcolumn[k] - bufcolumn[j];
-        bufcolumn[j] = newCol + columnDiff;
-        columnDiff = nextColDiff;
-        i++;
-     } 
-
-     if (i < len)
-     {
-        bufline[j] = newLine++;
-        bufcolumn[j] = newCol + columnDiff;
-
-        while (i++ < len)
-        {
-           if (bufline[j = start % bufsize] != bufline[++start % bufsize])
-              bufline[j] = newLine++;
-           else
-              bufline[j] = newLine;
-        }
-     }
-
-     line = bufline[j];
-     column = bufcolumn[j];
+     advanceTo(tokenBegin);
+     line = tokenBeginLine = newLine;
+     column = tokenBeginColumn = newCol;
   }
 
 }
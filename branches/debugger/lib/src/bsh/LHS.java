@@ -52,6 +52,10 @@ class LHS implements ParserConstants, java.io.Serializable {
     Field field;
     Object object;
     int index;
+    /**
+     * The resolved variable of a VARIABLE type LHS, if known.
+     */
+    Variable var;
 
     /**
      * @param localVar if true the variable is set directly in the This reference's local scope. If false recursion to
@@ -65,6 +69,14 @@ class LHS implements ParserConstants, java.io.Serializable {
         this.nameSpace = nameSpace;
     }
 
+    /**
+     * Variable LHS Constructor for a variable already located in the namespace, e.g. through a resolved local slot.
+     */
+    LHS(NameSpace nameSpace, Variable var) {
+        this(nameSpace, var.getName(), false);
+        this.var = var;
+    }
+
     /**
      * Static field LHS Constructor. This simply calls Object field constructor with null object.
      */
@@ -115,6 +127,9 @@ class LHS implements ParserConstants, java.io.Serializable {
 
     public Object getValue() throws UtilEvalError {
         if (type == VARIABLE) {
+            if (var != null) {
+                return var.getValue();
+            }
             return nameSpace.getVariable(varName);
         }
 
@@ -163,7 +178,14 @@ class LHS implements ParserConstants, java.io.Serializable {
             throws UtilEvalError {
         if (type == VARIABLE) {
             // Set the variable in namespace according to localVar flag
-            if (localVar) {
+            if (var != null) {
+                try {
+                    var.setValue(val, Variable.ASSIGNMENT);
+                } catch (UtilEvalError e) {
+                    throw new UtilEvalError(
+                            "Variable assignment: " + varName + ": " + e.getMessage());
+                }
+            } else if (localVar) {
                 nameSpace.setLocalVariable(varName, val, strictJava);
             } else {
                 nameSpace.setVariable(varName, val, strictJava);
@@ -0,0 +1,195 @@
+/***********************************************************************************************************************
+ *                                                                                                                     *
+ *  This file is part of the BeanShell Java Scripting distribution.                                                    *
+ *  Documentation and updates may be found at http://www.beanshell.org/                                                *
+ *                                                                                                                     *
+ *  This program is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General  *
+ *  Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option)  *
+ *  any later version.                                                                                                 *
+ *                                                                                                                     *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for    *
+ *  more details.                                                                                                      *
+ *                                                                                                                     *
+ *  You should have received a copy of the GNU Lesser General Public License along with this program.                  *
+ *  If not, see <http://www.gnu.org/licenses/>.                                                                        *
+ *                                                                                                                     *
+ *  Patrick Niemeyer (pat@pat.net)                                                                                     *
+ *  Author of Learning Java, O'Reilly & Associates                                                                     *
+ *  http://www.pat.net/~pat/                                                                                           *
+ *                                                                                                                     *
+ **********************************************************************************************************************/
+package bsh;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The frame layout of a scripted method: a fixed slot index for each formal parameter and each typed local variable
+ * declared directly in the method body. <p>
+ *
+ * The layout is computed once, when the BSHMethodDeclaration is first evaluated, by a lexical addressing pass over
+ * the method body. The pass also tags every simple BSHAmbiguousName in the body that refers to a slotted variable
+ * with its Slot. At invocation time the method namespace mirrors the Variables of slotted names into a frame array
+ * (see NameSpace.setLocalSlots()) so that tagged names are read and assigned by index rather than by a string lookup
+ * through the namespace chain. <p>
+ *
+ * Slots are only an index into the method namespace; the variables still live in its variable table. Names that may
+ * be shadowed inside the method (declared again in a nested block, catch clause or enhanced for loop) are left out
+ * of the layout, as are loosely typed locals, which may live in an enclosing scope. Those, and any name whose slot
+ * is not filled yet, are resolved dynamically as before.
+ */
+final class LocalSlots implements java.io.Serializable {
+
+    private final String[] names;
+
+    private LocalSlots(String[] names) {
+        this.names = names;
+    }
+
+    /**
+     * Compute the layout for the method and tag the names in its body.
+     *
+     * @return the layout or null if no variable of the method can be given a slot
+     */
+    static LocalSlots resolve(BSHMethodDeclaration method) {
+        method.insureNodesParsed();
+        BSHBlock body = method.blockNode;
+        if (body == null) {
+            return null;
+        }
+
+        List slotted = new ArrayList();
+        String[] paramNames = method.paramsNode.getParamNames();
+        for (int i = 0; i < paramNames.length; i++) {
+            addName(slotted, paramNames[i]);
+        }
+
+        Set shadowed = new HashSet();
+        for (int i = 0; i < body.jjtGetNumChildren(); i++) {
+            SimpleNode node = (SimpleNode) body.jjtGetChild(i);
+            if (node instanceof BSHTypedVariableDeclaration) {
+                BSHVariableDeclarator[] decs = ((BSHTypedVariableDeclaration) node).getDeclarators();
+                for (int j = 0; j < decs.length; j++) {
+                    addName(slotted, decs[j].name);
+                }
+            } else {
+                collectDeclarations(node, shadowed);
+            }
+        }
+        slotted.removeAll(shadowed);
+        if (slotted.isEmpty()) {
+            return null;
+        }
+
+        LocalSlots layout = new LocalSlots((String[]) slotted.toArray(new String[slotted.size()]));
+        Slot[] slots = new Slot[layout.names.length];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot(layout, i);
+        }
+        tagNames(body, layout, slots);
+        return layout;
+    }
+
+    private static void addName(List names, String name) {
+        // 'this', 'super' and 'global' always resolve to the magic references
+        if (name.equals("this") || name.equals("super") || name.equals("global")) {
+            return;
+        }
+        if (!names.contains(name)) {
+            names.add(name);
+        }
+    }
+
+    /**
+     * Collect the names of variables declared in nested scopes below the node.
+     */
+    private static void collectDeclarations(SimpleNode node, Set names) {
+        if (!isSameMethod(node)) {
+            return;
+        }
+        if (node instanceof BSHVariableDeclarator) {
+            names.add(((BSHVariableDeclarator) node).name);
+        } else if (node instanceof BSHFormalParameter) {
+            names.add(((BSHFormalParameter) node).name);
+        } else if (node instanceof BSHEnhancedForStatement) {
+            names.add(((BSHEnhancedForStatement) node).varName);
+        }
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            SimpleNode child = (SimpleNode) node.jjtGetChild(i);
+            if (node instanceof BSHAllocationExpression && child instanceof BSHBlock) {
+                continue; // anonymous class body
+            }
+            collectDeclarations(child, names);
+        }
+    }
+
+    private static void tagNames(SimpleNode node, LocalSlots layout, Slot[] slots) {
+        if (!isSameMethod(node)) {
+            return;
+        }
+        if (node instanceof BSHAmbiguousName) {
+            BSHAmbiguousName name = (BSHAmbiguousName) node;
+            int index = layout.indexOf(name.text);
+            if (index >= 0) {
+                name.slot = slots[index];
+            }
+        }
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            SimpleNode child = (SimpleNode) node.jjtGetChild(i);
+            if (node instanceof BSHAllocationExpression && child instanceof BSHBlock) {
+                continue;
+            }
+            tagNames(child, layout, slots);
+        }
+    }
+
+    /**
+     * Nested methods and classes execute in their own namespaces and get their own layout.
+     */
+    private static boolean isSameMethod(SimpleNode node) {
+        return !(node instanceof BSHMethodDeclaration) && !(node instanceof BSHClassDeclaration);
+    }
+
+    int size() {
+        return names.length;
+    }
+
+    /**
+     * @return the slot index of the name or -1 if it has none
+     */
+    int indexOf(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    String getName(int index) {
+        return names[index];
+    }
+
+    @Override
+    public String toString() {
+        return "LocalSlots: " + java.util.Arrays.asList(names);
+    }
+
+    /**
+     * The resolved address of a name: a slot index within a layout. A single immutable object, so that a tagged
+     * parse tree can be shared between threads.
+     */
+    static final class Slot implements java.io.Serializable {
+
+        final LocalSlots layout;
+        final int index;
+
+        Slot(LocalSlots layout, int index) {
+            this.layout = layout;
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/***********************************************************************************************************************
+ *                                                                                                                     *
+ *  This file is part of the BeanShell Java Scripting distribution.                                                    *
+ *  Documentation and updates may be found at http://www.beanshell.org/                                                *
+ *                                                                                                                     *
+ *  This program is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General  *
+ *  Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option)  *
+ *  any later version.                                                                                                 *
+ *                                                                                                                     *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for    *
+ *  more details.                                                                                                      *
+ *                                                                                                                     *
+ *  You should have received a copy of the GNU Lesser General Public License along with this program.                  *
+ *  If not, see <http://www.gnu.org/licenses/>.                                                                        *
+ *                                                                                                                     *
+ *  Patrick Niemeyer (pat@pat.net)                                                                                     *
+ *  Author of Learning Java, O'Reilly & Associates                                                                     *
+ *  http://www.pat.net/~pat/                                                                                           *
+ *                                                                                                                     *
+ **********************************************************************************************************************/
+package bsh;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * The backend used to call the Java methods and constructors and read the Java fields that a script has resolved. <p>
+ *
+ * Resolution of members (finding the most specific method, the field by name, etc.) is always done by Reflect; the
+ * invoker only performs the call on the resolved member. Arguments are passed in their bsh form (Primitive wrapped)
+ * and results are returned in bsh form as well. <p>
+ *
+ * Two backends are available: REFLECTION, which calls through java.lang.reflect and is the default, and the
+ * java.lang.invoke backend returned by methodHandles(), which caches a MethodHandle for each member. The backend is
+ * chosen per class manager, normally when the Interpreter is constructed.
+ *
+ * @see Interpreter#Interpreter(MemberInvoker)
+ */
+public abstract class MemberInvoker {
+
+    /**
+     * Invoke members through java.lang.reflect. This backend holds no state and may be shared freely.
+     */
+    public static final MemberInvoker REFLECTION = new ReflectionInvoker();
+
+    /**
+     * Create a backend that invokes members through java.lang.invoke MethodHandles. Each instance keeps its own cache
+     * of handles, so an instance should be shared by the interpreters that run the same scripts.
+     *
+     * @throws Capabilities.Unavailable if java.lang.invoke is not present
+     */
+    public static MemberInvoker methodHandles()
+            throws Capabilities.Unavailable {
+        if (!Capabilities.classExists("java.lang.invoke.MethodHandle")) {
+            throw new Capabilities.Unavailable("java.lang.invoke unavailable");
+        }
+        try {
+            // loaded by name so that java.lang.invoke is only linked on use
+            Class clas = Class.forName("bsh.MethodHandleInvoker");
+            return (MemberInvoker) clas.newInstance();
+        } catch (Exception e) {
+            throw new Capabilities.Unavailable("MethodHandle invoker unavailable: " + e);
+        }
+    }
+
+    /**
+     * Invoke the method on the object (null for a static method), casting the arguments to the parameter types.
+     *
+     * @param args may be null
+     */
+    abstract Object invokeMethod(Method method, Object object, Object[] args)
+            throws ReflectError, InvocationTargetException;
+
+    /**
+     * Create a new instance with the constructor, casting the arguments to the parameter types.
+     */
+    abstract Object construct(Constructor con, Object[] args)
+            throws ReflectError, InvocationTargetException;
+
+    /**
+     * Get the value of the field of the object (null for a static field).
+     */
+    abstract Object getFieldValue(Field field, Object object)
+            throws ReflectError;
+
+    private static final class ReflectionInvoker extends MemberInvoker {
+
+        Object invokeMethod(Method method, Object object, Object[] args)
+                throws ReflectError, InvocationTargetException {
+            return Reflect.invokeMethod(method, object, args);
+        }
+
+        Object construct(Constructor con, Object[] args)
+                throws ReflectError, InvocationTargetException {
+            return Reflect.newInstance(con, args);
+        }
+
+        Object getFieldValue(Field field, Object object)
+                throws ReflectError {
+            return Reflect.getFieldValue(field, object);
+        }
+
+        public String toString() {
+            return "reflection";
+        }
+    }
+}
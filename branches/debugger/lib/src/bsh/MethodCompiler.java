@@ -0,0 +1,73 @@
+/***********************************************************************************************************************
+ *                                                                                                                     *
+ *  This file is part of the BeanShell Java Scripting distribution.                                                    *
+ *  Documentation and updates may be found at http://www.beanshell.org/                                                *
+ *                                                                                                                     *
+ *  This program is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General  *
+ *  Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option)  *
+ *  any later version.                                                                                                 *
+ *                                                                                                                     *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for    *
+ *  more details.                                                                                                      *
+ *                                                                                                                     *
+ *  You should have received a copy of the GNU Lesser General Public License along with this program.                  *
+ *  If not, see <http://www.gnu.org/licenses/>.                                                                        *
+ *                                                                                                                     *
+ *  Patrick Niemeyer (pat@pat.net)                                                                                     *
+ *  Author of Learning Java, O'Reilly & Associates                                                                     *
+ *  http://www.pat.net/~pat/                                                                                           *
+ *                                                                                                                     *
+ **********************************************************************************************************************/
+package bsh;
+
+/**
+ * The bytecode tier for scripted methods. <p>
+ *
+ * A BshMethod counts its invocations on its declaration; after COMPILE_THRESHOLD calls the declaration asks the
+ * compiler for a CompiledMethod and later calls of any BshMethod made from that declaration dispatch to it. Only
+ * strictly typed methods are compiled: the parameters, the return type and every local must be declared boolean, int,
+ * long or double, and the body may use only its own locals, literals, operators, control flow and calls of the method
+ * itself. Anything else (loose types, other names, objects, other method calls, eval(), try, switch...) leaves the
+ * method interpreted. <p>
+ *
+ * The compiler uses the ASM class generator and is loaded by name like the ClassGenerator; when it is not built into
+ * the distribution methods are simply always interpreted. The threshold is set with the bsh.compileThreshold system
+ * property, a value of zero or less disables the tier.
+ */
+abstract class MethodCompiler {
+
+    static final int COMPILE_THRESHOLD = Integer.getInteger("bsh.compileThreshold", 1000).intValue();
+    private static MethodCompiler compiler;
+    private static boolean unavailable;
+
+    /**
+     * Compile the method body.
+     *
+     * @return the compiled method or null if the method can't be compiled or the compiler is unavailable
+     */
+    static CompiledMethod compile(
+            BSHMethodDeclaration method, Class returnType, Class[] paramTypes) {
+        MethodCompiler compiler = getMethodCompiler();
+        if (compiler == null) {
+            return null;
+        }
+        return compiler.compileMethod(method, returnType, paramTypes);
+    }
+
+    private static synchronized MethodCompiler getMethodCompiler() {
+        if (compiler == null && !unavailable) {
+            try {
+                Class clas = Class.forName("bsh.MethodCompilerImpl");
+                compiler = (MethodCompiler) clas.newInstance();
+            } catch (Exception e) {
+                Interpreter.debug("MethodCompiler unavailable: " + e);
+                unavailable = true;
+            }
+        }
+        return compiler;
+    }
+
+    abstract CompiledMethod compileMethod(
+            BSHMethodDeclaration method, Class returnType, Class[] paramTypes);
+}
@@ -0,0 +1,1083 @@
+/***********************************************************************************************************************
+ *                                                                                                                     *
+ *  This file is part of the BeanShell Java Scripting distribution.                                                    *
+ *  Documentation and updates may be found at http://www.beanshell.org/                                                *
+ *                                                                                                                     *
+ *  This program is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General  *
+ *  Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option)  *
+ *  any later version.                                                                                                 *
+ *                                                                                                                     *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for    *
+ *  more details.                                                                                                      *
+ *                                                                                                                     *
+ *  You should have received a copy of the GNU Lesser General Public License along with this program.                  *
+ *  If not, see <http://www.gnu.org/licenses/>.                                                                        *
+ *                                                                                                                     *
+ *  Patrick Niemeyer (pat@pat.net)                                                                                     *
+ *  Author of Learning Java, O'Reilly & Associates                                                                     *
+ *  http://www.pat.net/~pat/                                                                                           *
+ *                                                                                                                     *
+ **********************************************************************************************************************/
+package bsh;
+
+import bsh.org.objectweb.asm.ClassWriter;
+import bsh.org.objectweb.asm.CodeVisitor;
+import bsh.org.objectweb.asm.Constants;
+import bsh.org.objectweb.asm.Label;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles strictly typed scripted methods to JVM classes with ASM. See MethodCompiler for the accepted subset. <p>
+ *
+ * The generated code must behave exactly like the interpreter, so the typing rules here follow bsh, not Java, where
+ * the two differ: both operands of a binary operator (shifts included) are promoted to a common type, the branches of
+ * a conditional must have the same type, compound assignments may not narrow, and ++ / -- are only allowed on int and
+ * long. A self call is compiled only when its argument types are exactly the parameter types, so that it selects the
+ * same method the namespace would. Whatever does not fit is refused and the method stays interpreted.
+ */
+class MethodCompilerImpl extends MethodCompiler implements Constants {
+
+    private static int classCount;
+
+    CompiledMethod compileMethod(
+            BSHMethodDeclaration method, Class returnType, Class[] paramTypes) {
+        try {
+            Compilation compilation = new Compilation(method, returnType, paramTypes);
+            byte[] code = compilation.generate();
+            Class clas = new Loader().define(compilation.className.replace('/', '.'), code);
+            CompiledMethod compiled = (CompiledMethod) clas.newInstance();
+            compiled.selfCalls = compilation.selfCalls;
+            Interpreter.debug("compiled method: " + method.name);
+            return compiled;
+        } catch (NotCompilable e) {
+            Interpreter.debug("not compiling method: " + method.name + ": " + e.getMessage());
+            return null;
+        } catch (Exception e) {
+            throw new InterpreterError("unable to load compiled method: " + method.name + ": " + e);
+        }
+    }
+
+    private static synchronized int nextClassNumber() {
+        return ++classCount;
+    }
+
+    /**
+     * The method body uses something outside of the compiled subset.
+     */
+    private static final class NotCompilable extends Exception {
+
+        NotCompilable(String reason) {
+            super(reason);
+        }
+    }
+
+    /**
+     * Each compiled method gets its own loader so that the class can be collected with the method.
+     */
+    private static final class Loader extends ClassLoader {
+
+        Loader() {
+            super(MethodCompilerImpl.class.getClassLoader());
+        }
+
+        Class define(String name, byte[] code) {
+            return defineClass(name, code, 0, code.length);
+        }
+    }
+
+    private static final class Local {
+
+        final int index;
+        final Class type;
+        final boolean isFinal;
+
+        Local(int index, Class type, boolean isFinal) {
+            this.index = index;
+            this.type = type;
+            this.isFinal = isFinal;
+        }
+    }
+
+    /**
+     * Targets of break and continue in the innermost enclosing loop.
+     */
+    private static final class Loop {
+
+        final Label breakLabel;
+        final Label continueLabel;
+        boolean broken;
+
+        Loop(Label breakLabel, Label continueLabel) {
+            this.breakLabel = breakLabel;
+            this.continueLabel = continueLabel;
+        }
+    }
+
+    private static final class Compilation {
+
+        final BSHMethodDeclaration method;
+        final Class returnType;
+        final Class[] paramTypes;
+        final String className;
+        final String descriptor;
+        final List scopes = new ArrayList();
+        final List loops = new ArrayList();
+        CodeVisitor cv;
+        int nextLocal;
+        boolean selfCalls;
+
+        Compilation(BSHMethodDeclaration method, Class returnType, Class[] paramTypes)
+                throws NotCompilable {
+            this.method = method;
+            this.returnType = returnType;
+            this.paramTypes = paramTypes;
+            if (returnType != Void.TYPE && !isSupported(returnType)) {
+                throw new NotCompilable("return type");
+            }
+            StringBuffer desc = new StringBuffer("(");
+            for (int i = 0; i < paramTypes.length; i++) {
+                if (!isSupported(paramTypes[i])) {
+                    throw new NotCompilable("parameter type");
+                }
+                desc.append(descriptor(paramTypes[i]));
+            }
+            desc.append(')').append(returnType == Void.TYPE ? "V" : descriptor(returnType));
+            this.descriptor = desc.toString();
+            this.className = "bsh/compiled/" + method.name + "$" + nextClassNumber();
+        }
+
+        byte[] generate() throws NotCompilable {
+            ClassWriter cw = new ClassWriter(true);
+            cw.visit(ACC_PUBLIC | ACC_FINAL | ACC_SUPER, className, "bsh/CompiledMethod", null,
+                    method.getSourceFile());
+
+            CodeVisitor init = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null);
+            init.visitVarInsn(ALOAD, 0);
+            init.visitMethodInsn(INVOKESPECIAL, "bsh/CompiledMethod", "<init>", "()V");
+            init.visitInsn(RETURN);
+            init.visitMaxs(0, 0);
+
+            generateBody(cw);
+            generateBridge(cw);
+            cw.visitEnd();
+            return cw.toByteArray();
+        }
+
+        /**
+         * The body as a static method on primitives, named after the scripted method for readable stack traces.
+         */
+        private void generateBody(ClassWriter cw) throws NotCompilable {
+            cv = cw.visitMethod(ACC_PUBLIC | ACC_STATIC, method.name, descriptor, null);
+            method.insureNodesParsed();
+            String[] paramNames = method.paramsNode.getParamNames();
+            Map params = new HashMap();
+            scopes.add(params);
+            for (int i = 0; i < paramNames.length; i++) {
+                params.put(paramNames[i], new Local(nextLocal, paramTypes[i], false));
+                nextLocal += size(paramTypes[i]);
+            }
+
+            if (method.blockNode == null) {
+                throw new NotCompilable("no body");
+            }
+            if (statement(method.blockNode)) {
+                // falls off the end: the interpreter returns the last value, which only fits a void method
+                if (returnType != Void.TYPE) {
+                    throw new NotCompilable("missing return");
+                }
+                cv.visitInsn(RETURN);
+            }
+            cv.visitMaxs(0, 0);
+        }
+
+        /**
+         * public Object invoke( Object [] args ) unwrapping the Primitive arguments and wrapping the result.
+         */
+        private void generateBridge(ClassWriter cw) {
+            CodeVisitor bridge = cw.visitMethod(ACC_PUBLIC, "invoke", "([Ljava/lang/Object;)Ljava/lang/Object;", null);
+            for (int i = 0; i < paramTypes.length; i++) {
+                String wrapper = wrapperName(paramTypes[i]);
+                bridge.visitVarInsn(ALOAD, 1);
+                pushInt(bridge, i);
+                bridge.visitInsn(AALOAD);
+                bridge.visitTypeInsn(CHECKCAST, "bsh/Primitive");
+                bridge.visitMethodInsn(INVOKEVIRTUAL, "bsh/Primitive", "getValue", "()Ljava/lang/Object;");
+                bridge.visitTypeInsn(CHECKCAST, wrapper);
+                bridge.visitMethodInsn(INVOKEVIRTUAL, wrapper, paramTypes[i].getName() + "Value",
+                        "()" + descriptor(paramTypes[i]));
+            }
+            bridge.visitMethodInsn(INVOKESTATIC, className, method.name, descriptor);
+            if (returnType == Void.TYPE) {
+                bridge.visitFieldInsn(GETSTATIC, "bsh/Primitive", "VOID", "Lbsh/Primitive;");
+            } else if (returnType == Double.TYPE) {
+                // ( value ) -> ( primitive, primitive, value ) -> new Primitive( value )
+                bridge.visitTypeInsn(NEW, "bsh/Primitive");
+                bridge.visitInsn(DUP_X2);
+                bridge.visitInsn(DUP_X2);
+                bridge.visitInsn(POP);
+                bridge.visitMethodInsn(INVOKESPECIAL, "bsh/Primitive", "<init>", "(D)V");
+            } else {
+                bridge.visitMethodInsn(INVOKESTATIC, "bsh/Primitive", "valueOf",
+                        "(" + descriptor(returnType) + ")Lbsh/Primitive;");
+            }
+            bridge.visitInsn(ARETURN);
+            bridge.visitMaxs(0, 0);
+        }
+
+        // Statements
+
+        /**
+         * @return true if the statement can complete normally
+         */
+        private boolean statement(SimpleNode node) throws NotCompilable {
+            Label line = new Label();
+            cv.visitLabel(line);
+            cv.visitLineNumber(node.getLineNumber(), line);
+
+            if (node instanceof BSHBlock) {
+                return block((BSHBlock) node);
+            } else if (node instanceof BSHTypedVariableDeclaration) {
+                declaration((BSHTypedVariableDeclaration) node);
+                return true;
+            } else if (node instanceof BSHIfStatement) {
+                return ifStatement(node);
+            } else if (node instanceof BSHWhileStatement) {
+                return whileStatement((BSHWhileStatement) node);
+            } else if (node instanceof BSHForStatement) {
+                return forStatement((BSHForStatement) node);
+            } else if (node instanceof BSHReturnStatement) {
+                returnStatement((BSHReturnStatement) node);
+                return false;
+            } else {
+                expressionStatement(node);
+                return true;
+            }
+        }
+
+        private boolean block(BSHBlock block) throws NotCompilable {
+            if (block.isSynchronized) {
+                throw new NotCompilable("synchronized block");
+            }
+            scopes.add(new HashMap());
+            boolean completes = true;
+            for (int i = 0; i < block.jjtGetNumChildren(); i++) {
+                if (!completes) {
+                    throw new NotCompilable("unreachable statement");
+                }
+                completes = statement((SimpleNode) block.jjtGetChild(i));
+            }
+            scopes.remove(scopes.size() - 1);
+            return completes;
+        }
+
+        private void declaration(BSHTypedVariableDeclaration node) throws NotCompilable {
+            Class type = primitiveType((BSHType) node.jjtGetChild(0));
+            boolean isFinal = node.modifiers != null && node.modifiers.hasModifier("final");
+            for (int i = 1; i < node.jjtGetNumChildren(); i++) {
+                BSHVariableDeclarator dec = (BSHVariableDeclarator) node.jjtGetChild(i);
+                if (lookup(dec.name) != null) {
+                    throw new NotCompilable("redeclared local: " + dec.name);
+                }
+                if (dec.jjtGetNumChildren() > 0) {
+                    SimpleNode initializer = (SimpleNode) dec.jjtGetChild(0);
+                    Class valueType = typeOf(initializer);
+                    checkAssignable(type, valueType);
+                    expression(initializer);
+                    convert(valueType, type);
+                } else {
+                    // the interpreter initializes declared primitives to their default value
+                    pushDefault(type);
+                }
+                Local local = new Local(nextLocal, type, isFinal);
+                nextLocal += size(type);
+                ((Map) scopes.get(scopes.size() - 1)).put(dec.name, local);
+                cv.visitVarInsn(opcode(ISTORE, type), local.index);
+            }
+        }
+
+        private boolean ifStatement(SimpleNode node) throws NotCompilable {
+            Label elseLabel = new Label();
+            condition((SimpleNode) node.jjtGetChild(0), elseLabel);
+            boolean completes = statement((SimpleNode) node.jjtGetChild(1));
+            if (node.jjtGetNumChildren() < 3) {
+                cv.visitLabel(elseLabel);
+                return true;
+            }
+            Label end = new Label();
+            if (completes) {
+                cv.visitJumpInsn(GOTO, end);
+            }
+            cv.visitLabel(elseLabel);
+            completes |= statement((SimpleNode) node.jjtGetChild(2));
+            cv.visitLabel(end);
+            return completes;
+        }
+
+        private boolean whileStatement(BSHWhileStatement node) throws NotCompilable {
+            SimpleNode condition, body = null;
+            if (node.isDoStatement) {
+                condition = (SimpleNode) node.jjtGetChild(1);
+                body = (SimpleNode) node.jjtGetChild(0);
+            } else {
+                condition = (SimpleNode) node.jjtGetChild(0);
+                if (node.jjtGetNumChildren() > 1) {
+                    body = (SimpleNode) node.jjtGetChild(1);
+                }
+            }
+
+            Label top = new Label();
+            Label next = new Label();
+            Loop loop = new Loop(new Label(), node.isDoStatement ? next : top);
+            cv.visitLabel(top);
+            if (!node.isDoStatement) {
+                condition(condition, loop.breakLabel);
+            }
+            loopBody(body, loop);
+            cv.visitLabel(next);
+            if (node.isDoStatement) {
+                checkBoolean(typeOf(condition));
+                expression(condition);
+                cv.visitJumpInsn(IFNE, top);
+            } else {
+                cv.visitJumpInsn(GOTO, top);
+            }
+            cv.visitLabel(loop.breakLabel);
+            return loop.broken || !isTrue(condition);
+        }
+
+        private boolean forStatement(BSHForStatement node) throws NotCompilable {
+            int i = 0;
+            SimpleNode init = node.hasForInit ? (SimpleNode) node.jjtGetChild(i++) : null;
+            SimpleNode condition = node.hasExpression ? (SimpleNode) node.jjtGetChild(i++) : null;
+            SimpleNode update = node.hasForUpdate ? (SimpleNode) node.jjtGetChild(i++) : null;
+            SimpleNode body = i < node.jjtGetNumChildren() ? (SimpleNode) node.jjtGetChild(i) : null;
+
+            scopes.add(new HashMap());
+            if (init instanceof BSHTypedVariableDeclaration) {
+                declaration((BSHTypedVariableDeclaration) init);
+            } else if (init != null) {
+                expressionList(init);
+            }
+
+            Label top = new Label();
+            Loop loop = new Loop(new Label(), new Label());
+            cv.visitLabel(top);
+            if (condition != null) {
+                condition(condition, loop.breakLabel);
+            }
+            loopBody(body, loop);
+            cv.visitLabel(loop.continueLabel);
+            if (update != null) {
+                expressionList(update);
+            }
+            cv.visitJumpInsn(GOTO, top);
+            cv.visitLabel(loop.breakLabel);
+            scopes.remove(scopes.size() - 1);
+            return loop.broken || !(condition == null || isTrue(condition));
+        }
+
+        private void loopBody(SimpleNode body, Loop loop) throws NotCompilable {
+            loops.add(loop);
+            if (body != null) {
+                statement(body);
+            }
+            loops.remove(loops.size() - 1);
+        }
+
+        private void returnStatement(BSHReturnStatement node) throws NotCompilable {
+            if (node.kind == ParserConstants.BREAK || node.kind == ParserConstants.CONTINUE) {
+                if (loops.isEmpty()) {
+                    throw new NotCompilable("break or continue outside of a loop");
+                }
+                Loop loop = (Loop) loops.get(loops.size() - 1);
+                if (node.kind == ParserConstants.BREAK) {
+                    loop.broken = true;
+                    cv.visitJumpInsn(GOTO, loop.breakLabel);
+                } else {
+                    cv.visitJumpInsn(GOTO, loop.continueLabel);
+                }
+                return;
+            }
+
+            if (node.jjtGetNumChildren() == 0) {
+                if (returnType != Void.TYPE) {
+                    throw new NotCompilable("return without value");
+                }
+                cv.visitInsn(RETURN);
+                return;
+            }
+            if (returnType == Void.TYPE) {
+                throw new NotCompilable("return value from void method");
+            }
+            SimpleNode value = (SimpleNode) node.jjtGetChild(0);
+            Class type = typeOf(value);
+            checkAssignable(returnType, type);
+            expression(value);
+            convert(type, returnType);
+            cv.visitInsn(opcode(IRETURN, returnType));
+        }
+
+        private void expressionList(SimpleNode node) throws NotCompilable {
+            if (!(node instanceof BSHStatementExpressionList)) {
+                throw new NotCompilable("for init");
+            }
+            for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+                expressionStatement((SimpleNode) node.jjtGetChild(i));
+            }
+        }
+
+        /**
+         * An assignment, increment, decrement or self call with the value discarded.
+         */
+        private void expressionStatement(SimpleNode node) throws NotCompilable {
+            if (node instanceof BSHAssignment) {
+                assignment((BSHAssignment) node, false);
+            } else if (node instanceof BSHUnaryExpression
+                    && (((BSHUnaryExpression) node).kind == ParserConstants.INCR
+                    || ((BSHUnaryExpression) node).kind == ParserConstants.DECR)) {
+                increment((BSHUnaryExpression) node, false);
+            } else if (node instanceof BSHPrimaryExpression && node.jjtGetNumChildren() == 1
+                    && node.jjtGetChild(0) instanceof BSHMethodInvocation) {
+                Class type = typeOf(node);
+                expression(node);
+                if (type != Void.TYPE) {
+                    cv.visitInsn(size(type) == 2 ? POP2 : POP);
+                }
+            } else {
+                throw new NotCompilable("statement: " + node);
+            }
+        }
+
+        // Expressions
+
+        /**
+         * Compile a boolean expression and jump to the label if it is false.
+         */
+        private void condition(SimpleNode node, Label ifFalse) throws NotCompilable {
+            checkBoolean(typeOf(node));
+            expression(node);
+            cv.visitJumpInsn(IFEQ, ifFalse);
+        }
+
+        /**
+         * The static type of an expression under the bsh rules, without generating code.
+         */
+        private Class typeOf(SimpleNode node) throws NotCompilable {
+            if (node instanceof BSHLiteral) {
+                return literalType((BSHLiteral) node);
+            }
+            if (node instanceof BSHPrimaryExpression) {
+                if (node.jjtGetNumChildren() != 1) {
+                    throw new NotCompilable("primary suffix");
+                }
+                return typeOf((SimpleNode) node.jjtGetChild(0));
+            }
+            if (node instanceof BSHAmbiguousName) {
+                return local((BSHAmbiguousName) node).type;
+            }
+            if (node instanceof BSHMethodInvocation) {
+                return selfCallType((BSHMethodInvocation) node);
+            }
+            if (node instanceof BSHBinaryExpression) {
+                return binaryType((BSHBinaryExpression) node);
+            }
+            if (node instanceof BSHUnaryExpression) {
+                BSHUnaryExpression unary = (BSHUnaryExpression) node;
+                Class type = typeOf((SimpleNode) node.jjtGetChild(0));
+                switch (unary.kind) {
+                    case ParserConstants.BANG:
+                        checkBoolean(type);
+                        return type;
+                    case ParserConstants.TILDE:
+                    case ParserConstants.INCR:
+                    case ParserConstants.DECR:
+                        if (type != Integer.TYPE && type != Long.TYPE) {
+                            throw new NotCompilable("unary operator type");
+                        }
+                        return type;
+                    case ParserConstants.PLUS:
+                    case ParserConstants.MINUS:
+                        checkNumeric(type);
+                        return type;
+                    default:
+                        throw new NotCompilable("unary operator");
+                }
+            }
+            if (node instanceof BSHCastExpression) {
+                Class toType = primitiveType((BSHType) node.jjtGetChild(0));
+                Class fromType = typeOf((SimpleNode) node.jjtGetChild(1));
+                if ((toType == Boolean.TYPE) != (fromType == Boolean.TYPE)) {
+                    throw new NotCompilable("boolean cast");
+                }
+                return toType;
+            }
+            if (node instanceof BSHTernaryExpression) {
+                checkBoolean(typeOf((SimpleNode) node.jjtGetChild(0)));
+                Class type = typeOf((SimpleNode) node.jjtGetChild(1));
+                // the interpreter does not promote the branches to a common type
+                if (typeOf((SimpleNode) node.jjtGetChild(2)) != type) {
+                    throw new NotCompilable("conditional branch types");
+                }
+                return type;
+            }
+            if (node instanceof BSHAssignment) {
+                return assignmentType((BSHAssignment) node);
+            }
+            throw new NotCompilable("expression: " + node);
+        }
+
+        private Class literalType(BSHLiteral node) throws NotCompilable {
+            Object value = node.value;
+            if (value instanceof Primitive && value != Primitive.NULL && value != Primitive.VOID) {
+                Class type = ((Primitive) value).getType();
+                if (isSupported(type)) {
+                    return type;
+                }
+            }
+            throw new NotCompilable("literal: " + value);
+        }
+
+        private Class binaryType(BSHBinaryExpression node) throws NotCompilable {
+            Class lhs = typeOf((SimpleNode) node.jjtGetChild(0));
+            Class rhs = typeOf((SimpleNode) node.jjtGetChild(1));
+            switch (node.kind) {
+                case ParserConstants.BOOL_AND:
+                case ParserConstants.BOOL_ANDX:
+                case ParserConstants.BOOL_OR:
+                case ParserConstants.BOOL_ORX:
+                    checkBoolean(lhs);
+                    checkBoolean(rhs);
+                    return Boolean.TYPE;
+                case ParserConstants.EQ:
+                case ParserConstants.NE:
+                    if (lhs == Boolean.TYPE && rhs == Boolean.TYPE) {
+                        return Boolean.TYPE;
+                    }
+                    promote(lhs, rhs);
+                    return Boolean.TYPE;
+                case ParserConstants.LT:
+                case ParserConstants.LTX:
+                case ParserConstants.GT:
+                case ParserConstants.GTX:
+                case ParserConstants.LE:
+                case ParserConstants.LEX:
+                case ParserConstants.GE:
+                case ParserConstants.GEX:
+                    promote(lhs, rhs);
+                    return Boolean.TYPE;
+                default:
+                    return arithmeticType(node.kind, lhs, rhs);
+            }
+        }
+
+        private Class arithmeticType(int kind, Class lhs, Class rhs) throws NotCompilable {
+            Class type = promote(lhs, rhs);
+            switch (kind) {
+                case ParserConstants.PLUS:
+                case ParserConstants.MINUS:
+                case ParserConstants.STAR:
+                case ParserConstants.SLASH:
+                case ParserConstants.MOD:
+                    return type;
+                case ParserConstants.LSHIFT:
+                case ParserConstants.LSHIFTX:
+                case ParserConstants.RSIGNEDSHIFT:
+                case ParserConstants.RSIGNEDSHIFTX:
+                case ParserConstants.RUNSIGNEDSHIFT:
+                case ParserConstants.RUNSIGNEDSHIFTX:
+                case ParserConstants.BIT_AND:
+                case ParserConstants.BIT_ANDX:
+                case ParserConstants.BIT_OR:
+                case ParserConstants.BIT_ORX:
+                case ParserConstants.XOR:
+                    if (type == Double.TYPE) {
+                        throw new NotCompilable("integer operator on double");
+                    }
+                    return type;
+                default:
+                    throw new NotCompilable("binary operator");
+            }
+        }
+
+        private Class assignmentType(BSHAssignment node) throws NotCompilable {
+            Local local = assignedLocal((SimpleNode) node.jjtGetChild(0));
+            Class valueType = typeOf((SimpleNode) node.jjtGetChild(1));
+            if (node.operator == ParserConstants.ASSIGN) {
+                checkAssignable(local.type, valueType);
+            } else {
+                checkAssignable(local.type, arithmeticType(binaryKind(node.operator), local.type, valueType));
+            }
+            return local.type;
+        }
+
+        private Class selfCallType(BSHMethodInvocation node) throws NotCompilable {
+            if (!node.getNameNode().text.equals(method.name)) {
+                throw new NotCompilable("method call: " + node.getNameNode().text);
+            }
+            BSHArguments args = node.getArgsNode();
+            if (args.jjtGetNumChildren() != paramTypes.length) {
+                throw new NotCompilable("self call arguments");
+            }
+            for (int i = 0; i < paramTypes.length; i++) {
+                if (typeOf((SimpleNode) args.jjtGetChild(i)) != paramTypes[i]) {
+                    throw new NotCompilable("self call argument types");
+                }
+            }
+            return returnType;
+        }
+
+        /**
+         * Generate the code of an expression whose type has been checked with typeOf(), leaving its value on the
+         * stack.
+         */
+        private void expression(SimpleNode node) throws NotCompilable {
+            if (node instanceof BSHLiteral) {
+                literal(((Primitive) ((BSHLiteral) node).value).getValue());
+            } else if (node instanceof BSHPrimaryExpression) {
+                expression((SimpleNode) node.jjtGetChild(0));
+            } else if (node instanceof BSHAmbiguousName) {
+                Local local = local((BSHAmbiguousName) node);
+                cv.visitVarInsn(opcode(ILOAD, local.type), local.index);
+            } else if (node instanceof BSHMethodInvocation) {
+                BSHArguments args = ((BSHMethodInvocation) node).getArgsNode();
+                for (int i = 0; i < args.jjtGetNumChildren(); i++) {
+                    expression((SimpleNode) args.jjtGetChild(i));
+                }
+                cv.visitMethodInsn(INVOKESTATIC, className, method.name, descriptor);
+                selfCalls = true;
+            } else if (node instanceof BSHBinaryExpression) {
+                binary((BSHBinaryExpression) node);
+            } else if (node instanceof BSHUnaryExpression) {
+                unary((BSHUnaryExpression) node);
+            } else if (node instanceof BSHCastExpression) {
+                SimpleNode value = (SimpleNode) node.jjtGetChild(1);
+                Class fromType = typeOf(value);
+                expression(value);
+                convert(fromType, typeOf(node));
+            } else if (node instanceof BSHTernaryExpression) {
+                Label elseLabel = new Label();
+                Label end = new Label();
+                condition((SimpleNode) node.jjtGetChild(0), elseLabel);
+                expression((SimpleNode) node.jjtGetChild(1));
+                cv.visitJumpInsn(GOTO, end);
+                cv.visitLabel(elseLabel);
+                expression((SimpleNode) node.jjtGetChild(2));
+                cv.visitLabel(end);
+            } else if (node instanceof BSHAssignment) {
+                assignment((BSHAssignment) node, true);
+            } else {
+                throw new NotCompilable("expression: " + node);
+            }
+        }
+
+        private void binary(BSHBinaryExpression node) throws NotCompilable {
+            SimpleNode lhsNode = (SimpleNode) node.jjtGetChild(0);
+            SimpleNode rhsNode = (SimpleNode) node.jjtGetChild(1);
+            Class lhs = typeOf(lhsNode);
+            Class rhs = typeOf(rhsNode);
+            int kind = node.kind;
+
+            if (kind == ParserConstants.BOOL_AND || kind == ParserConstants.BOOL_ANDX
+                    || kind == ParserConstants.BOOL_OR || kind == ParserConstants.BOOL_ORX) {
+                boolean and = kind == ParserConstants.BOOL_AND || kind == ParserConstants.BOOL_ANDX;
+                Label shortCircuit = new Label();
+                Label end = new Label();
+                expression(lhsNode);
+                cv.visitJumpInsn(and ? IFEQ : IFNE, shortCircuit);
+                expression(rhsNode);
+                cv.visitJumpInsn(GOTO, end);
+                cv.visitLabel(shortCircuit);
+                cv.visitInsn(and ? ICONST_0 : ICONST_1);
+                cv.visitLabel(end);
+                return;
+            }
+
+            Class type = lhs == Boolean.TYPE ? Boolean.TYPE : promote(lhs, rhs);
+            expression(lhsNode);
+            convert(lhs, type);
+            expression(rhsNode);
+            convert(rhs, type);
+
+            int jump = comparisonJump(kind);
+            if (jump != 0) {
+                compare(type, jump);
+            } else {
+                operator(type, kind);
+            }
+        }
+
+        /**
+         * Apply an arithmetic, bitwise or shift operator to two values of the same type on the stack.
+         */
+        private void operator(Class type, int kind) throws NotCompilable {
+            int opcode;
+            switch (kind) {
+                case ParserConstants.PLUS: opcode = IADD; break;
+                case ParserConstants.MINUS: opcode = ISUB; break;
+                case ParserConstants.STAR: opcode = IMUL; break;
+                case ParserConstants.SLASH: opcode = IDIV; break;
+                case ParserConstants.MOD: opcode = IREM; break;
+                case ParserConstants.BIT_AND:
+                case ParserConstants.BIT_ANDX: opcode = IAND; break;
+                case ParserConstants.BIT_OR:
+                case ParserConstants.BIT_ORX: opcode = IOR; break;
+                case ParserConstants.XOR: opcode = IXOR; break;
+                case ParserConstants.LSHIFT:
+                case ParserConstants.LSHIFTX: opcode = ISHL; break;
+                case ParserConstants.RSIGNEDSHIFT:
+                case ParserConstants.RSIGNEDSHIFTX: opcode = ISHR; break;
+                case ParserConstants.RUNSIGNEDSHIFT:
+                case ParserConstants.RUNSIGNEDSHIFTX: opcode = IUSHR; break;
+                default:
+                    throw new NotCompilable("binary operator");
+            }
+            if (type == Long.TYPE && (opcode == ISHL || opcode == ISHR || opcode == IUSHR)) {
+                // the shift distance of a long shift is an int; the low six bits are kept either way
+                cv.visitInsn(L2I);
+            }
+            cv.visitInsn(opcode(opcode, type));
+        }
+
+        /**
+         * Compare two values of the same type on the stack, leaving a boolean.
+         *
+         * @param jump the int comparison jump taken when the comparison is true, e.g. IF_ICMPLT
+         */
+        private void compare(Class type, int jump) {
+            if (type == Long.TYPE) {
+                cv.visitInsn(LCMP);
+                jump = jump - IF_ICMPEQ + IFEQ;
+            } else if (type == Double.TYPE) {
+                // NaN compares false: make it the result that fails < and <= (DCMPG) or > and >= (DCMPL)
+                cv.visitInsn(jump == IF_ICMPLT || jump == IF_ICMPLE ? DCMPG : DCMPL);
+                jump = jump - IF_ICMPEQ + IFEQ;
+            }
+            Label isTrue = new Label();
+            Label end = new Label();
+            cv.visitJumpInsn(jump, isTrue);
+            cv.visitInsn(ICONST_0);
+            cv.visitJumpInsn(GOTO, end);
+            cv.visitLabel(isTrue);
+            cv.visitInsn(ICONST_1);
+            cv.visitLabel(end);
+        }
+
+        private void unary(BSHUnaryExpression node) throws NotCompilable {
+            if (node.kind == ParserConstants.INCR || node.kind == ParserConstants.DECR) {
+                increment(node, true);
+                return;
+            }
+            SimpleNode operand = (SimpleNode) node.jjtGetChild(0);
+            Class type = typeOf(operand);
+            expression(operand);
+            switch (node.kind) {
+                case ParserConstants.BANG:
+                    cv.visitInsn(ICONST_1);
+                    cv.visitInsn(IXOR);
+                    break;
+                case ParserConstants.TILDE:
+                    if (type == Long.TYPE) {
+                        cv.visitLdcInsn(Long.valueOf(-1));
+                    } else {
+                        cv.visitInsn(ICONST_M1);
+                    }
+                    cv.visitInsn(opcode(IXOR, type));
+                    break;
+                case ParserConstants.MINUS:
+                    cv.visitInsn(opcode(INEG, type));
+                    break;
+                default: // PLUS
+                    break;
+            }
+        }
+
+        /**
+         * ++ or -- on an int or long local, leaving the old (postfix) or new value if it is used.
+         */
+        private void increment(BSHUnaryExpression node, boolean valueUsed) throws NotCompilable {
+            typeOf(node);
+            Local local = assignedLocal((SimpleNode) node.jjtGetChild(0));
+            int delta = node.kind == ParserConstants.INCR ? 1 : -1;
+            if (local.type == Integer.TYPE) {
+                if (valueUsed && node.postfix) {
+                    cv.visitVarInsn(ILOAD, local.index);
+                }
+                cv.visitIincInsn(local.index, delta);
+                if (valueUsed && !node.postfix) {
+                    cv.visitVarInsn(ILOAD, local.index);
+                }
+                return;
+            }
+            cv.visitVarInsn(LLOAD, local.index);
+            if (valueUsed && node.postfix) {
+                cv.visitInsn(DUP2);
+            }
+            cv.visitInsn(LCONST_1);
+            cv.visitInsn(delta > 0 ? LADD : LSUB);
+            if (valueUsed && !node.postfix) {
+                cv.visitInsn(DUP2);
+            }
+            cv.visitVarInsn(LSTORE, local.index);
+        }
+
+        private void assignment(BSHAssignment node, boolean valueUsed) throws NotCompilable {
+            typeOf(node);
+            Local local = assignedLocal((SimpleNode) node.jjtGetChild(0));
+            SimpleNode valueNode = (SimpleNode) node.jjtGetChild(1);
+            Class valueType = typeOf(valueNode);
+            if (valueUsed && valueType != local.type) {
+                // the interpreter yields the value before conversion
+                throw new NotCompilable("converting assignment used as a value");
+            }
+            if (node.operator == ParserConstants.ASSIGN) {
+                expression(valueNode);
+                convert(valueType, local.type);
+            } else {
+                int kind = binaryKind(node.operator);
+                Class type = arithmeticType(kind, local.type, valueType);
+                cv.visitVarInsn(opcode(ILOAD, local.type), local.index);
+                convert(local.type, type);
+                expression(valueNode);
+                convert(valueType, type);
+                operator(type, kind);
+            }
+            if (valueUsed) {
+                cv.visitInsn(size(local.type) == 2 ? DUP2 : DUP);
+            }
+            cv.visitVarInsn(opcode(ISTORE, local.type), local.index);
+        }
+
+        private void literal(Object value) {
+            if (value instanceof Boolean) {
+                cv.visitInsn(((Boolean) value).booleanValue() ? ICONST_1 : ICONST_0);
+            } else if (value instanceof Integer) {
+                pushInt(cv, ((Integer) value).intValue());
+            } else if (value instanceof Long) {
+                long l = ((Long) value).longValue();
+                if (l == 0 || l == 1) {
+                    cv.visitInsn(l == 0 ? LCONST_0 : LCONST_1);
+                } else {
+                    cv.visitLdcInsn(value);
+                }
+            } else {
+                cv.visitLdcInsn(value);
+            }
+        }
+
+        private void pushDefault(Class type) {
+            if (type == Long.TYPE) {
+                cv.visitInsn(LCONST_0);
+            } else if (type == Double.TYPE) {
+                cv.visitInsn(DCONST_0);
+            } else {
+                cv.visitInsn(ICONST_0);
+            }
+        }
+
+        // Names and types
+
+        private Local lookup(String name) {
+            for (int i = scopes.size() - 1; i >= 0; i--) {
+                Local local = (Local) ((Map) scopes.get(i)).get(name);
+                if (local != null) {
+                    return local;
+                }
+            }
+            return null;
+        }
+
+        private Local local(BSHAmbiguousName node) throws NotCompilable {
+            Local local = lookup(node.text);
+            if (local == null) {
+                throw new NotCompilable("not a local: " + node.text);
+            }
+            return local;
+        }
+
+        /**
+         * The local named by the left hand side of an assignment or increment.
+         */
+        private Local assignedLocal(SimpleNode node) throws NotCompilable {
+            if (node instanceof BSHPrimaryExpression && node.jjtGetNumChildren() == 1
+                    && node.jjtGetChild(0) instanceof BSHAmbiguousName) {
+                Local local = local((BSHAmbiguousName) node.jjtGetChild(0));
+                if (local.isFinal) {
+                    throw new NotCompilable("assignment to final local");
+                }
+                return local;
+            }
+            throw new NotCompilable("assignment target");
+        }
+
+        private Class primitiveType(BSHType node) throws NotCompilable {
+            if (node.getArrayDims() == 0 && node.getTypeNode() instanceof BSHPrimitiveType) {
+                Class type = ((BSHPrimitiveType) node.getTypeNode()).getType();
+                if (isSupported(type)) {
+                    return type;
+                }
+            }
+            throw new NotCompilable("type");
+        }
+
+        private static Class promote(Class lhs, Class rhs) throws NotCompilable {
+            checkNumeric(lhs);
+            checkNumeric(rhs);
+            if (lhs == Double.TYPE || rhs == Double.TYPE) {
+                return Double.TYPE;
+            }
+            if (lhs == Long.TYPE || rhs == Long.TYPE) {
+                return Long.TYPE;
+            }
+            return Integer.TYPE;
+        }
+
+        /**
+         * Only identity and the widening int to long, int to double and long to double conversions are allowed.
+         */
+        private static void checkAssignable(Class to, Class from) throws NotCompilable {
+            if (to == from || (to == Long.TYPE && from == Integer.TYPE)
+                    || (to == Double.TYPE && (from == Integer.TYPE || from == Long.TYPE))) {
+                return;
+            }
+            throw new NotCompilable("assignment of " + from + " to " + to);
+        }
+
+        private void convert(Class from, Class to) {
+            if (from == to) {
+                return;
+            }
+            if (from == Integer.TYPE) {
+                cv.visitInsn(to == Long.TYPE ? I2L : I2D);
+            } else if (from == Long.TYPE) {
+                cv.visitInsn(to == Integer.TYPE ? L2I : L2D);
+            } else {
+                cv.visitInsn(to == Integer.TYPE ? D2I : D2L);
+            }
+        }
+
+        private static void checkBoolean(Class type) throws NotCompilable {
+            if (type != Boolean.TYPE) {
+                throw new NotCompilable("boolean expected");
+            }
+        }
+
+        private static void checkNumeric(Class type) throws NotCompilable {
+            if (type != Integer.TYPE && type != Long.TYPE && type != Double.TYPE) {
+                throw new NotCompilable("numeric type expected");
+            }
+        }
+
+        private static boolean isTrue(SimpleNode node) {
+            while (node instanceof BSHPrimaryExpression && node.jjtGetNumChildren() == 1) {
+                node = (SimpleNode) node.jjtGetChild(0);
+            }
+            return node instanceof BSHLiteral && ((BSHLiteral) node).value == Primitive.TRUE;
+        }
+
+        private static int binaryKind(int assignOperator) throws NotCompilable {
+            switch (assignOperator) {
+                case ParserConstants.PLUSASSIGN: return ParserConstants.PLUS;
+                case ParserConstants.MINUSASSIGN: return ParserConstants.MINUS;
+                case ParserConstants.STARASSIGN: return ParserConstants.STAR;
+                case ParserConstants.SLASHASSIGN: return ParserConstants.SLASH;
+                case ParserConstants.MODASSIGN: return ParserConstants.MOD;
+                case ParserConstants.ANDASSIGN:
+                case ParserConstants.ANDASSIGNX: return ParserConstants.BIT_AND;
+                case ParserConstants.ORASSIGN:
+                case ParserConstants.ORASSIGNX: return ParserConstants.BIT_OR;
+                case ParserConstants.XORASSIGN: return ParserConstants.XOR;
+                case ParserConstants.LSHIFTASSIGN:
+                case ParserConstants.LSHIFTASSIGNX: return ParserConstants.LSHIFT;
+                case ParserConstants.RSIGNEDSHIFTASSIGN:
+                case ParserConstants.RSIGNEDSHIFTASSIGNX: return ParserConstants.RSIGNEDSHIFT;
+                case ParserConstants.RUNSIGNEDSHIFTASSIGN:
+                case ParserConstants.RUNSIGNEDSHIFTASSIGNX: return ParserConstants.RUNSIGNEDSHIFT;
+                default:
+                    throw new NotCompilable("assignment operator");
+            }
+        }
+
+        /**
+         * @return the int comparison jump for a relational operator or 0
+         */
+        private static int comparisonJump(int kind) {
+            switch (kind) {
+                case ParserConstants.EQ: return IF_ICMPEQ;
+                case ParserConstants.NE: return IF_ICMPNE;
+                case ParserConstants.LT:
+                case ParserConstants.LTX: return IF_ICMPLT;
+                case ParserConstants.GT:
+                case ParserConstants.GTX: return IF_ICMPGT;
+                case ParserConstants.LE:
+                case ParserConstants.LEX: return IF_ICMPLE;
+                case ParserConstants.GE:
+                case ParserConstants.GEX: return IF_ICMPGE;
+                default: return 0;
+            }
+        }
+    }
+
+    // Bytecode helpers
+
+    private static boolean isSupported(Class type) {
+        return type == Boolean.TYPE || type == Integer.TYPE || type == Long.TYPE || type == Double.TYPE;
+    }
+
+    private static int size(Class type) {
+        return type == Long.TYPE || type == Double.TYPE ? 2 : 1;
+    }
+
+    private static String descriptor(Class type) {
+        if (type == Boolean.TYPE) {
+            return "Z";
+        } else if (type == Integer.TYPE) {
+            return "I";
+        } else if (type == Long.TYPE) {
+            return "J";
+        } else {
+            return "D";
+        }
+    }
+
+    private static String wrapperName(Class type) {
+        if (type == Boolean.TYPE) {
+            return "java/lang/Boolean";
+        } else if (type == Integer.TYPE) {
+            return "java/lang/Integer";
+        } else if (type == Long.TYPE) {
+            return "java/lang/Long";
+        } else {
+            return "java/lang/Double";
+        }
+    }
+
+    /**
+     * The variant of an int (or boolean) opcode for the type, e.g. ILOAD to LLOAD for long. The long, float, double
+     * and reference variants of the load, store, return and arithmetic opcodes follow the int one in this order.
+     */
+    private static int opcode(int intOpcode, Class type) {
+        if (type == Long.TYPE) {
+            return intOpcode + 1;
+        } else if (type == Double.TYPE) {
+            return intOpcode + 3;
+        } else {
+            return intOpcode;
+        }
+    }
+
+    private static void pushInt(CodeVisitor cv, int value) {
+        if (value >= -1 && value <= 5) {
+            cv.visitInsn(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            cv.visitIntInsn(BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            cv.visitIntInsn(SIPUSH, value);
+        } else {
+            cv.visitLdcInsn(Integer.valueOf(value));
+        }
+    }
+}
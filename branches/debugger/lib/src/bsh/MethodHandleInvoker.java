@@ -0,0 +1,261 @@
+/***********************************************************************************************************************
+ *                                                                                                                     *
+ *  This file is part of the BeanShell Java Scripting distribution.                                                    *
+ *  Documentation and updates may be found at http://www.beanshell.org/                                                *
+ *                                                                                                                     *
+ *  This program is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General  *
+ *  Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option)  *
+ *  any later version.                                                                                                 *
+ *                                                                                                                     *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for    *
+ *  more details.                                                                                                      *
+ *                                                                                                                     *
+ *  You should have received a copy of the GNU Lesser General Public License along with this program.                  *
+ *  If not, see <http://www.gnu.org/licenses/>.                                                                        *
+ *                                                                                                                     *
+ *  Patrick Niemeyer (pat@pat.net)                                                                                     *
+ *  Author of Learning Java, O'Reilly & Associates                                                                     *
+ *  http://www.pat.net/~pat/                                                                                           *
+ *                                                                                                                     *
+ **********************************************************************************************************************/
+package bsh;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A MemberInvoker that calls resolved methods, constructors and field getters through java.lang.invoke. <p>
+ *
+ * Each member is turned into a MethodHandle once, adapted to take and return Object (with the receiver, if any, as the
+ * first argument) and kept in a cache keyed by the member. Calls of up to MAX_EXACT_ARITY arguments go through
+ * invokeExact() with the arguments passed individually, so no argument arrays are allocated for them; longer
+ * argument lists are spread from an array. Arguments are cast to the parameter types with Types.castObject() exactly
+ * as Reflect.invokeMethod() does, so both backends accept the same calls. <p>
+ *
+ * Members that the lookup of this class can not access are marked in the cache and delegated to the reflective
+ * invoker, which reports access problems the usual way. <p>
+ *
+ * This class is loaded by name from MemberInvoker.methodHandles() and is the only class that links java.lang.invoke.
+ */
+final class MethodHandleInvoker extends MemberInvoker {
+
+    static final int MAX_EXACT_ARITY = 3;
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    /**
+     * Cache value of members that are invoked reflectively
+     */
+    private static final Handle REFLECTIVE = new Handle(null, false, null, null);
+    private final ConcurrentHashMap<Member, Handle> handles = new ConcurrentHashMap<Member, Handle>();
+
+    Object invokeMethod(Method method, Object object, Object[] args)
+            throws ReflectError, InvocationTargetException {
+        Handle handle = handles.get(method);
+        if (handle == null) {
+            handle = cache(method, methodHandle(method));
+        }
+        if (handle == REFLECTIVE) {
+            return Reflect.invokeMethod(method, object, args);
+        }
+        return wrap(call(handle, object, args), handle.returnType);
+    }
+
+    Object construct(Constructor con, Object[] args)
+            throws ReflectError, InvocationTargetException {
+        Handle handle = handles.get(con);
+        if (handle == null) {
+            handle = cache(con, constructorHandle(con));
+        }
+        if (handle == REFLECTIVE) {
+            return Reflect.newInstance(con, args);
+        }
+        return call(handle, null, args);
+    }
+
+    Object getFieldValue(Field field, Object object)
+            throws ReflectError {
+        Handle handle = handles.get(field);
+        if (handle == null) {
+            handle = cache(field, getterHandle(field));
+        }
+        if (handle == REFLECTIVE) {
+            return Reflect.getFieldValue(field, object);
+        }
+        try {
+            Object value = handle.receiver
+                    ? (Object) handle.target.invokeExact(object)
+                    : (Object) handle.target.invokeExact();
+            return wrap(value, handle.returnType);
+        } catch (Throwable e) {
+            throw new ReflectError("Can't access field: " + field.getName() + " : " + e);
+        }
+    }
+
+    /**
+     * @return the number of members with a cached handle or marker
+     */
+    int size() {
+        return handles.size();
+    }
+
+    public String toString() {
+        return "method handles";
+    }
+
+    private Handle cache(Member member, Handle handle) {
+        Handle existing = handles.putIfAbsent(member, handle);
+        return existing != null ? existing : handle;
+    }
+
+    private static Handle methodHandle(Method method) {
+        MethodHandle target;
+        try {
+            target = LOOKUP.unreflect(method);
+        } catch (IllegalAccessException e) {
+            return REFLECTIVE;
+        }
+        boolean receiver = !Modifier.isStatic(method.getModifiers());
+        return new Handle(target, receiver, method.getParameterTypes(), method.getReturnType());
+    }
+
+    private static Handle constructorHandle(Constructor con) {
+        MethodHandle target;
+        try {
+            target = LOOKUP.unreflectConstructor(con);
+        } catch (IllegalAccessException e) {
+            return REFLECTIVE;
+        }
+        return new Handle(target, false, con.getParameterTypes(), con.getDeclaringClass());
+    }
+
+    private static Handle getterHandle(Field field) {
+        MethodHandle target;
+        try {
+            target = LOOKUP.unreflectGetter(field);
+        } catch (IllegalAccessException e) {
+            return REFLECTIVE;
+        }
+        boolean receiver = !Modifier.isStatic(field.getModifiers());
+        return new Handle(target, receiver, new Class[0], field.getType());
+    }
+
+    /**
+     * Invoke the handle, casting the bsh arguments to the parameter types.
+     */
+    private static Object call(Handle handle, Object object, Object[] args)
+            throws InvocationTargetException {
+        Class[] types = handle.params;
+        if (args == null) {
+            args = new Object[0];
+        }
+        if (args.length != types.length) {
+            throw new InterpreterError("wrong number of arguments in method invocation: " + args.length
+                    + " for " + types.length);
+        }
+        MethodHandle target = handle.target;
+        try {
+            if (handle.receiver) {
+                switch (types.length) {
+                    case 0:
+                        return (Object) target.invokeExact(object);
+                    case 1:
+                        return (Object) target.invokeExact(object, arg(args, types, 0));
+                    case 2:
+                        return (Object) target.invokeExact(object, arg(args, types, 0), arg(args, types, 1));
+                    case 3:
+                        return (Object) target.invokeExact(object, arg(args, types, 0), arg(args, types, 1),
+                                arg(args, types, 2));
+                }
+            } else {
+                switch (types.length) {
+                    case 0:
+                        return (Object) target.invokeExact();
+                    case 1:
+                        return (Object) target.invokeExact(arg(args, types, 0));
+                    case 2:
+                        return (Object) target.invokeExact(arg(args, types, 0), arg(args, types, 1));
+                    case 3:
+                        return (Object) target.invokeExact(arg(args, types, 0), arg(args, types, 1),
+                                arg(args, types, 2));
+                }
+            }
+
+            int offset = handle.receiver ? 1 : 0;
+            Object[] spread = new Object[offset + types.length];
+            if (handle.receiver) {
+                spread[0] = object;
+            }
+            for (int i = 0; i < types.length; i++) {
+                spread[offset + i] = arg(args, types, i);
+            }
+            return (Object) handle.spreader.invokeExact(spread);
+        } catch (InterpreterError e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new InvocationTargetException(e);
+        }
+    }
+
+    private static Object arg(Object[] args, Class[] types, int i) {
+        try {
+            return Primitive.unwrap(Types.castObject(args[i], types[i], Types.ASSIGNMENT));
+        } catch (UtilEvalError e) {
+            throw new InterpreterError(
+                    "illegal argument type in method invocation: " + e);
+        }
+    }
+
+    /**
+     * Wrap a returned value for bsh, taking the common primitive types from the Primitive caches.
+     */
+    private static Object wrap(Object value, Class type) {
+        if (value != null) {
+            if (type == Integer.TYPE) {
+                return Primitive.valueOf(((Integer) value).intValue());
+            }
+            if (type == Boolean.TYPE) {
+                return Primitive.valueOf(((Boolean) value).booleanValue());
+            }
+            if (type == Long.TYPE) {
+                return Primitive.valueOf(((Long) value).longValue());
+            }
+        }
+        return Primitive.wrap(value, type);
+    }
+
+    /**
+     * A member handle adapted to the generic (Object...)Object type.
+     */
+    private static final class Handle {
+
+        final MethodHandle target;
+        final MethodHandle spreader;
+        final boolean receiver;
+        final Class[] params;
+        final Class returnType;
+
+        Handle(MethodHandle target, boolean receiver, Class[] params, Class returnType) {
+            this.receiver = receiver;
+            this.params = params;
+            this.returnType = returnType;
+            if (target == null) { // the reflective marker
+                this.target = null;
+                this.spreader = null;
+                return;
+            }
+            int arity = params.length + (receiver ? 1 : 0);
+            // fixed arity: a varargs method is passed its array like any other argument
+            this.target = target.asFixedArity().asType(MethodType.genericMethodType(arity));
+            this.spreader = params.length > MAX_EXACT_ARITY
+                    ? this.target.asSpreader(Object[].class, arity) : null;
+        }
+    }
+}
@@ -346,7 +346,7 @@ class Name implements java.io.Serializable {
                     Interpreter.debug("Name call to getStaticFieldValue, class: "
                             + clas + ", field:" + field);
                 }
-                obj = Reflect.getStaticFieldValue(clas, field);
+                obj = Reflect.getStaticFieldValue(namespace.getClassManager(), clas, field);
             } catch (ReflectError e) {
                 if (Interpreter.DEBUG) {
                     Interpreter.debug("field reflect error: " + e);
@@ -387,14 +387,15 @@ class Name implements java.io.Serializable {
 
         // length access on array? 
         if (field.equals("length") && evalBaseObject.getClass().isArray()) {
-            Object obj = new Primitive(Array.getLength(evalBaseObject));
+            Object obj = Primitive.valueOf(Array.getLength(evalBaseObject));
             return completeRound(field, suffix(evalName), obj);
         }
 
         // Check for field on object 
         // Note: could eliminate throwing the exception somehow
         try {
-            Object obj = Reflect.getObjectFieldValue(evalBaseObject, field);
+            Object obj = Reflect.getObjectFieldValue(
+                    namespace.getClassManager(), evalBaseObject, field);
             return completeRound(field, suffix(evalName), obj);
         } catch (ReflectError e) { /*
              * not a field
@@ -721,6 +722,17 @@ class Name implements java.io.Serializable {
             Interpreter interpreter, Object[] args, CallStack callstack,
             SimpleNode callerInfo)
             throws UtilEvalError, EvalError, ReflectError, InvocationTargetException {
+        return invokeMethod(interpreter, args, callstack, callerInfo, null);
+    }
+
+    /**
+     * @see #invokeMethod(Interpreter, Object[], CallStack, SimpleNode)
+     * @param cache the inline cache of the call site for Java method invocations, may be null
+     */
+    Object invokeMethod(
+            Interpreter interpreter, Object[] args, CallStack callstack,
+            SimpleNode callerInfo, InlineMethodCache cache)
+            throws UtilEvalError, EvalError, ReflectError, InvocationTargetException {
         String methodName = Name.suffix(value, 1);
         BshClassManager bcm = interpreter.getClassManager();
         NameSpace namespace = callstack.top();
@@ -730,7 +742,7 @@ class Name implements java.io.Serializable {
         // Note: maybe factor this out with path below... clean up.
         if (classOfStaticMethod != null) {
             return Reflect.invokeStaticMethod(
-                    bcm, classOfStaticMethod, methodName, args);
+                    bcm, classOfStaticMethod, methodName, args, cache);
         }
 
         if (!Name.isCompound(value)) {
@@ -790,7 +802,8 @@ class Name implements java.io.Serializable {
 
             // found an object and it's not an undefined variable
             return Reflect.invokeObjectMethod(
-                    obj, methodName, args, interpreter, callstack, callerInfo);
+                    obj, methodName, args, interpreter, callstack, callerInfo,
+                    cache);
         }
 
         // It's a class
@@ -806,7 +819,7 @@ class Name implements java.io.Serializable {
         classOfStaticMethod = clas;
 
         if (clas != null) {
-            return Reflect.invokeStaticMethod(bcm, clas, methodName, args);
+            return Reflect.invokeStaticMethod(bcm, clas, methodName, args, cache);
         }
 
         // return null; ???
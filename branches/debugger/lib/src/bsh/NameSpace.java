@@ -26,9 +26,10 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.util.Enumeration;
-import java.util.Hashtable;
+import java.util.List;
+import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * A namespace	in which methods, variables, and imports (class names) live. This is package public because it is used in
@@ -38,7 +39,22 @@ import java.util.Vector;
  * A bsh.This object is a thin layer over a NameSpace that associates it with an Interpreter instance. Together they
  * comprise a Bsh scripted object context. <p>
  *
- * Note: I'd really like to use collections here, but we have to keep this compatible with JDK1.1
+ * A namespace is not thread safe by default: its tables are unsynchronized and expect a single writer, normally the
+ * thread running the interpreter. Namespaces shared by several threads must be made concurrent with setConcurrent(). <p>
+ *
+ * To run one script on many threads at once, set up a global namespace with the imports, variables and methods the
+ * script needs, freeze() it and evaluate the ParsedScript on each thread in a new child namespace of the template:
+ * <pre>
+ * interpreter.eval( setupScript );
+ * NameSpace template = interpreter.getNameSpace();
+ * template.freeze();
+ * // on any thread
+ * interpreter.eval( script, new NameSpace( template, "request" ) );
+ * </pre>
+ * The children are single threaded and need no locks; the frozen template is only read. Assignments made through a
+ * child to a template variable shadow it in the child instead (copy on write), so the template stays as it was set up.
+ * Methods declared in the template run in the child of the calling thread, so an assignment to a template variable in
+ * a method updates the same copy as an assignment in the script itself.
  */
 /*
  * Thanks to Slava Pestov (of jEdit fame) for import caching enhancements. Note: This class has gotten too big. It
@@ -48,6 +64,13 @@ public class NameSpace
         implements java.io.Serializable, BshClassManager.Listener,
         NameSource {
 
+    /**
+     * The packages imported by loadDefaultImports(), in import order. Initialized before JAVACODE, which imports them.
+     */
+    private static final String[] DEFAULT_PACKAGES = {
+        "javax.swing.event", "javax.swing", "java.awt.event", "java.awt", "java.net", "java.util", "java.io",
+        "java.lang"
+    };
     public static final NameSpace JAVACODE =
             new NameSpace((BshClassManager) null, "Called from compiled Java code.");
 
@@ -62,21 +85,61 @@ public class NameSpace
      */
     private String nsName;
     private NameSpace parent;
-    private Hashtable variables;
-    private Hashtable methods;
-    protected Hashtable importedClasses;
-    private Vector importedPackages;
-    private Vector importedCommands;
-    private Vector importedObjects;
-    private Vector importedStatic;
+    private NameTable variables;
+    /**
+     * Maps method names to a BshMethod or, for overloaded methods, a BshMethod[]
+     */
+    private NameTable methods;
+    protected NameTable importedClasses;
+    /*
+     * The import lists are written rarely and read on every unresolved name, so they are copy on write and never need
+     * locking.
+     */
+    private List importedPackages;
+    private List importedCommands;
+    private List importedObjects;
+    private List importedStatic;
     private String packageName;
     transient private BshClassManager classManager;
     // See notes in getThis()
-    private This thisReference;
+    private volatile This thisReference;
     /**
      * Name resolver objects
      */
-    private Hashtable names;
+    private NameTable names;
+    /**
+     * Whether the tables of this namespace may be accessed by multiple threads.
+     *
+     * @see #setConcurrent(boolean)
+     */
+    private boolean concurrent;
+    /**
+     * This namespace is a read only template shared by threads.
+     *
+     * @see #freeze()
+     */
+    private boolean frozen;
+    /**
+     * This namespace has a frozen ancestor, so assignments may have to shadow a template variable.
+     */
+    private boolean underTemplate;
+    /**
+     * The namespaces holding the commands loaded through a frozen namespace by script path. Replaced, never modified.
+     */
+    private volatile NameTable loadedCommands;
+    /**
+     * The resource paths of the scripted commands loaded into this namespace.
+     *
+     * @see #restore(Snapshot)
+     */
+    private List commandSources;
+    /**
+     * The slot layout of a method body namespace and the frame holding the Variables of its slotted names.
+     *
+     * @see #setLocalSlots(LocalSlots)
+     */
+    private LocalSlots localSlots;
+    private Variable[] frame;
     /**
      * The node associated with the creation of this namespace. This is used support getInvocationLine() and
      * getInvocationText().
@@ -127,7 +190,7 @@ public class NameSpace
      * Only unqualified class names are cached here (those which might be imported). Qualified names are always absolute
      * and are cached by BshClassManager.
      */
-    transient private Hashtable classCache;
+    transient private volatile NameTable classCache;
 
     // End instance data
     // Begin constructors
@@ -154,6 +217,9 @@ public class NameSpace
         setName(name);
         setParent(parent);
         setClassManager(classManager);
+        if (parent != null) {
+            concurrent = parent.concurrent;
+        }
 
         // Register for notification of classloader change
         if (classManager != null) {
@@ -162,6 +228,121 @@ public class NameSpace
     }
 
     // End constructors
+    /**
+     * Allow or disallow access to this namespace from multiple threads at once. By default a namespace assumes a
+     * single writer and its tables take no locks. A concurrent namespace synchronizes every table access instead.
+     * Child namespaces created afterwards inherit the setting.
+     */
+    public void setConcurrent(boolean concurrent) {
+        if (this.concurrent == concurrent) {
+            return;
+        }
+        this.concurrent = concurrent;
+        variables = copyTable(variables);
+        methods = copyTable(methods);
+        importedClasses = copyTable(importedClasses);
+        names = copyTable(names);
+        classCache = copyTable(classCache);
+    }
+
+    /**
+     * Make this namespace a read only template that threads can share. Its variables, methods and imports must not
+     * change from now on: declaring variables or methods in it fails. Child namespaces created afterwards may be used
+     * by different threads at the same time without locking; an assignment through a child to a variable of the
+     * template declares a copy of the variable in the child of the template on the child's parent chain. Methods
+     * declared in the template are invoked in the child of the caller (see getTemplateChild()), so this holds for
+     * assignments in template methods as well. <p>
+     *
+     * The caches a frozen namespace still fills on lookup (classes and loaded commands) are replaced on update, never
+     * modified, and name resolvers are not cached, so that readers take no locks.
+     */
+    public void freeze() {
+        frozen = true;
+        names = null;
+    }
+
+    /**
+     * @see #freeze()
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Find the child of this frozen namespace that the given namespace descends from, i.e. the namespace of the thread
+     * calling into the template, which holds that thread's copies of the template variables.
+     *
+     * @return the child or null if the namespace does not descend from this one
+     */
+    NameSpace getTemplateChild(NameSpace ns) {
+        for (; ns != null; ns = ns.parent) {
+            if (ns.parent == this) {
+                return ns;
+            }
+        }
+        return null;
+    }
+
+    private void checkNotFrozen() throws UtilEvalError {
+        if (frozen) {
+            throw new UtilEvalError("Can't modify frozen namespace: " + nsName);
+        }
+    }
+
+    /**
+     * Give this method body namespace a frame for the slotted names of the method. From now on Variables declared
+     * here under those names are also kept in the frame, where resolved names of the method body find them by index.
+     *
+     * @see LocalSlots
+     */
+    void setLocalSlots(LocalSlots localSlots) {
+        this.localSlots = localSlots;
+        frame = localSlots == null ? null : new Variable[localSlots.size()];
+    }
+
+    /**
+     * Find the Variable of a resolved name evaluated with this namespace on top of the stack. The frame is searched
+     * for in this namespace and the enclosing block namespaces of the method body.
+     *
+     * @return the Variable or null if it is not (yet) declared in the frame, in which case the name must be resolved
+     * dynamically.
+     */
+    Variable getSlotVariable(LocalSlots.Slot slot) {
+        NameSpace ns = this;
+        while (ns.localSlots != slot.layout) {
+            if (!(ns instanceof BlockNameSpace)) {
+                return null;
+            }
+            ns = ns.parent;
+        }
+        return ns.frame[slot.index];
+    }
+
+    private void putVariable(String name, Variable var) {
+        variables.put(name, var);
+        if (frame != null) {
+            int index = localSlots.indexOf(name);
+            if (index >= 0) {
+                frame[index] = var;
+            }
+        }
+    }
+
+    /**
+     * @see #setConcurrent(boolean)
+     */
+    public boolean isConcurrent() {
+        return concurrent;
+    }
+
+    private NameTable newTable() {
+        return concurrent ? new NameTable.Concurrent() : new NameTable();
+    }
+
+    private NameTable copyTable(NameTable table) {
+        return table == null ? null : table.copy(concurrent);
+    }
+
     public void setName(String name) {
         this.nsName = name;
     }
@@ -250,8 +431,9 @@ public class NameSpace
     void setVariable(
             String name, Object value, boolean strictJava, boolean recurse)
             throws UtilEvalError {
+        checkNotFrozen();
         if (variables == null) {
-            variables = new Hashtable();
+            variables = newTable();
         }
 
         // primitives should have been wrapped
@@ -262,6 +444,10 @@ public class NameSpace
         // Locate the variable definition if it exists.
         Variable existing = getVariableImpl(name, recurse);
 
+        if (existing != null && underTemplate && shadowTemplateVariable(name, existing, value)) {
+            return;
+        }
+
         // Found an existing variable here (or above if recurse allowed)
         if (existing != null) {
             try {
@@ -283,7 +469,7 @@ public class NameSpace
             // This modification makes default allocation local
             NameSpace varScope = this;
 
-            varScope.variables.put(
+            varScope.putVariable(
                     name, createVariable(name, value, null/*
                      * modifiers
                      */));
@@ -293,6 +479,45 @@ public class NameSpace
         }
     }
 
+    /**
+     * Copy on write for a variable found in a frozen ancestor: declare a variable of the same type and modifiers in the
+     * child of the template and assign it there.
+     *
+     * @return false if the variable is declared below the template and may be assigned
+     */
+    private boolean shadowTemplateVariable(String name, Variable existing, Object value)
+            throws UtilEvalError {
+        if (existing.lhs != null) {
+            return false; // an imported field
+        }
+        NameSpace child = null;
+        for (NameSpace ns = this; ns != null; child = ns, ns = ns.parent) {
+            if (ns.frozen) {
+                if (existing.hasModifier("final")) {
+                    throw new UtilEvalError(
+                            "Variable assignment: " + name + ": Final variable, can't re-assign.");
+                }
+                Variable copy = child.createVariable(name, existing.getType(), null, existing.getModifiers());
+                try {
+                    copy.setValue(value, Variable.ASSIGNMENT);
+                } catch (UtilEvalError e) {
+                    throw new UtilEvalError(
+                            "Variable assignment: " + name + ": " + e.getMessage());
+                }
+                if (child.variables == null) {
+                    child.variables = child.newTable();
+                }
+                child.putVariable(name, copy);
+                child.nameSpaceChanged();
+                return true;
+            }
+            if (ns.variables != null && ns.variables.get(name) == existing) {
+                return false;
+            }
+        }
+        return false;
+    }
+
     protected Variable createVariable(
             String name, Object value, Modifiers mods)
             throws UtilEvalError {
@@ -319,6 +544,12 @@ public class NameSpace
     public void unsetVariable(String name) {
         if (variables != null) {
             variables.remove(name);
+            if (frame != null) {
+                int index = localSlots.indexOf(name);
+                if (index >= 0) {
+                    frame[index] = null;
+                }
+            }
             nameSpaceChanged();
         }
     }
@@ -330,7 +561,7 @@ public class NameSpace
         if (variables == null) {
             return new String[0];
         } else {
-            return enumerationToStringArray(variables.keys());
+            return variables.keys();
         }
     }
 
@@ -341,7 +572,7 @@ public class NameSpace
         if (methods == null) {
             return new String[0];
         } else {
-            return enumerationToStringArray(methods.keys());
+            return methods.keys();
         }
     }
 
@@ -353,35 +584,25 @@ public class NameSpace
         if (methods == null) {
             return new BshMethod[0];
         } else {
-            return flattenMethodCollection(methods.elements());
+            return flattenMethodCollection(methods.values());
         }
     }
 
-    private String[] enumerationToStringArray(Enumeration e) {
-        Vector v = new Vector();
-        while (e.hasMoreElements()) {
-            v.addElement(e.nextElement());
-        }
-        String[] sa = new String[v.size()];
-        v.copyInto(sa);
-        return sa;
-    }
-
     /**
-     * Flatten the vectors of overloaded methods to a single array.
+     * Flatten the arrays of overloaded methods to a single array.
      *
      * @see #getMethods()
      */
-    private BshMethod[] flattenMethodCollection(Enumeration e) {
+    private BshMethod[] flattenMethodCollection(Object[] methods) {
         Vector v = new Vector();
-        while (e.hasMoreElements()) {
-            Object o = e.nextElement();
+        for (int i = 0; i < methods.length; i++) {
+            Object o = methods[i];
             if (o instanceof BshMethod) {
                 v.addElement(o);
             } else {
-                Vector ov = (Vector) o;
-                for (int i = 0; i < ov.size(); i++) {
-                    v.addElement(ov.elementAt(i));
+                BshMethod[] om = (BshMethod[]) o;
+                for (int j = 0; j < om.length; j++) {
+                    v.addElement(om[j]);
                 }
             }
         }
@@ -444,10 +665,24 @@ public class NameSpace
      * the top interpreter.
      */
     public This getThis(Interpreter declaringInterpreter) {
+        This ref = thisReference;
+        if (ref == null) {
+            if (frozen) {
+                return getSharedThis(declaringInterpreter);
+            }
+            ref = thisReference = This.getThis(this, declaringInterpreter);
+        }
+
+        return ref;
+    }
+
+    /**
+     * Create the This reference of a frozen namespace once, as threads may ask for it at the same time.
+     */
+    private synchronized This getSharedThis(Interpreter declaringInterpreter) {
         if (thisReference == null) {
             thisReference = This.getThis(this, declaringInterpreter);
         }
-
         return thisReference;
     }
 
@@ -495,6 +730,7 @@ public class NameSpace
 
     public void setParent(NameSpace parent) {
         this.parent = parent;
+        underTemplate = parent != null && (parent.frozen || parent.underTemplate);
 
         // If we are disconnected from root we need to handle the def imports
         if (parent == null) {
@@ -573,11 +809,9 @@ public class NameSpace
         if (variables == null) {
             return new Variable[0];
         }
-        Variable[] vars = new Variable[variables.size()];
-        int i = 0;
-        for (Enumeration e = variables.elements(); e.hasMoreElements();) {
-            vars[i++] = (Variable) e.nextElement();
-        }
+        Object[] values = variables.values();
+        Variable[] vars = new Variable[values.length];
+        System.arraycopy(values, 0, vars, 0, values.length);
         return vars;
     }
 
@@ -622,9 +856,10 @@ public class NameSpace
             String name, Class type, Object value, Modifiers modifiers)
             throws UtilEvalError {
         //checkVariableModifiers( name, modifiers );
+        checkNotFrozen();
 
         if (variables == null) {
-            variables = new Hashtable();
+            variables = newTable();
         }
 
         // Setting a typed variable is always a local operation.
@@ -657,7 +892,7 @@ public class NameSpace
         }
 
         // Add the new typed var
-        variables.put(name, createVariable(name, type, value, modifiers));
+        putVariable(name, createVariable(name, type, value, modifiers));
     }
 
     /**
@@ -676,9 +911,10 @@ public class NameSpace
     public void setMethod(String name, BshMethod method)
             throws UtilEvalError {
         //checkMethodModifiers( method );
+        checkNotFrozen();
 
         if (methods == null) {
-            methods = new Hashtable();
+            methods = newTable();
         }
 
         Object m = methods.get(name);
@@ -686,13 +922,14 @@ public class NameSpace
         if (m == null) {
             methods.put(name, method);
         } else if (m instanceof BshMethod) {
-            Vector v = new Vector();
-            v.addElement(m);
-            v.addElement(method);
-            methods.put(name, v);
-        } else // Vector
+            methods.put(name, new BshMethod[]{(BshMethod) m, method});
+        } else // BshMethod []
         {
-            ((Vector) m).addElement(method);
+            BshMethod[] om = (BshMethod[]) m;
+            BshMethod[] nm = new BshMethod[om.length + 1];
+            System.arraycopy(om, 0, nm, 0, om.length);
+            nm[om.length] = method;
+            methods.put(name, nm);
         }
     }
 
@@ -732,14 +969,12 @@ public class NameSpace
         if (method == null && methods != null) {
             m = methods.get(name);
 
-            // m contains either BshMethod or Vector of BshMethod
+            // m contains either BshMethod or array of BshMethod
             if (m != null) {
                 // unwrap 
                 BshMethod[] ma;
-                if (m instanceof Vector) {
-                    Vector vm = (Vector) m;
-                    ma = new BshMethod[vm.size()];
-                    vm.copyInto(ma);
+                if (m instanceof BshMethod[]) {
+                    ma = (BshMethod[]) m;
                 } else {
                     ma = new BshMethod[]{(BshMethod) m};
                 }
@@ -775,7 +1010,7 @@ public class NameSpace
      */
     public void importClass(String name) {
         if (importedClasses == null) {
-            importedClasses = new Hashtable();
+            importedClasses = newTable();
         }
 
         importedClasses.put(Name.suffix(name, 1), name);
@@ -787,7 +1022,7 @@ public class NameSpace
      */
     public void importPackage(String name) {
         if (importedPackages == null) {
-            importedPackages = new Vector();
+            importedPackages = new CopyOnWriteArrayList();
         }
 
         // If it exists, remove it and add it at the end (avoid memory leak)
@@ -795,7 +1030,7 @@ public class NameSpace
             importedPackages.remove(name);
         }
 
-        importedPackages.addElement(name);
+        importedPackages.add(name);
         nameSpaceChanged();
     }
 
@@ -806,7 +1041,7 @@ public class NameSpace
      */
     public void importCommands(String name) {
         if (importedCommands == null) {
-            importedCommands = new Vector();
+            importedCommands = new CopyOnWriteArrayList();
         }
 
         // dots to slashes
@@ -825,7 +1060,7 @@ public class NameSpace
             importedCommands.remove(name);
         }
 
-        importedCommands.addElement(name);
+        importedCommands.add(name);
         nameSpaceChanged();
     }
 
@@ -861,7 +1096,7 @@ public class NameSpace
         if (importedCommands != null) {
             // loop backwards for precedence
             for (int i = importedCommands.size() - 1; i >= 0; i--) {
-                String path = (String) importedCommands.elementAt(i);
+                String path = (String) importedCommands.get(i);
 
                 String scriptPath;
                 if (path.equals("/")) {
@@ -872,11 +1107,43 @@ public class NameSpace
 
                 Interpreter.debug("searching for script: " + scriptPath);
 
-                InputStream in = bcm.getResourceAsStream(scriptPath);
+                NameTable loaded = loadedCommands;
+                if (loaded != null && loaded.containsKey(scriptPath)) {
+                    return ((NameSpace) loaded.get(scriptPath)).getMethod(name, argTypes, true/*
+                             * declaredOnly
+                             */);
+                }
+
+                // A manifest of the shipped commands spares probing the class path
+                CommandManifest manifest = CommandManifest.forPath(path, bcm);
+                boolean listed = manifest != null && manifest.contains(name);
+                if (manifest != null && !listed && manifest.isComplete()) {
+                    continue;
+                }
 
-                if (in != null) {
-                    return loadScriptedCommand(
-                            in, name, argTypes, scriptPath, interpreter);
+                if (listed && manifest.isScript(name)) {
+                    ParsedScript script;
+                    try {
+                        script = manifest.getScript(name);
+                    } catch (EvalError e) {
+                        Interpreter.debug(e.toString());
+                        throw new UtilEvalError(
+                                "Error loading script: " + e.getMessage());
+                    } catch (IOException e) {
+                        throw new UtilEvalError(
+                                "Error loading script: " + e.getMessage());
+                    }
+                    if (script != null) {
+                        return loadScriptedCommand(
+                                script, null, name, argTypes, scriptPath, interpreter);
+                    }
+                } else if (!listed) {
+                    InputStream in = bcm.getResourceAsStream(scriptPath);
+
+                    if (in != null) {
+                        return loadScriptedCommand(
+                                null, in, name, argTypes, scriptPath, interpreter);
+                    }
                 }
 
                 // Chop leading "/" and change "/" to "."
@@ -907,7 +1174,7 @@ public class NameSpace
         // Try object imports
         if (importedObjects != null) {
             for (int i = 0; i < importedObjects.size(); i++) {
-                Object object = importedObjects.elementAt(i);
+                Object object = importedObjects.get(i);
                 Class clas = object.getClass();
                 Method method = Reflect.resolveJavaMethod(
                         getClassManager(), clas, name, sig, false/*
@@ -922,7 +1189,7 @@ public class NameSpace
         // Try static imports
         if (importedStatic != null) {
             for (int i = 0; i < importedStatic.size(); i++) {
-                Class clas = (Class) importedStatic.elementAt(i);
+                Class clas = (Class) importedStatic.get(i);
                 Method method = Reflect.resolveJavaMethod(
                         getClassManager(), clas, name, sig, true/*
                          * onlyStatic
@@ -943,7 +1210,7 @@ public class NameSpace
         // Try object imports
         if (importedObjects != null) {
             for (int i = 0; i < importedObjects.size(); i++) {
-                Object object = importedObjects.elementAt(i);
+                Object object = importedObjects.get(i);
                 Class clas = object.getClass();
                 Field field = Reflect.resolveJavaField(
                         clas, name, false/*
@@ -959,7 +1226,7 @@ public class NameSpace
         // Try static imports
         if (importedStatic != null) {
             for (int i = 0; i < importedStatic.size(); i++) {
-                Class clas = (Class) importedStatic.elementAt(i);
+                Class clas = (Class) importedStatic.get(i);
                 Field field = Reflect.resolveJavaField(
                         clas, name, true/*
                          * onlyStatic
@@ -974,7 +1241,7 @@ public class NameSpace
     }
 
     /**
-     * Load a command script from the input stream and find the BshMethod in the target namespace.
+     * Load a command script, already parsed or from the input stream, and find the BshMethod in the target namespace.
      *
      * @throws UtilEvalError on error in parsing the script or if the the method is not found after parsing the script.
      */
@@ -982,12 +1249,18 @@ public class NameSpace
      * If we want to support multiple commands in the command path we need to change this to not throw the exception.
      */
     private BshMethod loadScriptedCommand(
-            InputStream in, String name, Class[] argTypes, String resourcePath,
+            ParsedScript script, InputStream in, String name, Class[] argTypes, String resourcePath,
             Interpreter interpreter)
             throws UtilEvalError {
+        // A frozen namespace can't take the command's methods, load them into a child shared by all callers
+        NameSpace target = frozen ? new NameSpace(this, "command: " + name) : this;
         try {
-            interpreter.eval(
-                    new InputStreamReader(in), this, resourcePath);
+            if (script != null) {
+                interpreter.eval(script, target);
+            } else {
+                interpreter.eval(
+                        new InputStreamReader(in), target, resourcePath);
+            }
         } catch (EvalError e) {
             /*
              * Here we catch any EvalError from the interpreter because we are using it as a tool to load the command,
@@ -998,6 +1271,22 @@ public class NameSpace
                     "Error loading script: " + e.getMessage());
         }
 
+        if (!frozen) {
+            if (commandSources == null) {
+                commandSources = new CopyOnWriteArrayList();
+            }
+            commandSources.add(resourcePath);
+        } else {
+            synchronized (this) {
+                NameTable loaded = loadedCommands == null ? new NameTable() : loadedCommands.copy(false);
+                loaded.put(resourcePath, target);
+                loadedCommands = loaded;
+            }
+            return target.getMethod(name, argTypes, true/*
+                     * declaredOnly
+                     */);
+        }
+
         // Look for the loaded command 
         BshMethod meth = getMethod(name, argTypes);
         /*
@@ -1012,8 +1301,17 @@ public class NameSpace
      * Helper that caches class.
      */
     void cacheClass(String name, Class c) {
+        if (frozen) {
+            // readers don't lock, publish a new table
+            synchronized (this) {
+                NameTable cache = classCache == null ? new NameTable() : classCache.copy(false);
+                cache.put(name, c);
+                classCache = cache;
+            }
+            return;
+        }
         if (classCache == null) {
-            classCache = new Hashtable();
+            classCache = newTable();
             //cacheCount++; // debug
         }
 
@@ -1057,8 +1355,9 @@ public class NameSpace
         Class c = null;
 
         // Check the cache
-        if (classCache != null) {
-            c = (Class) classCache.get(name);
+        NameTable cache = classCache;
+        if (cache != null) {
+            c = (Class) cache.get(name);
 
             if (c != null) {
                 return c;
@@ -1157,17 +1456,22 @@ public class NameSpace
          * Try imported packages, e.g. "import foo.bar.*;" in reverse order of import... (give later imports
          * precedence...)
          */
+        BshClassManager bcm = getClassManager();
         if (importedPackages != null) {
             for (int i = importedPackages.size() - 1; i >= 0; i--) {
-                String s = ((String) importedPackages.elementAt(i)) + "." + name;
-                Class c = classForName(s);
+                String pack = (String) importedPackages.get(i);
+                // skip packages known not to hold the name without touching a class loader
+                Set names = bcm.getPackageClassNames(pack);
+                if (names != null && !names.contains(name)) {
+                    continue;
+                }
+                Class c = classForName(pack + "." + name);
                 if (c != null) {
                     return c;
                 }
             }
         }
 
-        BshClassManager bcm = getClassManager();
         /*
          * Try super import if available Note: we do this last to allow explicitly imported classes and packages to take
          * priority. This method will also throw an error indicating ambiguity if it exists...
@@ -1203,14 +1507,18 @@ public class NameSpace
      * Helper for implementing NameSource
      */
     protected void getAllNamesAux(Vector vec) {
-        Enumeration varNames = variables.keys();
-        while (varNames.hasMoreElements()) {
-            vec.addElement(varNames.nextElement());
+        if (variables != null) {
+            String[] varNames = variables.keys();
+            for (int i = 0; i < varNames.length; i++) {
+                vec.addElement(varNames[i]);
+            }
         }
 
-        Enumeration methodNames = methods.keys();
-        while (methodNames.hasMoreElements()) {
-            vec.addElement(methodNames.nextElement());
+        if (methods != null) {
+            String[] methodNames = methods.keys();
+            for (int i = 0; i < methodNames.length; i++) {
+                vec.addElement(methodNames[i]);
+            }
         }
 
         if (parent != null) {
@@ -1328,14 +1636,14 @@ public class NameSpace
          */
         importClass("bsh.EvalError");
         importClass("bsh.Interpreter");
-        importPackage("javax.swing.event");
-        importPackage("javax.swing");
-        importPackage("java.awt.event");
-        importPackage("java.awt");
-        importPackage("java.net");
-        importPackage("java.util");
-        importPackage("java.io");
-        importPackage("java.lang");
+        if (importedPackages == null) {
+            // every new interpreter gets these, build the list in one go
+            importedPackages = new CopyOnWriteArrayList(DEFAULT_PACKAGES);
+        } else {
+            for (int i = 0; i < DEFAULT_PACKAGES.length; i++) {
+                importPackage(DEFAULT_PACKAGES[i]);
+            }
+        }
         importCommands("/bsh/commands");
     }
 
@@ -1353,8 +1661,12 @@ public class NameSpace
      * This method was public for a time, which was a mistake. Use get() instead.
      */
     Name getNameResolver(String ambigname) {
+        if (frozen) {
+            // Name objects hold evaluation state, don't share them between threads
+            return new Name(this, ambigname);
+        }
         if (names == null) {
-            names = new Hashtable();
+            names = newTable();
         }
 
         Name name = (Name) names.get(ambigname);
@@ -1403,6 +1715,9 @@ public class NameSpace
      */
     public void clear() {
         variables = null;
+        if (frame != null) {
+            frame = new Variable[frame.length];
+        }
         methods = null;
         importedClasses = null;
         importedPackages = null;
@@ -1415,6 +1730,143 @@ public class NameSpace
         names = null;
     }
 
+    /**
+     * The declarations of a namespace at one point in time.
+     *
+     * @see #snapshot()
+     */
+    static final class Snapshot {
+
+        private final NameTable variables;
+        private final NameTable methods;
+        private final NameTable importedClasses;
+        private final List importedPackages;
+        private final List importedCommands;
+        private final List importedObjects;
+        private final List importedStatic;
+        private final String packageName;
+
+        private Snapshot(NameSpace ns) {
+            variables = copyVariables(ns.variables, false);
+            methods = ns.methods == null ? null : ns.methods.copy(false);
+            importedClasses = ns.importedClasses == null ? null : ns.importedClasses.copy(false);
+            importedPackages = copyList(ns.importedPackages);
+            importedCommands = copyList(ns.importedCommands);
+            importedObjects = copyList(ns.importedObjects);
+            importedStatic = copyList(ns.importedStatic);
+            packageName = ns.packageName;
+        }
+
+        private boolean sameImports(NameSpace ns) {
+            return same(importedPackages, ns.importedPackages) && same(importedCommands, ns.importedCommands)
+                    && same(importedObjects, ns.importedObjects) && same(importedStatic, ns.importedStatic)
+                    && same(importedClasses, ns.importedClasses);
+        }
+
+        private static boolean same(List a, List b) {
+            return a == null ? b == null || b.isEmpty() : a.equals(b);
+        }
+
+        private static boolean same(NameTable a, NameTable b) {
+            if (a == null || b == null) {
+                return (a == null || a.isEmpty()) && (b == null || b.isEmpty());
+            }
+            if (a.size() != b.size()) {
+                return false;
+            }
+            String[] keys = a.keys();
+            for (int i = 0; i < keys.length; i++) {
+                if (!a.get(keys[i]).equals(b.get(keys[i]))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static List copyList(List list) {
+            return list == null ? null : new CopyOnWriteArrayList(list);
+        }
+    }
+
+    /**
+     * Record the variables, methods, imports and package of this namespace, to be put back later with restore().
+     * Variables are copied, so assignments made afterwards don't change the snapshot.
+     */
+    Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Put back the declarations recorded by snapshot(), dropping everything declared or imported since. Scripted
+     * commands loaded in the meantime are kept, they don't have to be loaded again. The class and name resolver
+     * caches are kept too unless the imports changed.
+     */
+    void restore(Snapshot snapshot) {
+        NameTable commands = null;
+        if (commandSources != null && methods != null) {
+            commands = new NameTable();
+            String[] names = methods.keys();
+            for (int i = 0; i < names.length; i++) {
+                if (isCommand(methods.get(names[i]))) {
+                    commands.put(names[i], methods.get(names[i]));
+                }
+            }
+        }
+
+        boolean sameImports = snapshot.sameImports(this);
+        variables = copyVariables(snapshot.variables, concurrent);
+        if (frame != null) {
+            frame = new Variable[frame.length];
+        }
+        methods = copyTable(snapshot.methods);
+        if (commands != null && !commands.isEmpty()) {
+            if (methods == null) {
+                methods = newTable();
+            }
+            String[] names = commands.keys();
+            for (int i = 0; i < names.length; i++) {
+                if (!methods.containsKey(names[i])) {
+                    methods.put(names[i], commands.get(names[i]));
+                }
+            }
+        }
+        importedClasses = copyTable(snapshot.importedClasses);
+        importedPackages = Snapshot.copyList(snapshot.importedPackages);
+        importedCommands = Snapshot.copyList(snapshot.importedCommands);
+        importedObjects = Snapshot.copyList(snapshot.importedObjects);
+        importedStatic = Snapshot.copyList(snapshot.importedStatic);
+        packageName = snapshot.packageName;
+        if (!sameImports) {
+            nameSpaceChanged();
+        }
+    }
+
+    /**
+     * @param m a BshMethod or BshMethod[] from the methods table
+     */
+    private boolean isCommand(Object m) {
+        BshMethod[] ma = m instanceof BshMethod[] ? (BshMethod[]) m : new BshMethod[]{(BshMethod) m};
+        for (int i = 0; i < ma.length; i++) {
+            if (ma[i].declaration == null || !commandSources.contains(ma[i].declaration.getSourceFile())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static NameTable copyVariables(NameTable variables, boolean concurrent) {
+        if (variables == null) {
+            return null;
+        }
+        NameTable copy = concurrent ? new NameTable.Concurrent() : new NameTable();
+        String[] names = variables.keys();
+        Object[] vars = variables.values();
+        for (int i = 0; i < names.length; i++) {
+            copy.put(names[i], ((Variable) vars[i]).copy());
+        }
+        return copy;
+    }
+
     /**
      * Import a compiled Java object's methods and variables into this namespace. When no scripted method / command or
      * variable is found locally in this namespace method / fields of the object will be checked. Objects are checked in
@@ -1426,7 +1878,7 @@ public class NameSpace
      */
     public void importObject(Object obj) {
         if (importedObjects == null) {
-            importedObjects = new Vector();
+            importedObjects = new CopyOnWriteArrayList();
         }
 
         // If it exists, remove it and add it at the end (avoid memory leak)
@@ -1434,7 +1886,7 @@ public class NameSpace
             importedObjects.remove(obj);
         }
 
-        importedObjects.addElement(obj);
+        importedObjects.add(obj);
         nameSpaceChanged();
 
     }
@@ -1443,7 +1895,7 @@ public class NameSpace
      */
     public void importStatic(Class clas) {
         if (importedStatic == null) {
-            importedStatic = new Vector();
+            importedStatic = new CopyOnWriteArrayList();
         }
 
         // If it exists, remove it and add it at the end (avoid memory leak)
@@ -1451,7 +1903,7 @@ public class NameSpace
             importedStatic.remove(clas);
         }
 
-        importedStatic.addElement(clas);
+        importedStatic.add(clas);
         nameSpaceChanged();
     }
 
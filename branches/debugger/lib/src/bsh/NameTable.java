@@ -0,0 +1,302 @@
+/***********************************************************************************************************************
+ *                                                                                                                     *
+ *  This file is part of the BeanShell Java Scripting distribution.                                                    *
+ *  Documentation and updates may be found at http://www.beanshell.org/                                                *
+ *                                                                                                                     *
+ *  This program is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General  *
+ *  Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option)  *
+ *  any later version.                                                                                                 *
+ *                                                                                                                     *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for    *
+ *  more details.                                                                                                      *
+ *                                                                                                                     *
+ *  You should have received a copy of the GNU Lesser General Public License along with this program.                  *
+ *  If not, see <http://www.gnu.org/licenses/>.                                                                        *
+ *                                                                                                                     *
+ *  Patrick Niemeyer (pat@pat.net)                                                                                     *
+ *  Author of Learning Java, O'Reilly & Associates                                                                     *
+ *  http://www.pat.net/~pat/                                                                                           *
+ *                                                                                                                     *
+ **********************************************************************************************************************/
+package bsh;
+
+/**
+ * An open addressed hash table mapping names to values, used by NameSpace for its variables, methods, imported
+ * class names, name resolvers and class cache. <p>
+ *
+ * Unlike java.util.Hashtable this table takes no monitor on access and does not allocate an entry object per
+ * mapping. Keys are compared by identity before falling back to equals(), so lookups with the same String instance
+ * that was used to store the mapping (e.g. names coming from the same parse tree node) never call equals(). <p>
+ *
+ * A NameTable is meant to be written by one thread at a time. Namespaces that are shared between threads use the
+ * Concurrent subclass, see NameSpace.setConcurrent(). <p>
+ *
+ * Null keys and values are not allowed.
+ */
+class NameTable implements java.io.Serializable {
+
+    private static final int MIN_CAPACITY = 8;
+    private String[] keys;
+    private int[] hashes;
+    private Object[] values;
+    private int size;
+
+    NameTable() {
+        this(MIN_CAPACITY);
+    }
+
+    NameTable(int capacity) {
+        int cap = MIN_CAPACITY;
+        while (cap < capacity) {
+            cap <<= 1;
+        }
+        keys = new String[cap];
+        hashes = new int[cap];
+        values = new Object[cap];
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return the slot holding the key or -1 if it is not present
+     */
+    private int indexOf(String key) {
+        int hash = spread(key.hashCode());
+        String[] keys = this.keys;
+        int mask = keys.length - 1;
+        int i = hash & mask;
+        String k;
+        while ((k = keys[i]) != null) {
+            if (k == key || (hashes[i] == hash && k.equals(key))) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    Object get(String key) {
+        int i = indexOf(key);
+        return i < 0 ? null : values[i];
+    }
+
+    boolean containsKey(String key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * @return the previous value for the key or null
+     */
+    Object put(String key, Object value) {
+        if (value == null) {
+            throw new NullPointerException("null value for: " + key);
+        }
+        int hash = spread(key.hashCode());
+        int mask = keys.length - 1;
+        int i = hash & mask;
+        String k;
+        while ((k = keys[i]) != null) {
+            if (k == key || (hashes[i] == hash && k.equals(key))) {
+                Object old = values[i];
+                values[i] = value;
+                return old;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        hashes[i] = hash;
+        values[i] = value;
+        // keep the load factor at or below one half
+        if (++size * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        return null;
+    }
+
+    /**
+     * @return the removed value or null
+     */
+    Object remove(String key) {
+        int i = indexOf(key);
+        if (i < 0) {
+            return null;
+        }
+        Object old = values[i];
+        int mask = keys.length - 1;
+
+        // Backward shift deletion: move later members of the probe sequence up into the hole so that no tombstones
+        // are needed.
+        int hole = i;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (keys[j] == null) {
+                break;
+            }
+            int home = hashes[j] & mask;
+            // move j into the hole unless its home slot lies cyclically in (hole, j]
+            boolean between = hole <= j ? (hole < home && home <= j) : (hole < home || home <= j);
+            if (!between) {
+                keys[hole] = keys[j];
+                hashes[hole] = hashes[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+        }
+        keys[hole] = null;
+        values[hole] = null;
+        hashes[hole] = 0;
+        size--;
+        return old;
+    }
+
+    private void resize(int capacity) {
+        String[] oldKeys = keys;
+        int[] oldHashes = hashes;
+        Object[] oldValues = values;
+        keys = new String[capacity];
+        hashes = new int[capacity];
+        values = new Object[capacity];
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != null) {
+                int i = oldHashes[j] & mask;
+                while (keys[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                hashes[i] = oldHashes[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        java.util.Arrays.fill(keys, null);
+        java.util.Arrays.fill(values, null);
+        java.util.Arrays.fill(hashes, 0);
+        size = 0;
+    }
+
+    /**
+     * A snapshot of the keys in no particular order.
+     */
+    String[] keys() {
+        String[] result = new String[size];
+        int n = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                result[n++] = keys[i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * A snapshot of the values in no particular order, in the same order as keys().
+     */
+    Object[] values() {
+        Object[] result = new Object[size];
+        int n = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                result[n++] = values[i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Copy the mappings of this table into a new table, which is concurrent if requested.
+     */
+    NameTable copy(boolean concurrent) {
+        NameTable copy = concurrent ? new Concurrent(keys.length) : new NameTable(keys.length);
+        synchronized (this) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != null) {
+                    copy.put(keys[i], values[i]);
+                }
+            }
+        }
+        return copy;
+    }
+
+    boolean isConcurrent() {
+        return false;
+    }
+
+    /**
+     * A NameTable that may be read and written by multiple threads. Every operation holds the table's monitor.
+     */
+    static class Concurrent extends NameTable {
+
+        Concurrent() {
+            super();
+        }
+
+        Concurrent(int capacity) {
+            super(capacity);
+        }
+
+        @Override
+        synchronized Object get(String key) {
+            return super.get(key);
+        }
+
+        @Override
+        synchronized boolean containsKey(String key) {
+            return super.containsKey(key);
+        }
+
+        @Override
+        synchronized Object put(String key, Object value) {
+            return super.put(key, value);
+        }
+
+        @Override
+        synchronized Object remove(String key) {
+            return super.remove(key);
+        }
+
+        @Override
+        synchronized int size() {
+            return super.size();
+        }
+
+        @Override
+        synchronized boolean isEmpty() {
+            return super.isEmpty();
+        }
+
+        @Override
+        synchronized void clear() {
+            super.clear();
+        }
+
+        @Override
+        synchronized String[] keys() {
+            return super.keys();
+        }
+
+        @Override
+        synchronized Object[] values() {
+            return super.values();
+        }
+
+        @Override
+        boolean isConcurrent() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/***********************************************************************************************************************
+ *                                                                                                                     *
+ *  This file is part of the BeanShell Java Scripting distribution.                                                    *
+ *  Documentation and updates may be found at http://www.beanshell.org/                                                *
+ *                                                                                                                     *
+ *  This program is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General  *
+ *  Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option)  *
+ *  any later version.                                                                                                 *
+ *                                                                                                                     *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for    *
+ *  more details.                                                                                                      *
+ *                                                                                                                     *
+ *  You should have received a copy of the GNU Lesser General Public License along with this program.                  *
+ *  If not, see <http://www.gnu.org/licenses/>.                                                                        *
+ *                                                                                                                     *
+ *  Patrick Niemeyer (pat@pat.net)                                                                                     *
+ *  Author of Learning Java, O'Reilly & Associates                                                                     *
+ *  http://www.pat.net/~pat/                                                                                           *
+ *                                                                                                                     *
+ **********************************************************************************************************************/
+package bsh;
+
+import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, thread safe cache of parsed scripts keyed by the script text and its source file info. Evaluating the
+ * same text repeatedly through Interpreter.eval( String ) or source() finds the parse tree here and skips the lexer and
+ * parser entirely. <p>
+ *
+ * The cache holds at most a fixed number of scripts and evicts the least recently used one when it is full. Cached
+ * scripts are shared by all interpreters in the VM, see ParsedScript for what that means for the state their nodes
+ * cache. <p>
+ *
+ * The size of the shared cache may be set with the system property bsh.parseCacheSize. A size of zero disables
+ * caching.
+ */
+public final class ParseCache {
+
+    /**
+     * The default number of scripts held by the shared cache.
+     */
+    public static final int DEFAULT_SIZE = 256;
+    private static final ParseCache sharedCache = new ParseCache(sharedCacheSize());
+    private final int maxEntries;
+    private final LinkedHashMap entries;
+    private long hits, misses, evictions;
+
+    /**
+     * @param maxEntries the maximum number of scripts held. Zero or less disables caching.
+     */
+    public ParseCache(final int maxEntries) {
+        this.maxEntries = maxEntries;
+        // access ordered for LRU, only used while holding the lock of the cache
+        this.entries = new LinkedHashMap(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                if (size() <= maxEntries) {
+                    return false;
+                }
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * The cache shared by all interpreters in this VM.
+     */
+    public static ParseCache getSharedCache() {
+        return sharedCache;
+    }
+
+    private static int sharedCacheSize() {
+        try {
+            return Integer.getInteger("bsh.parseCacheSize", DEFAULT_SIZE).intValue();
+        } catch (SecurityException e) {
+            return DEFAULT_SIZE;
+        }
+    }
+
+    /**
+     * Get the parsed form of the text, parsing it only if it is not already cached. Text that fails to parse is not
+     * cached.
+     *
+     * @param sourceFileInfo the name of the file or other source of the text, used in error messages.
+     * @throws ParseException if the text is not a valid script
+     * @throws EvalError if the text could not be tokenized
+     */
+    public ParsedScript parse(String text, String sourceFileInfo) throws EvalError {
+        if (maxEntries <= 0) {
+            return Interpreter.parse(new StringReader(text), sourceFileInfo);
+        }
+
+        Key key = new Key(text, sourceFileInfo);
+        synchronized (this) {
+            ParsedScript script = (ParsedScript) entries.get(key);
+            if (script != null) {
+                hits++;
+                return script;
+            }
+            misses++;
+        }
+
+        // Parse outside of the lock. Two threads missing on the same text at once will both parse it, which is
+        // harmless.
+        ParsedScript script = Interpreter.parse(new StringReader(text), sourceFileInfo);
+
+        synchronized (this) {
+            entries.put(key, script);
+        }
+        return script;
+    }
+
+    /**
+     * Get the parsed form of the text if it is cached, counting a hit or a miss. On a miss the caller gets the script
+     * some other way, e.g. from its sidecar (see ParsedScriptFile), and adds it with put().
+     *
+     * @return the script or null
+     */
+    ParsedScript get(String text, String sourceFileInfo) {
+        if (maxEntries <= 0) {
+            return null;
+        }
+        Key key = new Key(text, sourceFileInfo);
+        synchronized (this) {
+            ParsedScript script = (ParsedScript) entries.get(key);
+            if (script != null) {
+                hits++;
+            } else {
+                misses++;
+            }
+            return script;
+        }
+    }
+
+    /**
+     * Add a script parsed elsewhere, e.g. read from its sidecar (see ParsedScriptFile).
+     */
+    void put(String text, String sourceFileInfo, ParsedScript script) {
+        if (maxEntries <= 0) {
+            return;
+        }
+        synchronized (this) {
+            entries.put(new Key(text, sourceFileInfo), script);
+        }
+    }
+
+    /**
+     * The maximum number of scripts held by this cache.
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * The number of scripts currently held by this cache.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * The number of parse requests satisfied from the cache.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * The number of parse requests for text that was not cached, so that it was parsed or read from a sidecar.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * The number of scripts dropped to stay within the size bound.
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Drop all cached scripts and reset the statistics.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        hits = misses = evictions = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ParseCache: " + entries.size() + "/" + maxEntries + " scripts, " + hits + " hits, " + misses
+                + " misses, " + evictions + " evictions";
+    }
+
+    /**
+     * The cache key. The hash is computed once from the text and source info; equality compares the full text so
+     * that a hash collision can never return the wrong script.
+     */
+    private static final class Key {
+
+        private final String text;
+        private final String sourceFileInfo;
+        private final int hash;
+
+        Key(String text, String sourceFileInfo) {
+            this.text = text;
+            this.sourceFileInfo = sourceFileInfo;
+            this.hash = 31 * text.hashCode() + (sourceFileInfo == null ? 0 : sourceFileInfo.hashCode());
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return hash == k.hash && text.equals(k.text)
+                    && (sourceFileInfo == null ? k.sourceFileInfo == null : sourceFileInfo.equals(k.sourceFileInfo));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/***********************************************************************************************************************
+ *                                                                                                                     *
+ *  This file is part of the BeanShell Java Scripting distribution.                                                    *
+ *  Documentation and updates may be found at http://www.beanshell.org/                                                *
+ *                                                                                                                     *
+ *  This program is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General  *
+ *  Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option)  *
+ *  any later version.                                                                                                 *
+ *                                                                                                                     *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for    *
+ *  more details.                                                                                                      *
+ *                                                                                                                     *
+ *  You should have received a copy of the GNU Lesser General Public License along with this program.                  *
+ *  If not, see <http://www.gnu.org/licenses/>.                                                                        *
+ *                                                                                                                     *
+ *  Patrick Niemeyer (pat@pat.net)                                                                                     *
+ *  Author of Learning Java, O'Reilly & Associates                                                                     *
+ *  http://www.pat.net/~pat/                                                                                           *
+ *                                                                                                                     *
+ **********************************************************************************************************************/
+package bsh;
+
+/**
+ * A script that has been run through the parser once and may be evaluated any number of times without being lexed or
+ * parsed again. Instances are created with {@link Interpreter#parse(java.io.Reader, String)} and evaluated with
+ * {@link Interpreter#eval(ParsedScript, NameSpace)}. <p>
+ *
+ * A ParsedScript holds only the top level statement nodes produced by successive calls to Parser.Line(). One instance
+ * may be evaluated against any namespace, by any interpreter and by several threads at once. The nodes are not plain
+ * parse tree data though, they cache what evaluating them worked out: <ul>
+ * <li>the frame slots of method bodies (BSHMethodDeclaration, BSHAmbiguousName) and the bytecode of hot, strictly
+ * typed methods (CompiledMethod) depend on the source only, they are the same for every interpreter;
+ * <li>resolved types (BSHType, BSHFormalParameters) and the Java methods resolved at call sites (InlineMethodCache)
+ * depend on the class manager. They are kept together with the class manager and generation they were resolved under, and are resolved
+ * again when another interpreter, or the same one after a class reload, evaluates the node. </ul>
+ * A type node holds one resolution at a time, so interpreters taking turns on a shared script keep resolving its types
+ * again. Scripts that are run by many interpreters in turn are cheaper parsed per interpreter.
+ */
+public final class ParsedScript {
+
+    private final SimpleNode[] statements;
+    private final String sourceFileInfo;
+
+    ParsedScript(SimpleNode[] statements, String sourceFileInfo) {
+        this.statements = statements;
+        this.sourceFileInfo = sourceFileInfo;
+    }
+
+    /**
+     * The top level statements in source order. The array is shared and must not be modified.
+     */
+    SimpleNode[] getStatements() {
+        return statements;
+    }
+
+    /**
+     * The number of top level statements in the script.
+     */
+    public int getStatementCount() {
+        return statements.length;
+    }
+
+    /**
+     * The name of the file or other source from which the script was parsed.
+     */
+    public String getSourceFileInfo() {
+        return sourceFileInfo;
+    }
+
+    @Override
+    public String toString() {
+        return "ParsedScript: " + sourceFileInfo + " (" + statements.length + " statements)";
+    }
+}
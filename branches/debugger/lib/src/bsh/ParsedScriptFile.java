@@ -0,0 +1,855 @@
+/***********************************************************************************************************************
+ *                                                                                                                     *
+ *  This file is part of the BeanShell Java Scripting distribution.                                                    *
+ *  Documentation and updates may be found at http://www.beanshell.org/                                                *
+ *                                                                                                                     *
+ *  This program is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General  *
+ *  Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option)  *
+ *  any later version.                                                                                                 *
+ *                                                                                                                     *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for    *
+ *  more details.                                                                                                      *
+ *                                                                                                                     *
+ *  You should have received a copy of the GNU Lesser General Public License along with this program.                  *
+ *  If not, see <http://www.gnu.org/licenses/>.                                                                        *
+ *                                                                                                                     *
+ *  Patrick Niemeyer (pat@pat.net)                                                                                     *
+ *  Author of Learning Java, O'Reilly & Associates                                                                     *
+ *  http://www.pat.net/~pat/                                                                                           *
+ *                                                                                                                     *
+ **********************************************************************************************************************/
+package bsh;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * A compact binary form of a ParsedScript, stored next to a script file as a .bshc sidecar so that a later process can
+ * skip the lexer and parser when it sources the unchanged script. <p>
+ *
+ * The file holds a header (magic number, format version, a fingerprint of the grammar and the SHA-1 of the script
+ * text), a string table, the token stream with full position data (so error messages, getText() and the debugger see
+ * the same tokens and positions as after parsing) and the node trees in pre-order with the parse data of each node.
+ * Special tokens, i.e. comments, are not stored: Token.specialToken is always null in a script read back, which
+ * nothing in the interpreter looks at. Resolution caches kept in nodes are not stored either. A sidecar is only used
+ * when it is at least as new as the script and its hash matches the text; anything else is treated as absent. <p>
+ *
+ * The system property bsh.sidecar selects what source() does with sidecars: "read" (the default) uses fresh ones,
+ * "write" also writes one whenever a script had to be parsed, "off" ignores them, as well as the parsed forms of the
+ * bundled commands (see CommandManifest). Scripts may also be compiled ahead of time with main().
+ */
+public final class ParsedScriptFile {
+
+    public static final String EXTENSION = ".bshc";
+    private static final int MAGIC = 0x62736863; // "bshc"
+    private static final int VERSION = 1;
+    private static final int GRAMMAR = grammarFingerprint();
+    private static final String MODE = sidecarMode();
+    private static final Class[] PRIMITIVE_TYPES = {
+        Boolean.TYPE, Character.TYPE, Byte.TYPE, Short.TYPE, Integer.TYPE, Long.TYPE, Float.TYPE, Double.TYPE
+    };
+    // the image of each token kind that always has the same text, null for identifiers and literals
+    private static final String[] FIXED_IMAGES = fixedImages();
+    // literal value tags
+    private static final int NULL = 0, PRIMITIVE_NULL = 1, PRIMITIVE_VOID = 2, STRING = 3, BOOLEAN = 4, CHAR = 5,
+            INT = 6, LONG = 7, FLOAT = 8, DOUBLE = 9;
+
+    private ParsedScriptFile() {
+    }
+
+    private static String sidecarMode() {
+        try {
+            return System.getProperty("bsh.sidecar", "read");
+        } catch (SecurityException e) {
+            return "off";
+        }
+    }
+
+    private static int grammarFingerprint() {
+        int hash = VERSION;
+        for (int i = 0; i < ParserConstants.tokenImage.length; i++) {
+            hash = 31 * hash + ParserConstants.tokenImage[i].hashCode();
+        }
+        for (int i = 0; i < ParserTreeConstants.jjtNodeName.length; i++) {
+            hash = 31 * hash + ParserTreeConstants.jjtNodeName[i].hashCode();
+        }
+        return hash;
+    }
+
+    private static String[] fixedImages() {
+        String[] images = new String[ParserConstants.tokenImage.length];
+        for (int i = 0; i < images.length; i++) {
+            String image = ParserConstants.tokenImage[i];
+            if (image.length() > 2 && image.startsWith("\"") && image.endsWith("\"")) {
+                images[i] = image.substring(1, image.length() - 1);
+            }
+        }
+        return images;
+    }
+
+    /**
+     * False if the bsh.sidecar system property turns parsed script files off.
+     */
+    static boolean isEnabled() {
+        return !MODE.equals("off");
+    }
+
+    /**
+     * The sidecar of a script file: the file name with .bshc appended.
+     */
+    public static File getSidecar(File script) {
+        return new File(script.getPath() + EXTENSION);
+    }
+
+    /**
+     * Get the parsed form of the script from its sidecar, if there is a fresh one.
+     *
+     * @param text the current text of the script
+     * @return the script or null if sidecars are off or there is no sidecar matching the text
+     */
+    static ParsedScript readSidecar(File script, String text, String sourceFileInfo) {
+        if (!isEnabled()) {
+            return null;
+        }
+        File sidecar = getSidecar(script);
+        try {
+            if (!sidecar.isFile() || sidecar.lastModified() < script.lastModified()) {
+                return null;
+            }
+            InputStream in = new FileInputStream(sidecar);
+            try {
+                return read(in, text, sourceFileInfo);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            Interpreter.debug("Ignoring sidecar " + sidecar + ": " + e);
+            return null;
+        } catch (SecurityException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Store the parsed form of the script in its sidecar if writing sidecars is turned on. Failing to write, in a
+     * read-only directory for example, is not an error.
+     */
+    static void writeSidecar(File script, String text, ParsedScript parsed) {
+        if (MODE.equals("write")) {
+            try {
+                save(script, text, parsed);
+            } catch (IOException e) {
+                Interpreter.debug("Can't write sidecar of " + script + ": " + e);
+            } catch (SecurityException e) {
+                // not allowed here
+            }
+        }
+    }
+
+    /**
+     * Write the sidecar of a script, replacing any existing one. The file is written under a temporary name and
+     * renamed, so that a concurrent reader never sees it half written.
+     */
+    public static void save(File script, String text, ParsedScript parsed) throws IOException {
+        File sidecar = getSidecar(script);
+        File temp = new File(sidecar.getPath() + ".tmp" + Long.toHexString(System.nanoTime()));
+        OutputStream out = new FileOutputStream(temp);
+        try {
+            write(parsed, text, out);
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(sidecar)) {
+            sidecar.delete();
+            if (!temp.renameTo(sidecar)) {
+                temp.delete();
+                throw new IOException("Can't rename " + temp + " to " + sidecar);
+            }
+        }
+    }
+
+    /**
+     * Write the parsed form of the text.
+     */
+    public static void write(ParsedScript script, String text, OutputStream out) throws IOException {
+        SimpleNode[] statements = script.getStatements();
+        Encoder encoder = new Encoder();
+        encoder.indexTokens(statements);
+        for (int i = 0; i < statements.length; i++) {
+            encoder.writeNode(statements[i]);
+        }
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(GRAMMAR);
+        data.write(hash(text));
+        data.writeInt(encoder.strings.size());
+        for (int i = 0; i < encoder.strings.size(); i++) {
+            data.writeUTF((String) encoder.strings.get(i));
+        }
+        data.writeInt(encoder.tokens.size());
+        data.writeInt(statements.length);
+        data.writeInt(encoder.bytes.size());
+        encoder.bytes.writeTo(data);
+        data.flush();
+    }
+
+    /**
+     * Read a parsed script.
+     *
+     * @param text the text the script must have been parsed from
+     * @return the script or null if it was written by another version or from another text
+     * @throws IOException if the data is unreadable
+     */
+    public static ParsedScript read(InputStream in, String text, String sourceFileInfo) throws IOException {
+        return read(in, hash(text), sourceFileInfo);
+    }
+
+    /**
+     * Read a parsed script without checking the text it was parsed from, for a file the build wrote together with
+     * the script it belongs to. This saves reading and hashing the script.
+     *
+     * @return the script or null if it was written by another version
+     * @throws IOException if the data is unreadable
+     */
+    static ParsedScript readBundled(InputStream in, String sourceFileInfo) throws IOException {
+        return read(in, (byte[]) null, sourceFileInfo);
+    }
+
+    private static ParsedScript read(InputStream in, byte[] textHash, String sourceFileInfo) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("not a parsed script file");
+        }
+        if (data.readInt() != VERSION || data.readInt() != GRAMMAR) {
+            return null;
+        }
+        byte[] hash = new byte[20];
+        data.readFully(hash);
+        if (textHash != null && !Arrays.equals(hash, textHash)) {
+            return null;
+        }
+        Decoder decoder = new Decoder();
+        decoder.strings = new String[data.readInt()];
+        for (int i = 0; i < decoder.strings.length; i++) {
+            decoder.strings[i] = data.readUTF();
+        }
+        decoder.tokens = new Token[data.readInt()];
+        SimpleNode[] statements = new SimpleNode[data.readInt()];
+        decoder.bytes = new byte[data.readInt()];
+        data.readFully(decoder.bytes);
+
+        try {
+            decoder.readTokens();
+            for (int i = 0; i < statements.length; i++) {
+                statements[i] = decoder.readNode();
+                statements[i].setSourceFile(sourceFileInfo);
+            }
+        } catch (RuntimeException e) {
+            // index out of bounds, unknown node...
+            throw new IOException("corrupt parsed script file: " + e);
+        }
+        if (decoder.pos != decoder.bytes.length) {
+            throw new IOException("corrupt parsed script file: trailing data");
+        }
+        return new ParsedScript(statements, sourceFileInfo);
+    }
+
+    private static byte[] hash(String text) throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(text.getBytes("UTF-8"));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("no SHA-1: " + e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IOException("no UTF-8: " + e);
+        }
+    }
+
+    /**
+     * Parse the scripts named on the command line and write their sidecars.
+     */
+    public static void main(String[] args) throws IOException, EvalError {
+        if (args.length == 0) {
+            System.err.println("usage: ParsedScriptFile <script>...");
+            System.exit(1);
+        }
+        for (int i = 0; i < args.length; i++) {
+            File file = new File(args[i]);
+            java.io.Reader in = new java.io.BufferedReader(new java.io.FileReader(file));
+            String text;
+            try {
+                text = Interpreter.readFully(in);
+            } finally {
+                in.close();
+            }
+            save(file, text, Interpreter.parse(new java.io.StringReader(text), args[i]));
+        }
+    }
+
+    /**
+     * Encodes tokens and nodes into a byte buffer, collecting the strings they use.
+     */
+    private static final class Encoder {
+
+        final List strings = new ArrayList();
+        final Map stringIndex = new HashMap();
+        final List tokens = new ArrayList();
+        final Map tokenIndex = new IdentityHashMap();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int previousToken;
+
+        /**
+         * Number the tokens from the first token of each statement to the end of the token stream and write them.
+         */
+        void indexTokens(SimpleNode[] statements) {
+            for (int i = 0; i < statements.length; i++) {
+                for (Token t = statements[i].firstToken; t != null && !tokenIndex.containsKey(t); t = t.next) {
+                    tokenIndex.put(t, Integer.valueOf(tokens.size()));
+                    tokens.add(t);
+                }
+            }
+            int line = 0, column = 0;
+            for (int i = 0; i < tokens.size(); i++) {
+                Token t = (Token) tokens.get(i);
+                // the image is left out if the kind implies it, the end if the token is on one line
+                boolean fixed = t.image.equals(FIXED_IMAGES[t.kind]);
+                boolean oneLine = t.endLine == t.beginLine && t.endColumn == t.beginColumn + t.image.length() - 1;
+                writeInt(t.kind << 2 | (fixed ? 0 : 1) | (oneLine ? 0 : 2));
+                if (!fixed) {
+                    writeString(t.image);
+                }
+                writeSigned(t.beginLine - line);
+                writeSigned(t.beginLine == line ? t.beginColumn - column : t.beginColumn);
+                if (!oneLine) {
+                    writeInt(t.endLine - t.beginLine);
+                    writeInt(t.endColumn);
+                }
+                line = t.endLine;
+                column = t.endColumn;
+            }
+        }
+
+        void writeNode(SimpleNode node) {
+            writeInt(node.id);
+            // token references relative to the previous node and to the first token
+            int first = tokenNumber(node.firstToken);
+            writeSigned(first - previousToken);
+            writeSigned(tokenNumber(node.lastToken) - first);
+            previousToken = first;
+            writeFields(node);
+            int children = node.jjtGetNumChildren();
+            writeInt(children);
+            for (int i = 0; i < children; i++) {
+                writeNode(node.getChild(i));
+            }
+        }
+
+        private void writeFields(SimpleNode node) {
+            switch (node.id) {
+                case ParserTreeConstants.JJTCLASSDECLARATION:
+                    BSHClassDeclaration classDeclaration = (BSHClassDeclaration) node;
+                    writeString(classDeclaration.name);
+                    writeModifiers(classDeclaration.modifiers);
+                    writeInt(classDeclaration.numInterfaces);
+                    writeBoolean(classDeclaration.extend);
+                    writeBoolean(classDeclaration.isInterface);
+                    break;
+                case ParserTreeConstants.JJTMETHODDECLARATION:
+                    BSHMethodDeclaration methodDeclaration = (BSHMethodDeclaration) node;
+                    writeString(methodDeclaration.name);
+                    writeModifiers(methodDeclaration.modifiers);
+                    writeInt(methodDeclaration.numThrows);
+                    break;
+                case ParserTreeConstants.JJTIMPORTDECLARATION:
+                    BSHImportDeclaration importDeclaration = (BSHImportDeclaration) node;
+                    writeBoolean(importDeclaration.importPackage);
+                    writeBoolean(importDeclaration.staticImport);
+                    writeBoolean(importDeclaration.superImport);
+                    break;
+                case ParserTreeConstants.JJTVARIABLEDECLARATOR:
+                    writeString(((BSHVariableDeclarator) node).name);
+                    break;
+                case ParserTreeConstants.JJTFORMALPARAMETER:
+                    writeString(((BSHFormalParameter) node).name);
+                    break;
+                case ParserTreeConstants.JJTTYPE:
+                    writeInt(((BSHType) node).getArrayDims());
+                    break;
+                case ParserTreeConstants.JJTRETURNTYPE:
+                    writeBoolean(((BSHReturnType) node).isVoid);
+                    break;
+                case ParserTreeConstants.JJTPRIMITIVETYPE:
+                    writeInt(Arrays.asList(PRIMITIVE_TYPES).indexOf(((BSHPrimitiveType) node).type));
+                    break;
+                case ParserTreeConstants.JJTAMBIGUOUSNAME:
+                    writeString(((BSHAmbiguousName) node).text);
+                    break;
+                case ParserTreeConstants.JJTASSIGNMENT:
+                    writeInt(((BSHAssignment) node).operator);
+                    break;
+                case ParserTreeConstants.JJTBINARYEXPRESSION:
+                    writeInt(((BSHBinaryExpression) node).kind);
+                    break;
+                case ParserTreeConstants.JJTUNARYEXPRESSION:
+                    writeInt(((BSHUnaryExpression) node).kind);
+                    writeBoolean(((BSHUnaryExpression) node).postfix);
+                    break;
+                case ParserTreeConstants.JJTPRIMARYSUFFIX:
+                    writeInt(((BSHPrimarySuffix) node).operation);
+                    writeString(((BSHPrimarySuffix) node).field);
+                    break;
+                case ParserTreeConstants.JJTLITERAL:
+                    writeLiteral(((BSHLiteral) node).value);
+                    break;
+                case ParserTreeConstants.JJTARRAYDIMENSIONS:
+                    writeInt(((BSHArrayDimensions) node).numDefinedDims);
+                    writeInt(((BSHArrayDimensions) node).numUndefinedDims);
+                    break;
+                case ParserTreeConstants.JJTBLOCK:
+                    writeBoolean(((BSHBlock) node).isSynchronized);
+                    break;
+                case ParserTreeConstants.JJTFORMALCOMMENT:
+                    writeString(((BSHFormalComment) node).text);
+                    break;
+                case ParserTreeConstants.JJTSWITCHLABEL:
+                    writeBoolean(((BSHSwitchLabel) node).isDefault);
+                    break;
+                case ParserTreeConstants.JJTWHILESTATEMENT:
+                    writeBoolean(((BSHWhileStatement) node).isDoStatement);
+                    break;
+                case ParserTreeConstants.JJTFORSTATEMENT:
+                    BSHForStatement forStatement = (BSHForStatement) node;
+                    writeBoolean(forStatement.hasForInit);
+                    writeBoolean(forStatement.hasExpression);
+                    writeBoolean(forStatement.hasForUpdate);
+                    break;
+                case ParserTreeConstants.JJTENHANCEDFORSTATEMENT:
+                    writeString(((BSHEnhancedForStatement) node).varName);
+                    break;
+                case ParserTreeConstants.JJTTYPEDVARIABLEDECLARATION:
+                    writeModifiers(((BSHTypedVariableDeclaration) node).modifiers);
+                    break;
+                case ParserTreeConstants.JJTRETURNSTATEMENT:
+                    writeInt(((BSHReturnStatement) node).kind);
+                    break;
+                default:
+                    // no parse data beyond the children
+            }
+        }
+
+        private void writeLiteral(Object value) {
+            if (value == null) {
+                writeInt(NULL);
+            } else if (value == Primitive.NULL) {
+                writeInt(PRIMITIVE_NULL);
+            } else if (value == Primitive.VOID) {
+                writeInt(PRIMITIVE_VOID);
+            } else if (value instanceof String) {
+                writeInt(STRING);
+                writeString((String) value);
+            } else {
+                Object wrapped = ((Primitive) value).getValue();
+                if (wrapped instanceof Boolean) {
+                    writeInt(BOOLEAN);
+                    writeBoolean(((Boolean) wrapped).booleanValue());
+                } else if (wrapped instanceof Character) {
+                    writeInt(CHAR);
+                    writeInt(((Character) wrapped).charValue());
+                } else if (wrapped instanceof Integer) {
+                    writeInt(INT);
+                    writeSigned(((Integer) wrapped).intValue());
+                } else if (wrapped instanceof Long) {
+                    writeInt(LONG);
+                    writeLong(((Long) wrapped).longValue());
+                } else if (wrapped instanceof Float) {
+                    writeInt(FLOAT);
+                    writeSigned(Float.floatToIntBits(((Float) wrapped).floatValue()));
+                } else if (wrapped instanceof Double) {
+                    writeInt(DOUBLE);
+                    writeLong(Double.doubleToLongBits(((Double) wrapped).doubleValue()));
+                } else {
+                    throw new IllegalArgumentException("Unexpected literal: " + value);
+                }
+            }
+        }
+
+        private void writeModifiers(Modifiers modifiers) {
+            if (modifiers == null || modifiers.modifiers == null) {
+                writeInt(modifiers == null ? 0 : 1);
+                return;
+            }
+            writeInt(modifiers.modifiers.size() + 1);
+            for (Enumeration e = modifiers.modifiers.keys(); e.hasMoreElements();) {
+                writeString((String) e.nextElement());
+            }
+        }
+
+        /**
+         * The index of the token plus one, zero for null.
+         */
+        private int tokenNumber(Token t) {
+            Integer index = t == null ? null : (Integer) tokenIndex.get(t);
+            return index == null ? 0 : index.intValue() + 1;
+        }
+
+        /**
+         * Strings are written as their index in the string table plus one, zero for null.
+         */
+        private void writeString(String s) {
+            if (s == null) {
+                writeInt(0);
+                return;
+            }
+            Integer index = (Integer) stringIndex.get(s);
+            if (index == null) {
+                index = Integer.valueOf(strings.size());
+                strings.add(s);
+                stringIndex.put(s, index);
+            }
+            writeInt(index.intValue() + 1);
+        }
+
+        private void writeBoolean(boolean b) {
+            bytes.write(b ? 1 : 0);
+        }
+
+        /**
+         * Unsigned variable length int, seven bits per byte.
+         */
+        private void writeInt(int value) {
+            while ((value & ~0x7F) != 0) {
+                bytes.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes.write(value);
+        }
+
+        private void writeSigned(int value) {
+            writeInt((value << 1) ^ (value >> 31));
+        }
+
+        private void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+    }
+
+    /**
+     * Decodes the tokens and nodes written by Encoder.
+     */
+    private static final class Decoder {
+
+        String[] strings;
+        Token[] tokens;
+        byte[] bytes;
+        int pos;
+        int previousToken;
+
+        void readTokens() {
+            int line = 0, column = 0;
+            for (int i = 0; i < tokens.length; i++) {
+                int header = readInt();
+                int kind = header >>> 2;
+                Token t = Token.newToken(kind);
+                t.kind = kind;
+                t.image = (header & 1) == 0 ? FIXED_IMAGES[kind] : readString();
+                t.beginLine = line + readSigned();
+                t.beginColumn = t.beginLine == line ? column + readSigned() : readSigned();
+                if ((header & 2) == 0) {
+                    t.endLine = t.beginLine;
+                    t.endColumn = t.beginColumn + t.image.length() - 1;
+                } else {
+                    t.endLine = t.beginLine + readInt();
+                    t.endColumn = readInt();
+                }
+                line = t.endLine;
+                column = t.endColumn;
+                tokens[i] = t;
+                if (i > 0) {
+                    tokens[i - 1].next = t;
+                }
+            }
+        }
+
+        SimpleNode readNode() {
+            int id = readInt();
+            SimpleNode node = createNode(id);
+            int first = previousToken + readSigned();
+            node.firstToken = token(first);
+            node.lastToken = token(first + readSigned());
+            previousToken = first;
+            readFields(node);
+            int children = readInt();
+            for (int i = 0; i < children; i++) {
+                SimpleNode child = readNode();
+                child.jjtSetParent(node);
+                node.jjtAddChild(child, i);
+            }
+            return node;
+        }
+
+        private static SimpleNode createNode(int id) {
+            switch (id) {
+                case ParserTreeConstants.JJTCLASSDECLARATION:
+                    return new BSHClassDeclaration(id);
+                case ParserTreeConstants.JJTMETHODDECLARATION:
+                    return new BSHMethodDeclaration(id);
+                case ParserTreeConstants.JJTPACKAGEDECLARATION:
+                    return new BSHPackageDeclaration(id);
+                case ParserTreeConstants.JJTIMPORTDECLARATION:
+                    return new BSHImportDeclaration(id);
+                case ParserTreeConstants.JJTVARIABLEDECLARATOR:
+                    return new BSHVariableDeclarator(id);
+                case ParserTreeConstants.JJTARRAYINITIALIZER:
+                    return new BSHArrayInitializer(id);
+                case ParserTreeConstants.JJTFORMALPARAMETERS:
+                    return new BSHFormalParameters(id);
+                case ParserTreeConstants.JJTFORMALPARAMETER:
+                    return new BSHFormalParameter(id);
+                case ParserTreeConstants.JJTTYPE:
+                    return new BSHType(id);
+                case ParserTreeConstants.JJTRETURNTYPE:
+                    return new BSHReturnType(id);
+                case ParserTreeConstants.JJTPRIMITIVETYPE:
+                    return new BSHPrimitiveType(id);
+                case ParserTreeConstants.JJTAMBIGUOUSNAME:
+                    return new BSHAmbiguousName(id);
+                case ParserTreeConstants.JJTASSIGNMENT:
+                    return new BSHAssignment(id);
+                case ParserTreeConstants.JJTTERNARYEXPRESSION:
+                    return new BSHTernaryExpression(id);
+                case ParserTreeConstants.JJTBINARYEXPRESSION:
+                    return new BSHBinaryExpression(id);
+                case ParserTreeConstants.JJTUNARYEXPRESSION:
+                    return new BSHUnaryExpression(id);
+                case ParserTreeConstants.JJTCASTEXPRESSION:
+                    return new BSHCastExpression(id);
+                case ParserTreeConstants.JJTPRIMARYEXPRESSION:
+                    return new BSHPrimaryExpression(id);
+                case ParserTreeConstants.JJTMETHODINVOCATION:
+                    return new BSHMethodInvocation(id);
+                case ParserTreeConstants.JJTPRIMARYSUFFIX:
+                    return new BSHPrimarySuffix(id);
+                case ParserTreeConstants.JJTLITERAL:
+                    return new BSHLiteral(id);
+                case ParserTreeConstants.JJTARGUMENTS:
+                    return new BSHArguments(id);
+                case ParserTreeConstants.JJTALLOCATIONEXPRESSION:
+                    return new BSHAllocationExpression(id);
+                case ParserTreeConstants.JJTARRAYDIMENSIONS:
+                    return new BSHArrayDimensions(id);
+                case ParserTreeConstants.JJTBLOCK:
+                    return new BSHBlock(id);
+                case ParserTreeConstants.JJTFORMALCOMMENT:
+                    return new BSHFormalComment(id);
+                case ParserTreeConstants.JJTSWITCHSTATEMENT:
+                    return new BSHSwitchStatement(id);
+                case ParserTreeConstants.JJTSWITCHLABEL:
+                    return new BSHSwitchLabel(id);
+                case ParserTreeConstants.JJTIFSTATEMENT:
+                    return new BSHIfStatement(id);
+                case ParserTreeConstants.JJTWHILESTATEMENT:
+                    return new BSHWhileStatement(id);
+                case ParserTreeConstants.JJTFORSTATEMENT:
+                    return new BSHForStatement(id);
+                case ParserTreeConstants.JJTENHANCEDFORSTATEMENT:
+                    return new BSHEnhancedForStatement(id);
+                case ParserTreeConstants.JJTTYPEDVARIABLEDECLARATION:
+                    return new BSHTypedVariableDeclaration(id);
+                case ParserTreeConstants.JJTSTATEMENTEXPRESSIONLIST:
+                    return new BSHStatementExpressionList(id);
+                case ParserTreeConstants.JJTRETURNSTATEMENT:
+                    return new BSHReturnStatement(id);
+                case ParserTreeConstants.JJTTHROWSTATEMENT:
+                    return new BSHThrowStatement(id);
+                case ParserTreeConstants.JJTTRYSTATEMENT:
+                    return new BSHTryStatement(id);
+                default:
+                    throw new IllegalArgumentException("Unknown node: " + id);
+            }
+        }
+
+        private void readFields(SimpleNode node) {
+            switch (node.id) {
+                case ParserTreeConstants.JJTCLASSDECLARATION:
+                    BSHClassDeclaration classDeclaration = (BSHClassDeclaration) node;
+                    classDeclaration.name = readString();
+                    classDeclaration.modifiers = readModifiers();
+                    classDeclaration.numInterfaces = readInt();
+                    classDeclaration.extend = readBoolean();
+                    classDeclaration.isInterface = readBoolean();
+                    break;
+                case ParserTreeConstants.JJTMETHODDECLARATION:
+                    BSHMethodDeclaration methodDeclaration = (BSHMethodDeclaration) node;
+                    methodDeclaration.name = readString();
+                    methodDeclaration.modifiers = readModifiers();
+                    methodDeclaration.numThrows = readInt();
+                    break;
+                case ParserTreeConstants.JJTIMPORTDECLARATION:
+                    BSHImportDeclaration importDeclaration = (BSHImportDeclaration) node;
+                    importDeclaration.importPackage = readBoolean();
+                    importDeclaration.staticImport = readBoolean();
+                    importDeclaration.superImport = readBoolean();
+                    break;
+                case ParserTreeConstants.JJTVARIABLEDECLARATOR:
+                    ((BSHVariableDeclarator) node).name = readString();
+                    break;
+                case ParserTreeConstants.JJTFORMALPARAMETER:
+                    ((BSHFormalParameter) node).name = readString();
+                    break;
+                case ParserTreeConstants.JJTTYPE:
+                    for (int dims = readInt(); dims > 0; dims--) {
+                        ((BSHType) node).addArrayDimension();
+                    }
+                    break;
+                case ParserTreeConstants.JJTRETURNTYPE:
+                    ((BSHReturnType) node).isVoid = readBoolean();
+                    break;
+                case ParserTreeConstants.JJTPRIMITIVETYPE:
+                    ((BSHPrimitiveType) node).type = PRIMITIVE_TYPES[readInt()];
+                    break;
+                case ParserTreeConstants.JJTAMBIGUOUSNAME:
+                    ((BSHAmbiguousName) node).text = readString();
+                    break;
+                case ParserTreeConstants.JJTASSIGNMENT:
+                    ((BSHAssignment) node).operator = readInt();
+                    break;
+                case ParserTreeConstants.JJTBINARYEXPRESSION:
+                    ((BSHBinaryExpression) node).kind = readInt();
+                    break;
+                case ParserTreeConstants.JJTUNARYEXPRESSION:
+                    ((BSHUnaryExpression) node).kind = readInt();
+                    ((BSHUnaryExpression) node).postfix = readBoolean();
+                    break;
+                case ParserTreeConstants.JJTPRIMARYSUFFIX:
+                    ((BSHPrimarySuffix) node).operation = readInt();
+                    ((BSHPrimarySuffix) node).field = readString();
+                    break;
+                case ParserTreeConstants.JJTLITERAL:
+                    ((BSHLiteral) node).value = readLiteral();
+                    break;
+                case ParserTreeConstants.JJTARRAYDIMENSIONS:
+                    ((BSHArrayDimensions) node).numDefinedDims = readInt();
+                    ((BSHArrayDimensions) node).numUndefinedDims = readInt();
+                    break;
+                case ParserTreeConstants.JJTBLOCK:
+                    ((BSHBlock) node).isSynchronized = readBoolean();
+                    break;
+                case ParserTreeConstants.JJTFORMALCOMMENT:
+                    ((BSHFormalComment) node).text = readString();
+                    break;
+                case ParserTreeConstants.JJTSWITCHLABEL:
+                    ((BSHSwitchLabel) node).isDefault = readBoolean();
+                    break;
+                case ParserTreeConstants.JJTWHILESTATEMENT:
+                    ((BSHWhileStatement) node).isDoStatement = readBoolean();
+                    break;
+                case ParserTreeConstants.JJTFORSTATEMENT:
+                    BSHForStatement forStatement = (BSHForStatement) node;
+                    forStatement.hasForInit = readBoolean();
+                    forStatement.hasExpression = readBoolean();
+                    forStatement.hasForUpdate = readBoolean();
+                    break;
+                case ParserTreeConstants.JJTENHANCEDFORSTATEMENT:
+                    ((BSHEnhancedForStatement) node).varName = readString();
+                    break;
+                case ParserTreeConstants.JJTTYPEDVARIABLEDECLARATION:
+                    ((BSHTypedVariableDeclaration) node).modifiers = readModifiers();
+                    break;
+                case ParserTreeConstants.JJTRETURNSTATEMENT:
+                    ((BSHReturnStatement) node).kind = readInt();
+                    break;
+                default:
+                    // no parse data beyond the children
+            }
+        }
+
+        private Object readLiteral() {
+            switch (readInt()) {
+                case NULL:
+                    return null;
+                case PRIMITIVE_NULL:
+                    return Primitive.NULL;
+                case PRIMITIVE_VOID:
+                    return Primitive.VOID;
+                case STRING:
+                    return readString().intern();
+                case BOOLEAN:
+                    return new Primitive(readBoolean());
+                case CHAR:
+                    return new Primitive((char) readInt());
+                case INT:
+                    return new Primitive(readSigned());
+                case LONG:
+                    return new Primitive(readLong());
+                case FLOAT:
+                    return new Primitive(Float.intBitsToFloat(readSigned()));
+                case DOUBLE:
+                    return new Primitive(Double.longBitsToDouble(readLong()));
+                default:
+                    throw new IllegalArgumentException("Unknown literal");
+            }
+        }
+
+        private Modifiers readModifiers() {
+            int count = readInt();
+            if (count == 0) {
+                return null;
+            }
+            Modifiers modifiers = new Modifiers();
+            if (count > 1) {
+                modifiers.modifiers = new Hashtable();
+                for (int i = 1; i < count; i++) {
+                    modifiers.modifiers.put(readString(), Void.TYPE);
+                }
+            }
+            return modifiers;
+        }
+
+        private Token token(int number) {
+            return number == 0 ? null : tokens[number - 1];
+        }
+
+        private String readString() {
+            int index = readInt();
+            return index == 0 ? null : strings[index - 1];
+        }
+
+        private boolean readBoolean() {
+            return bytes[pos++] != 0;
+        }
+
+        private int readInt() {
+            int value = 0;
+            for (int shift = 0;; shift += 7) {
+                byte b = bytes[pos++];
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+
+        private int readSigned() {
+            int value = readInt();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private long readLong() {
+            return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+        }
+    }
+}
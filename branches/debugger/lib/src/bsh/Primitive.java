@@ -88,6 +88,23 @@ public final class Primitive implements ParserConstants, java.io.Serializable {
      * lack of a type to be a special value.
      */
     public static final Primitive VOID = new Primitive(Special.VOID_TYPE);
+    public static final Primitive TRUE = new Primitive(true);
+    public static final Primitive FALSE = new Primitive(false);
+    /*
+     * Shared instances for small int and long values, see valueOf(). A Primitive is immutable, so apart from NULL and
+     * VOID nothing depends on the identity of an instance.
+     */
+    private static final int CACHE_LOW = -128;
+    private static final int CACHE_HIGH = 1023;
+    private static final Primitive[] INT_CACHE = new Primitive[CACHE_HIGH - CACHE_LOW + 1];
+    private static final Primitive[] LONG_CACHE = new Primitive[CACHE_HIGH - CACHE_LOW + 1];
+
+    static {
+        for (int i = 0; i < INT_CACHE.length; i++) {
+            INT_CACHE[i] = new Primitive(i + CACHE_LOW);
+            LONG_CACHE[i] = new Primitive((long) (i + CACHE_LOW));
+        }
+    }
 
     // private to prevent invocation with param that isn't a primitive-wrapper
     public Primitive(Object value) {
@@ -106,35 +123,63 @@ public final class Primitive implements ParserConstants, java.io.Serializable {
     }
 
     public Primitive(boolean value) {
-        this(new Boolean(value));
+        this.value = Boolean.valueOf(value);
     }
 
     public Primitive(byte value) {
-        this(new Byte(value));
+        this.value = Byte.valueOf(value);
     }
 
     public Primitive(short value) {
-        this(new Short(value));
+        this.value = Short.valueOf(value);
     }
 
     public Primitive(char value) {
-        this(new Character(value));
+        this.value = Character.valueOf(value);
     }
 
     public Primitive(int value) {
-        this(new Integer(value));
+        this.value = Integer.valueOf(value);
     }
 
     public Primitive(long value) {
-        this(new Long(value));
+        this.value = Long.valueOf(value);
     }
 
     public Primitive(float value) {
-        this(new Float(value));
+        this.value = Float.valueOf(value);
     }
 
     public Primitive(double value) {
-        this(new Double(value));
+        this.value = Double.valueOf(value);
+    }
+
+    /**
+     * Get a Primitive for the value, sharing instances for true, false and small values in the manner of
+     * Integer.valueOf().
+     */
+    public static Primitive valueOf(boolean value) {
+        return value ? TRUE : FALSE;
+    }
+
+    /**
+     * @see #valueOf(boolean)
+     */
+    public static Primitive valueOf(int value) {
+        if (value >= CACHE_LOW && value <= CACHE_HIGH) {
+            return INT_CACHE[value - CACHE_LOW];
+        }
+        return new Primitive(value);
+    }
+
+    /**
+     * @see #valueOf(boolean)
+     */
+    public static Primitive valueOf(long value) {
+        if (value >= CACHE_LOW && value <= CACHE_HIGH) {
+            return LONG_CACHE[(int) value - CACHE_LOW];
+        }
+        return new Primitive(value);
     }
 
     /**
@@ -177,7 +222,22 @@ public final class Primitive implements ParserConstants, java.io.Serializable {
             return null;
         }
 
-        return unboxType(value.getClass());
+        // the common cases without the map lookup
+        Class wrapperType = value.getClass();
+        if (wrapperType == Integer.class) {
+            return Integer.TYPE;
+        }
+        if (wrapperType == Boolean.class) {
+            return Boolean.TYPE;
+        }
+        if (wrapperType == Double.class) {
+            return Double.TYPE;
+        }
+        if (wrapperType == Long.class) {
+            return Long.TYPE;
+        }
+
+        return unboxType(wrapperType);
     }
 
     /**
@@ -202,6 +262,33 @@ public final class Primitive implements ParserConstants, java.io.Serializable {
         Class lhsOrgType = obj1.getClass();
         Class rhsOrgType = obj2.getClass();
 
+        // Fast path for two int, long or double Primitives: operate on the
+        // primitive values directly without wrapper promotion.
+        if (lhsOrgType == Primitive.class && rhsOrgType == Primitive.class) {
+            Object lhs = ((Primitive) obj1).value;
+            Object rhs = ((Primitive) obj2).value;
+            Class lhsType = lhs.getClass();
+            Class rhsType = rhs.getClass();
+            try {
+                if (lhsType == Integer.class && rhsType == Integer.class) {
+                    return intBinaryOperation(
+                            ((Integer) lhs).intValue(), ((Integer) rhs).intValue(), kind);
+                }
+                if ((lhsType == Long.class || lhsType == Integer.class)
+                        && (rhsType == Long.class || rhsType == Integer.class)) {
+                    return longBinaryOperation(
+                            ((Number) lhs).longValue(), ((Number) rhs).longValue(), kind);
+                }
+                if ((lhsType == Double.class || rhsType == Double.class)
+                        && isIntLongOrDouble(lhsType) && isIntLongOrDouble(rhsType)) {
+                    return doubleBinaryOperation(
+                            ((Number) lhs).doubleValue(), ((Number) rhs).doubleValue(), kind);
+                }
+            } catch (ArithmeticException e) {
+                throw new UtilTargetError("Arithemetic Exception in binary op", e);
+            }
+        }
+
         // Unwrap primitives
         if (obj1 instanceof Primitive) {
             obj1 = ((Primitive) obj1).getValue();
@@ -229,14 +316,19 @@ public final class Primitive implements ParserConstants, java.io.Serializable {
         // If both original args were Primitives return a Primitive result
         // else it was mixed (wrapper/primitive) return the wrapper type
         // Exception is for boolean result, return the primitive
-        if ((lhsOrgType == Primitive.class && rhsOrgType == Primitive.class)
-                || result instanceof Boolean) {
+        if (result instanceof Boolean) {
+            return valueOf(((Boolean) result).booleanValue());
+        } else if (lhsOrgType == Primitive.class && rhsOrgType == Primitive.class) {
             return new Primitive(result);
         } else {
             return result;
         }
     }
 
+    private static boolean isIntLongOrDouble(Class wrapperType) {
+        return wrapperType == Integer.class || wrapperType == Long.class || wrapperType == Double.class;
+    }
+
     static Object binaryOperationImpl(Object lhs, Object rhs, int kind)
             throws UtilEvalError {
         if (lhs instanceof Boolean) {
@@ -260,18 +352,18 @@ public final class Primitive implements ParserConstants, java.io.Serializable {
 
         switch (kind) {
             case EQ:
-                return new Boolean(lhs == rhs);
+                return Boolean.valueOf(lhs == rhs);
 
             case NE:
-                return new Boolean(lhs != rhs);
+                return Boolean.valueOf(lhs != rhs);
 
             case BOOL_OR:
             case BOOL_ORX:
-                return new Boolean(lhs || rhs);
+                return Boolean.valueOf(lhs || rhs);
 
             case BOOL_AND:
             case BOOL_ANDX:
-                return new Boolean(lhs && rhs);
+                return Boolean.valueOf(lhs && rhs);
 
             default:
                 throw new InterpreterError("unimplemented binary operator");
@@ -280,72 +372,73 @@ public final class Primitive implements ParserConstants, java.io.Serializable {
 
     // returns Object covering both Long and Boolean return types
     static Object longBinaryOperation(Long L1, Long L2, int kind) {
-        long lhs = L1.longValue();
-        long rhs = L2.longValue();
+        return longBinaryOperation(L1.longValue(), L2.longValue(), kind).getValue();
+    }
 
+    static Primitive longBinaryOperation(long lhs, long rhs, int kind) {
         switch (kind) {
             // boolean
             case LT:
             case LTX:
-                return new Boolean(lhs < rhs);
+                return valueOf(lhs < rhs);
 
             case GT:
             case GTX:
-                return new Boolean(lhs > rhs);
+                return valueOf(lhs > rhs);
 
             case EQ:
-                return new Boolean(lhs == rhs);
+                return valueOf(lhs == rhs);
 
             case LE:
             case LEX:
-                return new Boolean(lhs <= rhs);
+                return valueOf(lhs <= rhs);
 
             case GE:
             case GEX:
-                return new Boolean(lhs >= rhs);
+                return valueOf(lhs >= rhs);
 
             case NE:
-                return new Boolean(lhs != rhs);
+                return valueOf(lhs != rhs);
 
             // arithmetic
             case PLUS:
-                return new Long(lhs + rhs);
+                return valueOf(lhs + rhs);
 
             case MINUS:
-                return new Long(lhs - rhs);
+                return valueOf(lhs - rhs);
 
             case STAR:
-                return new Long(lhs * rhs);
+                return valueOf(lhs * rhs);
 
             case SLASH:
-                return new Long(lhs / rhs);
+                return valueOf(lhs / rhs);
 
             case MOD:
-                return new Long(lhs % rhs);
+                return valueOf(lhs % rhs);
 
             // bitwise
             case LSHIFT:
             case LSHIFTX:
-                return new Long(lhs << rhs);
+                return valueOf(lhs << rhs);
 
             case RSIGNEDSHIFT:
             case RSIGNEDSHIFTX:
-                return new Long(lhs >> rhs);
+                return valueOf(lhs >> rhs);
 
             case RUNSIGNEDSHIFT:
             case RUNSIGNEDSHIFTX:
-                return new Long(lhs >>> rhs);
+                return valueOf(lhs >>> rhs);
 
             case BIT_AND:
             case BIT_ANDX:
-                return new Long(lhs & rhs);
+                return valueOf(lhs & rhs);
 
             case BIT_OR:
             case BIT_ORX:
-                return new Long(lhs | rhs);
+                return valueOf(lhs | rhs);
 
             case XOR:
-                return new Long(lhs ^ rhs);
+                return valueOf(lhs ^ rhs);
 
             default:
                 throw new InterpreterError(
@@ -355,72 +448,73 @@ public final class Primitive implements ParserConstants, java.io.Serializable {
 
     // returns Object covering both Integer and Boolean return types
     static Object intBinaryOperation(Integer I1, Integer I2, int kind) {
-        int lhs = I1.intValue();
-        int rhs = I2.intValue();
+        return intBinaryOperation(I1.intValue(), I2.intValue(), kind).getValue();
+    }
 
+    static Primitive intBinaryOperation(int lhs, int rhs, int kind) {
         switch (kind) {
             // boolean
             case LT:
             case LTX:
-                return new Boolean(lhs < rhs);
+                return valueOf(lhs < rhs);
 
             case GT:
             case GTX:
-                return new Boolean(lhs > rhs);
+                return valueOf(lhs > rhs);
 
             case EQ:
-                return new Boolean(lhs == rhs);
+                return valueOf(lhs == rhs);
 
             case LE:
             case LEX:
-                return new Boolean(lhs <= rhs);
+                return valueOf(lhs <= rhs);
 
             case GE:
             case GEX:
-                return new Boolean(lhs >= rhs);
+                return valueOf(lhs >= rhs);
 
             case NE:
-                return new Boolean(lhs != rhs);
+                return valueOf(lhs != rhs);
 
             // arithmetic
             case PLUS:
-                return new Integer(lhs + rhs);
+                return valueOf(lhs + rhs);
 
             case MINUS:
-                return new Integer(lhs - rhs);
+                return valueOf(lhs - rhs);
 
             case STAR:
-                return new Integer(lhs * rhs);
+                return valueOf(lhs * rhs);
 
             case SLASH:
-                return new Integer(lhs / rhs);
+                return valueOf(lhs / rhs);
 
             case MOD:
-                return new Integer(lhs % rhs);
+                return valueOf(lhs % rhs);
 
             // bitwise
             case LSHIFT:
             case LSHIFTX:
-                return new Integer(lhs << rhs);
+                return valueOf(lhs << rhs);
 
             case RSIGNEDSHIFT:
             case RSIGNEDSHIFTX:
-                return new Integer(lhs >> rhs);
+                return valueOf(lhs >> rhs);
 
             case RUNSIGNEDSHIFT:
             case RUNSIGNEDSHIFTX:
-                return new Integer(lhs >>> rhs);
+                return valueOf(lhs >>> rhs);
 
             case BIT_AND:
             case BIT_ANDX:
-                return new Integer(lhs & rhs);
+                return valueOf(lhs & rhs);
 
             case BIT_OR:
             case BIT_ORX:
-                return new Integer(lhs | rhs);
+                return valueOf(lhs | rhs);
 
             case XOR:
-                return new Integer(lhs ^ rhs);
+                return valueOf(lhs ^ rhs);
 
             default:
                 throw new InterpreterError(
@@ -431,48 +525,50 @@ public final class Primitive implements ParserConstants, java.io.Serializable {
     // returns Object covering both Double and Boolean return types
     static Object doubleBinaryOperation(Double D1, Double D2, int kind)
             throws UtilEvalError {
-        double lhs = D1.doubleValue();
-        double rhs = D2.doubleValue();
+        return doubleBinaryOperation(D1.doubleValue(), D2.doubleValue(), kind).getValue();
+    }
 
+    static Primitive doubleBinaryOperation(double lhs, double rhs, int kind)
+            throws UtilEvalError {
         switch (kind) {
             // boolean
             case LT:
             case LTX:
-                return new Boolean(lhs < rhs);
+                return valueOf(lhs < rhs);
 
             case GT:
             case GTX:
-                return new Boolean(lhs > rhs);
+                return valueOf(lhs > rhs);
 
             case EQ:
-                return new Boolean(lhs == rhs);
+                return valueOf(lhs == rhs);
 
             case LE:
             case LEX:
-                return new Boolean(lhs <= rhs);
+                return valueOf(lhs <= rhs);
 
             case GE:
             case GEX:
-                return new Boolean(lhs >= rhs);
+                return valueOf(lhs >= rhs);
 
             case NE:
-                return new Boolean(lhs != rhs);
+                return valueOf(lhs != rhs);
 
             // arithmetic
             case PLUS:
-                return new Double(lhs + rhs);
+                return new Primitive(lhs + rhs);
 
             case MINUS:
-                return new Double(lhs - rhs);
+                return new Primitive(lhs - rhs);
 
             case STAR:
-                return new Double(lhs * rhs);
+                return new Primitive(lhs * rhs);
 
             case SLASH:
-                return new Double(lhs / rhs);
+                return new Primitive(lhs / rhs);
 
             case MOD:
-                return new Double(lhs % rhs);
+                return new Primitive(lhs % rhs);
 
             // can't shift floating-point values
             case LSHIFT:
@@ -615,7 +711,7 @@ public final class Primitive implements ParserConstants, java.io.Serializable {
         Object operand = promoteToInteger(val.getValue());
 
         if (operand instanceof Boolean) {
-            return new Primitive(booleanUnaryOperation((Boolean) operand, kind));
+            return valueOf(booleanUnaryOperation((Boolean) operand, kind));
         } else if (operand instanceof Integer) {
             int result = intUnaryOperation((Integer) operand, kind);
 
@@ -632,9 +728,9 @@ public final class Primitive implements ParserConstants, java.io.Serializable {
                 }
             }
 
-            return new Primitive(result);
+            return valueOf(result);
         } else if (operand instanceof Long) {
-            return new Primitive(longUnaryOperation((Long) operand, kind));
+            return valueOf(longUnaryOperation((Long) operand, kind));
         } else if (operand instanceof Float) {
             return new Primitive(floatUnaryOperation((Float) operand, kind));
         } else if (operand instanceof Double) {
@@ -1017,8 +1113,16 @@ public final class Primitive implements ParserConstants, java.io.Serializable {
             }
         }
 
-        return checkOnly ? Types.VALID_CAST
-                : new Primitive(castWrapper(toType, value));
+        if (checkOnly) {
+            return Types.VALID_CAST;
+        }
+
+        // nothing to convert, share the immutable value
+        if (toType == fromType) {
+            return fromValue;
+        }
+
+        return new Primitive(castWrapper(toType, value));
     }
 
     public static boolean isWrapperType(Class type) {
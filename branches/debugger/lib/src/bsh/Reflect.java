@@ -45,6 +45,21 @@ class Reflect {
             Object object, String methodName, Object[] args,
             Interpreter interpreter, CallStack callstack, SimpleNode callerInfo)
             throws ReflectError, EvalError, InvocationTargetException {
+        return invokeObjectMethod(
+                object, methodName, args, interpreter, callstack, callerInfo, null);
+    }
+
+    /**
+     * Invoke method on arbitrary object instance, looking up and recording the resolved Java method in the call site
+     * cache of the invocation.
+     *
+     * @param cache the inline cache of the call site, may be null
+     */
+    static Object invokeObjectMethod(
+            Object object, String methodName, Object[] args,
+            Interpreter interpreter, CallStack callstack, SimpleNode callerInfo,
+            InlineMethodCache cache)
+            throws ReflectError, EvalError, InvocationTargetException {
         // Bsh scripted object
         if (object instanceof This && !This.isExposedThisMethod(methodName)) {
             return ((This) object).invokeMethod(
@@ -60,10 +75,20 @@ class Reflect {
                     interpreter == null ? null : interpreter.getClassManager();
             Class clas = object.getClass();
 
-            Method method = resolveExpectedJavaMethod(
-                    bcm, clas, object, methodName, args, false);
+            Method method = null;
+            boolean cacheable = cache != null && bcm != null && object != Primitive.NULL;
+            if (cacheable) {
+                method = cache.get(bcm, clas, false, args);
+            }
+            if (method == null) {
+                method = resolveExpectedJavaMethod(
+                        bcm, clas, object, methodName, args, false);
+                if (cacheable) {
+                    cache.put(bcm, clas, false, args, method);
+                }
+            }
 
-            return invokeMethod(method, object, args);
+            return invoker(bcm).invokeMethod(method, object, args);
         } catch (UtilEvalError e) {
             throw e.toEvalError(callerInfo, callstack);
         }
@@ -76,10 +101,40 @@ class Reflect {
     public static Object invokeStaticMethod(
             BshClassManager bcm, Class clas, String methodName, Object[] args)
             throws ReflectError, UtilEvalError, InvocationTargetException {
+        return invokeStaticMethod(bcm, clas, methodName, args, null);
+    }
+
+    /**
+     * Invoke a method known to be static, looking up and recording the resolved Java method in the call site cache of
+     * the invocation.
+     *
+     * @param cache the inline cache of the call site, may be null
+     */
+    static Object invokeStaticMethod(
+            BshClassManager bcm, Class clas, String methodName, Object[] args,
+            InlineMethodCache cache)
+            throws ReflectError, UtilEvalError, InvocationTargetException {
         Interpreter.debug("invoke static Method");
-        Method method = resolveExpectedJavaMethod(
-                bcm, clas, null, methodName, args, true);
-        return invokeMethod(method, null, args);
+        Method method = null;
+        boolean cacheable = cache != null && bcm != null;
+        if (cacheable) {
+            method = cache.get(bcm, clas, true, args);
+        }
+        if (method == null) {
+            method = resolveExpectedJavaMethod(
+                    bcm, clas, null, methodName, args, true);
+            if (cacheable) {
+                cache.put(bcm, clas, true, args, method);
+            }
+        }
+        return invoker(bcm).invokeMethod(method, null, args);
+    }
+
+    /**
+     * @return the member invoker of the class manager, or the reflective invoker if there is no class manager
+     */
+    static MemberInvoker invoker(BshClassManager bcm) {
+        return bcm == null ? MemberInvoker.REFLECTION : bcm.getMemberInvoker();
     }
 
     /**
@@ -167,7 +222,18 @@ class Reflect {
 
     public static Object getStaticFieldValue(Class clas, String fieldName)
             throws UtilEvalError, ReflectError {
-        return getFieldValue(clas, null, fieldName, true/*
+        return getStaticFieldValue(null, clas, fieldName);
+    }
+
+    /**
+     * Get the value of a static field, reading it through the member invoker of the class manager.
+     *
+     * @param bcm may be null
+     */
+    static Object getStaticFieldValue(
+            BshClassManager bcm, Class clas, String fieldName)
+            throws UtilEvalError, ReflectError {
+        return getFieldValue(bcm, clas, null, fieldName, true/*
                  * onlystatic
                  */);
     }
@@ -176,19 +242,31 @@ class Reflect {
      */
     public static Object getObjectFieldValue(Object object, String fieldName)
             throws UtilEvalError, ReflectError {
+        return getObjectFieldValue(null, object, fieldName);
+    }
+
+    /**
+     * Get the value of an object field or field style property, reading it through the member invoker of the class
+     * manager.
+     *
+     * @param bcm may be null
+     */
+    static Object getObjectFieldValue(
+            BshClassManager bcm, Object object, String fieldName)
+            throws UtilEvalError, ReflectError {
         if (object instanceof This) {
             return ((This) object).namespace.getVariable(fieldName);
         } else {
             try {
                 return getFieldValue(
-                        object.getClass(), object, fieldName, false/*
+                        bcm, object.getClass(), object, fieldName, false/*
                          * onlystatic
                          */);
             } catch (ReflectError e) {
                 // no field, try property acces
 
                 if (hasObjectPropertyGetter(object.getClass(), fieldName)) {
-                    return getObjectProperty(object, fieldName);
+                    return getObjectProperty(bcm, object, fieldName);
                 } else {
                     throw e;
                 }
@@ -237,20 +315,28 @@ class Reflect {
     }
 
     private static Object getFieldValue(
-            Class clas, Object object, String fieldName, boolean staticOnly)
+            BshClassManager bcm, Class clas, Object object, String fieldName,
+            boolean staticOnly)
             throws UtilEvalError, ReflectError {
-        try {
-            Field f = resolveExpectedJavaField(clas, fieldName, staticOnly);
+        Field f = resolveExpectedJavaField(clas, fieldName, staticOnly);
+        return invoker(bcm).getFieldValue(f, object);
+    }
 
+    /**
+     * Get the value of the resolved field through java.lang.reflect.
+     */
+    static Object getFieldValue(Field f, Object object)
+            throws ReflectError {
+        try {
             Object value = f.get(object);
             Class returnType = f.getType();
             return Primitive.wrap(value, returnType);
 
         } catch (NullPointerException e) { // shouldn't happen
             throw new ReflectError(
-                    "???" + fieldName + " is not a static field.");
+                    "???" + f.getName() + " is not a static field.");
         } catch (IllegalAccessException e) {
-            throw new ReflectError("Can't access field: " + fieldName);
+            throw new ReflectError("Can't access field: " + f.getName());
         }
     }
 
@@ -564,12 +650,21 @@ class Reflect {
      */
     static Object constructObject(Class clas, Object[] args)
             throws ReflectError, InvocationTargetException {
+        return constructObject(null, clas, args);
+    }
+
+    /**
+     * Construct an object, creating the instance through the member invoker of the class manager.
+     *
+     * @param bcm may be null
+     */
+    static Object constructObject(BshClassManager bcm, Class clas, Object[] args)
+            throws ReflectError, InvocationTargetException {
         if (clas.isInterface()) {
             throw new ReflectError(
                     "Can't create instance of an interface: " + clas);
         }
 
-        Object obj = null;
         Class[] types = Types.getTypes(args);
         Constructor con = null;
 
@@ -595,11 +690,20 @@ class Reflect {
                  */ }
         }
 
+        return invoker(bcm).construct(con, args);
+    }
+
+    /**
+     * Create a new instance with the resolved constructor through java.lang.reflect.
+     */
+    static Object newInstance(Constructor con, Object[] args)
+            throws ReflectError, InvocationTargetException {
+        Object obj = null;
         args = Primitive.unwrap(args);
         try {
             obj = con.newInstance(args);
         } catch (InstantiationException e) {
-            throw new ReflectError("The class " + clas + " is abstract ");
+            throw new ReflectError("The class " + con.getDeclaringClass() + " is abstract ");
         } catch (IllegalAccessException e) {
             throw new ReflectError(
                     "We don't have permission to create an instance."
@@ -744,6 +848,17 @@ class Reflect {
     public static Object getObjectProperty(
             Object obj, String propName)
             throws UtilEvalError, ReflectError {
+        return getObjectProperty(null, obj, propName);
+    }
+
+    /**
+     * Get a property through its accessor method, calling it through the member invoker of the class manager.
+     *
+     * @param bcm may be null
+     */
+    static Object getObjectProperty(
+            BshClassManager bcm, Object obj, String propName)
+            throws UtilEvalError, ReflectError {
         Object[] args = new Object[]{};
 
         Interpreter.debug("property access: ");
@@ -780,7 +895,7 @@ class Reflect {
         }
 
         try {
-            return invokeMethod(method, obj, args);
+            return invoker(bcm).invokeMethod(method, obj, args);
         } catch (InvocationTargetException e) {
             throw new UtilEvalError("Property accessor threw exception: "
                     + e.getTargetException());
@@ -0,0 +1,221 @@
+/***********************************************************************************************************************
+ *                                                                                                                     *
+ *  This file is part of the BeanShell Java Scripting distribution.                                                    *
+ *  Documentation and updates may be found at http://www.beanshell.org/                                                *
+ *                                                                                                                     *
+ *  This program is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General  *
+ *  Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option)  *
+ *  any later version.                                                                                                 *
+ *                                                                                                                     *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for    *
+ *  more details.                                                                                                      *
+ *                                                                                                                     *
+ *  You should have received a copy of the GNU Lesser General Public License along with this program.                  *
+ *  If not, see <http://www.gnu.org/licenses/>.                                                                        *
+ *                                                                                                                     *
+ *  Patrick Niemeyer (pat@pat.net)                                                                                     *
+ *  Author of Learning Java, O'Reilly & Associates                                                                     *
+ *  http://www.pat.net/~pat/                                                                                           *
+ *                                                                                                                     *
+ **********************************************************************************************************************/
+package bsh;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, thread safe cache of class and method resolution results, used by BshClassManager for its class, non
+ * class and resolved method caches. Lookups and insertions do not lock; they go straight to a ConcurrentHashMap. <p>
+ *
+ * When an insertion takes the cache over its size bound one thread sweeps it with a second chance (clock) policy:
+ * entries looked up since the previous sweep are spared once and the others are dropped, until a quarter of the bound is
+ * free again. This approximates least recently used eviction without ordering the map on every hit. <p>
+ *
+ * The size of the caches created by the class manager may be set with the system property bsh.resolutionCacheSize. A
+ * size of zero disables caching.
+ */
+public final class ResolutionCache {
+
+    /**
+     * The default number of entries held by each of the class manager caches.
+     */
+    public static final int DEFAULT_SIZE = 4096;
+
+    /**
+     * Decides which entries survive an invalidation.
+     *
+     * @see #retain(Filter)
+     */
+    public interface Filter {
+        boolean keep(Object key, Object value);
+    }
+
+    private final String name;
+    private final int maxEntries;
+    private final ConcurrentHashMap entries = new ConcurrentHashMap();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * @param name a name for the cache, used by toString()
+     * @param maxEntries the maximum number of entries held. Zero or less disables caching.
+     */
+    public ResolutionCache(String name, int maxEntries) {
+        this.name = name;
+        this.maxEntries = maxEntries;
+    }
+
+    static int defaultSize() {
+        try {
+            return Integer.getInteger("bsh.resolutionCacheSize", DEFAULT_SIZE).intValue();
+        } catch (SecurityException e) {
+            return DEFAULT_SIZE;
+        }
+    }
+
+    /**
+     * @return the cached value or null
+     */
+    public Object get(Object key) {
+        Entry entry = (Entry) entries.get(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (!entry.referenced) {
+            entry.referenced = true;
+        }
+        hits.incrementAndGet();
+        return entry.value;
+    }
+
+    public void put(Object key, Object value) {
+        if (maxEntries <= 0) {
+            return;
+        }
+        entries.put(key, new Entry(value));
+        if (entries.size() > maxEntries) {
+            evict();
+        }
+    }
+
+    public void remove(Object key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Drop the entries rejected by the filter.
+     *
+     * @return the number of entries dropped
+     */
+    public int retain(Filter filter) {
+        int dropped = 0;
+        for (Iterator it = entries.entrySet().iterator(); it.hasNext();) {
+            Map.Entry e = (Map.Entry) it.next();
+            if (!filter.keep(e.getKey(), ((Entry) e.getValue()).value)) {
+                it.remove();
+                dropped++;
+            }
+        }
+        invalidations.addAndGet(dropped);
+        return dropped;
+    }
+
+    /**
+     * Drop all entries. The statistics are kept.
+     */
+    public void clear() {
+        invalidations.addAndGet(entries.size());
+        entries.clear();
+    }
+
+    private void evict() {
+        // one sweeper at a time; the others go on and may briefly leave the cache a little over its bound
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int target = maxEntries - maxEntries / 4;
+            // entries keep being referenced while we sweep, so give up after a few passes rather than spin
+            for (int pass = 0; pass < 3 && entries.size() > target; pass++) {
+                for (Iterator it = entries.values().iterator(); it.hasNext() && entries.size() > target;) {
+                    Entry entry = (Entry) it.next();
+                    if (entry.referenced) {
+                        entry.referenced = false;
+                    } else {
+                        it.remove();
+                        evictions.incrementAndGet();
+                    }
+                }
+            }
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    /**
+     * The maximum number of entries held by this cache.
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * The number of entries currently held by this cache.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * The number of lookups that found an entry.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * The number of lookups that found nothing.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * The number of entries dropped to stay within the size bound.
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * The number of entries dropped because a class loading change made them stale.
+     */
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + entries.size() + "/" + maxEntries + " entries, " + hits + " hits, " + misses
+                + " misses, " + evictions + " evictions, " + invalidations + " invalidations";
+    }
+
+    private static final class Entry {
+
+        final Object value;
+        // set by lookups, cleared by the sweep
+        volatile boolean referenced;
+
+        Entry(Object value) {
+            this.value = value;
+        }
+    }
+}
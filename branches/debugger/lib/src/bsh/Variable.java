@@ -143,6 +143,17 @@ public class Variable implements java.io.Serializable {
         return modifiers != null && modifiers.hasModifier(name);
     }
 
+    /**
+     * A variable of the same name, type, modifiers and value.
+     */
+    Variable copy() {
+        Variable copy = new Variable(name, type, lhs);
+        copy.typeDescriptor = typeDescriptor;
+        copy.value = value;
+        copy.modifiers = modifiers;
+        return copy;
+    }
+
     public String toString() {
         return "Variable: " + super.toString() + " " + name + ", type:" + type
                 + ", value:" + value + ", lhs = " + lhs;
@@ -27,9 +27,24 @@ import bsh.StringUtil;
 import java.io.*;
 import java.lang.ref.WeakReference;
 import java.net.MalformedURLException;
+import java.net.URI;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.jar.JarFile;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 /**
@@ -117,6 +132,7 @@ public class BshClassPath
         path.add(url);
         if (mapsInitialized) {
             map(url);
+            saveIndex();
         }
     }
 
@@ -322,63 +338,120 @@ public class BshClassPath
     }
 
     /**
-     * call map(url) for each url in the array
+     * Map each url in the array. The components are read in parallel and then merged in path order, so that a class
+     * found in more than one component keeps the source that comes first.
      */
     synchronized void map(URL[] urls) {
-        for (int i = 0; i < urls.length; i++) {
-            try {
-                map(urls[i]);
-            } catch (IOException e) {
-                String s = "Error constructing classpath: " + urls[i] + ": " + e;
-                errorWhileMapping(s);
+        ComponentClasses[] found = new ComponentClasses[urls.length];
+        if (urls.length > 1) {
+            ForkJoinTask[] tasks = new ForkJoinTask[urls.length];
+            for (int i = 0; i < urls.length; i++) {
+                tasks[i] = ForkJoinPool.commonPool().submit(new ScanTask(urls[i]));
             }
+            for (int i = 0; i < urls.length; i++) {
+                found[i] = (ComponentClasses) tasks[i].join();
+            }
+        } else if (urls.length == 1) {
+            found[0] = scan(urls[0]);
+        }
+        for (int i = 0; i < found.length; i++) {
+            map(found[i]);
         }
+        saveIndex();
     }
 
-    synchronized void map(URL url)
-            throws IOException {
+    synchronized void map(URL url) {
+        map(scan(url));
+    }
+
+    private void map(ComponentClasses found) {
+        if (found.packages != null) {
+            classMapping(found.message);
+            mapPackages(found.packages, found.source);
+        } else {
+            errorWhileMapping(found.message);
+        }
+    }
+
+    /**
+     * Find the classes in a path component. This touches no state of the class path and may run on any thread.
+     */
+    static ComponentClasses scan(URL url) {
         String name = url.getFile();
         File f = new File(name);
-
-        if (f.isDirectory()) {
-            classMapping("Directory " + f.toString());
-            map(traverseDirForClasses(f), new DirClassSource(f));
-        } else if (isArchiveFileName(name)) {
-            classMapping("Archive: " + url);
-            map(searchJarForClasses(url), new JarClassSource(url));
-        } /*
-         * else if ( isClassFileName( name ) ) map( looseClass( name ), url );
-         */ else {
-            String s = "Not a classpath component: " + name;
-            errorWhileMapping(s);
+        try {
+            if (JrtClassSource.isJrt(url)) {
+                return new ComponentClasses("Modules: " + url, JrtClassSource.searchModulesForClasses(),
+                        JrtClassSource.getInstance());
+            } else if (f.isDirectory()) {
+                return new ComponentClasses("Directory " + f.toString(),
+                        ClassPathIndex.groupByPackage(traverseDirForClasses(f)), new DirClassSource(f));
+            } else if (isArchiveFileName(name)) {
+                return new ComponentClasses("Archive: " + url,
+                        searchIndexedJarForClasses(f, url), new JarClassSource(url));
+            } /*
+             * else if ( isClassFileName( name ) ) map( looseClass( name ), url );
+             */ else {
+                return new ComponentClasses("Not a classpath component: " + name, null, null);
+            }
+        } catch (IOException e) {
+            return new ComponentClasses("Error constructing classpath: " + url + ": " + e, null, null);
         }
     }
 
-    private void map(String[] classes, Object source) {
-        for (int i = 0; i < classes.length; i++) {
-            //System.out.println( classes[i] +": "+ source );
-            mapClass(classes[i], source);
+    /**
+     * The classes of one path component grouped by package, or an error message if the component could not be read.
+     */
+    static class ComponentClasses {
+
+        final String message;
+        final Map packages;
+        final Object source;
+
+        ComponentClasses(String message, Map packages, Object source) {
+            this.message = message;
+            this.packages = packages;
+            this.source = source;
         }
     }
 
-    private void mapClass(String className, Object source) {
-        // add to package map
-        String[] sa = splitClassname(className);
-        String pack = sa[0];
-        String clas = sa[1];
-        Set set = (Set) packageMap.get(pack);
-        if (set == null) {
-            set = new HashSet();
-            packageMap.put(pack, set);
+    static class ScanTask implements Callable {
+
+        final URL url;
+
+        ScanTask(URL url) {
+            this.url = url;
         }
-        set.add(className);
 
-        // Add to classSource map
-        Object obj = classSource.get(className);
-        // don't replace previously set (found earlier in classpath or
-        // explicitly set via setClassSource() )
-        if (obj == null) {
-            classSource.put(className, source);
+        public Object call() {
+            return scan(url);
+        }
+    }
+
+    /**
+     * Map classes already grouped by package, the unpackaged ones under the empty string.
+     */
+    private void mapPackages(Map packages, Object source) {
+        for (Iterator it = packages.entrySet().iterator(); it.hasNext();) {
+            Map.Entry e = (Map.Entry) it.next();
+            String pack = (String) e.getKey();
+            if (pack.length() == 0) {
+                pack = "<unpackaged>";
+            }
+            String[] classes = (String[]) e.getValue();
+            Set set = (Set) packageMap.get(pack);
+            if (set == null) {
+                set = new HashSet();
+                packageMap.put(pack, set);
+            }
+            for (int i = 0; i < classes.length; i++) {
+                set.add(classes[i]);
+                // don't replace previously set (found earlier in classpath or
+                // explicitly set via setClassSource() )
+                if (!classSource.containsKey(classes[i])) {
+                    classSource.put(classes[i], source);
+                }
+            }
         }
     }
 
@@ -386,6 +459,7 @@ public class BshClassPath
      * Clear everything and reset the path to empty.
      */
     synchronized private void reset() {
+        closeJarHandles();
         path = new ArrayList();
         compPaths = null;
         clearCachedStructures();
@@ -402,6 +476,18 @@ public class BshClassPath
         nameSpaceChanged();
     }
 
+    /**
+     * Close the jar files of this path held open for loading classes. They are opened again when next needed.
+     */
+    synchronized void closeJarHandles() {
+        if (path == null) {
+            return;
+        }
+        for (Iterator it = path.iterator(); it.hasNext();) {
+            JarClassSource.closeJarHandle((URL) it.next());
+        }
+    }
+
     public void classPathChanged() {
         clearCachedStructures();
         notifyListeners();
@@ -451,10 +537,28 @@ public class BshClassPath
     }
 
     /**
-     * Get the class file entries from the Jar
+     * Get the class file entries from the Jar. A local jar file is read through its central directory without
+     * inflating any entry; other URLs are streamed.
      */
     static String[] searchJarForClasses(URL jar)
             throws IOException {
+        File file = new File(jar.getFile());
+        if ("file".equals(jar.getProtocol()) && file.isFile()) {
+            List list = new ArrayList();
+            ZipFile zip = new ZipFile(file);
+            try {
+                for (Enumeration e = zip.entries(); e.hasMoreElements();) {
+                    String name = ((ZipEntry) e.nextElement()).getName();
+                    if (isClassFileName(name)) {
+                        list.add(canonicalizeClassName(name));
+                    }
+                }
+            } finally {
+                zip.close();
+            }
+            return (String[]) list.toArray(new String[0]);
+        }
+
         Vector v = new Vector();
         InputStream in = jar.openStream();
         ZipInputStream zin = new ZipInputStream(in);
@@ -473,6 +577,33 @@ public class BshClassPath
         return sa;
     }
 
+    /**
+     * Get the class file entries from the class path index, scanning the Jar only if it is not indexed or has changed.
+     *
+     * @return a map of package name to the full names of the classes in it
+     */
+    static Map searchIndexedJarForClasses(File file, URL jar)
+            throws IOException {
+        ClassPathIndex index = getClassPathIndex();
+        Map packages = index == null ? null : index.get(file);
+        if (packages == null) {
+            String[] classes = searchJarForClasses(jar);
+            if (index != null && file.isFile()) {
+                packages = index.put(file, classes);
+            } else {
+                packages = ClassPathIndex.groupByPackage(classes);
+            }
+        }
+        return packages;
+    }
+
+    static void saveIndex() {
+        ClassPathIndex index = getClassPathIndex();
+        if (index != null) {
+            index.save();
+        }
+    }
+
     public static boolean isClassFileName(String name) {
         return (name.toLowerCase().endsWith(".class"));
         //&& (name.indexOf('$')==-1) );
@@ -618,9 +749,34 @@ public class BshClassPath
         return userClassPath;
     }
     static BshClassPath bootClassPath;
+    static ClassPathIndex classPathIndex;
+    static boolean classPathIndexSet;
 
     /**
-     * Get the boot path including the lib/rt.jar if possible.
+     * The index of archive contents consulted when mapping any class path, by default the one named by the
+     * bsh.classPathIndex system property. There is none unless the property is set.
+     *
+     * @return the index or null if there is none
+     */
+    public static synchronized ClassPathIndex getClassPathIndex() {
+        if (!classPathIndexSet) {
+            classPathIndex = ClassPathIndex.createDefault();
+            classPathIndexSet = true;
+        }
+        return classPathIndex;
+    }
+
+    /**
+     * Replace the index of archive contents, null for none.
+     */
+    public static synchronized void setClassPathIndex(ClassPathIndex index) {
+        classPathIndex = index;
+        classPathIndexSet = true;
+    }
+
+    /**
+     * Get the boot path including the lib/rt.jar if possible. On a JDK without rt.jar the boot path is the jrt:/ module
+     * image.
      */
     public static BshClassPath getBootClassPath()
             throws ClassPathException {
@@ -628,7 +784,14 @@ public class BshClassPath
             try {
                 //String rtjar = System.getProperty("java.home")+"/lib/rt.jar";
                 String rtjar = getRTJarPath();
-                URL url = new File(rtjar).toURI().toURL();
+                URL url;
+                if (rtjar != null) {
+                    url = new File(rtjar).toURI().toURL();
+                } else if (JrtClassSource.isAvailable()) {
+                    url = new URL(JrtClassSource.JRT_URL);
+                } else {
+                    throw new ClassPathException("can't find boot jar or module image");
+                }
                 bootClassPath = new BshClassPath(
                         "Boot Class Path", new URL[]{url});
             } catch (MalformedURLException e) {
@@ -638,7 +801,7 @@ public class BshClassPath
         return bootClassPath;
     }
 
-    private static String getRTJarPath() {
+    static String getRTJarPath() {
         String urlString =
                 Class.class.getResource("/java/lang/String.class").toExternalForm();
 
@@ -659,10 +822,68 @@ public class BshClassPath
         Object source;
 
         abstract byte[] getCode(String className);
+
+        /**
+         * Get the code of the class as a buffer holding exactly the class file bytes, for
+         * ClassLoader.defineClass(String, ByteBuffer, ProtectionDomain). The buffer may be reused by the next call on
+         * the same thread, so it must be consumed before then.
+         *
+         * @return the buffer or null if the class is not found here
+         */
+        ByteBuffer getCodeBuffer(String className) {
+            byte[] code = getCode(className);
+            return code == null ? null : ByteBuffer.wrap(code);
+        }
+    }
+
+    /**
+     * A direct buffer per thread, reused for the class file bytes read by getCodeBuffer(). Class files are read
+     * straight into it and handed to the VM without passing through a Java array.
+     */
+    private static final ThreadLocal codeBuffer = new ThreadLocal();
+
+    static ByteBuffer codeBuffer(int size) {
+        ByteBuffer buffer = (ByteBuffer) codeBuffer.get();
+        if (buffer == null || buffer.capacity() < size) {
+            // round up to limit reallocation as larger classes come along
+            buffer = ByteBuffer.allocateDirect(Math.max(size + (size >> 1), 16 * 1024));
+            codeBuffer.set(buffer);
+        }
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+    }
+
+    static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
     }
 
     public static class JarClassSource extends ClassSource {
 
+        /**
+         * The most jar files held open at once.
+         */
+        static final int MAX_OPEN_JARS = 32;
+        /**
+         * Open jar files by absolute path, shared by all sources so that loading classes one at a time does not open
+         * the jar over and over. The least recently used jar is closed when more than MAX_OPEN_JARS are open, and the
+         * jars of a class path are closed when it is reset (see BshClassPath.closeJarHandles()).
+         */
+        private static final Map jarHandles = new LinkedHashMap(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                if (size() <= MAX_OPEN_JARS) {
+                    return false;
+                }
+                ((JarHandle) eldest.getValue()).close();
+                return true;
+            }
+        };
+
         JarClassSource(URL url) {
             source = url;
         }
@@ -670,13 +891,124 @@ public class BshClassPath
         public URL getURL() {
             return (URL) source;
         }
-        /*
-         * Note: we should implement this for consistency, however our BshClassLoader can natively load from a JAR
-         * because it is a URLClassLoader... so it may be better to allow it to do it.
-         */
 
         public byte[] getCode(String className) {
-            throw new Error("Unimplemented");
+            for (;;) {
+                JarHandle handle = getJarHandle();
+                if (handle == null) {
+                    return null;
+                }
+                synchronized (handle) {
+                    if (handle.closed) {
+                        continue; // closed since, open it again
+                    }
+                    return getCode(handle, className);
+                }
+            }
+        }
+
+        private byte[] getCode(JarHandle handle, String className) {
+            try {
+                ZipEntry entry = handle.getEntry(className);
+                if (entry == null) {
+                    return null;
+                }
+                DataInputStream in = new DataInputStream(handle.jar.getInputStream(entry));
+                try {
+                    byte[] code = new byte[(int) entry.getSize()];
+                    in.readFully(code);
+                    return code;
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Couldn't load class: " + className + " from: " + source);
+            }
+        }
+
+        ByteBuffer getCodeBuffer(String className) {
+            for (;;) {
+                JarHandle handle = getJarHandle();
+                if (handle == null) {
+                    return null;
+                }
+                synchronized (handle) {
+                    if (handle.closed) {
+                        continue; // closed since, open it again
+                    }
+                    return getCodeBuffer(handle, className);
+                }
+            }
+        }
+
+        private ByteBuffer getCodeBuffer(JarHandle handle, String className) {
+            try {
+                ZipEntry entry = handle.getEntry(className);
+                if (entry == null) {
+                    return null;
+                }
+                ReadableByteChannel in = Channels.newChannel(handle.jar.getInputStream(entry));
+                try {
+                    ByteBuffer buffer = codeBuffer((int) entry.getSize());
+                    readFully(in, buffer);
+                    return buffer;
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Couldn't load class: " + className + " from: " + source);
+            }
+        }
+
+        /**
+         * Close the shared handle of a jar, if it is open.
+         */
+        static void closeJarHandle(URL url) {
+            if (!"file".equals(url.getProtocol())) {
+                return;
+            }
+            String path = new File(url.getFile()).getAbsolutePath();
+            JarHandle handle;
+            synchronized (jarHandles) {
+                handle = (JarHandle) jarHandles.remove(path);
+            }
+            if (handle != null) {
+                handle.close();
+            }
+        }
+
+        /**
+         * Get the shared handle for our jar, reopening it if the file changed since it was opened.
+         *
+         * @return the handle or null if the jar is not a local file
+         */
+        private JarHandle getJarHandle() {
+            URL url = getURL();
+            if (!"file".equals(url.getProtocol())) {
+                return null;
+            }
+            File file = new File(url.getFile());
+            String path = file.getAbsolutePath();
+            synchronized (jarHandles) {
+                JarHandle handle = (JarHandle) jarHandles.get(path);
+                if (handle != null && handle.isCurrent(file)) {
+                    return handle;
+                }
+                if (handle != null) {
+                    jarHandles.remove(path);
+                    handle.close();
+                }
+                if (!file.isFile()) {
+                    return null;
+                }
+                try {
+                    handle = new JarHandle(file);
+                } catch (IOException e) {
+                    throw new RuntimeException("Couldn't open jar: " + file);
+                }
+                jarHandles.put(path, handle);
+                return handle;
+            }
         }
 
         public String toString() {
@@ -684,6 +1016,210 @@ public class BshClassPath
         }
     }
 
+    static class JarHandle {
+
+        final JarFile jar;
+        final long length;
+        final long lastModified;
+        boolean closed;
+
+        JarHandle(File file) throws IOException {
+            length = file.length();
+            lastModified = file.lastModified();
+            jar = new JarFile(file, false);
+        }
+
+        boolean isCurrent(File file) {
+            return file.length() == length && file.lastModified() == lastModified;
+        }
+
+        ZipEntry getEntry(String className) {
+            return jar.getEntry(className.replace('.', '/') + ".class");
+        }
+
+        synchronized void close() {
+            closed = true;
+            try {
+                jar.close();
+            } catch (IOException e) {
+                // nothing left to release
+            }
+        }
+    }
+
+    /**
+     * The classes of the JDK module image, read through the jrt:/ file system of Java 9 and later. The image is laid out
+     * as /modules/module/package path/Class.class, with /packages/package/module links to find the module of a
+     * package. On older VMs isAvailable() is false and nothing here is used.
+     */
+    public static class JrtClassSource extends ClassSource {
+
+        static final String JRT_URL = "jrt:/";
+        private static JrtClassSource instance;
+        // package -> module, filled as classes are read
+        private final Map packageModules = new HashMap();
+
+        private JrtClassSource(FileSystem fs) {
+            source = fs;
+        }
+
+        static boolean isJrt(URL url) {
+            return "jrt".equals(url.getProtocol());
+        }
+
+        static boolean isAvailable() {
+            return getInstance() != null;
+        }
+
+        /**
+         * @return the source or null if the VM has no jrt:/ file system
+         */
+        static synchronized JrtClassSource getInstance() {
+            if (instance == null) {
+                try {
+                    instance = new JrtClassSource(FileSystems.getFileSystem(URI.create(JRT_URL)));
+                } catch (RuntimeException e) {
+                    // ProviderNotFoundException, FileSystemNotFoundException or a SecurityException
+                    return null;
+                }
+            }
+            return instance;
+        }
+
+        FileSystem getFileSystem() {
+            return (FileSystem) source;
+        }
+
+        /**
+         * The file holding the module image, used to key its entry in the class path index.
+         */
+        static File getImageFile() {
+            return new File(System.getProperty("java.home"), "lib" + File.separator + "modules");
+        }
+
+        /**
+         * List the classes of all modules, from the class path index if the image has not changed since it was
+         * indexed.
+         *
+         * @return a map of package name to the full names of the classes in it
+         */
+        static Map searchModulesForClasses() throws IOException {
+            JrtClassSource jrt = getInstance();
+            if (jrt == null) {
+                throw new IOException("no jrt:/ file system in this VM");
+            }
+            File image = getImageFile();
+            ClassPathIndex index = getClassPathIndex();
+            Map packages = index == null || !image.isFile() ? null : index.get(image);
+            if (packages == null) {
+                String[] classes = jrt.listClasses();
+                if (index != null && image.isFile()) {
+                    packages = index.put(image, classes);
+                } else {
+                    packages = ClassPathIndex.groupByPackage(classes);
+                }
+            }
+            return packages;
+        }
+
+        String[] listClasses() throws IOException {
+            List list = new ArrayList();
+            DirectoryStream packages = Files.newDirectoryStream(getFileSystem().getPath("/packages"));
+            try {
+                for (Iterator it = packages.iterator(); it.hasNext();) {
+                    String pack = ((Path) it.next()).getFileName().toString();
+                    String module = getModule(pack);
+                    if (module != null) {
+                        listClasses(pack, module, list);
+                    }
+                }
+            } finally {
+                packages.close();
+            }
+            return (String[]) list.toArray(new String[0]);
+        }
+
+        void listClasses(String pack, String module, List list) throws IOException {
+            Path dir = getFileSystem().getPath("/modules", new String[]{module, pack.replace('.', '/')});
+            DirectoryStream classes = Files.newDirectoryStream(dir);
+            try {
+                for (Iterator it = classes.iterator(); it.hasNext();) {
+                    String name = ((Path) it.next()).getFileName().toString();
+                    if (isClassFileName(name) && !name.equals("module-info.class")) {
+                        list.add(pack + "." + name.substring(0, name.length() - ".class".length()));
+                    }
+                }
+            } finally {
+                classes.close();
+            }
+        }
+
+        /**
+         * @return the module holding the package or null if there is none. The image also links a package to the
+         * modules that only hold its subpackages (java.awt to java.datatransfer for java.awt.datatransfer); the
+         * first module with a class in the package is taken.
+         */
+        synchronized String getModule(String pack) throws IOException {
+            if (packageModules.containsKey(pack)) {
+                return (String) packageModules.get(pack);
+            }
+            String module = null;
+            Path links = getFileSystem().getPath("/packages", new String[]{pack});
+            if (Files.isDirectory(links)) {
+                DirectoryStream modules = Files.newDirectoryStream(links);
+                try {
+                    for (Iterator it = modules.iterator(); module == null && it.hasNext();) {
+                        String name = ((Path) it.next()).getFileName().toString();
+                        if (hasClasses(pack, name)) {
+                            module = name;
+                        }
+                    }
+                } finally {
+                    modules.close();
+                }
+            }
+            packageModules.put(pack, module);
+            return module;
+        }
+
+        private boolean hasClasses(String pack, String module) throws IOException {
+            Path dir = getFileSystem().getPath("/modules", new String[]{module, pack.replace('.', '/')});
+            DirectoryStream files = Files.newDirectoryStream(dir);
+            try {
+                for (Iterator it = files.iterator(); it.hasNext();) {
+                    if (isClassFileName(((Path) it.next()).getFileName().toString())) {
+                        return true;
+                    }
+                }
+                return false;
+            } finally {
+                files.close();
+            }
+        }
+
+        public byte[] getCode(String className) {
+            int i = className.lastIndexOf('.');
+            if (i == -1) {
+                return null;
+            }
+            try {
+                String module = getModule(className.substring(0, i));
+                if (module == null) {
+                    return null;
+                }
+                Path file = getFileSystem().getPath("/modules",
+                        new String[]{module, className.replace('.', '/') + ".class"});
+                return Files.isRegularFile(file) ? Files.readAllBytes(file) : null;
+            } catch (IOException e) {
+                throw new RuntimeException("Couldn't load class: " + className + " from: " + JRT_URL);
+            }
+        }
+
+        public String toString() {
+            return "Modules: " + JRT_URL;
+        }
+    }
+
     public static class DirClassSource extends ClassSource {
 
         DirClassSource(File dir) {
@@ -702,6 +1238,10 @@ public class BshClassPath
             return readBytesFromFile(getDir(), className);
         }
 
+        ByteBuffer getCodeBuffer(String className) {
+            return readBufferFromFile(getDir(), className);
+        }
+
         public static byte[] readBytesFromFile(File base, String className) {
             String n = className.replace('.', File.separatorChar) + ".class";
             File file = new File(base, n);
@@ -725,6 +1265,33 @@ public class BshClassPath
 
             return bytes;
         }
+
+        /**
+         * Read the class file into the reusable buffer of this thread.
+         *
+         * @see ClassSource#getCodeBuffer(String)
+         */
+        static ByteBuffer readBufferFromFile(File base, String className) {
+            String n = className.replace('.', File.separatorChar) + ".class";
+            File file = new File(base, n);
+
+            if (!file.exists()) {
+                return null;
+            }
+
+            try {
+                FileChannel channel = new FileInputStream(file).getChannel();
+                try {
+                    ByteBuffer buffer = codeBuffer((int) channel.size());
+                    readFully(channel, buffer);
+                    return buffer;
+                } finally {
+                    channel.close();
+                }
+            } catch (IOException ie) {
+                throw new RuntimeException("Couldn't load file: " + file);
+            }
+        }
     }
 
     public static class GeneratedClassSource extends ClassSource {
@@ -27,7 +27,6 @@ import java.lang.ref.*;
 import java.io.IOException;
 import java.io.*;
 import bsh.classpath.BshClassPath.ClassSource;
-import bsh.classpath.BshClassPath.JarClassSource;
 import bsh.classpath.BshClassPath.GeneratedClassSource;
 import bsh.BshClassManager;
 import bsh.ClassPathException;
@@ -262,6 +261,10 @@ public class ClassManagerImpl extends BshClassManager {
         return in;
     }
 
+    protected boolean hasOwnResources() {
+        return baseLoader != null || super.hasOwnResources();
+    }
+
     ClassLoader getLoaderForClass(String name) {
         return (ClassLoader) loaderMap.get(name);
     }
@@ -285,10 +288,14 @@ public class ClassManagerImpl extends BshClassManager {
      * Clear all classloading behavior and class caches and reset to initial state.
      */
     public void reset() {
+        if (baseClassPath != null) {
+            baseClassPath.closeJarHandles();
+        }
         baseClassPath = new BshClassPath("baseClassPath");
         baseLoader = null;
         loaderMap = new HashMap();
-        classLoaderChanged(); // calls clearCaches() for us.
+        clearCaches();
+        notifyListeners();
     }
 
     /**
@@ -358,14 +365,6 @@ public class ClassManagerImpl extends BshClassManager {
                         + name);
             }
 
-            // JarClassSource is not working... just need to implement it's
-            // getCode() method or, if we decide to, allow the BshClassManager
-            // to handle it... since it is a URLClassLoader and can handle JARs
-            if (classSource instanceof JarClassSource) {
-                throw new ClassPathException("Cannot reload class: " + name
-                        + " from source: " + classSource);
-            }
-
             map.put(name, classSource);
         }
 
@@ -378,7 +377,9 @@ public class ClassManagerImpl extends BshClassManager {
             loaderMap.put((String) it.next(), cl);
         }
 
-        classLoaderChanged();
+        // only the reloaded classes change, results for the others stay valid
+        invalidateClasses(map.keySet());
+        notifyListeners();
     }
 
     /**
@@ -466,6 +467,17 @@ public class ClassManagerImpl extends BshClassManager {
         return getClassPath().getClassNameByUnqName(name);
     }
 
+    /**
+     * Packages of the JDK listed by the PackageIndex. Other than java.* packages they are only used while this class
+     * manager has no class path or external class loader of its own, which could add classes to them.
+     */
+    protected Set getPackageClassNames(String pack) {
+        if (!pack.startsWith("java.") && (baseLoader != null || externalClassLoader != null)) {
+            return null;
+        }
+        return PackageIndex.getClassNames(pack);
+    }
+
     public void addListener(Listener l) {
         listeners.addElement(new WeakReference(l, refQueue));
 
@@ -513,15 +525,32 @@ public class ClassManagerImpl extends BshClassManager {
     }
 
     /**
-     * Clear global class cache and notify namespaces to clear their class caches.
-     *
-     * The listener list is implemented with weak references so that we will not keep every namespace in existence
-     * forever.
+     * Invalidate the global class caches and notify namespaces to clear their class caches.
      */
     protected void classLoaderChanged() {
-        // clear the static caches in BshClassManager
-        clearCaches();
+        // drop what the change may have made stale from the caches in BshClassManager
+        invalidateCaches();
+        notifyListeners();
+    }
 
+    /**
+     * BeanShell core classes are always loaded from the loader of the interpreter, whatever the class path.
+     */
+    protected boolean isClassLoadingInvariant(Class clas) {
+        while (clas.isArray()) {
+            clas = clas.getComponentType();
+        }
+        return super.isClassLoadingInvariant(clas)
+                || (clas.getName().startsWith(BSH_PACKAGE)
+                && clas.getClassLoader() == Interpreter.class.getClassLoader()
+                && getLoaderForClass(clas.getName()) == null);
+    }
+
+    /**
+     * The listener list is implemented with weak references so that we will not keep every namespace in existence
+     * forever.
+     */
+    private void notifyListeners() {
         Vector toRemove = new Vector(); // safely remove
         for (Enumeration e = listeners.elements(); e.hasMoreElements();) {
             WeakReference wr = (WeakReference) e.nextElement();
@@ -0,0 +1,296 @@
+/***********************************************************************************************************************
+ *                                                                                                                     *
+ *  This file is part of the BeanShell Java Scripting distribution.                                                    *
+ *  Documentation and updates may be found at http://www.beanshell.org/                                                *
+ *                                                                                                                     *
+ *  This program is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General  *
+ *  Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option)  *
+ *  any later version.                                                                                                 *
+ *                                                                                                                     *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for    *
+ *  more details.                                                                                                      *
+ *                                                                                                                     *
+ *  You should have received a copy of the GNU Lesser General Public License along with this program.                  *
+ *  If not, see <http://www.gnu.org/licenses/>.                                                                        *
+ *                                                                                                                     *
+ *  Patrick Niemeyer (pat@pat.net)                                                                                     *
+ *  Author of Learning Java, O'Reilly & Associates                                                                     *
+ *  http://www.pat.net/~pat/                                                                                           *
+ *                                                                                                                     *
+ **********************************************************************************************************************/
+package bsh.classpath;
+
+import bsh.Interpreter;
+import java.io.*;
+import java.util.*;
+
+/**
+ * A persistent index of the classes in the archives of a class path, so that mapping the same jars again in a later run
+ * reads one small file instead of scanning every archive. <p>
+ *
+ * Entries are keyed by the absolute path of the archive and remember its size and modification time. An entry whose
+ * archive has changed since it was indexed is ignored and the archive is scanned again, so only the changed jars are
+ * re-indexed. The class names are stored grouped by package. Directories are not indexed: their modification time does
+ * not reflect changes below them, so they are always traversed. <p>
+ *
+ * BshClassPath uses an index only if one is asked for: by the system property bsh.classPathIndex naming the file to
+ * keep it in (e.g. .bsh/classpath.index in the user home directory), or by setClassPathIndex(). Without one nothing is
+ * written and the archives are scanned on every run, an embedding application gets no files it did not ask for. The
+ * file is written only after a mapping found something new and failing to read or write it is never an error; the
+ * archives are simply scanned.
+ */
+public class ClassPathIndex {
+
+    private static final int MAGIC = 0xB5C1A55E;
+    // 2: module image listings take each package from the module holding its classes
+    private static final int VERSION = 2;
+
+    private final File file;
+    // absolute archive path -> Entry
+    private Map entries;
+    private boolean dirty;
+    private int hits, misses;
+
+    public ClassPathIndex(File file) {
+        this.file = file;
+    }
+
+    /**
+     * The index named by the bsh.classPathIndex system property, or null if the property is not set or is "none".
+     */
+    static ClassPathIndex createDefault() {
+        try {
+            String name = System.getProperty("bsh.classPathIndex");
+            if (name == null || name.length() == 0 || name.equals("none")) {
+                return null;
+            }
+            return new ClassPathIndex(new File(name));
+        } catch (SecurityException e) {
+            return null;
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Get the indexed class names of the archive.
+     *
+     * @return a map of package name to the full names of the classes in it, or null if the archive is not indexed or
+     * has changed since
+     */
+    public synchronized Map get(File archive) {
+        load();
+        Entry entry = (Entry) entries.get(archive.getAbsolutePath());
+        if (entry == null || entry.length != archive.length() || entry.lastModified != archive.lastModified()) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.packages;
+    }
+
+    /**
+     * Record the class names found in the archive, replacing any previous entry for it.
+     *
+     * @return a map of package name to the full names of the classes in it, as get() will return it
+     */
+    public synchronized Map put(File archive, String[] classes) {
+        load();
+        Map packages = groupByPackage(classes);
+        entries.put(archive.getAbsolutePath(), new Entry(archive.length(), archive.lastModified(), packages));
+        dirty = true;
+        return packages;
+    }
+
+    /**
+     * Group the class names by package, keeping the order in which the packages are first seen. The package of
+     * unpackaged classes is the empty string.
+     *
+     * @return a map of package name to an array of the full class names
+     */
+    static Map groupByPackage(String[] classes) {
+        Map lists = new LinkedHashMap();
+        for (int i = 0; i < classes.length; i++) {
+            int dot = classes[i].lastIndexOf('.');
+            String pack = dot == -1 ? "" : classes[i].substring(0, dot);
+            List names = (List) lists.get(pack);
+            if (names == null) {
+                names = new ArrayList();
+                lists.put(pack, names);
+            }
+            names.add(classes[i]);
+        }
+        for (Iterator it = lists.entrySet().iterator(); it.hasNext();) {
+            Map.Entry e = (Map.Entry) it.next();
+            e.setValue(((List) e.getValue()).toArray(new String[0]));
+        }
+        return lists;
+    }
+
+    /**
+     * Write the index file if anything was added since it was read. Entries for archives that no longer exist are
+     * dropped.
+     */
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        for (Iterator it = entries.keySet().iterator(); it.hasNext();) {
+            if (!new File((String) it.next()).isFile()) {
+                it.remove();
+            }
+        }
+
+        File dir = file.getAbsoluteFile().getParentFile();
+        File tmp = null;
+        try {
+            if (dir != null && !dir.isDirectory()) {
+                dir.mkdirs();
+            }
+            // write aside and rename so that a concurrent reader never sees a partial file
+            tmp = File.createTempFile("classpath", ".tmp", dir);
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmp)));
+            try {
+                write(out);
+            } finally {
+                out.close();
+            }
+            if (!tmp.renameTo(file)) {
+                file.delete();
+                if (!tmp.renameTo(file)) {
+                    throw new IOException("can't rename " + tmp + " to " + file);
+                }
+            }
+        } catch (IOException e) {
+            if (tmp != null) {
+                tmp.delete();
+            }
+            if (Interpreter.DEBUG) {
+                Interpreter.debug("Can't write class path index " + file + ": " + e);
+            }
+        } catch (SecurityException e) {
+            // no index then
+        }
+    }
+
+    /**
+     * The number of archives currently indexed.
+     */
+    public synchronized int size() {
+        load();
+        return entries.size();
+    }
+
+    /**
+     * The number of lookups answered from the index.
+     */
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    /**
+     * The number of lookups for archives that had to be scanned.
+     */
+    public synchronized int getMisses() {
+        return misses;
+    }
+
+    public String toString() {
+        return "ClassPathIndex " + file + ": " + size() + " archives, " + getHits() + " hits, " + getMisses()
+                + " misses";
+    }
+
+    private void load() {
+        if (entries != null) {
+            return;
+        }
+        entries = new HashMap();
+        try {
+            if (!file.isFile()) {
+                return;
+            }
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                read(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            // corrupt or from another version, start over
+            entries.clear();
+            if (Interpreter.DEBUG) {
+                Interpreter.debug("Can't read class path index " + file + ": " + e);
+            }
+        } catch (SecurityException e) {
+            entries.clear();
+        }
+    }
+
+    private void read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("not a class path index");
+        }
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String path = in.readUTF();
+            long length = in.readLong();
+            long lastModified = in.readLong();
+            int packageCount = in.readInt();
+            Map packages = new LinkedHashMap();
+            for (int p = 0; p < packageCount; p++) {
+                String pack = in.readUTF();
+                String prefix = pack.length() == 0 ? "" : pack + ".";
+                String[] classes = new String[in.readInt()];
+                for (int j = 0; j < classes.length; j++) {
+                    classes[j] = prefix + in.readUTF();
+                }
+                packages.put(pack, classes);
+            }
+            entries.put(path, new Entry(length, lastModified, packages));
+        }
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(entries.size());
+        for (Iterator it = entries.entrySet().iterator(); it.hasNext();) {
+            Map.Entry me = (Map.Entry) it.next();
+            Entry entry = (Entry) me.getValue();
+            out.writeUTF((String) me.getKey());
+            out.writeLong(entry.length);
+            out.writeLong(entry.lastModified);
+            out.writeInt(entry.packages.size());
+            for (Iterator pit = entry.packages.entrySet().iterator(); pit.hasNext();) {
+                Map.Entry pe = (Map.Entry) pit.next();
+                String pack = (String) pe.getKey();
+                String[] classes = (String[]) pe.getValue();
+                int prefix = pack.length() == 0 ? 0 : pack.length() + 1;
+                out.writeUTF(pack);
+                out.writeInt(classes.length);
+                for (int i = 0; i < classes.length; i++) {
+                    out.writeUTF(classes[i].substring(prefix));
+                }
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        final long length;
+        final long lastModified;
+        // package -> String [] of full class names
+        final Map packages;
+
+        Entry(long length, long lastModified, Map packages) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.packages = packages;
+        }
+    }
+}
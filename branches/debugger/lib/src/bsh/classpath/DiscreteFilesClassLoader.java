@@ -23,6 +23,8 @@ package bsh.classpath;
 
 import bsh.BshClassManager;
 import bsh.classpath.BshClassPath.ClassSource;
+import java.nio.ByteBuffer;
+import java.security.ProtectionDomain;
 import java.util.HashMap;
 
 /**
@@ -60,8 +62,11 @@ public class DiscreteFilesClassLoader extends BshClassLoader {
         ClassSource source = map.get(name);
 
         if (source != null) {
-            byte[] code = source.getCode(name);
-            return defineClass(name, code, 0, code.length);
+            ByteBuffer code = source.getCodeBuffer(name);
+            if (code == null) {
+                throw new ClassNotFoundException("Class file not found in: " + source);
+            }
+            return defineClass(name, code, (ProtectionDomain) null);
         } else // Let superclass BshClassLoader (URLClassLoader) findClass try 
         // to find the class...
         {
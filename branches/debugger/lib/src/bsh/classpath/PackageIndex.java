@@ -0,0 +1,147 @@
+/***********************************************************************************************************************
+ *                                                                                                                     *
+ *  This file is part of the BeanShell Java Scripting distribution.                                                    *
+ *  Documentation and updates may be found at http://www.beanshell.org/                                                *
+ *                                                                                                                     *
+ *  This program is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser General  *
+ *  Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option)  *
+ *  any later version.                                                                                                 *
+ *                                                                                                                     *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for    *
+ *  more details.                                                                                                      *
+ *                                                                                                                     *
+ *  You should have received a copy of the GNU Lesser General Public License along with this program.                  *
+ *  If not, see <http://www.gnu.org/licenses/>.                                                                        *
+ *                                                                                                                     *
+ *  Patrick Niemeyer (pat@pat.net)                                                                                     *
+ *  Author of Learning Java, O'Reilly & Associates                                                                     *
+ *  http://www.pat.net/~pat/                                                                                           *
+ *                                                                                                                     *
+ **********************************************************************************************************************/
+package bsh.classpath;
+
+import bsh.Interpreter;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The simple names of the classes in the JDK packages whose content no class loader can add to, shared by all class
+ * managers in the VM. Resolving an unqualified name against imported packages consults it before trying to load the
+ * class, so that a package that can not hold the name costs a hash lookup rather than a failed class load. <p>
+ *
+ * A package is indexed only if its content is complete: java.* packages, which only the VM can define, and on Java 9
+ * and later the packages of the modules in the boot layer, which a standard class loader always delegates to their
+ * module. Other packages, javax.* of rt.jar among them (javax.annotation is commonly split across jars), are not
+ * indexed and are resolved by loading as before. The content of a package is listed from the module image or from
+ * rt.jar (through the class path index, if there is one) the first time it is asked for. Setting the bsh.packageIndex
+ * system property to false turns the index off.
+ */
+public final class PackageIndex {
+
+    private static final Set NOT_INDEXED = Collections.EMPTY_SET;
+    // package name -> Set of simple class names, or NOT_INDEXED
+    private static final Map packages = new ConcurrentHashMap();
+    // package name -> String [] of full class names of rt.jar, loaded on first use on older VMs
+    private static Map rtJarPackages;
+    private static volatile boolean enabled = !"false".equals(System.getProperty("bsh.packageIndex"));
+
+    private PackageIndex() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turn the index on or off. While it is off every imported package is tried by loading the class.
+     */
+    public static void setEnabled(boolean enabled) {
+        PackageIndex.enabled = enabled;
+    }
+
+    /**
+     * Get the simple names of the classes in the package, inner classes by their binary name (Outer$Inner).
+     *
+     * @return the names or null if the content of the package may not be known completely
+     */
+    public static Set getClassNames(String pack) {
+        if (!enabled) {
+            return null;
+        }
+        Set names = (Set) packages.get(pack);
+        if (names == null) {
+            names = listClassNames(pack);
+            packages.put(pack, names == null ? NOT_INDEXED : names);
+        }
+        return names == NOT_INDEXED ? null : names;
+    }
+
+    private static Set listClassNames(String pack) {
+        try {
+            String[] classes = null;
+            BshClassPath.JrtClassSource jrt = BshClassPath.JrtClassSource.getInstance();
+            if (jrt != null) {
+                String module = jrt.getModule(pack);
+                if (module != null && isBootLayerModule(module)) {
+                    List list = new ArrayList();
+                    jrt.listClasses(pack, module, list);
+                    classes = (String[]) list.toArray(new String[0]);
+                } else if (!pack.startsWith("java.")) {
+                    return null;
+                }
+            } else if (pack.startsWith("java.")) {
+                classes = (String[]) getRtJarPackages().get(pack);
+            } else {
+                return null;
+            }
+
+            Set names = new HashSet();
+            int prefix = pack.length() + 1;
+            for (int i = 0; classes != null && i < classes.length; i++) {
+                names.add(classes[i].substring(prefix));
+            }
+            return Collections.unmodifiableSet(names);
+        } catch (IOException e) {
+            if (Interpreter.DEBUG) {
+                Interpreter.debug("Can't index package " + pack + ": " + e);
+            }
+            return null;
+        } catch (SecurityException e) {
+            return null;
+        }
+    }
+
+    private static synchronized Map getRtJarPackages() throws IOException {
+        if (rtJarPackages == null) {
+            String rtjar = BshClassPath.getRTJarPath();
+            if (rtjar == null) {
+                throw new IOException("no rt.jar");
+            }
+            File file = new File(rtjar);
+            rtJarPackages = BshClassPath.searchIndexedJarForClasses(file, file.toURI().toURL());
+            BshClassPath.saveIndex();
+        }
+        return rtJarPackages;
+    }
+
+    /**
+     * True if the module is in the boot layer of the VM. Modules of the image that are not resolved at startup do not
+     * own their packages and the class path may supply them.
+     */
+    static boolean isBootLayerModule(String module) {
+        try {
+            // ModuleLayer is not in the Java 8 API we compile against
+            Class layerClass = Class.forName("java.lang.ModuleLayer");
+            Object boot = layerClass.getMethod("boot", new Class[0]).invoke(null, new Object[0]);
+            Method findModule = layerClass.getMethod("findModule", new Class[]{String.class});
+            return ((Optional) findModule.invoke(boot, new Object[]{module})).isPresent();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
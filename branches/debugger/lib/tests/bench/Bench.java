@@ -0,0 +1,134 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+
+/**
+ * Minimal timing harness shared by the micro benchmarks in this directory. Each task is warmed up and then run
+ * repeatedly for a fixed wall clock interval; the reported figures are operations per second, garbage collections
+ * per thousand operations and, where the VM supports it, bytes allocated per operation by the benchmark
+ * thread.
+ */
+public class Bench {
+
+    public interface Task {
+        void run() throws Exception;
+    }
+
+    static final long WARMUP_MILLIS = Long.getLong("bench.warmup", 2000);
+    static final long MEASURE_MILLIS = Long.getLong("bench.time", 5000);
+
+    /**
+     * Run the task and print its throughput.
+     *
+     * @return operations per second
+     */
+    public static double run(String name, Task task) throws Exception {
+        loop(task, WARMUP_MILLIS);
+        System.gc();
+        long allocated = allocatedBytes();
+        long collections = collectionCount();
+        long start = System.nanoTime();
+        long ops = loop(task, MEASURE_MILLIS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        allocated = allocatedBytes() - allocated;
+        collections = collectionCount() - collections;
+        double opsPerSecond = ops / seconds;
+        System.out.println(pad(name, 40) + format(opsPerSecond) + " ops/s"
+                + (allocated >= 0 ? format((double) allocated / ops) + " B/op" : "")
+                + String.format("%10.2f gc/kop", collections * 1000.0 / ops));
+        return opsPerSecond;
+    }
+
+    /**
+     * Run the task on the given number of threads at once and print the combined throughput of all threads.
+     *
+     * @return operations per second, summed over the threads
+     */
+    public static double runConcurrent(String name, int threads, final Task task) throws Exception {
+        final long[] ops = new long[threads];
+        final Exception[] failure = new Exception[1];
+        Thread[] workers = new Thread[threads];
+        final long measureStart = System.currentTimeMillis() + WARMUP_MILLIS;
+        for (int t = 0; t < threads; t++) {
+            final int index = t;
+            workers[t] = new Thread() {
+                public void run() {
+                    try {
+                        loop(task, measureStart - System.currentTimeMillis());
+                        ops[index] = loop(task, MEASURE_MILLIS);
+                    } catch (Exception e) {
+                        failure[0] = e;
+                    }
+                }
+            };
+            workers[t].start();
+        }
+        long total = 0;
+        for (int t = 0; t < threads; t++) {
+            workers[t].join();
+            total += ops[t];
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        double opsPerSecond = total * 1000.0 / MEASURE_MILLIS;
+        System.out.println(pad(name, 40) + format(opsPerSecond) + " ops/s");
+        return opsPerSecond;
+    }
+
+    /**
+     * Bytes allocated so far by the current thread, or a negative number if the VM cannot tell.
+     */
+    static long allocatedBytes() {
+        try {
+            java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(
+                        Thread.currentThread().getId());
+            }
+        } catch (Throwable e) {
+            // not a HotSpot VM
+        }
+        return -1;
+    }
+
+    /**
+     * Total number of collections run so far by all garbage collectors.
+     */
+    static long collectionCount() {
+        long count = 0;
+        for (Iterator it = ManagementFactory.getGarbageCollectorMXBeans().iterator(); it.hasNext();) {
+            count += Math.max(0, ((GarbageCollectorMXBean) it.next()).getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long loop(Task task, long millis) throws Exception {
+        long end = System.currentTimeMillis() + millis;
+        long ops = 0;
+        while (System.currentTimeMillis() < end) {
+            // check the clock only every few iterations
+            for (int i = 0; i < 16; i++) {
+                task.run();
+            }
+            ops += 16;
+        }
+        return ops;
+    }
+
+    public static String format(double value) {
+        return String.format("%,14.1f", value);
+    }
+
+    public static String pad(String s, int width) {
+        StringBuilder sb = new StringBuilder(s);
+        while (sb.length() < width) {
+            sb.append(' ');
+        }
+        return sb.toString();
+    }
+
+    public static void ratio(String name, double baseline, double candidate) {
+        System.out.println(pad(name, 40) + String.format("%14.2fx", candidate / baseline));
+    }
+}
@@ -0,0 +1,50 @@
+import java.io.File;
+import java.net.URL;
+
+import bsh.classpath.BshClassPath;
+import bsh.classpath.ClassPathIndex;
+
+/**
+ * Maps the boot class path of the running VM, rt.jar or the jrt:/ module image, by listing it and from the class path
+ * index.
+ */
+public class BootClassPathBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        BshClassPath.addMappingFeedback(new ClassPathIndexBenchmark.QuietFeedback());
+        final URL[] boot = BshClassPath.getBootClassPath().getPathComponents();
+        System.out.println("boot class path: " + boot[0]);
+        File dir = ClassPathIndexBenchmark.createTempDir();
+        try {
+            final File indexFile = new File(dir, "classpath.index");
+            BshClassPath.setClassPathIndex(new ClassPathIndex(indexFile));
+            map(boot);
+
+            double baseline = 0, candidate = 0;
+            for (int round = 0; round < 2; round++) {
+                baseline = Bench.run("list boot classes", new Bench.Task() {
+                    public void run() throws Exception {
+                        BshClassPath.setClassPathIndex(null);
+                        map(boot);
+                    }
+                });
+                candidate = Bench.run("indexed boot classes", new Bench.Task() {
+                    public void run() throws Exception {
+                        BshClassPath.setClassPathIndex(new ClassPathIndex(indexFile));
+                        map(boot);
+                    }
+                });
+            }
+            Bench.ratio("speedup", baseline, candidate);
+        } finally {
+            ClassPathIndexBenchmark.delete(dir);
+        }
+    }
+
+    static void map(URL[] urls) {
+        BshClassPath cp = new BshClassPath("bench", urls);
+        if (!cp.getClassesForPackage("java.lang").contains("java.lang.String")) {
+            throw new IllegalStateException("java.lang not mapped");
+        }
+    }
+}
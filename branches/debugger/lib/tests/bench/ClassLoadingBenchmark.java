@@ -0,0 +1,139 @@
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+import bsh.Interpreter;
+import bsh.classpath.BshClassPath;
+import bsh.classpath.DiscreteFilesClassLoader;
+
+/**
+ * Defines a set of classes in a fresh class loader per operation, as reloading classes does. The classes are read
+ * from a directory and from a jar. The old way read each class file into a new array, and for jars opened the jar
+ * again per class; DiscreteFilesClassLoader now reads into a reused direct buffer and keeps the jar open.
+ */
+public class ClassLoadingBenchmark {
+
+    static final String[] CLASSES = {
+        "Bench", "CompiledMethodBenchmark", "SharedScriptBenchmark", "InterpreterPoolBenchmark",
+        "ClassPathIndexBenchmark", "ClassPathMappingBenchmark", "ResolutionCacheBenchmark", "ClassLoadingBenchmark"
+    };
+
+    public static void main(String[] args) throws Exception {
+        final File dir = ClassPathIndexBenchmark.createTempDir();
+        try {
+            final File jar = new File(dir, "classes.jar");
+            JarOutputStream jout = new JarOutputStream(new FileOutputStream(jar));
+            for (int i = 0; i < CLASSES.length; i++) {
+                byte[] code = resource(CLASSES[i]);
+                OutputStream out = new FileOutputStream(new File(dir, CLASSES[i] + ".class"));
+                out.write(code);
+                out.close();
+                jout.putNextEntry(new JarEntry(CLASSES[i] + ".class"));
+                jout.write(code);
+                jout.closeEntry();
+            }
+            jout.close();
+
+            BshClassPath.addMappingFeedback(new ClassPathIndexBenchmark.QuietFeedback());
+            final Interpreter interpreter = new Interpreter();
+            final DiscreteFilesClassLoader.ClassSourceMap dirMap = sourceMap(dir);
+            final DiscreteFilesClassLoader.ClassSourceMap jarMap = sourceMap(jar);
+
+            double baseline = 0, candidate = 0;
+            for (int round = 0; round < 2; round++) {
+                baseline = Bench.run("dir byte arrays", new Bench.Task() {
+                    public void run() throws Exception {
+                        new ArrayLoader(dir, null).defineAll();
+                    }
+                });
+                candidate = Bench.run("dir buffers", new Bench.Task() {
+                    public void run() throws Exception {
+                        defineAll(new DiscreteFilesClassLoader(interpreter.getClassManager(), dirMap));
+                    }
+                });
+            }
+            Bench.ratio("dir speedup", baseline, candidate);
+            for (int round = 0; round < 2; round++) {
+                baseline = Bench.run("jar reopened per class", new Bench.Task() {
+                    public void run() throws Exception {
+                        new ArrayLoader(null, jar).defineAll();
+                    }
+                });
+                candidate = Bench.run("jar kept open", new Bench.Task() {
+                    public void run() throws Exception {
+                        defineAll(new DiscreteFilesClassLoader(interpreter.getClassManager(), jarMap));
+                    }
+                });
+            }
+            Bench.ratio("jar speedup", baseline, candidate);
+        } finally {
+            ClassPathIndexBenchmark.delete(dir);
+        }
+    }
+
+    static DiscreteFilesClassLoader.ClassSourceMap sourceMap(File component) throws Exception {
+        BshClassPath path = new BshClassPath("bench", new URL[]{component.toURI().toURL()});
+        DiscreteFilesClassLoader.ClassSourceMap map = new DiscreteFilesClassLoader.ClassSourceMap();
+        for (int i = 0; i < CLASSES.length; i++) {
+            map.put(CLASSES[i], path.getClassSource(CLASSES[i]));
+        }
+        return map;
+    }
+
+    static void defineAll(ClassLoader loader) throws Exception {
+        for (int i = 0; i < CLASSES.length; i++) {
+            if (loader.loadClass(CLASSES[i]).getClassLoader() != loader) {
+                throw new IllegalStateException(CLASSES[i] + " not defined by the benchmark loader");
+            }
+        }
+    }
+
+    static byte[] resource(String name) throws Exception {
+        InputStream in = ClassLoadingBenchmark.class.getResourceAsStream("/" + name + ".class");
+        byte[] code = new byte[in.available()];
+        new DataInputStream(in).readFully(code);
+        in.close();
+        return code;
+    }
+
+    /**
+     * Defines the classes the way class sources used to be read: into a new array per class.
+     */
+    static class ArrayLoader extends ClassLoader {
+
+        final File dir;
+        final File jar;
+
+        ArrayLoader(File dir, File jar) {
+            this.dir = dir;
+            this.jar = jar;
+        }
+
+        void defineAll() throws Exception {
+            for (int i = 0; i < CLASSES.length; i++) {
+                byte[] code;
+                if (dir != null) {
+                    code = BshClassPath.DirClassSource.readBytesFromFile(dir, CLASSES[i]);
+                } else {
+                    JarFile jarFile = new JarFile(jar);
+                    try {
+                        JarEntry entry = jarFile.getJarEntry(CLASSES[i] + ".class");
+                        code = new byte[(int) entry.getSize()];
+                        DataInputStream in = new DataInputStream(jarFile.getInputStream(entry));
+                        in.readFully(code);
+                        in.close();
+                    } finally {
+                        jarFile.close();
+                    }
+                }
+                defineClass(CLASSES[i], code, 0, code.length);
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import bsh.classpath.BshClassPath;
+import bsh.classpath.ClassPathIndex;
+
+/**
+ * Maps a synthetic class path of jars with and without the persistent class path index. The indexed run reads the
+ * index file written by a previous mapping, as a later run of the VM would.
+ */
+public class ClassPathIndexBenchmark {
+
+    static final int JARS = Integer.getInteger("jars", 100).intValue();
+    static final int CLASSES = Integer.getInteger("classes", 500).intValue();
+
+    public static void main(String[] args) throws Exception {
+        File dir = createTempDir();
+        try {
+            final URL[] urls = createJars(dir, JARS, CLASSES);
+            final File indexFile = new File(dir, "classpath.index");
+            BshClassPath.addMappingFeedback(new QuietFeedback());
+
+            BshClassPath.setClassPathIndex(new ClassPathIndex(indexFile));
+            map(urls);
+
+            double baseline = 0, candidate = 0;
+            for (int round = 0; round < 2; round++) {
+                baseline = Bench.run("scan " + JARS + " jars", new Bench.Task() {
+                    public void run() throws Exception {
+                        BshClassPath.setClassPathIndex(null);
+                        map(urls);
+                    }
+                });
+                candidate = Bench.run("indexed " + JARS + " jars", new Bench.Task() {
+                    public void run() throws Exception {
+                        BshClassPath.setClassPathIndex(new ClassPathIndex(indexFile));
+                        map(urls);
+                    }
+                });
+            }
+            Bench.ratio("speedup", baseline, candidate);
+        } finally {
+            delete(dir);
+        }
+    }
+
+    static void map(URL[] urls) {
+        BshClassPath cp = new BshClassPath("bench", urls);
+        if (cp.getClassesForPackage("pkg0.sub0").isEmpty()) {
+            throw new IllegalStateException("nothing mapped");
+        }
+    }
+
+    static File createTempDir() throws Exception {
+        File dir = File.createTempFile("bshbench", "");
+        dir.delete();
+        dir.mkdir();
+        return dir;
+    }
+
+    static URL[] createJars(File dir, int jars, int classes) throws Exception {
+        return createJars(dir, jars, classes, 256);
+    }
+
+    /**
+     * Write jars of class entries spread over a few packages each. The entries hold bodySize bytes of poorly
+     * compressible data.
+     */
+    static URL[] createJars(File dir, int jars, int classes, int bodySize) throws Exception {
+        URL[] urls = new URL[jars];
+        byte[] body = new byte[bodySize];
+        new java.util.Random(42).nextBytes(body);
+        for (int j = 0; j < jars; j++) {
+            File file = new File(dir, "lib" + j + ".jar");
+            JarOutputStream out = new JarOutputStream(new FileOutputStream(file));
+            for (int c = 0; c < classes; c++) {
+                out.putNextEntry(new JarEntry("pkg" + j + "/sub" + (c % 8) + "/Class" + c + ".class"));
+                out.write(body);
+                out.closeEntry();
+            }
+            out.close();
+            urls[j] = file.toURI().toURL();
+        }
+        return urls;
+    }
+
+    static void delete(File file) {
+        File[] children = file.listFiles();
+        for (int i = 0; children != null && i < children.length; i++) {
+            delete(children[i]);
+        }
+        file.delete();
+    }
+
+    static class QuietFeedback implements BshClassPath.MappingFeedback {
+        public void startClassMapping() {
+        }
+
+        public void classMapping(String msg) {
+        }
+
+        public void errorWhileMapping(String msg) {
+            System.err.println(msg);
+        }
+
+        public void endClassMapping() {
+        }
+    }
+}
@@ -0,0 +1,86 @@
+import java.io.File;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import bsh.classpath.BshClassPath;
+
+/**
+ * Maps a synthetic class path of a few hundred jars without the class path index. Streaming each jar through a
+ * ZipInputStream, which is how jars used to be read, is compared with reading the entry names from the central
+ * directory, and with a full BshClassPath mapping, which reads the central directories of the jars in parallel.
+ */
+public class ClassPathMappingBenchmark {
+
+    static final int JARS = Integer.getInteger("jars", 300).intValue();
+    static final int CLASSES = Integer.getInteger("classes", 100).intValue();
+
+    public static void main(String[] args) throws Exception {
+        File dir = ClassPathIndexBenchmark.createTempDir();
+        try {
+            final URL[] urls = ClassPathIndexBenchmark.createJars(dir, JARS, CLASSES, 2048);
+            BshClassPath.addMappingFeedback(new ClassPathIndexBenchmark.QuietFeedback());
+            BshClassPath.setClassPathIndex(null);
+            System.out.println(Runtime.getRuntime().availableProcessors() + " processors");
+
+            double baseline = 0, candidate = 0;
+            for (int round = 0; round < 2; round++) {
+                baseline = Bench.run("stream " + JARS + " jars", new Bench.Task() {
+                    public void run() throws Exception {
+                        for (int i = 0; i < urls.length; i++) {
+                            streamNames(urls[i]);
+                        }
+                    }
+                });
+                Bench.run("central directory " + JARS + " jars", new Bench.Task() {
+                    public void run() throws Exception {
+                        for (int i = 0; i < urls.length; i++) {
+                            directoryNames(urls[i]);
+                        }
+                    }
+                });
+                candidate = Bench.run("map " + JARS + " jars", new Bench.Task() {
+                    public void run() throws Exception {
+                        ClassPathIndexBenchmark.map(urls);
+                    }
+                });
+            }
+            Bench.ratio("speedup", baseline, candidate);
+        } finally {
+            ClassPathIndexBenchmark.delete(dir);
+        }
+    }
+
+    static int streamNames(URL jar) throws Exception {
+        int count = 0;
+        ZipInputStream in = new ZipInputStream(jar.openStream());
+        try {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                if (BshClassPath.isClassFileName(entry.getName())) {
+                    count++;
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return count;
+    }
+
+    static int directoryNames(URL jar) throws Exception {
+        int count = 0;
+        ZipFile zip = new ZipFile(new File(jar.toURI()));
+        try {
+            for (Enumeration e = zip.entries(); e.hasMoreElements();) {
+                if (BshClassPath.isClassFileName(((ZipEntry) e.nextElement()).getName())) {
+                    count++;
+                }
+            }
+        } finally {
+            zip.close();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,41 @@
+import bsh.CommandManifest;
+import bsh.EvalError;
+import bsh.Interpreter;
+
+/**
+ * Starts a fresh interpreter per operation and calls a few scripted commands in it, as a new session does. Without
+ * the command manifest each command is found by probing the class path and its script is parsed again for every
+ * interpreter; with it the lookup is a map hit and the parsed script is shared. Each operation also calls a name that is
+ * not a command.
+ */
+public class CommandLookupBenchmark {
+
+    static final String SCRIPT =
+            "dirname( \"/tmp/a/b\" ); pathToFile( \"x\" ); getSourceFileInfo(); getBshPrompt();\n";
+
+    public static void main(String[] args) throws Exception {
+        new Interpreter().eval(SCRIPT);
+        double baseline = 0, candidate = 0;
+        for (int round = 0; round < 2; round++) {
+            CommandManifest.setEnabled(false);
+            baseline = run("class path probing");
+            CommandManifest.setEnabled(true);
+            candidate = run("command manifest");
+        }
+        Bench.ratio("speedup", baseline, candidate);
+    }
+
+    static double run(String name) throws Exception {
+        return Bench.run(name, new Bench.Task() {
+            public void run() throws Exception {
+                Interpreter interpreter = new Interpreter();
+                interpreter.eval(SCRIPT);
+                try {
+                    interpreter.eval("noSuchCommand();");
+                } catch (EvalError e) {
+                    // not a command
+                }
+            }
+        });
+    }
+}
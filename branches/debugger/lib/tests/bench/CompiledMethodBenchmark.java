@@ -0,0 +1,72 @@
+import java.io.StringReader;
+
+import bsh.Interpreter;
+import bsh.ParsedScript;
+
+/**
+ * Compares interpreted and compiled scripted methods. Each workload declares the same body twice: once strictly
+ * typed, which is compiled after bsh.compileThreshold calls, and once with a loosely typed parameter, which keeps it
+ * interpreted. Both are warmed up past the threshold and the results are checked to agree. Run with
+ * -Dbsh.compileThreshold=0 to see both variants interpreted.
+ */
+public class CompiledMethodBenchmark {
+
+    static final String METHODS =
+            "int fibTyped( int n ) {\n"
+            + "    if ( n < 2 ) return n;\n"
+            + "    return fibTyped( n - 1 ) + fibTyped( n - 2 );\n"
+            + "}\n"
+            + "int fibLoose( n ) {\n"
+            + "    if ( n < 2 ) return n;\n"
+            + "    return fibLoose( n - 1 ) + fibLoose( n - 2 );\n"
+            + "}\n"
+            + "double sumTyped( int n ) {\n"
+            + "    double acc = 0;\n"
+            + "    for ( int i = 1; i <= n; i++ ) {\n"
+            + "        long sq = (long) i * i;\n"
+            + "        acc += sq % 7 == 0 ? 1.0 / i : -0.5 / sq;\n"
+            + "    }\n"
+            + "    return acc;\n"
+            + "}\n"
+            + "double sumLoose( n ) {\n"
+            + "    double acc = 0;\n"
+            + "    for ( int i = 1; i <= n; i++ ) {\n"
+            + "        long sq = (long) i * i;\n"
+            + "        acc += sq % 7 == 0 ? 1.0 / i : -0.5 / sq;\n"
+            + "    }\n"
+            + "    return acc;\n"
+            + "}\n"
+            + "for ( int i = 0; i < 1100; i++ ) { fibTyped( 1 ); fibLoose( 1 ); sumTyped( 1 ); sumLoose( 1 ); }\n";
+
+    public static void main(String[] args) throws Exception {
+        Interpreter interpreter = new Interpreter();
+        interpreter.eval(METHODS);
+        compare("fib(16)", interpreter, "fibLoose( 16 );", "fibTyped( 16 );");
+        compare("sum(2000)", interpreter, "sumLoose( 2000 );", "sumTyped( 2000 );");
+    }
+
+    static void compare(String name, Interpreter interpreter, String loose, String typed) throws Exception {
+        ParsedScript interpreted = Interpreter.parse(new StringReader(loose), name);
+        ParsedScript compiled = Interpreter.parse(new StringReader(typed), name);
+        Object expected = interpreter.eval(interpreted);
+        Object actual = interpreter.eval(compiled);
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException(name + " results differ: " + expected + " != " + actual);
+        }
+
+        double baseline = 0, candidate = 0;
+        for (int round = 0; round < 2; round++) {
+            baseline = run(name + " interpreted", interpreter, interpreted);
+            candidate = run(name + " compiled", interpreter, compiled);
+        }
+        Bench.ratio("speedup", baseline, candidate);
+    }
+
+    static double run(String name, final Interpreter interpreter, final ParsedScript script) throws Exception {
+        return Bench.run(name, new Bench.Task() {
+            public void run() throws Exception {
+                interpreter.eval(script);
+            }
+        });
+    }
+}
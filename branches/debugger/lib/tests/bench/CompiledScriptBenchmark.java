@@ -0,0 +1,51 @@
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+
+import bsh.Interpreter;
+import bsh.ParsedScript;
+
+/**
+ * Compares the throughput of evaluating a small rule script from source on every call with evaluating the same script
+ * parsed once. The parsed form is what BshScriptEngine.compile() hands out wrapped in a CompiledScript.
+ */
+public class CompiledScriptBenchmark {
+
+    static final String RULE =
+            "discount = 0;\n"
+            + "if ( order.get(\"total\") > 100 && order.get(\"country\").equals(\"DE\") )\n"
+            + "    discount = order.get(\"total\") / 10;\n"
+            + "else if ( order.get(\"items\") >= 3 )\n"
+            + "    discount = 5;\n"
+            + "for ( int i = 0; i < 4; i++ )\n"
+            + "    discount = discount + i;\n"
+            + "discount;\n";
+
+    public static void main(String[] args) throws Exception {
+        final Interpreter interpreter = new Interpreter();
+        Map order = new HashMap();
+        order.put("total", new Integer(120));
+        order.put("country", "DE");
+        order.put("items", new Integer(2));
+        interpreter.set("order", order);
+
+        final ParsedScript compiled = Interpreter.parse(new StringReader(RULE), "rule");
+        Object expected = interpreter.eval(RULE);
+        Object actual = interpreter.eval(compiled);
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException("compiled result differs: " + expected + " != " + actual);
+        }
+
+        double uncompiled = Bench.run("eval(String)", new Bench.Task() {
+            public void run() throws Exception {
+                interpreter.eval(RULE);
+            }
+        });
+        double precompiled = Bench.run("eval(ParsedScript)", new Bench.Task() {
+            public void run() throws Exception {
+                interpreter.eval(compiled);
+            }
+        });
+        Bench.ratio("speedup", uncompiled, precompiled);
+    }
+}
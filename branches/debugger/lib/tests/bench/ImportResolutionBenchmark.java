@@ -0,0 +1,35 @@
+import bsh.Interpreter;
+import bsh.classpath.PackageIndex;
+
+/**
+ * Resolves unqualified names against the default imports in a fresh interpreter per operation, as a new session
+ * does. Without the package index each name is tried as a class in every imported package ahead of its own; with it
+ * the packages that can't hold the name are skipped.
+ */
+public class ImportResolutionBenchmark {
+
+    static final String SCRIPT =
+            "HashMap map; ArrayList list; File file; InputStream in; URL url; Socket socket;\n"
+            + "Thread thread; StringBuilder sb; Runnable task; Math.max( 1, 2 );\n";
+
+    public static void main(String[] args) throws Exception {
+        // map the class path and load the indexed packages once
+        new Interpreter().eval(SCRIPT);
+        double baseline = 0, candidate = 0;
+        for (int round = 0; round < 2; round++) {
+            PackageIndex.setEnabled(false);
+            baseline = run("trial loading");
+            PackageIndex.setEnabled(true);
+            candidate = run("package index");
+        }
+        Bench.ratio("speedup", baseline, candidate);
+    }
+
+    static double run(String name) throws Exception {
+        return Bench.run(name, new Bench.Task() {
+            public void run() throws Exception {
+                new Interpreter().eval(SCRIPT);
+            }
+        });
+    }
+}
@@ -0,0 +1,49 @@
+import bsh.Interpreter;
+import bsh.ParsedScript;
+
+import java.io.StringReader;
+
+/**
+ * Measures script loops dominated by Java method calls: a monomorphic object call site, a static call site and a
+ * polymorphic one.
+ */
+public class InlineCacheBenchmark {
+
+    static final String OBJECT_CALLS =
+            "list = new java.util.ArrayList();\n"
+            + "for ( int i = 0; i < 500; i++ )\n"
+            + "    list.add( \"item\" );\n"
+            + "n = 0;\n"
+            + "for ( int i = 0; i < 500; i++ )\n"
+            + "    n = n + list.get( i ).length();\n"
+            + "n;\n";
+
+    static final String STATIC_CALLS =
+            "int m = 0;\n"
+            + "for ( int i = 0; i < 1000; i++ )\n"
+            + "    m = Math.max( m, Math.abs( i ) );\n"
+            + "m;\n";
+
+    static final String POLYMORPHIC_CALLS =
+            "objects = new Object [] { \"a\", new Integer(1), new Long(2), new StringBuffer() };\n"
+            + "h = 0;\n"
+            + "for ( int i = 0; i < 1000; i++ )\n"
+            + "    h = h + objects[ i % 4 ].hashCode();\n"
+            + "h;\n";
+
+    public static void main(String[] args) throws Exception {
+        run("object calls x1000", OBJECT_CALLS);
+        run("static calls x2000", STATIC_CALLS);
+        run("polymorphic calls x1000", POLYMORPHIC_CALLS);
+    }
+
+    static void run(String name, String text) throws Exception {
+        final Interpreter interpreter = new Interpreter();
+        final ParsedScript script = Interpreter.parse(new StringReader(text), name);
+        Bench.run(name, new Bench.Task() {
+            public void run() throws Exception {
+                interpreter.eval(script);
+            }
+        });
+    }
+}
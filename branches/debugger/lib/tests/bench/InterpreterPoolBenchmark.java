@@ -0,0 +1,58 @@
+import java.io.StringReader;
+
+import bsh.Interpreter;
+import bsh.InterpreterPool;
+import bsh.ParsedScript;
+
+/**
+ * Compares constructing an Interpreter per request with borrowing one from an InterpreterPool, for a short request
+ * that uses an import, a scripted command and a helper method declared by a setup script.
+ */
+public class InterpreterPoolBenchmark {
+
+    static final String SETUP =
+            "import java.util.concurrent.*;\n"
+            + "String key( int i ) { return \"k\" + i; }\n";
+
+    static final String REQUEST =
+            "map = new ConcurrentHashMap();\n"
+            + "for ( int i = 0; i < 5; i++ )\n"
+            + "    map.put( key( i ), i );\n"
+            + "dirname( \"/a/b\" ) + map.size();\n";
+
+    public static void main(String[] args) throws Exception {
+        final ParsedScript setup = Interpreter.parse(new StringReader(SETUP), "setup");
+        final ParsedScript request = Interpreter.parse(new StringReader(REQUEST), "request");
+        final InterpreterPool pool = new InterpreterPool(4, setup);
+        pool.prewarm(1);
+
+        double baseline = 0, candidate = 0;
+        for (int round = 0; round < 2; round++) {
+            baseline = Bench.run("new interpreter", new Bench.Task() {
+                public void run() throws Exception {
+                    Interpreter interpreter = new Interpreter();
+                    interpreter.eval(setup);
+                    check(interpreter.eval(request));
+                }
+            });
+            candidate = Bench.run("pooled interpreter", new Bench.Task() {
+                public void run() throws Exception {
+                    Interpreter interpreter = pool.borrow();
+                    try {
+                        check(interpreter.eval(request));
+                    } finally {
+                        pool.release(interpreter);
+                    }
+                }
+            });
+        }
+        Bench.ratio("speedup", baseline, candidate);
+        System.out.println(pool);
+    }
+
+    static void check(Object result) {
+        if (!"/a5".equals(result)) {
+            throw new IllegalStateException("unexpected result: " + result);
+        }
+    }
+}
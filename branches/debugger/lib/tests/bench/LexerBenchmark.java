@@ -0,0 +1,84 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import bsh.EvalError;
+import bsh.Interpreter;
+import bsh.JavaCharStream;
+import bsh.ParserTokenManager;
+import bsh.Token;
+
+/**
+ * Measures lexer throughput in megabytes of script text per second over the test scripts that parse: tokenizing
+ * alone, which is mostly JavaCharStream, and a full parse for scale. The same figures with unicode escapes in every
+ * script show the cost of translating them.
+ */
+public class LexerBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        List texts = load(new File("../test-scripts"));
+        List escaped = new ArrayList();
+        for (int i = 0; i < texts.size(); i++) {
+            // a leading escaped comment makes every chunk take the translating path
+            escaped.add("/\\u002a escaped \\u002a/\n" + texts.get(i));
+        }
+        for (int round = 0; round < 2; round++) {
+            run("tokenize", texts, false);
+            run("tokenize with escapes", escaped, false);
+            run("parse", texts, true);
+        }
+    }
+
+    static void run(String name, final List texts, final boolean parse) throws Exception {
+        long chars = 0;
+        for (int i = 0; i < texts.size(); i++) {
+            chars += ((String) texts.get(i)).length();
+        }
+        double ops = Bench.run(name, new Bench.Task() {
+            public void run() throws Exception {
+                for (int i = 0; i < texts.size(); i++) {
+                    StringReader in = new StringReader((String) texts.get(i));
+                    if (parse) {
+                        Interpreter.parse(in, "bench");
+                    } else {
+                        ParserTokenManager tokens = new ParserTokenManager(new JavaCharStream(in, 1, 1));
+                        while (tokens.getNextToken().kind != 0) {
+                        }
+                    }
+                }
+            }
+        });
+        System.out.println(Bench.pad(name, 40) + String.format("%14.2f MB/s", ops * chars / 1e6));
+    }
+
+    static List load(File dir) throws Exception {
+        File[] files = dir.listFiles();
+        Arrays.sort(files);
+        List texts = new ArrayList();
+        for (int i = 0; i < files.length; i++) {
+            if (!files[i].getName().endsWith(".bsh")) {
+                continue;
+            }
+            byte[] bytes = new byte[(int) files[i].length()];
+            FileInputStream in = new FileInputStream(files[i]);
+            try {
+                for (int n = 0; n < bytes.length;) {
+                    n += in.read(bytes, n, bytes.length - n);
+                }
+            } finally {
+                in.close();
+            }
+            String text = new String(bytes, "ISO-8859-1");
+            try {
+                Interpreter.parse(new StringReader(text), files[i].getName());
+            } catch (EvalError e) {
+                continue;
+            }
+            texts.add(text);
+        }
+        return texts;
+    }
+}
@@ -0,0 +1,46 @@
+import bsh.Interpreter;
+import bsh.ParsedScript;
+
+import java.io.StringReader;
+
+/**
+ * Measures numeric scripted methods whose bodies are dominated by reads and writes of parameters and typed locals.
+ */
+public class LocalSlotsBenchmark {
+
+    static final String METHODS =
+            "double poly( double x, int n ) {\n"
+            + "    double acc = 0;\n"
+            + "    double term = 1;\n"
+            + "    int k = 0;\n"
+            + "    while ( k < n ) {\n"
+            + "        acc = acc + term;\n"
+            + "        term = term * x;\n"
+            + "        k++;\n"
+            + "    }\n"
+            + "    return acc;\n"
+            + "}\n"
+            + "int fib( int n ) {\n"
+            + "    if ( n < 2 )\n"
+            + "        return n;\n"
+            + "    int a = fib( n - 1 );\n"
+            + "    int b = fib( n - 2 );\n"
+            + "    return a + b;\n"
+            + "}\n";
+
+    public static void main(String[] args) throws Exception {
+        final Interpreter interpreter = new Interpreter();
+        interpreter.eval(METHODS);
+        run(interpreter, "poly( 0.5, 1000 )");
+        run(interpreter, "fib( 15 )");
+    }
+
+    static void run(final Interpreter interpreter, String call) throws Exception {
+        final ParsedScript script = Interpreter.parse(new StringReader(call + ";"), call);
+        Bench.run(call, new Bench.Task() {
+            public void run() throws Exception {
+                interpreter.eval(script);
+            }
+        });
+    }
+}
@@ -0,0 +1,65 @@
+import java.io.StringReader;
+
+import bsh.Interpreter;
+import bsh.MemberInvoker;
+import bsh.ParsedScript;
+
+/**
+ * Compares the reflective member invoker with the MethodHandle one on scripts dominated by calls into Java: bean
+ * getters and field reads on one hand, static java.lang.Math functions on the other. Each script is run on an
+ * interpreter of each backend, alternating, and the results are checked to agree.
+ */
+public class MethodHandleBenchmark {
+
+    static final String GETTERS =
+            "points = new java.util.ArrayList();\n"
+            + "for ( int i = 0; i < 20; i++ )\n"
+            + "    points.add( new java.awt.Point( i, 2 * i ) );\n"
+            + "sum = 0;\n"
+            + "for ( int r = 0; r < 25; r++ )\n"
+            + "    for ( int i = 0; i < 20; i++ ) {\n"
+            + "        p = points.get( i );\n"
+            + "        sum = sum + p.getLocation().x + p.y + (int) p.getX();\n"
+            + "    }\n"
+            + "sum;\n";
+
+    static final String ARITHMETIC =
+            "double acc = 0;\n"
+            + "for ( int i = 1; i < 500; i++ ) {\n"
+            + "    double x = i * 0.01;\n"
+            + "    acc = acc + Math.sqrt( x ) + Math.sin( x ) * Math.cos( x ) + Math.pow( x, 1.5 )\n"
+            + "        + Math.max( i, 250 ) + Math.abs( i - 250 );\n"
+            + "}\n"
+            + "acc;\n";
+
+    public static void main(String[] args) throws Exception {
+        compare("getters x1500", GETTERS);
+        compare("math x3000", ARITHMETIC);
+    }
+
+    static void compare(String name, String text) throws Exception {
+        ParsedScript script = Interpreter.parse(new StringReader(text), name);
+        Interpreter reflection = new Interpreter(MemberInvoker.REFLECTION);
+        Interpreter methodHandles = new Interpreter(MemberInvoker.methodHandles());
+        Object expected = reflection.eval(script);
+        Object actual = methodHandles.eval(script);
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException(name + " results differ: " + expected + " != " + actual);
+        }
+
+        double reflective = 0, handles = 0;
+        for (int round = 0; round < 2; round++) {
+            reflective = run(name + " reflection", reflection, script);
+            handles = run(name + " method handles", methodHandles, script);
+        }
+        Bench.ratio("speedup", reflective, handles);
+    }
+
+    static double run(String name, final Interpreter interpreter, final ParsedScript script) throws Exception {
+        return Bench.run(name, new Bench.Task() {
+            public void run() throws Exception {
+                interpreter.eval(script);
+            }
+        });
+    }
+}
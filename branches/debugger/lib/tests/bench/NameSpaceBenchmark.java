@@ -0,0 +1,41 @@
+import bsh.Interpreter;
+import bsh.ParsedScript;
+
+import java.io.StringReader;
+
+/**
+ * Measures a tight script loop dominated by variable reads and writes, i.e. by NameSpace table lookups.
+ */
+public class NameSpaceBenchmark {
+
+    static final String LOOP =
+            "sum = 0;\n"
+            + "for ( i = 0; i < 1000; i++ ) {\n"
+            + "    a = i;\n"
+            + "    sum = sum + a;\n"
+            + "}\n"
+            + "sum;\n";
+
+    static final String TYPED_LOOP =
+            "int sum = 0;\n"
+            + "for ( int i = 0; i < 1000; i++ ) {\n"
+            + "    int a = i;\n"
+            + "    sum = sum + a;\n"
+            + "}\n"
+            + "sum;\n";
+
+    public static void main(String[] args) throws Exception {
+        run("untyped loop x1000", LOOP);
+        run("typed loop x1000", TYPED_LOOP);
+    }
+
+    static void run(String name, String text) throws Exception {
+        final Interpreter interpreter = new Interpreter();
+        final ParsedScript script = Interpreter.parse(new StringReader(text), name);
+        Bench.run(name, new Bench.Task() {
+            public void run() throws Exception {
+                interpreter.eval(script);
+            }
+        });
+    }
+}
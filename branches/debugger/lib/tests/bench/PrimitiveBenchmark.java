@@ -0,0 +1,49 @@
+import bsh.Interpreter;
+import bsh.NameSpace;
+import bsh.ParsedScript;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.StringReader;
+
+/**
+ * Measures the arithmetic heavy test scripts, mainly for allocation rate and garbage collections. Each script is
+ * parsed once and evaluated in a fresh namespace per operation, with its output discarded.
+ */
+public class PrimitiveBenchmark {
+
+    static final String[] SCRIPTS = {
+        "arithmetic1.bsh", "arithmetic2.bsh", "operators.bsh", "primitives.bsh"
+    };
+
+    public static void main(String[] args) throws Exception {
+        File dir = new File("../test-scripts");
+        PrintStream discard = new PrintStream(new OutputStream() {
+            public void write(int b) {
+            }
+        });
+        for (int i = 0; i < SCRIPTS.length; i++) {
+            run(new File(dir, SCRIPTS[i]), discard);
+        }
+    }
+
+    static void run(File file, PrintStream out) throws Exception {
+        final Interpreter interpreter = new Interpreter(new StringReader(""), out, out, false);
+        interpreter.set("bsh.cwd", file.getParentFile().getCanonicalPath());
+        Reader in = new FileReader(file);
+        final ParsedScript script;
+        try {
+            script = Interpreter.parse(in, file.getName());
+        } finally {
+            in.close();
+        }
+        Bench.run(file.getName(), new Bench.Task() {
+            public void run() throws Exception {
+                interpreter.eval(script, new NameSpace(interpreter.getNameSpace(), "bench"));
+            }
+        });
+    }
+}
@@ -0,0 +1,54 @@
+import java.io.StringReader;
+
+import bsh.BshClassManager;
+import bsh.Interpreter;
+import bsh.ParsedScript;
+
+/**
+ * Measures the cost of a class loading change on the class manager caches. A script resolving a handful of JDK classes
+ * and methods is run after each change: reset() clears the caches, which is what every class path change used to do,
+ * while setClassLoader() now only invalidates the entries the change can affect and keeps the bootstrap classes.
+ */
+public class ResolutionCacheBenchmark {
+
+    static final String SCRIPT =
+            "import java.util.*;\n"
+            + "List list = new ArrayList();\n"
+            + "Map map = new HashMap();\n"
+            + "StringBuffer sb = new StringBuffer();\n"
+            + "for ( int i = 0; i < 4; i++ ) {\n"
+            + "    list.add( String.valueOf( i ) );\n"
+            + "    map.put( Integer.valueOf( i ), list.get( i ) );\n"
+            + "    sb.append( Math.max( i, 2 ) );\n"
+            + "}\n"
+            + "Collections.sort( list );\n"
+            + "sb.toString();\n";
+
+    public static void main(String[] args) throws Exception {
+        final Interpreter interpreter = new Interpreter();
+        final BshClassManager bcm = interpreter.getClassManager();
+        final ParsedScript script = Interpreter.parse(new StringReader(SCRIPT), "bench");
+        final ClassLoader loader = ResolutionCacheBenchmark.class.getClassLoader();
+        interpreter.eval(script);
+
+        double baseline = 0, candidate = 0;
+        for (int round = 0; round < 2; round++) {
+            baseline = Bench.run("clear on change", new Bench.Task() {
+                public void run() throws Exception {
+                    bcm.reset();
+                    interpreter.eval(script);
+                }
+            });
+            candidate = Bench.run("invalidate on change", new Bench.Task() {
+                public void run() throws Exception {
+                    bcm.setClassLoader(loader);
+                    interpreter.eval(script);
+                }
+            });
+        }
+        Bench.ratio("speedup", baseline, candidate);
+        System.out.println(bcm.getClassCache());
+        System.out.println(bcm.getNonClassCache());
+        System.out.println(bcm.getMethodCache());
+    }
+}
@@ -0,0 +1,76 @@
+import java.io.StringReader;
+
+import bsh.Interpreter;
+import bsh.NameSpace;
+import bsh.ParsedScript;
+import bsh.Primitive;
+
+/**
+ * Runs one request script on 1 to 32 threads, the way a server would. The baseline builds a new Interpreter per
+ * request and evaluates the setup and the request scripts in it; the candidate evaluates the already parsed request
+ * script in a fresh child of a frozen template namespace holding the setup. Set -Dbench.threads to a comma separated
+ * list to choose the thread counts.
+ */
+public class SharedScriptBenchmark {
+
+    static final String SETUP =
+            "import java.util.concurrent.atomic.*;\n"
+            + "int limit = 40;\n"
+            + "counter = new AtomicLong();\n"
+            + "String label( int i ) {\n"
+            + "    return i % 3 == 0 ? \"fizz\" : String.valueOf( i );\n"
+            + "}\n";
+
+    static final String REQUEST =
+            "sb = new StringBuilder();\n"
+            + "for ( int i = 0; i < limit; i++ )\n"
+            + "    sb.append( label( i + id ) ).append( ',' );\n"
+            + "counter.incrementAndGet();\n"
+            + "sb.length();\n";
+
+    public static void main(String[] args) throws Exception {
+        final ParsedScript setup = Interpreter.parse(new StringReader(SETUP), "setup");
+        final ParsedScript request = Interpreter.parse(new StringReader(REQUEST), "request");
+
+        Interpreter shared = new Interpreter();
+        shared.eval(setup);
+        final NameSpace template = shared.getNameSpace();
+        template.freeze();
+        final Interpreter interpreter = shared;
+
+        Object expected = perRequest(setup, request);
+        Object actual = onTemplate(interpreter, template, request);
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException("results differ: " + expected + " != " + actual);
+        }
+
+        String[] counts = System.getProperty("bench.threads", "1,2,4,8,16,32").split(",");
+        for (int i = 0; i < counts.length; i++) {
+            int threads = Integer.parseInt(counts[i].trim());
+            double baseline = Bench.runConcurrent("interpreter per request x" + threads, threads, new Bench.Task() {
+                public void run() throws Exception {
+                    perRequest(setup, request);
+                }
+            });
+            double candidate = Bench.runConcurrent("shared template x" + threads, threads, new Bench.Task() {
+                public void run() throws Exception {
+                    onTemplate(interpreter, template, request);
+                }
+            });
+            Bench.ratio("speedup x" + threads, baseline, candidate);
+        }
+    }
+
+    static Object perRequest(ParsedScript setup, ParsedScript request) throws Exception {
+        Interpreter interpreter = new Interpreter();
+        interpreter.eval(setup);
+        interpreter.set("id", 7);
+        return interpreter.eval(request);
+    }
+
+    static Object onTemplate(Interpreter interpreter, NameSpace template, ParsedScript request) throws Exception {
+        NameSpace ns = new NameSpace(template, "request");
+        ns.setVariable("id", new Primitive(7), false);
+        return interpreter.eval(request, ns);
+    }
+}
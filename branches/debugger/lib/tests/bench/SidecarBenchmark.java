@@ -0,0 +1,173 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import bsh.EvalError;
+import bsh.Interpreter;
+import bsh.ParsedScript;
+import bsh.ParsedScriptFile;
+
+/**
+ * Compares parsing the test scripts with reading their parse trees back from .bshc snapshots. The warm figures run
+ * in this VM on texts and snapshots held in memory; the cold figures are medians over bench.runs new VMs that each
+ * parse or read every script once, which is what a sidecar saves at startup.
+ */
+public class SidecarBenchmark {
+
+    static final int RUNS = Integer.getInteger("bench.runs", 15).intValue();
+
+    static final List names = new ArrayList();
+    static final List texts = new ArrayList();
+    static final List snapshots = new ArrayList();
+
+    public static void main(String[] args) throws Exception {
+        File dir = new File("../test-scripts");
+        if (args.length == 2) {
+            // a child VM: time one pass, reading the snapshots the parent saved
+            File snapshotDir = new File(args[1]);
+            String[] files = snapshotDir.list();
+            Arrays.sort(files);
+            for (int i = 0; i < files.length; i++) {
+                String name = files[i].substring(0, files[i].length() - ParsedScriptFile.EXTENSION.length());
+                names.add(name);
+                texts.add(readFully(new File(dir, name)));
+                snapshots.add(readBytes(new File(snapshotDir, files[i])));
+            }
+            long start = System.nanoTime();
+            if (args[0].equals("parse")) {
+                parseAll();
+            } else {
+                readAll();
+            }
+            System.out.println((System.nanoTime() - start) / 1e6);
+            return;
+        }
+        File snapshotDir = load(dir);
+        System.out.println(texts.size() + " scripts");
+
+        double baseline = 0, candidate = 0;
+        for (int round = 0; round < 2; round++) {
+            baseline = Bench.run("parse", new Bench.Task() {
+                public void run() throws Exception {
+                    parseAll();
+                }
+            });
+            candidate = Bench.run("read snapshot", new Bench.Task() {
+                public void run() throws Exception {
+                    readAll();
+                }
+            });
+        }
+        Bench.ratio("warm speedup", baseline, candidate);
+
+        for (int round = 0; round < 2; round++) {
+            baseline = measure("cold parse", "parse", snapshotDir);
+            candidate = measure("cold read snapshot", "read", snapshotDir);
+        }
+        Bench.ratio("cold speedup", 1 / baseline, 1 / candidate);
+    }
+
+    /**
+     * Parse the scripts that parse and save their snapshots in a temporary directory for the child VMs.
+     */
+    static File load(File dir) throws Exception {
+        File snapshotDir = File.createTempFile("snapshots", "");
+        snapshotDir.delete();
+        snapshotDir.mkdir();
+        snapshotDir.deleteOnExit();
+        File[] files = dir.listFiles();
+        Arrays.sort(files);
+        for (int i = 0; i < files.length; i++) {
+            if (!files[i].getName().endsWith(".bsh")) {
+                continue;
+            }
+            String text = readFully(files[i]);
+            ParsedScript script;
+            try {
+                script = Interpreter.parse(new StringReader(text), files[i].getName());
+            } catch (EvalError e) {
+                continue;
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ParsedScriptFile.write(script, text, bytes);
+            names.add(files[i].getName());
+            texts.add(text);
+            snapshots.add(bytes.toByteArray());
+
+            File snapshot = new File(snapshotDir, files[i].getName() + ParsedScriptFile.EXTENSION);
+            snapshot.deleteOnExit();
+            FileOutputStream out = new FileOutputStream(snapshot);
+            try {
+                bytes.writeTo(out);
+            } finally {
+                out.close();
+            }
+        }
+        return snapshotDir;
+    }
+
+    static String readFully(File file) throws Exception {
+        return new String(readBytes(file), "UTF-8");
+    }
+
+    static byte[] readBytes(File file) throws Exception {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int n; (n = in.read(buffer)) > 0;) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    static void parseAll() throws Exception {
+        for (int i = 0; i < texts.size(); i++) {
+            Interpreter.parse(new StringReader((String) texts.get(i)), (String) names.get(i));
+        }
+    }
+
+    static void readAll() throws Exception {
+        for (int i = 0; i < texts.size(); i++) {
+            ParsedScript script = ParsedScriptFile.read(new ByteArrayInputStream((byte[]) snapshots.get(i)),
+                    (String) texts.get(i), (String) names.get(i));
+            if (script == null) {
+                throw new IllegalStateException("snapshot rejected: " + names.get(i));
+            }
+        }
+    }
+
+    /**
+     * @return the median milliseconds taken by a new VM
+     */
+    static double measure(String name, String mode, File snapshotDir) throws Exception {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        double[] times = new double[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            Process process = new ProcessBuilder(new String[]{
+                java, "-cp", System.getProperty("java.class.path"), "SidecarBenchmark", mode, snapshotDir.getPath()
+            }).redirectErrorStream(true).start();
+            BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream()));
+            String line = in.readLine();
+            if (process.waitFor() != 0 || line == null) {
+                throw new IllegalStateException("child VM failed: " + line);
+            }
+            times[i] = Double.parseDouble(line.trim());
+        }
+        Arrays.sort(times);
+        double median = times[RUNS / 2];
+        System.out.println(Bench.pad(name, 40) + String.format("%14.1f ms", median));
+        return median;
+    }
+}
@@ -0,0 +1,98 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import bsh.Interpreter;
+import bsh.NameSpace;
+
+/**
+ * Measures a cold start: a new VM creating an interpreter, calling print() once and then loading every bundled command.
+ * Each run is a separate VM, so nothing is warmed up or cached in memory; the figures are the medians over bench.runs
+ * VMs. The baseline turns off the command manifest, which makes commands be found by probing the class path. The
+ * manifest is measured with the parsed forms of the commands turned off (bsh.sidecar=off), so that the scripts are
+ * parsed, and with them on, so that they are read from the .bsh.bshc files the build stores next to them.
+ */
+public class StartupBenchmark {
+
+    static final int RUNS = Integer.getInteger("bench.runs", 25).intValue();
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 1 && args[0].equals("child")) {
+            child();
+            return;
+        }
+        double[] baseline = null, parsed = null, candidate = null;
+        for (int round = 0; round < 2; round++) {
+            baseline = measure("no command manifest", "-Dbsh.commandManifest=false");
+            parsed = measure("command manifest, parsing", "-Dbsh.sidecar=off");
+            candidate = measure("command manifest, parsed commands", "-Dbsh.sidecar=read");
+        }
+        // as rates, so that a ratio above one is an improvement
+        Bench.ratio("first print() speedup", 1 / baseline[0], 1 / candidate[0]);
+        Bench.ratio("all commands, manifest speedup", 1 / baseline[1], 1 / parsed[1]);
+        Bench.ratio("all commands, parsed speedup", 1 / parsed[1], 1 / candidate[1]);
+    }
+
+    static void child() throws Exception {
+        long start = System.nanoTime();
+        Interpreter interpreter = new Interpreter();
+        long created = System.nanoTime();
+        interpreter.setOut(new PrintStream(new OutputStream() {
+            public void write(int b) {
+            }
+        }));
+        interpreter.eval("print( \"hello\" );");
+        long printed = System.nanoTime();
+        BufferedReader manifest = new BufferedReader(new InputStreamReader(
+                Interpreter.class.getResourceAsStream("/bsh/commands/commands.manifest"), "UTF-8"));
+        NameSpace nameSpace = interpreter.getNameSpace();
+        String line;
+        while ((line = manifest.readLine()) != null) {
+            if (line.endsWith(".bsh")) {
+                nameSpace.getCommand(line.substring(0, line.length() - ".bsh".length()), new Class[0], interpreter);
+            }
+        }
+        manifest.close();
+        long loaded = System.nanoTime();
+        System.out.println((created - start) / 1e6 + " " + (printed - created) / 1e6 + " " + (loaded - printed) / 1e6);
+    }
+
+    /**
+     * @return the median milliseconds of the first print() and of loading all commands
+     */
+    static double[] measure(String name, String property) throws Exception {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        double[] create = new double[RUNS];
+        double[] print = new double[RUNS];
+        double[] commands = new double[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            List command = new ArrayList(Arrays.asList(new String[]{
+                java, property, "-cp", System.getProperty("java.class.path"), "StartupBenchmark", "child"
+            }));
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream()));
+            String line = in.readLine();
+            if (process.waitFor() != 0 || line == null) {
+                throw new IllegalStateException("child VM failed: " + line);
+            }
+            String[] times = line.trim().split(" ");
+            create[i] = Double.parseDouble(times[0]);
+            print[i] = Double.parseDouble(times[1]);
+            commands[i] = Double.parseDouble(times[2]);
+        }
+        double created = median(create), printed = median(print), loaded = median(commands);
+        System.out.println(Bench.pad(name, 36) + String.format(
+                "%8.1f ms new Interpreter()%8.1f ms first print()%8.1f ms all commands", created, printed, loaded));
+        return new double[]{printed, loaded};
+    }
+
+    static double median(double[] values) {
+        Arrays.sort(values);
+        return values[values.length / 2];
+    }
+}
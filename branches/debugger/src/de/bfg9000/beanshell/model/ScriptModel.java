@@ -0,0 +1,183 @@
+/*********************************************************************************************************************** 
+ *  nbBeanShell -- a integration of BeanShell into the NetBeans IDE.                                                    *
+ *  Copyright (C) 2011 Thomas Werner                                                                                   *
+ *                                                                                                                     *
+ *  This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public  *
+ *  License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any     *
+ *  later version.                                                                                                     *
+ *                                                                                                                     *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied *
+ *  warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more       *
+ *  details.                                                                                                           *
+ *                                                                                                                     *
+ *  You should have received a copy of the GNU General Public License along with this program.  If not, see            *
+ *  <http://www.gnu.org/licenses/>.                                                                                    *
+ **********************************************************************************************************************/
+package de.bfg9000.beanshell.model;
+
+import bsh.BshScriptInfo;
+import bsh.ParseException;
+import bsh.ParserConnector;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import org.openide.util.ChangeSupport;
+import org.openide.util.RequestProcessor;
+
+/**
+ * The structure of the script held by a document, shared by everything that shows it. The script is parsed on a
+ * background thread shortly after the document was modified, at most once per modification, and the listeners are
+ * notified whenever a new {@code BshScriptInfo} is available. There is one model per document.
+ */
+public final class ScriptModel {
+
+    private static final Logger logger = Logger.getLogger(ScriptModel.class.getName());
+    private static final RequestProcessor PARSER = new RequestProcessor("BeanShell Script Parser", 1, true);
+    private static final int PARSE_DELAY = 500;
+
+    private final Document document;
+    private final ChangeSupport changeSupport;
+    private final RequestProcessor.Task parseTask;
+
+    private volatile long version = 0;
+    private volatile long parsedVersion = -1;
+    private volatile ParseResult parseResult;
+
+    /**
+     * Returns the model of the given document, creating it on first use.
+     *
+     * @param document the document holding a BeanShell script
+     * @return the model of the document
+     */
+    public static synchronized ScriptModel get(Document document) {
+        final Object model = document.getProperty(ScriptModel.class);
+        if(model instanceof ScriptModel)
+            return (ScriptModel) model;
+
+        final ScriptModel result = new ScriptModel(document);
+        document.putProperty(ScriptModel.class, result);
+        return result;
+    }
+
+    private ScriptModel(Document document) {
+        this.document = document;
+        changeSupport = new ChangeSupport(this);
+        parseTask = PARSER.create(new Runnable() {
+            @Override
+            public void run() {
+                parse();
+            }
+        });
+        document.addDocumentListener(new DocumentChangeListener());
+        parseTask.schedule(0);
+    }
+
+    /**
+     * @return the structure of the script as of the last parse, or {@code null} if it hasn't been parsed, yet
+     * @throws ParseException if the script was not valid the last time it was parsed
+     */
+    public BshScriptInfo getScriptInfo() throws ParseException {
+        final ParseResult current = parseResult;
+        if(null == current)
+            return null;
+        if(null != current.parseException)
+            throw current.parseException;
+        return current.scriptInfo;
+    }
+
+    /**
+     * Registers a listener that is notified on the parser thread whenever the script has been parsed again.
+     */
+    public void addChangeListener(ChangeListener listener) {
+        changeSupport.addChangeListener(listener);
+    }
+
+    public void removeChangeListener(ChangeListener listener) {
+        changeSupport.removeChangeListener(listener);
+    }
+
+    private void parse() {
+        final long[] textVersion = new long[1];
+        final String text = readText(textVersion);
+        if(textVersion[0] == parsedVersion)
+            return;
+
+        try {
+            parseResult = new ParseResult(new ParserConnector().parse(text), null);
+        } catch(ParseException ex) {
+            parseResult = new ParseResult(null, ex);
+        } catch(RuntimeException ex) {
+            parseResult = new ParseResult(null, new ParseException(ex.getMessage()));
+        }
+        parsedVersion = textVersion[0];
+        changeSupport.fireChange();
+    }
+
+    /**
+     * Reads the script under the document's read lock, together with the number of the modification it belongs to.
+     */
+    private String readText(final long[] textVersion) {
+        final String[] result = new String[1];
+        document.render(new Runnable() {
+            @Override
+            public void run() {
+                textVersion[0] = version;
+                try {
+                    result[0] = document.getText(0, document.getLength());
+                } catch(BadLocationException ex) {
+                    logger.log(Level.WARNING, null, ex);
+                    result[0] = "";
+                }
+            }
+        });
+        return result[0];
+    }
+
+    /**
+     * The outcome of one parse: the structure of the script or the reason it could not be parsed. Readers may run on
+     * any thread, so both are published together.
+     */
+    private static final class ParseResult {
+
+        final BshScriptInfo scriptInfo;
+        final ParseException parseException;
+
+        ParseResult(BshScriptInfo scriptInfo, ParseException parseException) {
+            this.scriptInfo = scriptInfo;
+            this.parseException = parseException;
+        }
+
+    }
+
+    /**
+     * Counts the modifications of the document and parses the script again once the user paused typing.
+     */
+    private final class DocumentChangeListener implements DocumentListener {
+
+        @Override
+        public void insertUpdate(DocumentEvent e) {
+            modificationHappened();
+        }
+
+        @Override
+        public void removeUpdate(DocumentEvent e) {
+            modificationHappened();
+        }
+
+        @Override
+        public void changedUpdate(DocumentEvent e) {
+            // attribute changes only, the script stays the same
+        }
+
+        private void modificationHappened() {
+            version++;
+            parseTask.schedule(PARSE_DELAY);
+        }
+
+    }
+
+}
@@ -15,14 +15,16 @@
  **********************************************************************************************************************/
 package de.bfg9000.beanshell.navigator;
 
+import bsh.BshScriptInfo;
+import de.bfg9000.beanshell.model.ScriptModel;
 import java.awt.BorderLayout;
 import java.util.Timer;
 import java.util.TimerTask;
 import javax.swing.JComponent;
 import javax.swing.JPanel;
 import javax.swing.SwingUtilities;
-import javax.swing.event.DocumentEvent;
-import javax.swing.event.DocumentListener;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import javax.swing.text.JTextComponent;
 import org.netbeans.spi.navigator.NavigatorPanel;
 import org.openide.explorer.ExplorerManager;
@@ -38,7 +40,7 @@ import org.openide.util.Lookup;
  * @author Thomas Werner
  */
 public class BeanShellNavigatorPanel extends JPanel 
-             implements NavigatorPanel, ExplorerManager.Provider, DocumentListener {
+             implements NavigatorPanel, ExplorerManager.Provider, ChangeListener {
 
     private final ExplorerManager manager = new ExplorerManager();
     private final BeanTreeView beanTreeView = new BeanTreeView();
@@ -46,6 +48,7 @@ public class BeanShellNavigatorPanel extends JPanel
     
     private Timer lookupTimer;
     private JTextComponent connectedTextComponent;
+    private ScriptModel scriptModel;
     
     public BeanShellNavigatorPanel() {
         setLayout(new BorderLayout());
@@ -71,24 +74,16 @@ public class BeanShellNavigatorPanel extends JPanel
 
     @Override
     public void panelActivated(Lookup lkp) { 
-        if(null != connectedTextComponent)
-            connectedTextComponent.getDocument().removeDocumentListener(this);
-        connectedTextComponent = org.netbeans.api.editor.EditorRegistry.lastFocusedComponent();
-        if(null != connectedTextComponent) {
-            connectedTextComponent.getDocument().addDocumentListener(this);
-            updateContent();
-        } else { 
+        connect(org.netbeans.api.editor.EditorRegistry.lastFocusedComponent());
+        if(null == connectedTextComponent)
             startLookupTimer();
-        }
         ExplorerUtils.activateActions(manager, true);
     }
 
     @Override
     public void panelDeactivated() { 
         stopLookupTimer();
-            
-        if(null != connectedTextComponent)
-            connectedTextComponent.getDocument().removeDocumentListener(this);        
+        connect(null);
         ExplorerUtils.activateActions(manager, false);
     }
 
@@ -102,26 +97,42 @@ public class BeanShellNavigatorPanel extends JPanel
         return manager;
     }
 
+    /**
+     * Called on the parser thread whenever the script model has parsed the current script again.
+     */
     @Override
-    public void insertUpdate(DocumentEvent e) {
-        updateContent();
-    }
-
-    @Override
-    public void removeUpdate(DocumentEvent e) {
-        updateContent();
+    public void stateChanged(ChangeEvent e) {
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                updateContent();
+            }
+        });
     }
-
-    @Override
-    public void changedUpdate(DocumentEvent e) {
-        updateContent();
+    
+    /**
+     * Shows the structure of the script in the given text component and follows its changes from now on.
+     */
+    private void connect(JTextComponent textComponent) {
+        if(null != scriptModel)
+            scriptModel.removeChangeListener(this);
+        
+        connectedTextComponent = textComponent;
+        scriptModel = null != textComponent ? ScriptModel.get(textComponent.getDocument()) : null;
+        if(null != scriptModel) {
+            scriptModel.addChangeListener(this);
+            updateContent();
+        }
     }
     
     private void updateContent() {
-        final String script = null != connectedTextComponent ? connectedTextComponent.getText() : "";
         try {
+            final BshScriptInfo scriptInfo = null != scriptModel ? scriptModel.getScriptInfo() : null;
+            if(null == scriptInfo)
+                return;                                         // not parsed yet, the script model will tell us
+            
             beanTreeView.setRootVisible(false);
-            manager.setRootContext(new RootNode(script, connectedTextComponent));
+            manager.setRootContext(new RootNode(scriptInfo, connectedTextComponent));
         } catch(Throwable ex) {
             beanTreeView.setRootVisible(true);
             manager.setRootContext(new ErrorNode());
@@ -148,11 +159,10 @@ public class BeanShellNavigatorPanel extends JPanel
         lookupTimer.schedule(new TimerTask() {
             @Override
             public void run() {
-                connectedTextComponent = org.netbeans.api.editor.EditorRegistry.lastFocusedComponent();
-                if(null != connectedTextComponent) {
+                final JTextComponent textComponent = org.netbeans.api.editor.EditorRegistry.lastFocusedComponent();
+                if(null != textComponent) {
                     lookupTimer.cancel();
-                    connectedTextComponent.getDocument().addDocumentListener(BeanShellNavigatorPanel.this);
-                    updateContent();
+                    connect(textComponent);
                 }
             }
         }, 500, 500);
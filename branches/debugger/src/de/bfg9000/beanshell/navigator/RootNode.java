@@ -15,8 +15,7 @@
  **********************************************************************************************************************/
 package de.bfg9000.beanshell.navigator;
 
-import bsh.ParseException;
-import bsh.ParserConnector;
+import bsh.BshScriptInfo;
 import javax.swing.text.JTextComponent;
 import org.openide.nodes.AbstractNode;
 import org.openide.nodes.Children;
@@ -28,8 +27,8 @@ import org.openide.nodes.Children;
  */
 class RootNode extends AbstractNode {
 
-    public RootNode(String scriptContent, JTextComponent connectedComponent) throws ParseException {
-        super(Children.create(new NodeFactory(new ParserConnector().parse(scriptContent), connectedComponent), false));        
+    public RootNode(BshScriptInfo scriptInfo, JTextComponent connectedComponent) {
+        super(Children.create(new NodeFactory(scriptInfo, connectedComponent), false));
     }
 
 }
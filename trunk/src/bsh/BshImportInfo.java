@@ -60,6 +60,18 @@ public class BshImportInfo implements BshInfo {
         this.name = name;
     }
     
+    /**
+     * @param lineDelta the number of lines to move the copy by
+     * @return a copy of this import
+     */
+    BshImportInfo copy(int lineDelta) {
+        final BshImportInfo result = new BshImportInfo();
+        result.modifiers.addAll(modifiers);
+        result.name = name;
+        result.lineNumber = lineNumber +lineDelta;
+        return result;
+    }
+    
     @Override
     public String getIconPath() {
         return null;
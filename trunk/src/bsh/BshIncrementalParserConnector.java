@@ -0,0 +1,291 @@
+/*
+ * nbBeanShell -- a integration of BeanShell into the NetBeans IDE
+ * Copyright (C) 2012 Thomas Werner
+ *
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with this library; if not, write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+package bsh;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the structure of a script up to date while it is edited, re-parsing only the statements an edit touches. The
+ * result is the same {@code BshScriptInfo} that {@link BshParserConnector#parse(String)} returns for the whole text.
+ * <p>
+ * The script is split into units: runs of whole lines holding one or more top level statements, each unit ending
+ * where a statement ends with nothing but whitespace after it on its line. At such a point the parser is between
+ * statements with nothing pending, so parsing can be restarted there. An edit re-parses from the unit before the
+ * one it starts in, and stops as soon as a unit ends at or after the edit on a line where one ended before. The
+ * units after that are kept, moved by the number of lines the edit added or removed.
+ */
+public class BshIncrementalParserConnector {
+
+    /**
+     * A run of lines and what its statements declare. The lines are the ones after the end of the previous unit, up
+     * to and including {@code endLine}.
+     */
+    private static final class Unit {
+
+        private final BshScriptInfo info = new BshScriptInfo();
+        private int endLine;
+        private int parsedEndLine;
+
+    }
+
+    private final BshParserConnector connector = new BshParserConnector();
+    private final List<Unit> units = new ArrayList<Unit>();
+    private String text = "";
+    private int[] lineStarts = { 0 };
+    private int lineCount = 1;
+    private BshScriptInfo scriptInfo;
+    private int parsedLines;
+
+    /**
+     * Brings the structure up to date with the given text, re-parsing the part that differs from the previous text.
+     *
+     * @param newText the script
+     * @return a {@code BshScriptInfo} object describing the script
+     */
+    public synchronized BshScriptInfo update(String newText) {
+        if(null != scriptInfo && text.equals(newText))
+            return scriptInfo;
+
+        final int length = Math.min(text.length(), newText.length());
+        int prefix = 0;
+        while(prefix < length && text.charAt(prefix) == newText.charAt(prefix))
+            prefix++;
+        int suffix = 0;
+        while(suffix < length -prefix &&
+              text.charAt(text.length() -suffix -1) == newText.charAt(newText.length() -suffix -1))
+            suffix++;
+
+        apply(newText, prefix, text.length() -suffix, newText.length() -suffix);
+        return scriptInfo;
+    }
+
+    /**
+     * @return a {@code BshScriptInfo} object describing the script as of the last update
+     */
+    public synchronized BshScriptInfo getScriptInfo() {
+        return null != scriptInfo ? scriptInfo : update(text);
+    }
+
+    /**
+     * @return the number of lines parsed by the last update, for measuring how much of the script it touched
+     */
+    public synchronized int getParsedLineCount() {
+        return parsedLines;
+    }
+
+    /**
+     * Replaces the text between from and oldTo by the text between from and newTo of the new text.
+     */
+    private void apply(String newText, int from, int oldTo, int newTo) {
+        // one more character on either side, so that a CR LF pair is never split
+        if(from > 0)
+            from--;
+        if(oldTo < text.length()) {
+            oldTo++;
+            newTo++;
+        }
+
+        final int firstLine = lineOf(from);
+        final int oldLastLine = lineOf(oldTo);
+        final int[] newLineStarts = spliceLineStarts(newText, firstLine, oldLastLine, oldTo, newTo);
+        final int newLineCount = lineCount +newLineStarts.length -lineStarts.length;
+        final int newLastLine = oldLastLine +newLineCount -lineCount;
+        final int lineDelta = newLastLine -oldLastLine;
+
+        int startUnit = 0;
+        while(startUnit < units.size() && units.get(startUnit).endLine < firstLine)
+            startUnit++;
+        startUnit = Math.max(0, startUnit -1);
+        final int startLine = 0 == startUnit ? 1 : units.get(startUnit -1).endLine +1;
+
+        text = newText;
+        lineStarts = newLineStarts;
+        lineCount = newLineCount;
+
+        final List<Unit> parsed = new ArrayList<Unit>();
+        final int reused = parse(startLine, startUnit, newLastLine, lineDelta, parsed);
+        final int end = -1 == reused ? units.size() : reused;
+        units.subList(startUnit, end).clear();
+        units.addAll(startUnit, parsed);
+        for(int i=startUnit +parsed.size(); i<units.size(); i++)
+            units.get(i).endLine += lineDelta;
+
+        parsedLines = (parsed.isEmpty() ? startLine -1 : parsed.get(parsed.size() -1).endLine) -startLine +1;
+        scriptInfo = assemble();
+    }
+
+    /**
+     * Parses units from the start line on, until one ends at or after the last edited line where an old unit ended.
+     *
+     * @return the index of the first old unit that can be kept, or -1 if the parser went on to the end
+     */
+    private int parse(int startLine, int startUnit, int lastEditedLine, int lineDelta, List<Unit> parsed) {
+        final StringReader reader = new StringReader(text);
+        try {
+            reader.skip(lineStarts[startLine -1]);
+        } catch(IOException ex) {
+            throw new AssertionError(ex);
+        }
+        final JavaCharStream stream = new JavaCharStream(reader, startLine, 1);
+        final Parser parser = new Parser(new ParserTokenManager(stream));
+        parser.setRetainComments(true);
+
+        Unit unit = new Unit();
+        boolean error = false;
+        int line = -1;
+        int col = -1;
+
+        while(true) {
+            try {
+                if(parser.Line())
+                    break;
+
+                connector.addStatement(parser.popNode(), unit.info);
+                error = false;
+
+                final Token last = parser.token;
+                if(endsLine(last.endLine, last.endColumn)) {
+                    unit.endLine = unit.parsedEndLine = last.endLine;
+                    parsed.add(unit);
+                    unit = new Unit();
+
+                    if(last.endLine >= lastEditedLine) {
+                        final int oldUnit = findUnitEndingAt(last.endLine -lineDelta, startUnit);
+                        if(-1 != oldUnit)
+                            return oldUnit +1;
+                    }
+                }
+            } catch(Throwable t) {
+                if(error && ((line == stream.line) && (col == stream.column)))
+                    break;
+                error = true;
+                parser.jjtree.reset();
+            } finally {
+                line = stream.line;
+                col = stream.column;
+            }
+        }
+
+        // the rest of the script, trailing comments or what the parser gave up on
+        if(parsed.isEmpty() || parsed.get(parsed.size() -1).endLine < lineCount) {
+            unit.endLine = unit.parsedEndLine = lineCount;
+            parsed.add(unit);
+        }
+        return -1;
+    }
+
+    /**
+     * @return {@code true} if there is only whitespace after the given column of the given line
+     */
+    private boolean endsLine(int line, int endColumn) {
+        final int end = line < lineCount ? lineStarts[line] : text.length();
+        int column = 0;
+        int i = lineStarts[line -1];
+        while(i < end && column < endColumn) {
+            final char c = text.charAt(i++);
+            // columns are counted the way JavaCharStream does; a unicode escape would throw them off
+            if(c == '\\' && i < end && text.charAt(i) == 'u')
+                return false;
+            column = (c == '\t') ? column +8 -(column & 07) : column +1;
+        }
+        if(column != endColumn)
+            return false;
+        while(i < end)
+            if(!Character.isWhitespace(text.charAt(i++)))
+                return false;
+        return true;
+    }
+
+    /**
+     * @return the index of the old unit ending at the given line, or -1 if no unit from the given index on does
+     */
+    private int findUnitEndingAt(int line, int fromUnit) {
+        int low = fromUnit;
+        int high = units.size() -1;
+        while(low <= high) {
+            final int mid = (low +high) >>> 1;
+            final int endLine = units.get(mid).endLine;
+            if(endLine < line)
+                low = mid +1;
+            else if(endLine > line)
+                high = mid -1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the line holding the given offset of the current text
+     */
+    private int lineOf(int offset) {
+        int low = 0;
+        int high = lineCount -1;
+        while(low < high) {
+            final int mid = (low +high +1) >>> 1;
+            if(lineStarts[mid] <= offset)
+                low = mid;
+            else
+                high = mid -1;
+        }
+        return low +1;
+    }
+
+    /**
+     * @return the line starts of the new text: the old ones up to the first edited line, the ones found in the edited
+     * text and the old ones after the last edited line, moved by the change in length
+     */
+    private int[] spliceLineStarts(String newText, int firstLine, int oldLastLine, int oldTo, int newTo) {
+        final List<Integer> found = new ArrayList<Integer>();
+        for(int i=lineStarts[firstLine -1]; i<newTo; i++) {
+            final char c = newText.charAt(i);
+            if(c == '\n' || (c == '\r' && (i +1 == newText.length() || newText.charAt(i +1) != '\n')))
+                found.add(i +1);
+        }
+
+        final int[] result = new int[firstLine +found.size() +lineCount -oldLastLine];
+        System.arraycopy(lineStarts, 0, result, 0, firstLine);
+        for(int i=0; i<found.size(); i++)
+            result[firstLine +i] = found.get(i);
+        for(int i=oldLastLine; i<lineCount; i++)
+            result[firstLine +found.size() +i -oldLastLine] = lineStarts[i] +newTo -oldTo;
+        return result;
+    }
+
+    /**
+     * @return the structure of the whole script, put together from copies of the units' declarations
+     */
+    private BshScriptInfo assemble() {
+        final BshScriptInfo result = new BshScriptInfo();
+        result.addImports(connector.getDefaultImports());
+        for(Unit unit: units) {
+            final int lineDelta = unit.endLine -unit.parsedEndLine;
+            for(BshImportInfo importInfo: unit.info.getImports())
+                result.imports.add(importInfo.copy(lineDelta));
+            for(BshMethodInfo method: unit.info.getMethods())
+                result.methods.add(method.copy(lineDelta));
+            for(BshVariableInfo variable: unit.info.getVariables())
+                result.variables.add(variable.copy(lineDelta));
+        }
+        connector.finish(result);
+        BshParserConnector.setRange(result, text);
+        return result;
+    }
+
+}
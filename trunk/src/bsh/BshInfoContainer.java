@@ -89,4 +89,19 @@ public abstract class BshInfoContainer {
         this.endLine = endLine;
     }
     
+    /**
+     * Copies the range and the contained methods and variables into the given container, moving them by the given 
+     * number of lines.
+     */
+    void copyInto(BshInfoContainer target, int lineDelta) {
+        target.beginLine = beginLine +lineDelta;
+        target.beginColum = beginColum;
+        target.endLine = endLine +lineDelta;
+        target.endColum = endColum;
+        for(BshMethodInfo method: methods)
+            target.methods.add(method.copy(lineDelta));
+        for(BshVariableInfo variable: variables)
+            target.variables.add(variable.copy(lineDelta));
+    }
+    
 }
@@ -141,6 +141,27 @@ public class BshMethodInfo extends BshInfoContainer implements BshInfo {
         interfaze = isInterface;
     }
 
+    /**
+     * @param lineDelta the number of lines to move the copy by
+     * @return a deep copy of this method or class
+     */
+    BshMethodInfo copy(int lineDelta) {
+        final BshMethodInfo result = new BshMethodInfo();
+        copyInto(result, lineDelta);
+        result.modifiers.addAll(modifiers);
+        result.name = name;
+        for(BshParameterInfo parameter: parameters)
+            result.parameters.add(new BshParameterInfo(parameter.getName(), parameter.getType()));
+        result.returnType = returnType;
+        result.lineNumber = lineNumber +lineDelta;
+        result.clazz = clazz;
+        result.constructor = constructor;
+        result.superClass = superClass;
+        result.interfaces.addAll(interfaces);
+        result.interfaze = interfaze;
+        return result;
+    }
+
     @Override
     public String getIconPath() {
         final boolean isStatic = modifiers.contains(BshModifierInfo.Static);
@@ -37,11 +37,7 @@ public class BshParserConnector {
      */
     public BshScriptInfo parse(String inputString) {
         final BshScriptInfo result = parse(new Parser(new StringReader(inputString)));
-        final String lines[] = inputString.split("\\r?\\n");
-        result.setBeginColum(lines.length == 0 ? 0 : 1);
-        result.setBeginLine(lines.length == 0 ? 0 : 1);
-        result.setEndLine(lines.length == 0 ? 0 : lines.length);
-        result.setEndColum(lines.length == 0 ? 0 : lines[lines.length -1].length());
+        setRange(result, inputString);
         return result;
     }
     
@@ -75,30 +71,80 @@ public class BshParserConnector {
                 if(parser.Line())
                     break;
                 
-                final SimpleNode node = parser.popNode();
-                result.addImports(getScriptImports(node));
-                if(isMethod(node)) {
-                    result.addMethods(Collections.singleton(buildMethodInfo(node)));
-                } else if(isVariable(node)) {
-                    result.addVariables(Collections.singleton(buildVariableInfo(node)));
-                } else if(isClass(node))
-                    result.addMethods(Collections.singleton(buildClassInfo(node)));
-                
+                addStatement(parser.popNode(), result);
                 error = false;
             } catch(Throwable t) {
                 if(error && ((line == parser.jj_input_stream.line) && (col == parser.jj_input_stream.column)))
                     break;
                 error = true;
+                
+                // drop the nodes of the broken statement, the next one must not pick them up
+                parser.jjtree.reset();
             } finally {
                 line = parser.jj_input_stream.line;
                 col = parser.jj_input_stream.column;
             }
         }
-        removeDuplicateVariables(result.getVariables().iterator());
-        removeLooselyTypedOuterVariables(result, getVariableNames(new ArrayList<BshVariableInfo>()));        
+        finish(result);
         return result;
     }    
     
+    /**
+     * Adds what a top level statement declares to the given script info.
+     * 
+     * @param node the statement, as returned by the parser; {@code null} for an empty statement
+     * @param result the script info to add to
+     */
+    void addStatement(SimpleNode node, BshScriptInfo result) {
+        if(null == node)
+            return;
+        
+        result.addImports(getScriptImports(node));
+        if(isMethod(node)) {
+            result.addMethods(Collections.singleton(buildMethodInfo(node)));
+        } else if(isVariable(node)) {
+            result.addVariables(Collections.singleton(buildVariableInfo(node)));
+        } else if(isClass(node))
+            result.addMethods(Collections.singleton(buildClassInfo(node)));
+    }
+    
+    /**
+     * Drops the variables that turned out not to be declarations, once all statements have been added.
+     * 
+     * @param result the script info holding the declarations of all statements
+     */
+    void finish(BshScriptInfo result) {
+        removeDuplicateVariables(result.getVariables().iterator());
+        removeLooselyTypedOuterVariables(result, new LinkedList<Set<String>>());
+    }
+    
+    /**
+     * Sets the begin and end of the script info to the first and last line of the script. Like splitting the script 
+     * at line ends, trailing empty lines are not counted and a script of line ends only has no lines.
+     * 
+     * @param result the script info
+     * @param inputString the script
+     */
+    static void setRange(BshScriptInfo result, String inputString) {
+        int end = inputString.length();
+        int lines = 1;
+        if(-1 != inputString.indexOf('\n')) {
+            while(end > 0 && inputString.charAt(end -1) == '\n')
+                end -= (end > 1 && inputString.charAt(end -2) == '\r') ? 2 : 1;
+            lines = 0;
+            for(int i=0; i<end; i++)
+                if(inputString.charAt(i) == '\n')
+                    lines++;
+            if(end > 0)
+                lines++;
+        }
+        final int lastLineStart = inputString.lastIndexOf('\n', end -1) +1;
+        result.setBeginColum(lines == 0 ? 0 : 1);
+        result.setBeginLine(lines == 0 ? 0 : 1);
+        result.setEndLine(lines);
+        result.setEndColum(lines == 0 ? 0 : end -lastLineStart);
+    }
+    
     //----------------------------------------------------------------------------------------------------------------//
     // Import handling                                                                                                //
     //----------------------------------------------------------------------------------------------------------------//
@@ -111,7 +157,7 @@ public class BshParserConnector {
         return node instanceof BSHImportDeclaration;
     }
            
-    private List<BshImportInfo> getDefaultImports() {
+    List<BshImportInfo> getDefaultImports() {
         final List<BshImportInfo> result = new LinkedList<BshImportInfo>();
         final String[] defaults = { "javax.swing.event", "javax.swing", "java.awt.event", "java.awt", "java.net", 
                                     "java.util", "java.io", "java.lang" };
@@ -354,21 +400,28 @@ public class BshParserConnector {
      * @see (test) bsh/scripts/cascadedDeclaration.bsh
      * 
      * @param container the container to (possibly) remove variable declarations from
-     * @param outerScope the variables that have been declared in the outer scope
+     * @param outerScopes the names of the variables declared in each of the outer scopes, innermost first
      */
-    private void removeLooselyTypedOuterVariables(BshInfoContainer container, Collection<String> outerScope) {
+    private void removeLooselyTypedOuterVariables(BshInfoContainer container, LinkedList<Set<String>> outerScopes) {
         final Iterator<BshVariableInfo> iterator = container.variables.iterator();
         while(iterator.hasNext()) {
             final BshVariableInfo varInfo = iterator.next();
-            if(LOOSE_TYPE.equals(varInfo.getType()) && outerScope.contains(varInfo.getName()))
+            if(LOOSE_TYPE.equals(varInfo.getType()) && isDeclared(varInfo.getName(), outerScopes))
                 iterator.remove();
         }
         
-        final Set<String> thisScope = new HashSet<String>(outerScope);
-        thisScope.addAll(getVariableNames(container.variables));
-        
+        // the scopes are chained rather than merged, a script has many methods and copying is what used to cost
+        outerScopes.addFirst(getVariableNames(container.variables));
         for(BshInfoContainer innerContainer: container.getMethods())
-            removeLooselyTypedOuterVariables(innerContainer, thisScope);
+            removeLooselyTypedOuterVariables(innerContainer, outerScopes);
+        outerScopes.removeFirst();
+    }
+    
+    private boolean isDeclared(String name, Collection<Set<String>> scopes) {
+        for(Set<String> scope: scopes)
+            if(scope.contains(name))
+                return true;
+        return false;
     }
     
     //----------------------------------------------------------------------------------------------------------------//
@@ -26,10 +26,23 @@ import java.util.List;
 public class BshScriptInfo extends BshInfoContainer {
  
     protected final List<BshImportInfo> imports = new LinkedList<BshImportInfo>();
+    private BshVariableIndex variableIndex;
     
     public List<BshImportInfo> getImports() {
         return imports;
     }
+    
+    /**
+     * Returns the variables of the script indexed for code completion. The index is built on the first call, so the
+     * script info must not change after that.
+     * 
+     * @return the variable index of the script
+     */
+    public synchronized BshVariableIndex getVariableIndex() {
+        if(null == variableIndex)
+            variableIndex = new BshVariableIndex(this);
+        return variableIndex;
+    }
 
     public void addImports(Collection<BshImportInfo> importInfos) {
         imports.addAll(importInfos);
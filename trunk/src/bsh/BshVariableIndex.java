@@ -0,0 +1,171 @@
+/*
+ * nbBeanShell -- a integration of BeanShell into the NetBeans IDE
+ * Copyright (C) 2012 Thomas Werner
+ *
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with this library; if not, write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+package bsh;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The variables of a script, indexed for code completion: which of them are visible at a position of the script and
+ * start with a given prefix, ignoring case.
+ * <p>
+ * The methods and classes of a container don't overlap, so the containers form a tree of nested ranges. Each keeps
+ * its methods sorted by position, and the containers around a position are found with one binary search per nesting
+ * level. Each container also keeps its variables sorted by lower case name, so the ones starting with a prefix are a
+ * run found with a binary search. A lookup at a position nested d containers deep returning k variables takes
+ * O(d log n + k log k).
+ */
+public class BshVariableIndex {
+
+    /**
+     * Orders names by their lower case form, which is what lookups compare the prefix with.
+     */
+    private static final java.util.Comparator<String> KEY_ORDER = new java.util.Comparator<String>() {
+
+        @Override
+        public int compare(String o1, String o2) {
+            final int result = o1.toLowerCase().compareTo(o2.toLowerCase());
+            return 0 != result ? result : o1.compareTo(o2);
+        }
+
+    };
+
+    /**
+     * A container with its variables sorted by lower case name and its methods sorted by position.
+     */
+    private static final class Scope {
+
+        private final BshInfoContainer container;
+        private final String[] keys;
+        private final BshVariableInfo[] variables;
+        private final Scope[] children;
+
+        private Scope(BshInfoContainer container) {
+            this.container = container;
+
+            // a later declaration of a name replaces an earlier one
+            final TreeMap<String, BshVariableInfo> byName = new TreeMap<String, BshVariableInfo>(KEY_ORDER);
+            for(BshVariableInfo variable: container.getVariables())
+                byName.put(variable.getName(), variable);
+            variables = byName.values().toArray(new BshVariableInfo[byName.size()]);
+            keys = new String[variables.length];
+            for(int i=0; i<variables.length; i++)
+                keys[i] = variables[i].getName().toLowerCase();
+
+            children = new Scope[container.getMethods().size()];
+            int i = 0;
+            for(BshMethodInfo method: container.getMethods())
+                children[i++] = new Scope(method);
+            Arrays.sort(children, new java.util.Comparator<Scope>() {
+                @Override
+                public int compare(Scope o1, Scope o2) {
+                    final int result = o1.container.getBeginLine() -o2.container.getBeginLine();
+                    return 0 != result ? result : o1.container.getBeginColum() -o2.container.getBeginColum();
+                }
+            });
+        }
+
+        /**
+         * @return the method containing the given position, or {@code null} if there is none
+         */
+        private Scope findChild(int line, int col) {
+            // the last method starting before the position is the only one that can contain it
+            int low = 0;
+            int high = children.length -1;
+            while(low <= high) {
+                final int mid = (low +high) >>> 1;
+                if(startsBefore(children[mid].container, line, col))
+                    low = mid +1;
+                else
+                    high = mid -1;
+            }
+            if(high < 0 || !endsAfter(children[high].container, line, col))
+                return null;
+            return children[high];
+        }
+
+        /**
+         * Adds the variables whose lower case name starts with the given key and that aren't hidden by a name already
+         * collected.
+         */
+        private void collect(String key, Set<String> names, List<BshVariableInfo> result) {
+            int low = 0;
+            int high = keys.length;
+            while(low < high) {
+                final int mid = (low +high) >>> 1;
+                if(keys[mid].compareTo(key) < 0)
+                    low = mid +1;
+                else
+                    high = mid;
+            }
+            for(int i=low; i<keys.length && keys[i].startsWith(key); i++)
+                if(names.add(variables[i].getName()))
+                    result.add(variables[i]);
+        }
+
+    }
+
+    private final Scope root;
+
+    /**
+     * @param scriptInfo the script to index, which must not change afterwards
+     */
+    BshVariableIndex(BshScriptInfo scriptInfo) {
+        root = new Scope(scriptInfo);
+    }
+
+    /**
+     * Returns the variables available at the given position, sorted by name. Variables declared in a method hide the
+     * ones of the same name declared around it.
+     *
+     * @param line the line of the position
+     * @param col the column of the position
+     * @param prefix the start of the names to return, case doesn't matter
+     * @return the matching variables
+     */
+    public List<BshVariableInfo> getVariables(int line, int col, String prefix) {
+        final List<Scope> scopes = new ArrayList<Scope>();
+        Scope scope = (startsBefore(root.container, line, col) && endsAfter(root.container, line, col)) ? root : null;
+        while(null != scope) {
+            scopes.add(scope);
+            scope = scope.findChild(line, col);
+        }
+
+        final String key = prefix.toLowerCase();
+        final Set<String> names = new HashSet<String>();
+        final List<BshVariableInfo> result = new ArrayList<BshVariableInfo>();
+        for(int i=scopes.size() -1; i>=0; i--)
+            scopes.get(i).collect(key, names, result);
+        Collections.sort(result, new BshVariableInfo.Comparator());
+        return result;
+    }
+
+    private static boolean startsBefore(BshInfoContainer container, int line, int col) {
+        return (container.getBeginLine() < line) ||
+               ((container.getBeginLine() == line) && (container.getBeginColum() <= col));
+    }
+
+    private static boolean endsAfter(BshInfoContainer container, int line, int col) {
+        return (container.getEndLine() > line) ||
+               ((container.getEndLine() == line) && (container.getEndColum() >= col));
+    }
+
+}
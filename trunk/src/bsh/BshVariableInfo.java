@@ -81,6 +81,19 @@ public class BshVariableInfo implements BshInfo {
         this.type = type;
     }
 
+    /**
+     * @param lineDelta the number of lines to move the copy by
+     * @return a copy of this variable
+     */
+    BshVariableInfo copy(int lineDelta) {
+        final BshVariableInfo result = new BshVariableInfo();
+        result.modifiers.addAll(modifiers);
+        result.name = name;
+        result.type = type;
+        result.lineNumber = lineNumber +lineDelta;
+        return result;
+    }
+
     @Override
     public String getIconPath() {
         final boolean isStatic = modifiers.contains(BshModifierInfo.Static);
@@ -15,8 +15,8 @@
  */
 package de.bfg9000.beanshell.completion;
 
-import bsh.BshParserConnector;
 import bsh.BshScriptInfo;
+import de.bfg9000.beanshell.model.ScriptModel;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.logging.Level;
@@ -67,8 +67,7 @@ class CompletionQuery extends AsyncCompletionQuery {
         try {
             // Remove current line from script as it's almost always an incorrect statement, yet. This its kind of a 
             // hack and doesn't work in all situations - but still better than nothing
-            final String script = removeLine(doc.getText(0, doc.getLength()), lineNumber -1);
-            final BshScriptInfo scriptInfo = new BshParserConnector().parse(script);
+            final BshScriptInfo scriptInfo = ScriptModel.get(doc).getScriptInfoWithoutLine(lineNumber -1);
             for(CompletionQueryItemProvider provider: itemProviders)
                 resultSet.addAllItems(provider.getItems(scriptInfo, startOffset, caretOffset, filter, lineNumber, 
                                       colNumber));
@@ -105,13 +104,5 @@ class CompletionQuery extends AsyncCompletionQuery {
         }
         return -1;
     }
-
-    private String removeLine(String input, int lineToRemove) {
-        final String lines[] = input.split("\\r?\\n");
-        final StringBuilder result = new StringBuilder();
-        for(int i=0; i<lines.length; i++)
-            result.append(i != lineToRemove ? lines[i] : "").append("\n");
-        return result.toString();
-    }
     
 }
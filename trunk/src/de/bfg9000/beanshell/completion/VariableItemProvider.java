@@ -15,11 +15,10 @@
  */
 package de.bfg9000.beanshell.completion;
 
-import bsh.BshInfoContainer;
-import bsh.BshMethodInfo;
 import bsh.BshScriptInfo;
 import bsh.BshVariableInfo;
-import java.util.*;
+import java.util.ArrayList;
+import java.util.List;
 import org.netbeans.spi.editor.completion.CompletionItem;
 
 /**
@@ -33,37 +32,13 @@ class VariableItemProvider implements CompletionQueryItemProvider {
     public List<? extends CompletionItem> getItems(BshScriptInfo scriptInfo, int startOffset, int caretOffset, 
                                           String filter, int line, int column) {
 
-        final List<BshVariableInfo> varInfoList = new LinkedList<BshVariableInfo>();
-        handleInfoContainer(varInfoList, scriptInfo, line, column);
-        Collections.sort(varInfoList, new BshVariableInfo.Comparator());
-        
-        final String lowerCaseFilter = filter.toLowerCase();
+        // the index is built once per parse and shared by all queries until the script changes
+        final List<BshVariableInfo> varInfoList = scriptInfo.getVariableIndex().getVariables(line, column, filter);
         final List<VariableCompletionItem> result = new ArrayList<VariableCompletionItem>(varInfoList.size());
         for(BshVariableInfo varInfo: varInfoList)
-            if(filter.isEmpty() || varInfo.getName().toLowerCase().startsWith(lowerCaseFilter))
-                result.add(new VariableCompletionItem(varInfo, startOffset, caretOffset));
+            result.add(new VariableCompletionItem(varInfo, startOffset, caretOffset));
         
         return result;
     }
     
-    private void handleInfoContainer(List<BshVariableInfo> list, BshInfoContainer container, int line, int col) {
-        final boolean afterStart= (container.getBeginLine() < line) || 
-                                  ((container.getBeginLine() == line) && (container.getBeginColum() <= col));
-        final boolean beforeEnd = (container.getEndLine() > line) || 
-                                  ((container.getEndLine() == line) && (container.getEndColum() >= col));
-        
-        if(afterStart && beforeEnd) {
-            for(BshVariableInfo varInfo: container.getVariables()) {
-                // Deeper nested variable declarations override earlier once
-                final Iterator<BshVariableInfo> iterator = list.iterator();
-                while(iterator.hasNext()) 
-                    if(iterator.next().getName().equals(varInfo.getName()))
-                        iterator.remove();
-                list.add(varInfo);
-            }
-            for(BshMethodInfo method: container.getMethods())
-                handleInfoContainer(list, method, line, col);
-        }
-    }
-    
 }
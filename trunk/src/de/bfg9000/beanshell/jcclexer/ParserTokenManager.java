@@ -1946,6 +1946,8 @@ public static final String[] jjstrLiteralImages = {
 /** Lexer state names. */
 public static final String[] lexStateNames = {
    "DEFAULT",
+   "IN_FORMAL_COMMENT",
+   "IN_MULTI_LINE_COMMENT",
 };
 protected JavaCharStream input_stream;
 private final int[] jjrounds = new int[75];
@@ -1990,12 +1992,18 @@ public void ReInit(JavaCharStream stream, int lexState)
 /** Switch to specified lex state. */
 public void SwitchTo(int lexState)
 {
-   if (lexState >= 1 || lexState < 0)
+   if (lexState >= 3 || lexState < 0)
       throw new TokenMgrError("Error: Ignoring invalid lexical state : " + lexState + ". State unchanged.", TokenMgrError.INVALID_LEXICAL_STATE);
    else
       curLexState = lexState;
 }
 
+/** Current lex state, to restart the token manager with. Not generated. */
+public int getLexState()
+{
+   return curLexState;
+}
+
 protected Token jjFillToken()
 {
    final Token t;
@@ -2030,7 +2038,23 @@ int jjmatchedKind;
 /** Get the next Token. */
 public Token getNextToken()
 {
-  Token matchedToken;
+   jjMatchNextToken();
+   return jjFillToken();
+}
+
+/**
+ * Get the kind of the next token, without creating the Token and its image. Not generated: the NetBeans lexer only
+ * needs the kind, the text stays in its LexerInput.
+ */
+public int getNextTokenKind()
+{
+   jjMatchNextToken();
+   return jjmatchedKind;
+}
+
+/** Match the next token, leaving its kind in jjmatchedKind and its text in the input stream. */
+private void jjMatchNextToken()
+{
   int curPos = 0;
 
   EOFLoop :
@@ -2043,10 +2067,12 @@ public Token getNextToken()
    catch(java.io.IOException e)
    {
       jjmatchedKind = 0;
-      matchedToken = jjFillToken();
-      return matchedToken;
+      return;
    }
 
+   if ((curLexState != DEFAULT || curChar == '/') && jjMoveBlockComment())
+      return;
+
    jjmatchedKind = 0x7fffffff;
    jjmatchedPos = 0;
    curPos = jjMoveStringLiteralDfa0_0();
@@ -2054,8 +2080,7 @@ public Token getNextToken()
    {
       if (jjmatchedPos + 1 < curPos)
          input_stream.backup(curPos - jjmatchedPos - 1);
-         matchedToken = jjFillToken();
-         return matchedToken;
+      return;
    }
    int error_line = input_stream.getEndLine();
    int error_column = input_stream.getEndColumn();
@@ -2080,6 +2105,70 @@ public Token getNextToken()
   }
 }
 
+/*
+ * Not generated: block comments are split at line ends, so that the NetBeans lexer can restart lexing in the middle
+ * of one. A comment is matched up to the end of its first line in DEFAULT, and the rest of it one line at a time in
+ * the lexical states IN_FORMAL_COMMENT and IN_MULTI_LINE_COMMENT, until "*" "/" switches back to DEFAULT. Returns
+ * false, with nothing read beyond curChar, if curChar doesn't start a block comment.
+ */
+private boolean jjMoveBlockComment()
+{
+   try
+   {
+      if (curLexState == DEFAULT)
+      {
+         if (input_stream.readChar() != '*')
+         {
+            input_stream.backup(1);
+            return false;
+         }
+         jjmatchedKind = MULTI_LINE_COMMENT;
+         curLexState = IN_MULTI_LINE_COMMENT;
+         if (input_stream.readChar() == '*')
+         {
+            jjmatchedKind = FORMAL_COMMENT;
+            curLexState = IN_FORMAL_COMMENT;
+            if (input_stream.readChar() == '/')
+            {
+               jjmatchedKind = MULTI_LINE_COMMENT;
+               curLexState = DEFAULT;
+               return true;
+            }
+         }
+      }
+      else
+         jjmatchedKind = curLexState == IN_FORMAL_COMMENT ? FORMAL_COMMENT : MULTI_LINE_COMMENT;
+      input_stream.backup(1);
+
+      for (;;)
+      {
+         curChar = input_stream.readChar();
+         if (curChar == '\n')
+            return true;
+         if (curChar == '\r')
+         {
+            if (input_stream.readChar() != '\n')
+               input_stream.backup(1);
+            return true;
+         }
+         if (curChar == '*')
+         {
+            if (input_stream.readChar() == '/')
+            {
+               curLexState = DEFAULT;
+               return true;
+            }
+            input_stream.backup(1);
+         }
+      }
+   }
+   catch(java.io.IOException e)
+   {
+      // an unterminated comment ends with the input, a lone '/' at its end is no comment
+      return curLexState != DEFAULT;
+   }
+}
+
 private void jjCheckNAdd(int state)
 {
    if (jjrounds[state] != jjround)
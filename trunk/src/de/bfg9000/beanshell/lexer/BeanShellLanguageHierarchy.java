@@ -27,7 +27,7 @@ import org.netbeans.spi.lexer.*;
 public class BeanShellLanguageHierarchy extends LanguageHierarchy<BeanShellTokenId> {
 
     private static List<BeanShellTokenId> tokens;
-    private static Map<Integer,BeanShellTokenId> idToToken;
+    private static BeanShellTokenId[] idToToken;
 
     private static void init() {
         tokens = Arrays.<BeanShellTokenId> asList (new BeanShellTokenId[] {
@@ -162,15 +162,16 @@ public class BeanShellLanguageHierarchy extends LanguageHierarchy<BeanShellToken
             new BeanShellTokenId("RUNSIGNEDSHIFTASSIGN", "operator", RUNSIGNEDSHIFTASSIGN),
             new BeanShellTokenId("RUNSIGNEDSHIFTASSIGNX", "operator", RUNSIGNEDSHIFTASSIGNX)
         });
-        idToToken = new HashMap<Integer, BeanShellTokenId> ();
+        // indexed by kind, looking a kind up must not box it
+        idToToken = new BeanShellTokenId[tokenImage.length];
         for(BeanShellTokenId token : tokens)
-            idToToken.put(token.ordinal(), token);
+            idToToken[token.ordinal()] = token;
     }
 
     static synchronized BeanShellTokenId getToken (int id) {
         if(idToToken == null)
             init();
-        return idToToken.get(id);
+        return idToToken[id];
     }
 
     @Override
@@ -17,13 +17,14 @@ package de.bfg9000.beanshell.lexer;
 
 import de.bfg9000.beanshell.jcclexer.JavaCharStream;
 import de.bfg9000.beanshell.jcclexer.ParserTokenManager;
-import de.bfg9000.beanshell.jcclexer.Token;
 import org.netbeans.spi.lexer.Lexer;
 import org.netbeans.spi.lexer.LexerRestartInfo;
 import org.netbeans.spi.lexer.TokenFactory;
 
 /**
- * The BeanShell Script lexer
+ * The BeanShell Script lexer. Block comments are returned a line at a time, and the lexical state of the token manager
+ * after each token is the lexer's state, so NetBeans can restart lexing at any line of a comment instead of relexing
+ * it from its start.
  * 
  * @author Thomas Werner
  */
@@ -33,18 +34,27 @@ public class BeanShellLexer implements Lexer<BeanShellTokenId> {
     private ParserTokenManager bshParserTokenManager;
 
     BeanShellLexer(LexerRestartInfo<BeanShellTokenId> info) {
+        this(info, info.state());
+    }
+
+    /**
+     * Creates a lexer that starts in the given state, one returned by {@link #state()}, instead of the one NetBeans
+     * restarts it in. Tests use this to restart lexing at any token.
+     */
+    BeanShellLexer(LexerRestartInfo<BeanShellTokenId> info, Object state) {
         this.info = info;
         JavaCharStream stream = new JavaCharStream(info.input());
-        bshParserTokenManager = new ParserTokenManager(stream);
+        bshParserTokenManager = (null == state) ? new ParserTokenManager(stream)
+                                                : new ParserTokenManager(stream, (Integer) state);
     }
 
     @Override
     @SuppressWarnings("unchecked")
     public org.netbeans.api.lexer.Token<BeanShellTokenId> nextToken () {
         try {
-            Token token = bshParserTokenManager.getNextToken();
+            int kind = bshParserTokenManager.getNextTokenKind();
             if(info.input().readLength () < 1) return null;
-            return info.tokenFactory().createToken(BeanShellLanguageHierarchy.getToken(token.kind));
+            return info.tokenFactory().createToken(BeanShellLanguageHierarchy.getToken(kind));
         } catch(Throwable t) {
             // In case of invalid input: ignore the current token
             return TokenFactory.SKIP_TOKEN;
@@ -53,7 +63,8 @@ public class BeanShellLexer implements Lexer<BeanShellTokenId> {
 
     @Override
     public Object state () {
-        return null;
+        int lexState = bshParserTokenManager.getLexState();
+        return (ParserTokenManager.DEFAULT == lexState) ? null : Integer.valueOf(lexState);
     }
 
     @Override
@@ -0,0 +1,197 @@
+/*
+ * nbBeanShell -- a integration of BeanShell into the NetBeans IDE
+ * Copyright (C) 2012 Thomas Werner
+ *
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with this library; if not, write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+package de.bfg9000.beanshell.model;
+
+import bsh.BshIncrementalParserConnector;
+import bsh.BshScriptInfo;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+import javax.swing.text.Segment;
+import org.openide.util.ChangeSupport;
+import org.openide.util.RequestProcessor;
+
+/**
+ * The structure of the script held by a document, shared by the navigator and code completion. The script is parsed
+ * on a background thread shortly after the document was modified, at most once per modification, and the listeners
+ * are notified whenever a new {@code BshScriptInfo} is available. There is one model per document.
+ */
+public final class ScriptModel {
+
+    private static final Logger logger = Logger.getLogger(ScriptModel.class.getName());
+    private static final RequestProcessor PARSER = new RequestProcessor("BeanShell Script Parser", 1, true);
+    private static final int PARSE_DELAY = 500;
+
+    private final Document document;
+    private final BshIncrementalParserConnector parserConnector;
+    private final ChangeSupport changeSupport;
+    private final RequestProcessor.Task parseTask;
+
+    private volatile long version = 0;
+    private volatile long parsedVersion = -1;
+    private volatile BshScriptInfo scriptInfo;
+
+    /**
+     * Returns the model of the given document, creating it on first use.
+     *
+     * @param document the document holding a BeanShell script
+     * @return the model of the document
+     */
+    public static synchronized ScriptModel get(Document document) {
+        final Object model = document.getProperty(ScriptModel.class);
+        if(model instanceof ScriptModel)
+            return (ScriptModel) model;
+
+        final ScriptModel result = new ScriptModel(document);
+        document.putProperty(ScriptModel.class, result);
+        return result;
+    }
+
+    private ScriptModel(Document document) {
+        this.document = document;
+        parserConnector = new BshIncrementalParserConnector();
+        changeSupport = new ChangeSupport(this);
+        parseTask = PARSER.create(new Runnable() {
+            @Override
+            public void run() {
+                parse();
+            }
+        });
+        document.addDocumentListener(new DocumentChangeListener());
+        parseTask.schedule(0);
+    }
+
+    /**
+     * @return the structure of the script as of the last parse, or {@code null} if it hasn't been parsed, yet
+     */
+    public BshScriptInfo getScriptInfo() {
+        return scriptInfo;
+    }
+
+    /**
+     * Returns the structure of the current script with the given line left empty. Code completion uses this, as the
+     * line being typed is almost always an incorrect statement. The script is parsed on the model's thread, which this
+     * method waits for - so it must not be called on the event dispatch thread.
+     *
+     * @param line the index of the line to leave empty, or -1 for none
+     * @return the structure of the script without the given line
+     */
+    public BshScriptInfo getScriptInfoWithoutLine(final int line) {
+        final BshScriptInfo[] result = new BshScriptInfo[1];
+        PARSER.post(new Runnable() {
+            @Override
+            public void run() {
+                result[0] = parserConnector.update(readText(line, new long[1]));
+            }
+        }).waitFinished();
+        return result[0];
+    }
+
+    /**
+     * Registers a listener that is notified on the parser thread whenever the script has been parsed again.
+     */
+    public void addChangeListener(ChangeListener listener) {
+        changeSupport.addChangeListener(listener);
+    }
+
+    public void removeChangeListener(ChangeListener listener) {
+        changeSupport.removeChangeListener(listener);
+    }
+
+    private void parse() {
+        final long[] textVersion = new long[1];
+        final String text = readText(-1, textVersion);
+        if(textVersion[0] == parsedVersion)
+            return;
+
+        scriptInfo = parserConnector.update(text);
+        parsedVersion = textVersion[0];
+        changeSupport.fireChange();
+    }
+
+    /**
+     * Reads the script under the document's read lock, together with the number of the modification it belongs to.
+     */
+    private String readText(final int lineToRemove, final long[] textVersion) {
+        final String[] result = new String[1];
+        document.render(new Runnable() {
+            @Override
+            public void run() {
+                textVersion[0] = version;
+                result[0] = getText(lineToRemove);
+            }
+        });
+        return result[0];
+    }
+
+    /**
+     * Returns the text of the document with the given line left empty. Only the characters of the line are dropped,
+     * so the text differs from the document in that one place and the parser connector re-parses just around it.
+     */
+    private String getText(int lineToRemove) {
+        try {
+            final Element root = document.getDefaultRootElement();
+            if(lineToRemove < 0 || lineToRemove >= root.getElementCount())
+                return document.getText(0, document.getLength());
+
+            final Element line = root.getElement(lineToRemove);
+            final int start = line.getStartOffset();
+            final int end = Math.min(line.getEndOffset() -1, document.getLength());
+            final Segment segment = new Segment();
+            final StringBuilder result = new StringBuilder(document.getLength() -end +start);
+            document.getText(0, start, segment);
+            result.append(segment);
+            document.getText(end, document.getLength() -end, segment);
+            return result.append(segment).toString();
+        } catch(BadLocationException ex) {
+            logger.log(Level.WARNING, null, ex);
+            return "";
+        }
+    }
+
+    /**
+     * Counts the modifications of the document and parses the script again once the user paused typing.
+     */
+    private final class DocumentChangeListener implements DocumentListener {
+
+        @Override
+        public void insertUpdate(DocumentEvent e) {
+            modificationHappened();
+        }
+
+        @Override
+        public void removeUpdate(DocumentEvent e) {
+            modificationHappened();
+        }
+
+        @Override
+        public void changedUpdate(DocumentEvent e) {
+            // attribute changes only, the script stays the same
+        }
+
+        private void modificationHappened() {
+            version++;
+            parseTask.schedule(PARSE_DELAY);
+        }
+
+    }
+
+}
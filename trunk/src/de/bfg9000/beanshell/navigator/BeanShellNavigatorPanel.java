@@ -15,15 +15,16 @@
  */
 package de.bfg9000.beanshell.navigator;
 
-import bsh.BshParserConnector;
+import bsh.BshScriptInfo;
+import de.bfg9000.beanshell.model.ScriptModel;
 import java.awt.BorderLayout;
 import java.util.Timer;
 import java.util.TimerTask;
 import javax.swing.JComponent;
 import javax.swing.JPanel;
 import javax.swing.SwingUtilities;
-import javax.swing.event.DocumentEvent;
-import javax.swing.event.DocumentListener;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import javax.swing.text.JTextComponent;
 import org.netbeans.spi.navigator.NavigatorPanel;
 import org.openide.explorer.ExplorerManager;
@@ -45,11 +46,12 @@ public class BeanShellNavigatorPanel extends JPanel implements NavigatorPanel, E
 
     private final ExplorerManager manager;
     private final BeanTreeView beanTreeView;
-    private final DocumentChangeListener documentListener;
+    private final ScriptChangeListener scriptListener;
     private final Lookup lookup;
     
     private Timer lookupTimer;
     private JTextComponent connectedTextComponent;
+    private ScriptModel scriptModel;
     
     public BeanShellNavigatorPanel() {
         setLayout(new BorderLayout());
@@ -61,7 +63,7 @@ public class BeanShellNavigatorPanel extends JPanel implements NavigatorPanel, E
         beanTreeView.setRootVisible(false);
         add(beanTreeView, BorderLayout.CENTER);
         
-        documentListener = new DocumentChangeListener();
+        scriptListener = new ScriptChangeListener();
     }
     
     @Override
@@ -81,24 +83,16 @@ public class BeanShellNavigatorPanel extends JPanel implements NavigatorPanel, E
 
     @Override
     public void panelActivated(Lookup lkp) { 
-        if(null != connectedTextComponent)
-            connectedTextComponent.getDocument().removeDocumentListener(documentListener);
-        connectedTextComponent = org.netbeans.api.editor.EditorRegistry.lastFocusedComponent();
-        if(null != connectedTextComponent) {
-            connectedTextComponent.getDocument().addDocumentListener(documentListener);
-            updateContent();
-        } else { 
+        connect(org.netbeans.api.editor.EditorRegistry.lastFocusedComponent());
+        if(null == connectedTextComponent)
             startLookupTimer();
-        }
         ExplorerUtils.activateActions(manager, true);
     }
 
     @Override
     public void panelDeactivated() { 
         stopLookupTimer();
-            
-        if(null != connectedTextComponent)
-            connectedTextComponent.getDocument().removeDocumentListener(documentListener);        
+        connect(null);
         ExplorerUtils.activateActions(manager, false);
     }
 
@@ -112,9 +106,27 @@ public class BeanShellNavigatorPanel extends JPanel implements NavigatorPanel, E
         return manager;
     }
     
+    /**
+     * Shows the structure of the script in the given text component and follows its changes from now on.
+     */
+    private void connect(JTextComponent textComponent) {
+        if(null != scriptModel)
+            scriptModel.removeChangeListener(scriptListener);
+        
+        connectedTextComponent = textComponent;
+        scriptModel = null != textComponent ? ScriptModel.get(textComponent.getDocument()) : null;
+        if(null != scriptModel) {
+            scriptModel.addChangeListener(scriptListener);
+            updateContent();
+        }
+    }
+    
     private void updateContent() {
-        final String script = null != connectedTextComponent ? connectedTextComponent.getText() : "";        
-        final NodeFactory factory = new NodeFactory(new BshParserConnector().parse(script), connectedTextComponent);
+        final BshScriptInfo scriptInfo = null != scriptModel ? scriptModel.getScriptInfo() : null;
+        if(null == scriptInfo)
+            return;                                             // not parsed yet, the script model will tell us
+        
+        final NodeFactory factory = new NodeFactory(scriptInfo, connectedTextComponent);
         manager.setRootContext(new AbstractNode(Children.create(factory, false)));
         beanTreeView.expandAll();
     }
@@ -127,11 +139,10 @@ public class BeanShellNavigatorPanel extends JPanel implements NavigatorPanel, E
         lookupTimer.schedule(new TimerTask() {
             @Override
             public void run() {
-                connectedTextComponent = org.netbeans.api.editor.EditorRegistry.lastFocusedComponent();
-                if(null != connectedTextComponent) {
+                final JTextComponent textComponent = org.netbeans.api.editor.EditorRegistry.lastFocusedComponent();
+                if(null != textComponent) {
                     lookupTimer.cancel();
-                    connectedTextComponent.getDocument().addDocumentListener(documentListener);
-                    updateContent();
+                    connect(textComponent);
                 }
             }
         }, 500, 500);
@@ -145,42 +156,18 @@ public class BeanShellNavigatorPanel extends JPanel implements NavigatorPanel, E
     }
  
     /**
-     * Listens for modifications of the current script and updates the nodes of the navigator.
+     * Updates the nodes of the navigator whenever the script model has parsed the current script again.
      */
-    private final class DocumentChangeListener implements DocumentListener {
+    private final class ScriptChangeListener implements ChangeListener {
         
-        private volatile long lastUpdate = 0;
-        private final Timer delayTimer = new Timer();
-        
-        @Override
-        public void insertUpdate(DocumentEvent e) {
-            modificationHappened();
-        }
-
-        @Override
-        public void removeUpdate(DocumentEvent e) {
-            modificationHappened();
-        }
-
         @Override
-        public void changedUpdate(DocumentEvent e) {
-            modificationHappened();
-        }
-        
-        private void modificationHappened() {            
-            lastUpdate = System.currentTimeMillis();
-            delayTimer.schedule(new TimerTask() {
+        public void stateChanged(ChangeEvent e) {
+            SwingUtilities.invokeLater(new Runnable() {
                 @Override
                 public void run() {
-                    if(System.currentTimeMillis() -lastUpdate >= 500)
-                        SwingUtilities.invokeLater(new Runnable() {
-                            @Override
-                            public void run() {
-                                updateContent();
-                            }
-                        });
+                    updateContent();
                 }
-            }, 500);
+            });
         }
         
     }
@@ -0,0 +1,137 @@
+/*
+ * nbBeanShell -- a integration of BeanShell into the NetBeans IDE
+ * Copyright (C) 2012 Thomas Werner
+ *
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU General Public 
+ * License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with this library; if not, write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+import bsh.BshIncrementalParserConnector;
+import de.bfg9000.beanshell.lexer.BeanShellTokenId;
+import java.util.Random;
+import javax.swing.text.Document;
+import javax.swing.text.PlainDocument;
+import org.netbeans.api.lexer.Language;
+import org.netbeans.api.lexer.TokenHierarchy;
+import org.netbeans.api.lexer.TokenHierarchyEvent;
+import org.netbeans.api.lexer.TokenHierarchyListener;
+import org.netbeans.api.lexer.TokenSequence;
+
+/**
+ * Lexes a 20k line script whose methods carry long doc comments, once as a whole and then after each of a series of
+ * single character edits inside the comments, and reports how much of the script NetBeans had to relex per edit.
+ * Run with the module classes and the NetBeans lexer library on the class path.
+ */
+public class LexerBenchmark {
+
+    private static final int LINES = Integer.getInteger("bench.lines", 20000);
+    private static final int COMMENT_LINES = 200;
+    private static final int EDITS = Integer.getInteger("bench.edits", 200);
+
+    public static void main(String[] args) throws Exception {
+        final String script = createScript();
+        final int[] offsets = createOffsets(script);
+        System.out.println(script.split("\n").length +" lines, " +script.length() +" chars, " +EDITS +" edits");
+
+        double full = 0;
+        double[] incremental = null;
+        for(int round=0; round<3; round++) {
+            full = runFull(script);
+            incremental = runIncremental(script, offsets);
+        }
+        System.out.println(String.format("%-30s%12.3f ms", "full lex", full));
+        System.out.println(String.format("%-30s%12.3f ms/edit", "relex after edit", incremental[0]));
+        System.out.println(String.format("%-30s%12.0f chars/edit", "relexed", incremental[1]));
+    }
+
+    private static double runFull(String script) {
+        final long start = System.nanoTime();
+        final TokenSequence<BeanShellTokenId> tokens =
+                TokenHierarchy.create(script, BeanShellTokenId.getLanguage()).tokenSequence(BeanShellTokenId.getLanguage());
+        while(tokens.moveNext())
+            tokens.token().id();
+        return (System.nanoTime() -start) / 1e6;
+    }
+
+    /**
+     * @return the time per edit and the number of characters whose tokens changed per edit
+     */
+    private static double[] runIncremental(String script, int[] offsets) throws Exception {
+        final Document document = new PlainDocument();
+        document.putProperty(Language.class, BeanShellTokenId.getLanguage());
+        document.insertString(0, script, null);
+        final TokenHierarchy<Document> hierarchy = TokenHierarchy.get(document);
+        final long[] relexed = new long[1];
+        hierarchy.addTokenHierarchyListener(new TokenHierarchyListener() {
+            @Override
+            public void tokenHierarchyChanged(TokenHierarchyEvent evt) {
+                relexed[0] += evt.affectedEndOffset() -evt.affectedStartOffset();
+            }
+        });
+        lexDocument(document, hierarchy);
+
+        final long start = System.nanoTime();
+        for(int i=0; i<EDITS; i++) {
+            if(i % 2 == 0)
+                document.insertString(offsets[i], "x", null);
+            else
+                document.remove(offsets[i], 1);
+            lexDocument(document, hierarchy);
+        }
+        return new double[] { (System.nanoTime() -start) / 1e6 / EDITS, (double) relexed[0] / EDITS };
+    }
+
+    private static void lexDocument(Document document, final TokenHierarchy<Document> hierarchy) {
+        document.render(new Runnable() {
+            @Override
+            public void run() {
+                final TokenSequence<?> tokens = hierarchy.tokenSequence();
+                while(tokens.moveNext())
+                    tokens.token().id();
+            }
+        });
+    }
+
+    /**
+     * @return for each pair of edits an offset in the middle of a doc comment line somewhere in the script
+     */
+    private static int[] createOffsets(String script) {
+        final Random random = new Random(42);
+        final int[] result = new int[EDITS];
+        for(int i=0; i<EDITS; i+=2) {
+            final int offset = script.indexOf(" * line", random.nextInt(script.length() -20000)) +" * line".length();
+            result[i] = offset;
+            if(i +1 < EDITS)
+                result[i +1] = offset;
+        }
+        return result;
+    }
+
+    private static String createScript() {
+        final StringBuilder result = new StringBuilder();
+        result.append("import java.util.*;\n\n");
+        int lines = 2;
+        for(int i=0; lines < LINES; i++) {
+            result.append("/**\n");
+            for(int j=0; j<COMMENT_LINES; j++)
+                result.append(" * line ").append(j).append(" of the description of sum").append(i).append(".\n");
+            result.append(" */\n")
+                  .append("int sum").append(i).append("(int value) {\n")
+                  .append("    int result = 0; // the sum so far\n")
+                  .append("    for(int j=0; j<value; j++)\n")
+                  .append("        result += j;\n")
+                  .append("    return result;\n")
+                  .append("}\n\n");
+            lines += COMMENT_LINES +9;
+        }
+        return result.toString();
+    }
+
+}
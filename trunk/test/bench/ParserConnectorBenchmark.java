@@ -0,0 +1,125 @@
+/*
+ * nbBeanShell -- a integration of BeanShell into the NetBeans IDE
+ * Copyright (C) 2012 Thomas Werner
+ *
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU General Public 
+ * License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with this library; if not, write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+import bsh.BshIncrementalParserConnector;
+import bsh.BshParserConnector;
+import java.util.Random;
+
+/**
+ * Types single characters into a 10k line script and brings its structure up to date after each one, once by parsing
+ * the whole script again as the navigator used to and once incrementally. Run with the module classes and the
+ * BeanShell library on the class path.
+ */
+public class ParserConnectorBenchmark {
+
+    private static final int LINES = 10000;
+    private static final int EDITS = Integer.getInteger("bench.edits", 200);
+
+    public static void main(String[] args) throws Exception {
+        final String script = createScript();
+        final int[] offsets = createOffsets(script);
+        System.out.println(script.split("\n").length +" lines, " +script.length() +" chars, " +EDITS +" edits");
+
+        double full = 0;
+        double incremental = 0;
+        for(int round=0; round<3; round++) {
+            full = runFull(script, offsets);
+            incremental = runIncremental(script, offsets);
+        }
+        System.out.println(String.format("%-30s%12.3f ms/edit", "full parse", full));
+        System.out.println(String.format("%-30s%12.3f ms/edit", "incremental parse", incremental));
+        System.out.println(String.format("%-30s%12.1fx", "speedup", full / incremental));
+    }
+
+    private static double runFull(String script, int[] offsets) {
+        final BshParserConnector connector = new BshParserConnector();
+        String text = script;
+        final long start = System.nanoTime();
+        for(int i=0; i<EDITS; i++) {
+            text = edit(text, offsets[i], i);
+            connector.parse(text);
+        }
+        return (System.nanoTime() -start) / 1e6 / EDITS;
+    }
+
+    private static double runIncremental(String script, int[] offsets) {
+        final BshIncrementalParserConnector connector = new BshIncrementalParserConnector();
+        String text = script;
+        connector.update(text);
+        final long start = System.nanoTime();
+        for(int i=0; i<EDITS; i++) {
+            text = edit(text, offsets[i], i);
+            connector.update(text);
+        }
+        return (System.nanoTime() -start) / 1e6 / EDITS;
+    }
+
+    /**
+     * Types an 'x' on even edits and deletes it again on odd ones, so the script stays parseable.
+     */
+    private static String edit(String text, int offset, int i) {
+        return i % 2 == 0 ? text.substring(0, offset) +"x" +text.substring(offset)
+                          : text.substring(0, offset) +text.substring(offset +1);
+    }
+
+    /**
+     * @return for each pair of edits an offset right after an identifier somewhere in the script
+     */
+    private static int[] createOffsets(String script) {
+        final Random random = new Random(42);
+        final int[] result = new int[EDITS];
+        for(int i=0; i<EDITS; i+=2) {
+            final int offset = script.indexOf("value", random.nextInt(script.length() -100)) +"value".length();
+            result[i] = offset;
+            if(i +1 < EDITS)
+                result[i +1] = offset;
+        }
+        return result;
+    }
+
+    private static String createScript() {
+        final StringBuilder result = new StringBuilder();
+        result.append("import java.util.*;\n\n");
+        int lines = 2;
+        for(int i=0; lines < LINES; i++) {
+            switch(i % 3) {
+                case 0:
+                    result.append("int value").append(i).append(" = ").append(i).append(";\n");
+                    lines += 1;
+                    break;
+                case 1:
+                    result.append("/**\n * Adds up to ").append(i).append(".\n */\n")
+                          .append("int sum").append(i).append("(int value) {\n")
+                          .append("    int result = 0;\n")
+                          .append("    for(int j=0; j<value; j++)\n")
+                          .append("        result += j;\n")
+                          .append("    return result;\n")
+                          .append("}\n\n");
+                    lines += 10;
+                    break;
+                default:
+                    result.append("class Holder").append(i).append(" {\n")
+                          .append("    List values = new ArrayList();\n")
+                          .append("    void add(Object value) {\n")
+                          .append("        values.add(value);\n")
+                          .append("    }\n")
+                          .append("}\n");
+                    lines += 6;
+            }
+        }
+        return result.toString();
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * nbBeanShell -- a integration of BeanShell into the NetBeans IDE
+ * Copyright (C) 2012 Thomas Werner
+ *
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU General Public 
+ * License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with this library; if not, write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+package bsh;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ */
+public class IncrementalParserConnectorTest {
+    
+    /**
+     * int a = 1;
+     * void first() {
+     *     print(a);
+     * }
+     * int b = 2;
+     * void second() {
+     *     print(b);
+     * }
+     */
+    private static final String SCRIPT = "int a = 1;\nvoid first() {\n    print(a);\n}\n" +
+                                         "int b = 2;\nvoid second() {\n    print(b);\n}\n";
+    
+    @Test
+    public void testInitialParseMatchesFullParse() throws Exception {
+        final BshScriptInfo sInfo = new BshIncrementalParserConnector().update(SCRIPT);
+        
+        assertEquals(2, sInfo.getMethods().size());
+        assertEquals("first", sInfo.getMethods().get(0).getName());
+        assertEquals(2, sInfo.getMethods().get(0).getLineNumber());
+        assertEquals("second", sInfo.getMethods().get(1).getName());
+        assertEquals(6, sInfo.getMethods().get(1).getLineNumber());
+        assertEquals(2, sInfo.getVariables().size());
+        assertEquals(8, sInfo.getEndLine());
+    }
+    
+    @Test
+    public void testEditInsideMethodOnlyParsesThatMethod() throws Exception {
+        final BshIncrementalParserConnector connector = new BshIncrementalParserConnector();
+        connector.update(SCRIPT);
+        
+        final int offset = SCRIPT.indexOf("print(b)");
+        final BshScriptInfo sInfo = connector.update(SCRIPT.substring(0, offset) +"b = 3;\n    " +SCRIPT.substring(offset));
+        
+        assertEquals(true, connector.getParsedLineCount() < 9);
+        assertEquals(2, sInfo.getMethods().size());
+        assertEquals("second", sInfo.getMethods().get(1).getName());
+        assertEquals(6, sInfo.getMethods().get(1).getLineNumber());
+        assertEquals(9, sInfo.getMethods().get(1).getEndLine());
+        assertEquals(9, sInfo.getEndLine());
+    }
+    
+    @Test
+    public void testInsertedLinesMoveFollowingDeclarations() throws Exception {
+        final BshIncrementalParserConnector connector = new BshIncrementalParserConnector();
+        connector.update(SCRIPT);
+        
+        final BshScriptInfo sInfo = connector.update("int c = 3;\n\n" +SCRIPT);
+        
+        assertEquals(3, sInfo.getVariables().size());
+        assertEquals("c", sInfo.getVariables().get(0).getName());
+        assertEquals(1, sInfo.getVariables().get(0).getLineNumber());
+        assertEquals("b", sInfo.getVariables().get(2).getName());
+        assertEquals(7, sInfo.getVariables().get(2).getLineNumber());
+        assertEquals(4, sInfo.getMethods().get(0).getLineNumber());
+        assertEquals(8, sInfo.getMethods().get(1).getLineNumber());
+        assertEquals(6, sInfo.getMethods().get(0).getEndLine());
+    }
+    
+    @Test
+    public void testBrokenAndRepairedStatement() throws Exception {
+        final BshIncrementalParserConnector connector = new BshIncrementalParserConnector();
+        final BshParserConnector pConnector = new BshParserConnector();
+        connector.update(SCRIPT);
+        
+        final String broken = SCRIPT.replace("void second() {", "void second( {");
+        assertEquals(pConnector.parse(broken).getMethods().size(), connector.update(broken).getMethods().size());
+        
+        final BshScriptInfo sInfo = connector.update(SCRIPT);
+        assertEquals(2, sInfo.getMethods().size());
+        assertEquals("second", sInfo.getMethods().get(1).getName());
+        assertEquals(6, sInfo.getMethods().get(1).getLineNumber());
+    }
+    
+    @Test
+    public void testUnchangedTextIsNotParsedAgain() throws Exception {
+        final BshIncrementalParserConnector connector = new BshIncrementalParserConnector();
+        final BshScriptInfo sInfo = connector.update(SCRIPT);
+        
+        assertEquals(sInfo, connector.update(SCRIPT));
+    }
+    
+}
@@ -0,0 +1,81 @@
+/*
+ * nbBeanShell -- a integration of BeanShell into the NetBeans IDE
+ * Copyright (C) 2012 Thomas Werner
+ *
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU General Public 
+ * License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with this library; if not, write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+package bsh;
+
+import static org.junit.Assert.assertEquals;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ */
+public class VariableIndexTest {
+    
+    /**
+     * int a = 1;
+     * String name = "x";
+     * void first() {
+     *     int a = 2;
+     *     int alpha = 3;
+     *     print(a);
+     * }
+     * int Abc = 4;
+     */
+    private static final String SCRIPT = "int a = 1;\nString name = \"x\";\nvoid first() {\n    int a = 2;\n" +
+                                         "    int alpha = 3;\n    print(a);\n}\nint Abc = 4;\n";
+    
+    @Test
+    public void testMethodVariablesHideOuterOnes() throws Exception {
+        final BshScriptInfo sInfo = new BshParserConnector().parse(SCRIPT);
+        final List<BshVariableInfo> variables = sInfo.getVariableIndex().getVariables(6, 0, "");
+        
+        assertEquals(4, variables.size());
+        assertEquals("Abc", variables.get(0).getName());
+        assertEquals("a", variables.get(1).getName());
+        assertEquals(4, variables.get(1).getLineNumber());
+        assertEquals("alpha", variables.get(2).getName());
+        assertEquals("name", variables.get(3).getName());
+    }
+    
+    @Test
+    public void testPrefixIgnoresCase() throws Exception {
+        final BshScriptInfo sInfo = new BshParserConnector().parse(SCRIPT);
+        final List<BshVariableInfo> variables = sInfo.getVariableIndex().getVariables(6, 0, "A");
+        
+        assertEquals(3, variables.size());
+        assertEquals("Abc", variables.get(0).getName());
+        assertEquals("a", variables.get(1).getName());
+        assertEquals("alpha", variables.get(2).getName());
+    }
+    
+    @Test
+    public void testMethodVariablesAreNotVisibleOutsideOfIt() throws Exception {
+        final BshScriptInfo sInfo = new BshParserConnector().parse(SCRIPT);
+        final List<BshVariableInfo> variables = sInfo.getVariableIndex().getVariables(8, 0, "a");
+        
+        assertEquals(2, variables.size());
+        assertEquals("Abc", variables.get(0).getName());
+        assertEquals("a", variables.get(1).getName());
+        assertEquals(1, variables.get(1).getLineNumber());
+    }
+    
+    @Test
+    public void testIndexIsBuiltOncePerScriptInfo() throws Exception {
+        final BshScriptInfo sInfo = new BshParserConnector().parse(SCRIPT);
+        
+        assertEquals(true, sInfo.getVariableIndex() == sInfo.getVariableIndex());
+    }
+    
+}
@@ -0,0 +1,219 @@
+/*
+ * nbBeanShell -- a integration of BeanShell into the NetBeans IDE
+ * Copyright (C) 2012 Thomas Werner
+ *
+ * This library is free software; you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with this library; if not, write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+package de.bfg9000.beanshell.lexer;
+
+import static de.bfg9000.beanshell.jcclexer.ParserConstants.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import org.netbeans.api.lexer.Language;
+import org.netbeans.api.lexer.Token;
+import org.netbeans.api.lexer.TokenHierarchy;
+import org.netbeans.api.lexer.TokenSequence;
+import org.netbeans.spi.lexer.LanguageHierarchy;
+import org.netbeans.spi.lexer.Lexer;
+import org.netbeans.spi.lexer.LexerRestartInfo;
+import org.netbeans.spi.lexer.TokenFactory;
+
+/**
+ * Block comments are lexed a line at a time, and NetBeans restarts the lexer after an edit at the start of a token in
+ * the state the lexer reported after the token before. Lexing from any token on in that state must give the same
+ * tokens as lexing the script from its start.
+ */
+public class BeanShellLexerTest {
+
+    private static final String[] SCRIPTS = {
+        "int x = 1; /* a\n b * c\r\n **/ y /= 2 / 3;\n",
+        "/** doc\n * @x\n */\nvoid f() { }\n",
+        "/**/ /*/ z */ /***/ a // c\n",
+        "/* multi\r\n * line\r\n\r\n */ b = 2;\r\n",
+        "/** doc\r\n * with CR LF\r\n */\r\nx = \"/* no comment */\";\r\n",
+        "a = 1; /* open\n b = 2;\n",
+        "/** open doc\r\n *\r\n",
+        "/*",
+    };
+
+    private static final RestartLanguageHierarchy HIERARCHY = new RestartLanguageHierarchy();
+
+    @Test
+    public void testEmptyCommentIsOneToken() throws Exception {
+        final List<Lexed> tokens = lex("/**/ a", null);
+
+        assertEquals(3, tokens.size());
+        assertEquals(MULTI_LINE_COMMENT, tokens.get(0).kind);
+        assertEquals("/**/", tokens.get(0).text);
+        assertEquals(null, tokens.get(0).state);
+        assertEquals(IDENTIFIER, tokens.get(2).kind);
+    }
+
+    @Test
+    public void testCommentIsLexedALineAtATime() throws Exception {
+        final List<Lexed> tokens = lex("/** doc\r\n * x\r\n */\nint y;", null);
+
+        assertEquals("/** doc\r\n", tokens.get(0).text);
+        assertEquals(" * x\r\n", tokens.get(1).text);
+        assertEquals(" */", tokens.get(2).text);
+        for(int i=0; i<3; i++)
+            assertEquals(FORMAL_COMMENT, tokens.get(i).kind);
+        assertEquals(Integer.valueOf(IN_FORMAL_COMMENT), tokens.get(0).state);
+        assertEquals(Integer.valueOf(IN_FORMAL_COMMENT), tokens.get(1).state);
+        assertEquals(null, tokens.get(2).state);
+        assertEquals(INT, tokens.get(4).kind);
+    }
+
+    @Test
+    public void testUnterminatedCommentRunsToTheEnd() throws Exception {
+        final List<Lexed> tokens = lex("a /* open\n b = 2;", null);
+
+        assertEquals(4, tokens.size());
+        assertEquals("/* open\n", tokens.get(2).text);
+        assertEquals(" b = 2;", tokens.get(3).text);
+        assertEquals(MULTI_LINE_COMMENT, tokens.get(3).kind);
+        assertEquals(Integer.valueOf(IN_MULTI_LINE_COMMENT), tokens.get(3).state);
+    }
+
+    @Test
+    public void testRestartAtEveryTokenMatchesLexingFromTheStart() throws Exception {
+        for(String script : SCRIPTS)
+            assertRestartable(script);
+    }
+
+    @Test
+    public void testRestartInRandomComments() throws Exception {
+        final String alphabet = "/*\n\r ab=;x";
+        final Random random = new Random(42);
+        for(int i=0; i<500; i++) {
+            final StringBuilder script = new StringBuilder();
+            for(int n=random.nextInt(40); n>0; n--)
+                script.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            assertRestartable(script.toString());
+        }
+    }
+
+    /**
+     * Lexes the script from its start, then from every token on in the state reported after the token before, and
+     * compares the results. The tokens must also cover the whole script.
+     */
+    private static void assertRestartable(String script) {
+        final List<Lexed> full = lex(script, null);
+        final Lexed last = full.isEmpty() ? null : full.get(full.size() -1);
+        assertEquals(script, script.length(), null == last ? 0 : last.offset +last.text.length());
+
+        for(int i=1; i<full.size(); i++) {
+            final int start = full.get(i).offset;
+            final List<Lexed> restarted = lex(script.substring(start), full.get(i -1).state);
+            final List<Lexed> expected = full.subList(i, full.size());
+            assertEquals(script + " at " + start, expected.size(), restarted.size());
+            for(int j=0; j<expected.size(); j++)
+                assertEquals(script + " at " + start, expected.get(j).toString(),
+                             restarted.get(j).moveBy(start).toString());
+        }
+    }
+
+    private static List<Lexed> lex(String text, Object state) {
+        synchronized(HIERARCHY) {
+            HIERARCHY.startState = state;
+            HIERARCHY.states.clear();
+            final Language<BeanShellTokenId> language = HIERARCHY.language();
+            final TokenSequence<BeanShellTokenId> sequence = TokenHierarchy.create(text, language)
+                                                                           .tokenSequence(language);
+            final List<Lexed> result = new ArrayList<Lexed>();
+            while(sequence.moveNext()) {
+                final Token<BeanShellTokenId> token = sequence.token();
+                result.add(new Lexed(token.id().ordinal(), token.text().toString(), sequence.offset(),
+                                     HIERARCHY.states.get(result.size())));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * A token and the state of the lexer after it.
+     */
+    private static final class Lexed {
+
+        final int kind;
+        final String text;
+        final int offset;
+        final Object state;
+
+        Lexed(int kind, String text, int offset, Object state) {
+            this.kind = kind;
+            this.text = text;
+            this.offset = offset;
+            this.state = state;
+        }
+
+        Lexed moveBy(int delta) {
+            return new Lexed(kind, text, offset +delta, state);
+        }
+
+        @Override
+        public String toString() {
+            return kind + "@" + offset + " [" + text.replace("\r", "\\r").replace("\n", "\\n") + "] " + state;
+        }
+
+    }
+
+    /**
+     * The BeanShell tokens, lexed by a BeanShellLexer starting in a state chosen by the test. The state after each
+     * token is recorded.
+     */
+    private static final class RestartLanguageHierarchy extends LanguageHierarchy<BeanShellTokenId> {
+
+        Object startState;
+        final List<Object> states = new ArrayList<Object>();
+
+        @Override
+        protected Collection<BeanShellTokenId> createTokenIds() {
+            return BeanShellTokenId.getLanguage().tokenIds();
+        }
+
+        @Override
+        protected Lexer<BeanShellTokenId> createLexer(LexerRestartInfo<BeanShellTokenId> info) {
+            final BeanShellLexer lexer = new BeanShellLexer(info, null != info.state() ? info.state() : startState);
+            return new Lexer<BeanShellTokenId>() {
+                @Override
+                public Token<BeanShellTokenId> nextToken() {
+                    final Token<BeanShellTokenId> token = lexer.nextToken();
+                    if(null != token && TokenFactory.SKIP_TOKEN != token)
+                        states.add(lexer.state());
+                    return token;
+                }
+
+                @Override
+                public Object state() {
+                    return lexer.state();
+                }
+
+                @Override
+                public void release() {
+                    lexer.release();
+                }
+            };
+        }
+
+        @Override
+        protected String mimeType() {
+            return "text/x-beanshell-restart";
+        }
+
+    }
+
+}